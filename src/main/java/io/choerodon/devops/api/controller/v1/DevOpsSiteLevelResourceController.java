@@ -19,6 +19,7 @@ import io.choerodon.devops.api.vo.ClusterOverViewVO;
 import io.choerodon.devops.api.vo.UserAttrVO;
 import io.choerodon.devops.app.service.AppServiceService;
 import io.choerodon.devops.app.service.DevopsClusterService;
+import io.choerodon.devops.app.service.GitlabWebHookService;
 import io.choerodon.devops.app.service.UserAttrService;
 import io.choerodon.swagger.annotation.Permission;
 
@@ -37,6 +38,8 @@ public class DevOpsSiteLevelResourceController {
     private UserAttrService userAttrService;
     @Autowired
     private AppServiceService appServiceService;
+    @Autowired
+    private GitlabWebHookService gitlabWebHookService;
 
     @Permission(level = ResourceLevel.SITE, roles = InitRoleCode.SITE_ADMINISTRATOR)
     @GetMapping("/clusters/overview")
@@ -77,4 +80,13 @@ public class DevOpsSiteLevelResourceController {
             @RequestBody Set<Long> gitlabUserIds) {
         return new ResponseEntity<>(userAttrService.listUsersByGitlabUserIds(gitlabUserIds), HttpStatus.OK);
     }
+
+    @Permission(level = ResourceLevel.SITE, roles = InitRoleCode.SITE_ADMINISTRATOR)
+    @ApiOperation(value = "重新处理失败的gitlab webhook事件")
+    @PostMapping(value = "/gitlab_webhook_events/replay")
+    public ResponseEntity<Integer> replayFailedGitlabWebhookEvents(
+            @ApiParam(value = "gitlab项目id, 为空时重新处理所有项目的失败事件")
+            @RequestParam(value = "gitlab_project_id", required = false) Long gitlabProjectId) {
+        return new ResponseEntity<>(gitlabWebHookService.replayFailedEvents(gitlabProjectId), HttpStatus.OK);
+    }
 }
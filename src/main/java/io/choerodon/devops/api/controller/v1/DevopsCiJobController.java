@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 
 import io.choerodon.core.iam.InitRoleCode;
 import io.choerodon.core.iam.ResourceLevel;
+import io.choerodon.devops.api.vo.DevopsCiJobTraceVO;
 import io.choerodon.devops.api.vo.SonarInfoVO;
 import io.choerodon.devops.api.vo.SonarQubeConfigVO;
 import io.choerodon.devops.app.service.DevopsCiJobService;
@@ -63,7 +64,19 @@ public class DevopsCiJobController {
             @PathVariable(value = "project_id") Long projectId,
             @PathVariable(value = "gitlab_project_id") Long gitlabProjectId,
             @PathVariable(value = "job_id") Long jobId) {
-        return ResponseEntity.ok(devopsCiJobService.queryTrace(gitlabProjectId, jobId));
+        return ResponseEntity.ok(devopsCiJobService.queryTrace(projectId, gitlabProjectId, jobId));
+    }
+
+    @Permission(level = ResourceLevel.ORGANIZATION, roles = {InitRoleCode.PROJECT_OWNER, InitRoleCode.PROJECT_MEMBER})
+    @ApiOperation(value = "增量查询job日志, 只返回偏移量之后新增的部分")
+    @GetMapping("/gitlab_projects/{gitlab_project_id}/gitlab_jobs/{job_id}/trace/tail")
+    public ResponseEntity<DevopsCiJobTraceVO> queryTraceTail(
+            @PathVariable(value = "project_id") Long projectId,
+            @PathVariable(value = "gitlab_project_id") Long gitlabProjectId,
+            @PathVariable(value = "job_id") Long jobId,
+            @ApiParam("上次查询返回的偏移量, 不传时返回完整的日志")
+            @RequestParam(value = "offset", required = false) Long offset) {
+        return ResponseEntity.ok(devopsCiJobService.queryTrace(projectId, gitlabProjectId, jobId, offset));
     }
 
     @Permission(level = ResourceLevel.ORGANIZATION, roles = {InitRoleCode.PROJECT_OWNER, InitRoleCode.PROJECT_MEMBER})
@@ -5,6 +5,7 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.InitRoleCode;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.devops.api.vo.DevopsEnvPodVO;
+import io.choerodon.devops.api.vo.PodMetricsSampleVO;
 import io.choerodon.devops.app.service.DevopsEnvPodService;
 import io.choerodon.devops.infra.dto.AppServiceDTO;
 import io.choerodon.devops.infra.dto.DevopsEnvPodDTO;
@@ -22,6 +23,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import springfox.documentation.annotations.ApiIgnore;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -116,4 +119,36 @@ public class DevopsEnvPodController {
         devopsEnvPodService.deleteEnvPodById(projectId, envId, podId);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * 查询pod在时间范围内的CPU和内存用量, 用于绘制历史曲线
+     *
+     * @param envId     环境id
+     * @param podId     pod id
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param maxPoints 返回的最大点数
+     * @return 按时间升序排列的样本, CPU单位为毫核, 内存单位为字节
+     */
+    @Permission(level = ResourceLevel.ORGANIZATION,
+            roles = {InitRoleCode.PROJECT_OWNER, InitRoleCode.PROJECT_MEMBER})
+    @ApiOperation(value = "查询pod在时间范围内的CPU和内存用量")
+    @GetMapping("/{pod_id}/metrics")
+    public ResponseEntity<List<PodMetricsSampleVO>> queryPodMetrics(
+            @ApiParam(value = "项目id")
+            @PathVariable(value = "project_id") Long projectId,
+            @Encrypt
+            @ApiParam(value = "podId")
+            @PathVariable(value = "pod_id") Long podId,
+            @Encrypt
+            @ApiParam(value = "环境id", required = true)
+            @RequestParam(value = "env_id") Long envId,
+            @ApiParam(value = "开始时间, 不传时不限制")
+            @RequestParam(value = "start_time", required = false) Date startTime,
+            @ApiParam(value = "结束时间, 不传时不限制")
+            @RequestParam(value = "end_time", required = false) Date endTime,
+            @ApiParam(value = "返回的最大点数, 超过时相邻的样本取平均值合并, 小于等于0时不合并")
+            @RequestParam(value = "max_points", required = false, defaultValue = "60") Integer maxPoints) {
+        return ResponseEntity.ok(devopsEnvPodService.queryPodMetrics(projectId, envId, podId, startTime, endTime, maxPoints));
+    }
 }
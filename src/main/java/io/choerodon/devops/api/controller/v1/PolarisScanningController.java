@@ -7,14 +7,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import springfox.documentation.annotations.ApiIgnore;
 
+import io.choerodon.core.domain.Page;
 import io.choerodon.core.iam.InitRoleCode;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.devops.api.vo.ClusterPolarisEnvDetailsVO;
 import io.choerodon.devops.api.vo.DevopsPolarisRecordRespVO;
 import io.choerodon.devops.api.vo.DevopsPolarisRecordVO;
 import io.choerodon.devops.api.vo.DevopsPolarisSummaryVO;
+import io.choerodon.devops.api.vo.polaris.PolarisStorageControllerResultVO;
+import io.choerodon.devops.api.vo.polaris.PolarisSummaryItemContentVO;
 import io.choerodon.devops.app.service.PolarisScanningService;
+import io.choerodon.mybatis.pagehelper.domain.PageRequest;
+import io.choerodon.swagger.annotation.CustomPageRequest;
 import io.choerodon.swagger.annotation.Permission;
 
 /**
@@ -74,8 +80,29 @@ public class PolarisScanningController {
             @PathVariable("project_id") Long projectId,
             @Encrypt
             @ApiParam("需要扫描的集群的id")
-            @PathVariable("cluster_id") Long clusterId) {
-        return new ResponseEntity<>(polarisScanningService.clusterPolarisSummary(projectId, clusterId), HttpStatus.OK);
+            @PathVariable("cluster_id") Long clusterId,
+            @ApiParam("是否包含每一类的详情, 为false时通过分页接口查询详情")
+            @RequestParam(value = "with_detail", defaultValue = "true") Boolean withDetail) {
+        return new ResponseEntity<>(polarisScanningService.clusterPolarisSummary(projectId, clusterId, withDetail), HttpStatus.OK);
+    }
+
+    @ApiOperation("分页查询集群扫描结果中一个类别的详情")
+    @Permission(roles = {InitRoleCode.PROJECT_OWNER}, level = ResourceLevel.ORGANIZATION)
+    @CustomPageRequest
+    @GetMapping("/clusters/{cluster_id}/summary/{category}")
+    public ResponseEntity<Page<PolarisSummaryItemContentVO>> pageClusterCategoryDetail(
+            @ApiParam("项目id")
+            @PathVariable("project_id") Long projectId,
+            @Encrypt
+            @ApiParam("集群的id")
+            @PathVariable("cluster_id") Long clusterId,
+            @ApiParam("检测项的类别")
+            @PathVariable("category") String category,
+            @ApiParam("只查询这个namespace的资源")
+            @RequestParam(value = "namespace", required = false) String namespace,
+            @ApiParam("分页参数")
+            @ApiIgnore PageRequest pageRequest) {
+        return new ResponseEntity<>(polarisScanningService.pageClusterCategoryDetail(projectId, clusterId, category, namespace, pageRequest), HttpStatus.OK);
     }
 
     @ApiOperation("获取扫描的集群环境详情报告")
@@ -86,8 +113,27 @@ public class PolarisScanningController {
             @PathVariable("project_id") Long projectId,
             @Encrypt
             @ApiParam("需要扫描的集群的id")
-            @PathVariable("cluster_id") Long clusterId) {
-        return new ResponseEntity<>(polarisScanningService.clusterPolarisEnvDetail(projectId, clusterId), HttpStatus.OK);
+            @PathVariable("cluster_id") Long clusterId,
+            @ApiParam("是否包含每个namespace的详情, 为false时通过分页接口查询详情")
+            @RequestParam(value = "with_detail", defaultValue = "true") Boolean withDetail) {
+        return new ResponseEntity<>(polarisScanningService.clusterPolarisEnvDetail(projectId, clusterId, withDetail), HttpStatus.OK);
+    }
+
+    @ApiOperation("分页查询集群扫描结果中一个namespace的详情")
+    @Permission(roles = {InitRoleCode.PROJECT_OWNER}, level = ResourceLevel.ORGANIZATION)
+    @CustomPageRequest
+    @GetMapping("/clusters/{cluster_id}/env_detail/{namespace}")
+    public ResponseEntity<Page<PolarisStorageControllerResultVO>> pageClusterNamespaceDetail(
+            @ApiParam("项目id")
+            @PathVariable("project_id") Long projectId,
+            @Encrypt
+            @ApiParam("集群的id")
+            @PathVariable("cluster_id") Long clusterId,
+            @ApiParam("集群namespace")
+            @PathVariable("namespace") String namespace,
+            @ApiParam("分页参数")
+            @ApiIgnore PageRequest pageRequest) {
+        return new ResponseEntity<>(polarisScanningService.pageClusterNamespaceDetail(projectId, clusterId, namespace, pageRequest), HttpStatus.OK);
     }
 
     @ApiOperation("扫描集群")
@@ -1,5 +1,7 @@
 package io.choerodon.devops.api.vo;
 
+import java.util.List;
+
 import io.swagger.annotations.ApiModelProperty;
 import org.hzero.starter.keyencrypt.core.Encrypt;
 
@@ -12,6 +14,15 @@ public class CdHostDeployConfigVO {
     @ApiModelProperty("主机详情")
     private HostConnectionVO hostConnectionVO;
 
+    @ApiModelProperty("主机组部署的主机列表, 不为空时代替hostConnectionVO, 对每个主机执行相同的部署")
+    private List<HostConnectionVO> hostConnectionVOS;
+
+    @ApiModelProperty("主机组部署时同时部署的主机数量, 按这个数量分批部署 / 可为空")
+    private Integer parallelism;
+
+    @ApiModelProperty("主机组部署时允许失败的主机数量, 超过时不再部署剩余的主机且任务失败 / 默认为0")
+    private Integer failureThreshold;
+
     @ApiModelProperty("主机部署类型 image/jar/customize")
     // HostDeployType
     private String hostDeployType;
@@ -315,4 +326,28 @@ public class CdHostDeployConfigVO {
     public void setHostConnectionVO(HostConnectionVO hostConnectionVO) {
         this.hostConnectionVO = hostConnectionVO;
     }
+
+    public List<HostConnectionVO> getHostConnectionVOS() {
+        return hostConnectionVOS;
+    }
+
+    public void setHostConnectionVOS(List<HostConnectionVO> hostConnectionVOS) {
+        this.hostConnectionVOS = hostConnectionVOS;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Integer getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(Integer failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
 }
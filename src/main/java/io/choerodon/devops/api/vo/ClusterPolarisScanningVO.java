@@ -15,6 +15,8 @@ public class ClusterPolarisScanningVO {
     private Long recordId;
     @ApiModelProperty("为null时表示扫描整个集群所有的namespace，有值时表示扫描一个指定的namespace")
     private String namespace;
+    @ApiModelProperty("分批返回扫描结果时每一批最多包含的资源数量, 旧版本的agent会忽略这个字段, 一次返回所有结果")
+    private Integer chunkSize;
 
     public ClusterPolarisScanningVO() {
     }
@@ -24,6 +26,12 @@ public class ClusterPolarisScanningVO {
         this.namespace = namespace;
     }
 
+    public ClusterPolarisScanningVO(Long recordId, String namespace, Integer chunkSize) {
+        this.recordId = recordId;
+        this.namespace = namespace;
+        this.chunkSize = chunkSize;
+    }
+
     public Long getRecordId() {
         return recordId;
     }
@@ -40,11 +48,20 @@ public class ClusterPolarisScanningVO {
         this.namespace = namespace;
     }
 
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Integer chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
     @Override
     public String toString() {
         return "ClusterPolarisScanningVO{" +
                 "recordId=" + recordId +
                 ", namespace='" + namespace + '\'' +
+                ", chunkSize=" + chunkSize +
                 '}';
     }
 }
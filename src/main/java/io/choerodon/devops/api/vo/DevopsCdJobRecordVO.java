@@ -40,6 +40,9 @@ public class DevopsCdJobRecordVO {
     private Audit audit;
     //主机部署详情
     private CdHostDeployConfigVO cdHostDeployConfigVO;
+    //主机部署 每个主机的部署结果
+    private String hostDeployStatus;
+    private List<HostDeployStatusVO> hostDeployStatusVOS;
     private Long deployInfoId;
     private Long apiTestTaskRecordId;
     private ApiTestTaskRecordVO apiTestTaskRecordVO;
@@ -176,6 +179,22 @@ public class DevopsCdJobRecordVO {
         this.cdHostDeployConfigVO = cdHostDeployConfigVO;
     }
 
+    public String getHostDeployStatus() {
+        return hostDeployStatus;
+    }
+
+    public void setHostDeployStatus(String hostDeployStatus) {
+        this.hostDeployStatus = hostDeployStatus;
+    }
+
+    public List<HostDeployStatusVO> getHostDeployStatusVOS() {
+        return hostDeployStatusVOS;
+    }
+
+    public void setHostDeployStatusVOS(List<HostDeployStatusVO> hostDeployStatusVOS) {
+        this.hostDeployStatusVOS = hostDeployStatusVOS;
+    }
+
     public Long getDurationSeconds() {
         return durationSeconds;
     }
@@ -0,0 +1,65 @@
+package io.choerodon.devops.api.vo;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * job日志的增量查询结果
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class DevopsCiJobTraceVO {
+    @ApiModelProperty("从请求的偏移量开始的日志内容")
+    private String content;
+
+    @ApiModelProperty("下次查询使用的偏移量(UTF-8字节数)")
+    private Long offset;
+
+    @ApiModelProperty("请求的偏移量超出了日志的长度, 返回的是从头开始的完整日志")
+    private Boolean reset;
+
+    @ApiModelProperty("job是否已结束, 结束后日志不再增加, 不需要继续查询")
+    private Boolean completed;
+
+    public DevopsCiJobTraceVO() {
+    }
+
+    public DevopsCiJobTraceVO(String content, Long offset, Boolean reset, Boolean completed) {
+        this.content = content;
+        this.offset = offset;
+        this.reset = reset;
+        this.completed = completed;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -0,0 +1,100 @@
+package io.choerodon.devops.api.vo;
+
+import java.util.Date;
+import javax.annotation.Nullable;
+
+import io.swagger.annotations.ApiModelProperty;
+import org.hzero.starter.keyencrypt.core.Encrypt;
+
+/**
+ * 主机部署任务中单个主机的部署结果
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class HostDeployStatusVO {
+    @ApiModelProperty("主机Ip")
+    private String hostIp;
+
+    @ApiModelProperty("主机port")
+    private String hostPort;
+
+    @Encrypt
+    @Nullable
+    @ApiModelProperty("主机id / 来源为已有主机时不为空")
+    private Long hostId;
+
+    /**
+     * {@link io.choerodon.devops.infra.enums.PipelineStatus}
+     */
+    @ApiModelProperty("部署状态 created/running/success/failed/skipped")
+    private String status;
+
+    @Nullable
+    @ApiModelProperty("部署失败的原因 / 可为空")
+    private String error;
+
+    @ApiModelProperty("开始部署的时间")
+    private Date startedDate;
+
+    @ApiModelProperty("结束部署的时间")
+    private Date finishedDate;
+
+    public String getHostIp() {
+        return hostIp;
+    }
+
+    public void setHostIp(String hostIp) {
+        this.hostIp = hostIp;
+    }
+
+    public String getHostPort() {
+        return hostPort;
+    }
+
+    public void setHostPort(String hostPort) {
+        this.hostPort = hostPort;
+    }
+
+    @Nullable
+    public Long getHostId() {
+        return hostId;
+    }
+
+    public void setHostId(@Nullable Long hostId) {
+        this.hostId = hostId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Nullable
+    public String getError() {
+        return error;
+    }
+
+    public void setError(@Nullable String error) {
+        this.error = error;
+    }
+
+    public Date getStartedDate() {
+        return startedDate;
+    }
+
+    public void setStartedDate(Date startedDate) {
+        this.startedDate = startedDate;
+    }
+
+    public Date getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(Date finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+}
@@ -0,0 +1,55 @@
+package io.choerodon.devops.api.vo;
+
+/**
+ * pod某一时刻的CPU和内存用量
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class PodMetricsSampleVO {
+    /**
+     * 采样时间, 毫秒时间戳
+     */
+    private long timestamp;
+    /**
+     * CPU用量, 单位: 毫核
+     */
+    private long cpuMilliCores;
+    /**
+     * 内存用量, 单位: 字节
+     */
+    private long memoryBytes;
+
+    public PodMetricsSampleVO() {
+    }
+
+    public PodMetricsSampleVO(long timestamp, long cpuMilliCores, long memoryBytes) {
+        this.timestamp = timestamp;
+        this.cpuMilliCores = cpuMilliCores;
+        this.memoryBytes = memoryBytes;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getCpuMilliCores() {
+        return cpuMilliCores;
+    }
+
+    public void setCpuMilliCores(long cpuMilliCores) {
+        this.cpuMilliCores = cpuMilliCores;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public void setMemoryBytes(long memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
+}
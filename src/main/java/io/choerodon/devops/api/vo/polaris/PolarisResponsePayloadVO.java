@@ -4,6 +4,13 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import io.swagger.annotations.ApiModelProperty;
 
 /**
+ * agent返回的扫描结果
+ * <p>
+ * 扫描结果较大时, agent把结果分成多条消息在同一个连接上依次发送, 每条消息的 polarisResult.auditData.results
+ * 是一部分资源的结果, chunkIndex 从0开始递增, 最后一条消息的 last 为true.
+ * 汇总数据(summary, auditTime, clusterInfo)可以在任意一条消息中.
+ * 旧版本的agent没有这两个字段, 一条消息包含所有结果
+ *
  * @author zmf
  * @since 2/14/20
  */
@@ -13,6 +20,10 @@ public class PolarisResponsePayloadVO {
     private Long recordId;
     @ApiModelProperty("扫描的结果")
     private PolarisScanResultVO polarisResult;
+    @ApiModelProperty("分批发送时这一批的序号, 从0开始, 为空表示不分批")
+    private Integer chunkIndex;
+    @ApiModelProperty("分批发送时是否是最后一批, 为空表示不分批")
+    private Boolean last;
 
     public Long getRecordId() {
         return recordId;
@@ -29,4 +40,27 @@ public class PolarisResponsePayloadVO {
     public void setPolarisResult(PolarisScanResultVO polarisResult) {
         this.polarisResult = polarisResult;
     }
+
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public Boolean getLast() {
+        return last;
+    }
+
+    public void setLast(Boolean last) {
+        this.last = last;
+    }
+
+    /**
+     * 是否是这次扫描的最后一条消息, 不分批时总是最后一条
+     */
+    public boolean lastMessage() {
+        return !Boolean.FALSE.equals(last);
+    }
 }
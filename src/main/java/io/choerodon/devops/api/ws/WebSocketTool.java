@@ -87,6 +87,16 @@ public class WebSocketTool {
         return FROM_FRONT_GROUP_PREFIX + Objects.requireNonNull(rawKey);
     }
 
+    /**
+     * 构造主机部署日志的key, 形如 cd_job_record:12
+     *
+     * @param cdJobRecordId 任务记录id
+     * @return key
+     */
+    public static String buildHostDeployLogKey(Long cdJobRecordId) {
+        return CD_JOB_RECORD + COLON + Objects.requireNonNull(cdJobRecordId);
+    }
+
     /**
      * Group 形如 from_front:cluster:12.log:q1a
      * 获取rawKey， 用于拼接转发的目的地group  返回 cluster:12.log:q1a
@@ -65,6 +65,9 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
     @Autowired
     private AgentMsgHandlerService agentMsgHandlerService;
 
+    @Autowired
+    private ResourceUpdateCoalescer resourceUpdateCoalescer;
+
     @Override
     public String processor() {
         return DevOpsWebSocketConstants.AGENT;
@@ -82,7 +85,7 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
         clusterSession.setClusterId(clusterId);
         clusterSession.setVersion(WebSocketTool.getVersion(session));
         clusterSession.setRegisterKey(group);
-        redisTemplate.opsForHash().put(CLUSTER_SESSION, clusterSession.getRegisterKey(), clusterSession);
+        clusterConnectionHandler.putClusterSession(clusterSession);
 
         // 连接成功之后,如果agent版本不匹配则提示升级agent,匹配则返回集群下关联环境的ssh信息
         List<Long> unnecessaryToUpgrade = clusterConnectionHandler.getUpdatedClusterList();
@@ -113,14 +116,18 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
-            doHandle(session, message);
+            dispatch(session, message);
             // 将异常捕获，否则未捕获的异常会导致外层的WebSocket框架关闭这个和Agent的连接
         } catch (Exception ex) {
             LOGGER.warn("Handle Agent Message: an unexpected exception occurred", ex);
         }
     }
 
-    private void doHandle(WebSocketSession session, TextMessage message) {
+    /**
+     * 在WebSocket线程上只做消息的解析, 具体的处理交给分发器按集群顺序异步执行
+     * resource_update 消息会经过合并器合并后再处理
+     */
+    private void dispatch(WebSocketSession session, TextMessage message) {
         String payload = message.getPayload();
         AgentMsgVO msg = JsonHelper.unmarshalByJackson(payload, AgentMsgVO.class);
         HelmType helmType = HelmType.forValue(String.valueOf(msg.getType()));
@@ -130,13 +137,23 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
             return;
         }
 
-        LOGGER.debug("AgentGitOps: helm type: {}, message: {}", helmType.value, message.getPayload());
+        LOGGER.debug("AgentGitOps: helm type: {}, message: {}", helmType.value, payload);
 
         //设置集群id
-        msg.setClusterId(TypeUtil.objToString(getClusterIdFromRegisterKey(TypeUtil.objToString(session.getAttributes().get(GROUP)))));
+        Long clusterId = getClusterIdFromRegisterKey(TypeUtil.objToString(session.getAttributes().get(GROUP)));
+        msg.setClusterId(TypeUtil.objToString(clusterId));
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(msg.toString());
         }
+        // 资源更新消息先合并, 其它消息要排在已缓冲的资源更新之后处理
+        if (HelmType.RESOURCE_UPDATE.equals(helmType)) {
+            resourceUpdateCoalescer.offer(clusterId, msg);
+        } else {
+            resourceUpdateCoalescer.dispatchAfterPending(clusterId, helmType, () -> doHandle(msg, helmType));
+        }
+    }
+
+    private void doHandle(AgentMsgVO msg, HelmType helmType) {
         switch (helmType) {
             // JOB的相关信息
             case HELM_INSTALL_JOB_INFO:
@@ -324,14 +341,14 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
                 // 误将新连接的key删掉（两者是同一个key）
                 if (Objects.equals(sessionId, clusterSessionVO.getWebSocketSessionId())) {
                     //移除关联关系
-                    redisTemplate.opsForHash().delete(CLUSTER_SESSION, registerKey);
+                    clusterConnectionHandler.removeClusterSession(registerKey);
                 } else {
                     LOGGER.info("This is an elder session whose registerKey value was updated by a new session. the session cluster id is {}", clusterId);
                 }
             } else {
                 // 这个逻辑不应该进的
                 LOGGER.warn("Value of register key is not of Class 'io.choerodon.devops.api.vo.ClusterSessionVO', and its real class is {}", registerKeyValue.getClass());
-                redisTemplate.opsForHash().delete(CLUSTER_SESSION, registerKey);
+                clusterConnectionHandler.removeClusterSession(registerKey);
             }
         }
     }
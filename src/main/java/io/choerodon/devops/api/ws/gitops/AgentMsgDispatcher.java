@@ -0,0 +1,186 @@
+package io.choerodon.devops.api.ws.gitops;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.infra.enums.HelmType;
+
+/**
+ * Agent消息的分发器
+ * 将WebSocket容器线程上收到的agent消息按照集群id分配到固定的处理通道(lane)上异步处理,
+ * 同一个集群的消息总是落在同一个通道上, 因此同一集群(以及集群内同一资源)的消息处理顺序和接收顺序一致;
+ * 每个通道的队列是有界的, 队列满时会阻塞WebSocket线程(而不是丢弃消息), 从而对agent形成背压
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class AgentMsgDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentMsgDispatcher.class);
+
+    private static final String THREAD_NAME_PREFIX = "agent-msg-";
+    private static final String METRIC_PENDING = "devops.agent.message.pending";
+    private static final String METRIC_HANDLE = "devops.agent.message.handle";
+    private static final String TAG_TYPE = "type";
+
+    /**
+     * 处理通道的数量, 也就是处理agent消息的线程数
+     */
+    @Value("${devops.agent.message.dispatch.laneCount:8}")
+    private Integer laneCount;
+    /**
+     * 每个通道的队列长度
+     */
+    @Value("${devops.agent.message.dispatch.queueCapacity:1000}")
+    private Integer queueCapacity;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor[] lanes;
+    private final Map<HelmType, AtomicInteger> pendingCounts = new EnumMap<>(HelmType.class);
+    private final Map<HelmType, Timer> handleTimers = new EnumMap<>(HelmType.class);
+
+    @PostConstruct
+    public void init() {
+        LOGGER.info("Create agent message dispatcher. The lane count is {} and the queue capacity of each lane is {}", laneCount, queueCapacity);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+        threadFactory.setDaemon(true);
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory, new BlockingPutPolicy());
+        }
+        for (HelmType helmType : HelmType.values()) {
+            AtomicInteger pending = new AtomicInteger();
+            pendingCounts.put(helmType, pending);
+            Gauge.builder(METRIC_PENDING, pending, AtomicInteger::get)
+                    .tag(TAG_TYPE, helmType.toValue())
+                    .description("agent messages waiting to be handled")
+                    .register(meterRegistry);
+            handleTimers.put(helmType, Timer.builder(METRIC_HANDLE)
+                    .tag(TAG_TYPE, helmType.toValue())
+                    .description("time spent handling agent messages")
+                    .register(meterRegistry));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * 将消息的处理逻辑提交到集群对应的通道上, 队列已满时阻塞直到有空位
+     *
+     * @param clusterId 集群id
+     * @param helmType  消息类型
+     * @param handler   处理逻辑
+     */
+    public void dispatch(Long clusterId, HelmType helmType, Runnable handler) {
+        AtomicInteger pending = pendingCounts.get(helmType);
+        pending.incrementAndGet();
+        try {
+            laneOf(clusterId).execute(task(helmType, handler));
+        } catch (RejectedExecutionException ex) {
+            // 通道已关闭或等待时被中断, 消息没有提交
+            pending.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * 将消息的处理逻辑提交到集群对应的通道上, 队列已满时不等待, 直接返回失败
+     *
+     * @param clusterId 集群id
+     * @param helmType  消息类型
+     * @param handler   处理逻辑
+     * @return 是否提交成功
+     */
+    public boolean tryDispatch(Long clusterId, HelmType helmType, Runnable handler) {
+        AtomicInteger pending = pendingCounts.get(helmType);
+        pending.incrementAndGet();
+        try {
+            laneOf(clusterId).execute(new NonBlockingTask(task(helmType, handler)));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            pending.decrementAndGet();
+            return false;
+        }
+    }
+
+    private Runnable task(HelmType helmType, Runnable handler) {
+        AtomicInteger pending = pendingCounts.get(helmType);
+        Timer timer = handleTimers.get(helmType);
+        return () -> {
+            pending.decrementAndGet();
+            long start = System.nanoTime();
+            try {
+                handler.run();
+                // 将异常捕获，避免通道线程因为一个消息的异常而退出
+            } catch (Exception ex) {
+                LOGGER.warn("Handle Agent Message: an unexpected exception occurred", ex);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    private ThreadPoolExecutor laneOf(Long clusterId) {
+        int hash = clusterId == null ? 0 : Long.hashCode(clusterId);
+        return lanes[Math.floorMod(hash, lanes.length)];
+    }
+
+    /**
+     * 通过{@link #tryDispatch}提交的任务, 队列满时不阻塞提交者
+     */
+    private static class NonBlockingTask implements Runnable {
+        private final Runnable delegate;
+
+        private NonBlockingTask(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+
+    /**
+     * 队列满时阻塞提交者的拒绝策略, 用于实现背压
+     */
+    private static class BlockingPutPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Agent message lane has been shut down");
+            }
+            if (r instanceof NonBlockingTask) {
+                throw new RejectedExecutionException("Agent message lane is full");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for agent message lane", e);
+            }
+        }
+    }
+}
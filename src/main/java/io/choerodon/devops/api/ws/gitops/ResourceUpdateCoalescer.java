@@ -0,0 +1,193 @@
+package io.choerodon.devops.api.ws.gitops;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.alibaba.fastjson.JSONObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.AgentMsgVO;
+import io.choerodon.devops.app.service.AgentMsgHandlerService;
+import io.choerodon.devops.infra.enums.HelmType;
+import io.choerodon.devops.infra.util.TypeUtil;
+
+/**
+ * 合并短时间内同一资源的 resource_update 消息
+ * 滚动升级时agent会在几秒内对同一个pod/ReplicaSet发送几十次更新, 这里在一个时间窗口内
+ * 按消息的key只保留resourceVersion最大的那一条, 窗口结束时一次性交给分发器处理.
+ * <p>
+ * 为了保证和逐条处理时一样的顺序, 同一集群的其它类型消息(如resource_delete)到达时,
+ * 会先把该集群已缓冲的更新提交到通道上, 然后再提交这条消息.
+ * <p>
+ * 窗口到期的提交在所有集群共用的定时线程上进行, 通道已满时不等待, 更新留在缓冲区里等下一个窗口再提交,
+ * 因此一个集群处理慢不会影响其它集群的合并
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class ResourceUpdateCoalescer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceUpdateCoalescer.class);
+
+    private static final String METADATA = "metadata";
+    private static final String RESOURCE_VERSION = "resourceVersion";
+    private static final String METRIC_COALESCED = "devops.agent.message.coalesced";
+
+    /**
+     * 合并的时间窗口, 单位毫秒, 为0时不合并
+     */
+    @Value("${devops.agent.message.coalesce.windowMillis:500}")
+    private Long windowMillis;
+
+    @Autowired
+    private AgentMsgDispatcher agentMsgDispatcher;
+
+    @Autowired
+    private AgentMsgHandlerService agentMsgHandlerService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ScheduledThreadPoolExecutor scheduler;
+    private Counter coalescedCounter;
+    private final Map<Long, ClusterBuffer> buffers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        LOGGER.info("Create resource update coalescer. The window is {} ms", windowMillis);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("agent-msg-coalesce-");
+        threadFactory.setDaemon(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        coalescedCounter = Counter.builder(METRIC_COALESCED)
+                .description("resource_update messages superseded before being handled")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * 缓冲一条 resource_update 消息
+     *
+     * @param clusterId 集群id
+     * @param msg       消息
+     */
+    public void offer(Long clusterId, AgentMsgVO msg) {
+        if (windowMillis <= 0) {
+            agentMsgDispatcher.dispatch(clusterId, HelmType.RESOURCE_UPDATE, () -> handle(msg));
+            return;
+        }
+        ClusterBuffer buffer = buffers.computeIfAbsent(clusterId, k -> new ClusterBuffer());
+        synchronized (buffer) {
+            AgentMsgVO previous = buffer.pending.get(msg.getKey());
+            if (previous != null) {
+                coalescedCounter.increment();
+                if (resourceVersionOf(previous) > resourceVersionOf(msg)) {
+                    return;
+                }
+                // 重新放入, 使其在批次中的位置和最后一次接收的位置一致
+                buffer.pending.remove(msg.getKey());
+            }
+            buffer.pending.put(msg.getKey(), msg);
+            if (!buffer.flushScheduled) {
+                scheduleFlush(clusterId, buffer);
+            }
+        }
+    }
+
+    /**
+     * 先提交集群已缓冲的更新, 再提交其它类型的消息, 以保持消息顺序
+     *
+     * @param clusterId 集群id
+     * @param helmType  消息类型
+     * @param handler   消息的处理逻辑
+     */
+    public void dispatchAfterPending(Long clusterId, HelmType helmType, Runnable handler) {
+        ClusterBuffer buffer = buffers.get(clusterId);
+        List<AgentMsgVO> batch = buffer == null ? Collections.emptyList() : takePending(buffer);
+        // 一个集群的消息由它的WebSocket会话依次提交, 不会并发, 定时线程在锁内提交的批次总是排在这里取出的更新前面,
+        // 所以可以在锁外阻塞等待通道的空位, 不会打乱顺序, 也不会让定时线程等待这个集群
+        if (!batch.isEmpty()) {
+            agentMsgDispatcher.dispatch(clusterId, HelmType.RESOURCE_UPDATE, () -> batch.forEach(this::handle));
+        }
+        agentMsgDispatcher.dispatch(clusterId, helmType, handler);
+    }
+
+    private static List<AgentMsgVO> takePending(ClusterBuffer buffer) {
+        synchronized (buffer) {
+            List<AgentMsgVO> batch = new ArrayList<>(buffer.pending.values());
+            buffer.pending.clear();
+            return batch;
+        }
+    }
+
+    private void flush(Long clusterId) {
+        ClusterBuffer buffer = buffers.get(clusterId);
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            buffer.flushScheduled = false;
+            if (buffer.pending.isEmpty()) {
+                return;
+            }
+            // 在锁内提交, 保证批次排在之后到达的其它消息前面; 提交不等待通道的空位, 持有锁的时间很短
+            List<AgentMsgVO> batch = new ArrayList<>(buffer.pending.values());
+            if (agentMsgDispatcher.tryDispatch(clusterId, HelmType.RESOURCE_UPDATE, () -> batch.forEach(this::handle))) {
+                buffer.pending.clear();
+            } else {
+                // 通道已满, 更新留在缓冲区里继续合并, 下一个窗口再提交
+                LOGGER.debug("The lane of cluster {} is full, delay {} resource updates", clusterId, batch.size());
+                scheduleFlush(clusterId, buffer);
+            }
+        }
+    }
+
+    /**
+     * 必须在持有buffer锁时调用
+     */
+    private void scheduleFlush(Long clusterId, ClusterBuffer buffer) {
+        buffer.flushScheduled = true;
+        scheduler.schedule(() -> flush(clusterId), windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void handle(AgentMsgVO msg) {
+        try {
+            agentMsgHandlerService.resourceUpdate(msg.getKey(), msg.getPayload(), TypeUtil.objToLong(msg.getClusterId()));
+        } catch (Exception ex) {
+            LOGGER.warn("Handle Agent Message: failed to update resource with key {}", msg.getKey(), ex);
+        }
+    }
+
+    private static long resourceVersionOf(AgentMsgVO msg) {
+        try {
+            JSONObject metadata = JSONObject.parseObject(msg.getPayload()).getJSONObject(METADATA);
+            Long version = metadata == null ? null : metadata.getLong(RESOURCE_VERSION);
+            return version == null ? Long.MIN_VALUE : version;
+        } catch (Exception ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static class ClusterBuffer {
+        private final LinkedHashMap<String, AgentMsgVO> pending = new LinkedHashMap<>();
+        private boolean flushScheduled;
+    }
+}
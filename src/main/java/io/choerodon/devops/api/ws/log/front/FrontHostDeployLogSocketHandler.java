@@ -0,0 +1,33 @@
+package io.choerodon.devops.api.ws.log.front;
+
+import static io.choerodon.devops.infra.constant.DevOpsWebSocketConstants.FRONT_HOST_DEPLOY_LOG;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import io.choerodon.devops.api.ws.AbstractSocketHandler;
+import io.choerodon.devops.api.ws.WebSocketTool;
+
+/**
+ * 前端订阅主机部署日志的连接, 只接收
+ * {@link io.choerodon.devops.infra.handler.HostDeployLogHandler} 推送的日志
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class FrontHostDeployLogSocketHandler extends AbstractSocketHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrontHostDeployLogSocketHandler.class);
+
+    @Override
+    public String processor() {
+        return FRONT_HOST_DEPLOY_LOG;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        LOGGER.info("Connection established from client. The sessionGroup is {} and the processor is {}", WebSocketTool.getGroup(session), FRONT_HOST_DEPLOY_LOG);
+    }
+}
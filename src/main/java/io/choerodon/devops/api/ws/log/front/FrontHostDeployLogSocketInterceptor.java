@@ -0,0 +1,36 @@
+package io.choerodon.devops.api.ws.log.front;
+
+import static io.choerodon.devops.infra.constant.DevOpsWebSocketConstants.FRONT_HOST_DEPLOY_LOG;
+
+import java.util.Map;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+
+import io.choerodon.devops.api.ws.AbstractSocketInterceptor;
+import io.choerodon.devops.api.ws.WebSocketTool;
+
+/**
+ * 前端订阅主机部署日志的连接, group形如 from_front:cd_job_record:12
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class FrontHostDeployLogSocketInterceptor extends AbstractSocketInterceptor {
+    @Override
+    public String processor() {
+        return FRONT_HOST_DEPLOY_LOG;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        WebSocketTool.preProcessAttributeAboutKeyEncryption(attributes);
+        //校验ws连接参数是否正确
+        WebSocketTool.checkKey(attributes);
+        WebSocketTool.checkGroup(attributes);
+        return true;
+    }
+}
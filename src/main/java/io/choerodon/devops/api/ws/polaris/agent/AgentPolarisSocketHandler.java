@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -22,6 +23,10 @@ import io.choerodon.devops.infra.util.JsonHelper;
 @Component
 public class AgentPolarisSocketHandler extends AbstractSocketHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(AgentPolarisSocketHandler.class);
+    /**
+     * 正在分批接收的扫描纪录id
+     */
+    private static final String RECORD_ID_ATTRIBUTE = "polarisRecordId";
 
     @Autowired
     private PolarisScanningService polarisScanningService;
@@ -39,9 +44,30 @@ public class AgentPolarisSocketHandler extends AbstractSocketHandler {
         Long clusterId = WebSocketTool.getClusterId(session);
         LOGGER.info("Polaris: the cluster id is {}", clusterId);
 
+        PolarisResponsePayloadVO payload = JsonHelper.unmarshalByJackson(message.getPayload(), PolarisResponsePayloadVO.class);
+        // 分批发送时, 收到最后一批后再关闭连接
+        boolean finished = payload == null || payload.lastMessage();
+        if (!finished) {
+            session.getAttributes().put(RECORD_ID_ATTRIBUTE, payload.getRecordId());
+        }
+        try {
+            polarisScanningService.handleAgentPolarisMessage(payload);
+        } catch (RuntimeException e) {
+            finished = true;
+            throw e;
+        } finally {
+            if (finished) {
+                session.getAttributes().remove(RECORD_ID_ATTRIBUTE);
+                WebSocketTool.closeSessionQuietly(session);
+            }
+        }
+    }
 
-        polarisScanningService.handleAgentPolarisMessage(JsonHelper.unmarshalByJackson(message.getPayload(), PolarisResponsePayloadVO.class));
-
-        WebSocketTool.closeSessionQuietly(session);
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Object recordId = session.getAttributes().get(RECORD_ID_ATTRIBUTE);
+        if (recordId != null) {
+            polarisScanningService.discardUnfinishedScanning((Long) recordId);
+        }
     }
 }
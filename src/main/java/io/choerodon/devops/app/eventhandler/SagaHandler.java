@@ -107,6 +107,7 @@ public class SagaHandler {
         GitlabGroupPayload gitlabGroupPayload = new GitlabGroupPayload();
         BeanUtils.copyProperties(projectPayload, gitlabGroupPayload);
         loggerInfo(msg);
+        baseServiceClientOperator.evictProjectCache(projectPayload.getProjectId());
         gitlabGroupService.updateGroups(gitlabGroupPayload);
         return msg;
     }
@@ -189,6 +190,7 @@ public class SagaHandler {
     public String handleUpdateUserEvent(String payload) {
         GitlabUserVO gitlabUserVO = gson.fromJson(payload, GitlabUserVO.class);
         loggerInfo(gitlabUserVO);
+        baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(gitlabUserVO.getId()));
 
         GitlabUserRequestVO gitlabUserReqDTO = new GitlabUserRequestVO();
         gitlabUserReqDTO.setProvider("oauth2_generic");
@@ -214,6 +216,7 @@ public class SagaHandler {
     public String handleIsEnabledUserEvent(String payload) {
         GitlabUserVO gitlabUserVO = gson.fromJson(payload, GitlabUserVO.class);
         loggerInfo(gitlabUserVO);
+        baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(gitlabUserVO.getId()));
 
         gitlabUserService.isEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserVO.getId()));
         return payload;
@@ -229,6 +232,7 @@ public class SagaHandler {
     public String handleDisEnabledUserEvent(String payload) {
         GitlabUserVO gitlabUserVO = gson.fromJson(payload, GitlabUserVO.class);
         loggerInfo(gitlabUserVO);
+        baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(gitlabUserVO.getId()));
 
         gitlabUserService.disEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserVO.getId()));
         return payload;
@@ -1,8 +1,11 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
+import io.choerodon.devops.api.vo.PodMetricsSampleVO;
 import org.springframework.lang.Nullable;
 
 /**
@@ -14,18 +17,25 @@ public interface AgentPodService {
     /**
      * 处理Agent发送的实时Pod数据
      *
-     * @param pods pod数据
+     * @param namespace   kubernetes namespace
+     * @param clusterCode 集群编码
+     * @param podSamples  pod名称 -> 这次的用量, 采样时间由这个方法设置
      */
-    void handleRealTimePodData(List<PodMetricsRedisInfoVO> pods);
+    void handleRealTimePodData(String namespace, String clusterCode, Map<String, PodMetricsSampleVO> podSamples);
 
     /**
-     * 查询一个Pod的所有快照数据
+     * 查询一个Pod在时间范围内的用量数据
      *
-     * @param podName   pod名称
-     * @param namespace kubernetes namespace
-     * @return 实时数据
+     * @param podName     pod名称
+     * @param namespace   kubernetes namespace
+     * @param clusterCode 集群编码
+     * @param from        开始时间, 为空表示不限制
+     * @param to          结束时间, 为空表示不限制
+     * @param maxPoints   返回的最大点数, 超过时将相邻的样本取平均值合并, 小于等于0表示不合并
+     * @return 按时间升序排列的样本
      */
-    List<PodMetricsRedisInfoVO> queryAllPodSnapshots(String podName, String namespace, String clusterCode);
+    List<PodMetricsSampleVO> queryPodMetricsSeries(String podName, String namespace, String clusterCode,
+                                                   @Nullable Date from, @Nullable Date to, int maxPoints);
 
     /**
      * 查询Pod在Redis中最新的实时数据
@@ -30,7 +30,8 @@ public interface ClusterNodeInfoService {
 
     /**
      * set the node information for the redis key.
-     * The previous value will be discarded.
+     * Only the changed nodes are written and the nodes no longer reported are removed,
+     * all in one atomic operation.
      *
      * @param redisClusterKey  the key
      * @param agentNodeInfoVOS the information of nodes.
@@ -28,8 +28,22 @@ public interface DevopsCdJobRecordService {
 
     void updateStatusById(Long jobRecordId, String status);
 
+    /**
+     * 更新任务记录的日志, 部署过程中会定时调用, 不影响同时进行的状态更新
+     *
+     * @param jobRecordId 任务记录id
+     * @param log         日志内容
+     */
     void updateLogById(Long jobRecordId, StringBuilder log);
 
+    /**
+     * 更新主机部署任务中每个主机的部署结果
+     *
+     * @param jobRecordId      任务记录id
+     * @param hostDeployStatus 每个主机的部署结果json
+     */
+    void updateHostDeployStatusById(Long jobRecordId, String hostDeployStatus);
+
     String getHostLogById(Long jobRecordId);
 
     DevopsCdJobRecordDTO queryById(Long id);
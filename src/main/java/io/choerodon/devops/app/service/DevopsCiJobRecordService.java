@@ -21,6 +21,13 @@ public interface DevopsCiJobRecordService {
 
     void update(JobWebHookVO jobWebHookVO);
 
+    /**
+     * 根据job的webhook批量更新job记录的状态, 同一个job只保留列表中最后的状态
+     *
+     * @param jobWebHookVOS job的webhook
+     */
+    void update(List<JobWebHookVO> jobWebHookVOS);
+
     void deleteByPipelineId(Long ciPipelineId);
 
     /**
@@ -1,7 +1,9 @@
 package io.choerodon.devops.app.service;
 
 import java.util.List;
+import javax.annotation.Nullable;
 
+import io.choerodon.devops.api.vo.DevopsCiJobTraceVO;
 import io.choerodon.devops.api.vo.SonarInfoVO;
 import io.choerodon.devops.api.vo.SonarQubeConfigVO;
 import io.choerodon.devops.infra.dto.DevopsCiJobDTO;
@@ -54,7 +56,18 @@ public interface DevopsCiJobService {
     /**
      * 查询job日志
      */
-    String queryTrace(Long gitlabProjectId, Long jobId);
+    String queryTrace(Long projectId, Long gitlabProjectId, Long jobId);
+
+    /**
+     * 增量查询job日志, 只返回偏移量之后新增的部分
+     *
+     * @param projectId       项目id
+     * @param gitlabProjectId gitlab项目id
+     * @param jobId           gitlab job id
+     * @param offset          上次查询返回的偏移量, 为空时从头开始
+     * @return 新增的日志和下次查询的偏移量
+     */
+    DevopsCiJobTraceVO queryTrace(Long projectId, Long gitlabProjectId, Long jobId, @Nullable Long offset);
 
     /**
      * 重试job
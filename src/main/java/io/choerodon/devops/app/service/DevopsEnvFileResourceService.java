@@ -1,5 +1,6 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,15 @@ public interface DevopsEnvFileResourceService {
 
     List<DevopsEnvFileResourceDTO> baseQueryByEnvIdAndPath(Long envId, String path);
 
+    /**
+     * 一次查询环境下多个文件的资源文件关系
+     *
+     * @param envId 环境id
+     * @param paths 文件路径
+     * @return 资源文件关系
+     */
+    List<DevopsEnvFileResourceDTO> baseListByEnvIdAndPaths(Long envId, Collection<String> paths);
+
     void baseDeleteByEnvIdAndResourceId(Long envId, Long resourceId, String resourceType);
 
     /**
@@ -1,5 +1,6 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.core.domain.Page;
@@ -40,6 +41,15 @@ public interface DevopsEnvFileService {
 
     DevopsEnvFileDTO baseQueryByEnvAndPath(Long envId, String path);
 
+    /**
+     * 一次查询环境下多个文件的纪录
+     *
+     * @param envId 环境id
+     * @param paths 文件路径
+     * @return 文件纪录
+     */
+    List<DevopsEnvFileDTO> baseListByEnvIdAndPaths(Long envId, Collection<String> paths);
+
     void baseUpdate(DevopsEnvFileDTO devopsEnvFileDTO);
 
     void baseDelete(DevopsEnvFileDTO devopsEnvFileDTO);
@@ -3,9 +3,11 @@ package io.choerodon.devops.app.service;
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.vo.DevopsEnvPodInfoVO;
 import io.choerodon.devops.api.vo.DevopsEnvPodVO;
+import io.choerodon.devops.api.vo.PodMetricsSampleVO;
 import io.choerodon.devops.infra.dto.DevopsEnvPodDTO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -55,4 +57,17 @@ public interface DevopsEnvPodService {
 
     void deleteEnvPodById(Long projectId, Long envId, Long podId);
 
+    /**
+     * 查询pod在时间范围内的CPU和内存用量
+     *
+     * @param projectId 项目id
+     * @param envId     环境id
+     * @param podId     pod id
+     * @param startTime 开始时间, 为空表示不限制
+     * @param endTime   结束时间, 为空表示不限制
+     * @param maxPoints 返回的最大点数, 超过时将相邻的样本取平均值合并, 小于等于0表示不合并
+     * @return 按时间升序排列的样本
+     */
+    List<PodMetricsSampleVO> queryPodMetrics(Long projectId, Long envId, Long podId, Date startTime, Date endTime, int maxPoints);
+
 }
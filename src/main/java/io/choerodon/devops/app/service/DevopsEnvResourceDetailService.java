@@ -23,4 +23,18 @@ public interface DevopsEnvResourceDetailService {
      * @return
      */
     List<DevopsEnvResourceDetailDTO> listByMessageIds(Set<Long> resourceDetailIds);
+
+    /**
+     * 批量插入，插入后会回写每条纪录的id
+     *
+     * @param details 待插入的纪录
+     */
+    void batchCreate(List<DevopsEnvResourceDetailDTO> details);
+
+    /**
+     * 根据id批量更新message字段
+     *
+     * @param details 待更新的纪录
+     */
+    void batchUpdateMessage(List<DevopsEnvResourceDetailDTO> details);
 }
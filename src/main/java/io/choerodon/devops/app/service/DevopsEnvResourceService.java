@@ -5,7 +5,9 @@ import java.util.List;
 import io.choerodon.devops.api.vo.DevopsEnvResourceVO;
 import io.choerodon.devops.api.vo.InstanceEventVO;
 import io.choerodon.devops.api.vo.PodEventVO;
+import io.choerodon.devops.infra.dto.AppServiceInstanceDTO;
 import io.choerodon.devops.infra.dto.DevopsEnvResourceDTO;
+import io.choerodon.devops.infra.dto.DevopsEnvResourceDetailDTO;
 import io.choerodon.devops.infra.enums.ResourceType;
 
 /**
@@ -69,4 +71,33 @@ public interface DevopsEnvResourceService {
     List<DevopsEnvResourceDTO> listEnvResourceByOptions(Long envId, String type, List<String> names);
 
     List<PodEventVO> listPodEventBycommandId(Long commandId);
+
+    /**
+     * 按照 (envId, kind, name) 批量新增或更新资源及其详情, 语句数量和资源数量无关
+     * 已存在的资源只有在resourceVersion或者实例发生变化时才会被写入
+     *
+     * @param envId     环境id
+     * @param resources 待保存的资源, 需要设置kind, name, reversion
+     * @param details   和resources一一对应的资源详情
+     * @param instance  资源所属的实例, 可为空
+     */
+    void batchSaveOrUpdate(Long envId, List<DevopsEnvResourceDTO> resources, List<DevopsEnvResourceDetailDTO> details, AppServiceInstanceDTO instance);
+
+    /**
+     * 批量删除环境下某一类型的资源
+     *
+     * @param envId 环境id
+     * @param kind  资源类型
+     * @param names 资源名称
+     */
+    void deleteByEnvIdAndKindAndNames(Long envId, String kind, List<String> names);
+
+    /**
+     * 根据 (kind, name) 批量查询环境下的资源
+     *
+     * @param envId     环境id
+     * @param resources 只用到kind和name字段
+     * @return 已存在的资源
+     */
+    List<DevopsEnvResourceDTO> listByEnvIdAndKindAndNames(Long envId, List<DevopsEnvResourceDTO> resources);
 }
@@ -14,6 +14,13 @@ public interface DevopsGitlabPipelineService {
 
     void updateStages(JobWebHookVO jobWebHookVO);
 
+    /**
+     * 根据多个job的webhook更新pipeline阶段的状态, 同一个pipeline只更新一次
+     *
+     * @param jobWebHookVOS job的webhook, 按接收的顺序
+     */
+    void updateStages(List<JobWebHookVO> jobWebHookVOS);
+
     PipelineTimeVO getPipelineTime(Long appServiceId, Date startTime, Date endTime);
 
     PipelineFrequencyVO getPipelineFrequency(Long appServiceId, Date startTime, Date endTime);
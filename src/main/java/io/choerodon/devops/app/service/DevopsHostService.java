@@ -31,9 +31,10 @@ public interface DevopsHostService {
     Set<Long> batchSetStatusOperating(Long projectId, Set<Long> hostIds);
 
     /**
-     * 异步批量校准主机状态
+     * 异步批量校准主机状态, 并行探测所有主机后一次写入结果
      *
-     * @param hostIds 主机id
+     * @param projectId 项目id
+     * @param hostIds   主机id
      */
     void asyncBatchCorrectStatus(Long projectId, Set<Long> hostIds);
 
@@ -1,8 +1,50 @@
 package io.choerodon.devops.app.service;
 
+import java.util.List;
+
+import io.choerodon.devops.api.vo.JobWebHookVO;
+
 public interface GitlabWebHookService {
 
+    /**
+     * 接收webhook, 持久化后异步处理
+     *
+     * @param body  webhook的内容
+     * @param token webhook的token
+     */
     void forwardingEventToPortal(String body, String token);
 
+    /**
+     * 处理持久化的webhook事件, 由 {@link io.choerodon.devops.infra.handler.GitlabWebhookEventDispatcher} 按gitlab项目顺序调用
+     *
+     * @param kind  事件类型
+     * @param body  webhook的内容
+     * @param token webhook的token
+     */
+    void handleEvent(String kind, String body, String token);
+
+    /**
+     * 解析job(build)事件, 内容不完整的事件抛出异常, 由调用方单独标记为失败
+     *
+     * @param body job事件的内容
+     * @return job事件
+     */
+    JobWebHookVO parseBuildEvent(String body);
+
+    /**
+     * 合并处理连续的多个job(build)事件, 每个job只按最新的状态更新一次
+     *
+     * @param jobWebHookVOS 已解析的job事件, 按接收的顺序
+     */
+    void handleBuildEvents(List<JobWebHookVO> jobWebHookVOS);
+
+    /**
+     * 重新处理失败的webhook事件, 包括达到失败次数上限的事件. 同一个对象之后的事件已经处理成功的事件已经过时, 不再处理
+     *
+     * @param gitlabProjectId gitlab项目id, 为空时重新处理所有项目的失败事件
+     * @return 重新处理的事件数量
+     */
+    int replayFailedEvents(Long gitlabProjectId);
+
     void gitOpsWebHook(String body, String token);
 }
@@ -1,12 +1,18 @@
 package io.choerodon.devops.app.service;
 
+import javax.annotation.Nullable;
+
+import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.vo.ClusterPolarisEnvDetailsVO;
 import io.choerodon.devops.api.vo.DevopsPolarisRecordRespVO;
 import io.choerodon.devops.api.vo.DevopsPolarisRecordVO;
 import io.choerodon.devops.api.vo.DevopsPolarisSummaryVO;
 import io.choerodon.devops.api.vo.polaris.PolarisResponsePayloadVO;
+import io.choerodon.devops.api.vo.polaris.PolarisStorageControllerResultVO;
+import io.choerodon.devops.api.vo.polaris.PolarisSummaryItemContentVO;
 import io.choerodon.devops.infra.dto.DevopsPolarisRecordDTO;
 import io.choerodon.devops.infra.enums.PolarisScopeType;
+import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 /**
  * @author zmf
@@ -53,20 +59,45 @@ public interface PolarisScanningService {
     /**
      * 获取扫描的集群概览报告
      *
-     * @param projectId 项目id
-     * @param clusterId 集群id
+     * @param projectId  项目id
+     * @param clusterId  集群id
+     * @param withDetail 是否包含每一类的详情, 为false时通过 {@link #pageClusterCategoryDetail} 分页查询详情
      * @return 报告
      */
-    DevopsPolarisSummaryVO clusterPolarisSummary(Long projectId, Long clusterId);
+    DevopsPolarisSummaryVO clusterPolarisSummary(Long projectId, Long clusterId, boolean withDetail);
 
     /**
      * 获取扫描的集群环境详情报告
      *
-     * @param projectId 项目id
-     * @param clusterId 集群id
+     * @param projectId  项目id
+     * @param clusterId  集群id
+     * @param withDetail 是否包含每个namespace的详情, 为false时通过 {@link #pageClusterNamespaceDetail} 分页查询详情
      * @return 报告
      */
-    ClusterPolarisEnvDetailsVO clusterPolarisEnvDetail(Long projectId, Long clusterId);
+    ClusterPolarisEnvDetailsVO clusterPolarisEnvDetail(Long projectId, Long clusterId, boolean withDetail);
+
+    /**
+     * 分页查询集群扫描结果中一个namespace的详情
+     *
+     * @param projectId   项目id
+     * @param clusterId   集群id
+     * @param namespace   集群namespace
+     * @param pageRequest 分页参数
+     * @return 未通过检测的资源
+     */
+    Page<PolarisStorageControllerResultVO> pageClusterNamespaceDetail(Long projectId, Long clusterId, String namespace, PageRequest pageRequest);
+
+    /**
+     * 分页查询集群扫描结果中一个类别的详情
+     *
+     * @param projectId   项目id
+     * @param clusterId   集群id
+     * @param category    检测项的类别
+     * @param namespace   只查询这个namespace的资源, 可为空
+     * @param pageRequest 分页参数
+     * @return 这个类别下未通过检测的资源
+     */
+    Page<PolarisSummaryItemContentVO> pageClusterCategoryDetail(Long projectId, Long clusterId, String category, @Nullable String namespace, PageRequest pageRequest);
 
     DevopsPolarisRecordDTO queryRecordByScopeIdAndScope(Long scopeId, String scope);
 
@@ -77,6 +108,14 @@ public interface PolarisScanningService {
      */
     void handleAgentPolarisMessage(PolarisResponsePayloadVO message);
 
+    /**
+     * agent的连接在发送最后一批扫描结果前断开时, 丢弃已经收到的部分
+     * 扫描纪录等待超时
+     *
+     * @param recordId 扫描纪录id
+     */
+    void discardUnfinishedScanning(Long recordId);
+
     /**
      * 检查纪录是否超时，如果超时，更新状态为超时
      *
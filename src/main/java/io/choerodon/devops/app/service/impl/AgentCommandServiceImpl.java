@@ -91,6 +91,11 @@ public class AgentCommandServiceImpl implements AgentCommandService {
     private String agentServiceUrl;
     @Value("${agent.certManagerUrl}")
     private String certManagerUrl;
+    /**
+     * polaris扫描结果分批返回时每一批的资源数量
+     */
+    @Value("${polaris.scanning.chunkSize:200}")
+    private Integer polarisChunkSize;
 
 
     @Override
@@ -427,7 +432,7 @@ public class AgentCommandServiceImpl implements AgentCommandService {
         LOGGER.info("Polaris: start to send the polaris scan message...");
         AgentMsgVO msg = new AgentMsgVO();
         msg.setKey(String.format(CLUSTER_FORMAT, clusterId));
-        ClusterPolarisScanningVO clusterPolarisScanningVO = new ClusterPolarisScanningVO(Objects.requireNonNull(recordId), namespace);
+        ClusterPolarisScanningVO clusterPolarisScanningVO = new ClusterPolarisScanningVO(Objects.requireNonNull(recordId), namespace, polarisChunkSize);
         msg.setPayload(JsonHelper.marshalByJackson(clusterPolarisScanningVO));
         msg.setType(HelmType.POLARIS_SCAN_CLUSTER.toValue());
         sendToWebSocket(clusterId, msg);
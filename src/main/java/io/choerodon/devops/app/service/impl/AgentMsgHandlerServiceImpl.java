@@ -908,39 +908,37 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
                 devopsEnvResourceDTOS = devopsEnvResourceService
                         .baseListByEnvAndType(envId, ResourceType.POD.getType());
                 if (!devopsEnvResourceDTOS.isEmpty()) {
-                    List<String> podNames = Arrays.asList(resourceSyncPayloadDTO.getResources());
-                    devopsEnvResourceDTOS.stream()
-                            .filter(devopsEnvResourceDTO -> !podNames.contains(devopsEnvResourceDTO.getName()))
-                            .forEach(devopsEnvResourceDTO -> {
-                                devopsEnvResourceService.deleteByEnvIdAndKindAndName(
-                                        envId, ResourceType.POD.getType(), devopsEnvResourceDTO.getName());
-                                devopsEnvPodService.baseDeleteByName(
-                                        devopsEnvResourceDTO.getName(), KeyParseUtil.getValue(key, "env"));
-                            });
+                    Set<String> podNames = new HashSet<>(Arrays.asList(resourceSyncPayloadDTO.getResources()));
+                    List<String> deletedPodNames = devopsEnvResourceDTOS.stream()
+                            .map(DevopsEnvResourceDTO::getName)
+                            .filter(name -> !podNames.contains(name))
+                            .collect(Collectors.toList());
+                    devopsEnvResourceService.deleteByEnvIdAndKindAndNames(envId, ResourceType.POD.getType(), deletedPodNames);
+                    deletedPodNames.forEach(name -> devopsEnvPodService.baseDeleteByName(name, KeyParseUtil.getValue(key, "env")));
                 }
                 break;
             case DEPLOYMENT:
                 devopsEnvResourceDTOS = devopsEnvResourceService
                         .baseListByEnvAndType(envId, ResourceType.DEPLOYMENT.getType());
                 if (!devopsEnvResourceDTOS.isEmpty()) {
-                    List<String> deploymentNames = Arrays.asList(resourceSyncPayloadDTO.getResources());
-                    devopsEnvResourceDTOS.stream()
-                            .filter(devopsEnvResourceDTO -> !deploymentNames.contains(devopsEnvResourceDTO.getName()))
-                            .forEach(devopsEnvResourceDTO ->
-                                    devopsEnvResourceService.deleteByEnvIdAndKindAndName(
-                                            envId, ResourceType.DEPLOYMENT.getType(), devopsEnvResourceDTO.getName()));
+                    Set<String> deploymentNames = new HashSet<>(Arrays.asList(resourceSyncPayloadDTO.getResources()));
+                    devopsEnvResourceService.deleteByEnvIdAndKindAndNames(envId, ResourceType.DEPLOYMENT.getType(),
+                            devopsEnvResourceDTOS.stream()
+                                    .map(DevopsEnvResourceDTO::getName)
+                                    .filter(name -> !deploymentNames.contains(name))
+                                    .collect(Collectors.toList()));
                 }
                 break;
             case REPLICASET:
                 devopsEnvResourceDTOS = devopsEnvResourceService
                         .baseListByEnvAndType(envId, ResourceType.REPLICASET.getType());
                 if (!devopsEnvResourceDTOS.isEmpty()) {
-                    List<String> replicaSetNames = Arrays.asList(resourceSyncPayloadDTO.getResources());
-                    devopsEnvResourceDTOS.stream()
-                            .filter(devopsEnvResourceDTO -> !replicaSetNames.contains(devopsEnvResourceDTO.getName()))
-                            .forEach(devopsEnvResourceDTO ->
-                                    devopsEnvResourceService.deleteByEnvIdAndKindAndName(
-                                            envId, ResourceType.REPLICASET.getType(), devopsEnvResourceDTO.getName()));
+                    Set<String> replicaSetNames = new HashSet<>(Arrays.asList(resourceSyncPayloadDTO.getResources()));
+                    devopsEnvResourceService.deleteByEnvIdAndKindAndNames(envId, ResourceType.REPLICASET.getType(),
+                            devopsEnvResourceDTOS.stream()
+                                    .map(DevopsEnvResourceDTO::getName)
+                                    .filter(name -> !replicaSetNames.contains(name))
+                                    .collect(Collectors.toList()));
                 }
                 break;
             default:
@@ -1376,17 +1374,10 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
                 logger.info("InstallResource: resource empty for instance with code: {}", appServiceInstanceDTO.getCode());
                 return;
             }
+            // 整个release的资源(包括域名)一次性批量保存, 都关联到这个实例及其command
+            List<DevopsEnvResourceDTO> devopsEnvResourceDTOS = new ArrayList<>();
+            List<DevopsEnvResourceDetailDTO> devopsEnvResourceDetailDTOS = new ArrayList<>();
             for (Resource resource : resources) {
-                Long instanceId = appServiceInstanceDTO.getId();
-                if (resource.getKind().equals(ResourceType.INGRESS.getType())) {
-                    instanceId = null;
-                }
-                DevopsEnvResourceDTO oldDevopsEnvResourceDTO =
-                        devopsEnvResourceService.baseQueryOptions(
-                                instanceId,
-                                null, null,
-                                resource.getKind(),
-                                resource.getName());
                 DevopsEnvResourceDetailDTO devopsEnvResourceDetailDTO = new DevopsEnvResourceDetailDTO();
                 devopsEnvResourceDetailDTO.setMessage(resource.getObject());
                 DevopsEnvResourceDTO devopsEnvResourceDTO =
@@ -1398,11 +1389,11 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
                         .get(METADATA).toString());
                 devopsEnvResourceDTO.setReversion(
                         TypeUtil.objToLong(jsonResult.get(RESOURCE_VERSION).toString()));
-                saveOrUpdateResource(
-                        devopsEnvResourceDTO,
-                        oldDevopsEnvResourceDTO,
-                        devopsEnvResourceDetailDTO,
-                        appServiceInstanceDTO);
+                devopsEnvResourceDTOS.add(devopsEnvResourceDTO);
+                devopsEnvResourceDetailDTOS.add(devopsEnvResourceDetailDTO);
+            }
+            devopsEnvResourceService.batchSaveOrUpdate(appServiceInstanceDTO.getEnvId(), devopsEnvResourceDTOS, devopsEnvResourceDetailDTOS, appServiceInstanceDTO);
+            for (Resource resource : resources) {
                 if (resource.getKind().equals(ResourceType.POD.getType())) {
                     syncPod(resource.getObject(), appServiceInstanceDTO);
                 }
@@ -2063,37 +2054,25 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
 
     @Override
     public void handlePodMetricsSync(String key, String result, Long clusterId) {
-        List<PodMetricsRedisInfoVO> podMetricsRedisInfoVOS = new ArrayList<>();
         DevopsClusterDTO devopsClusterDTO = devopsClusterService.baseQuery(clusterId);
         String namespace = KeyParseUtil.getNamespace(key);
         PodMetricsInfoVO podMetricsInfoVO = json.deserialize(result, PodMetricsInfoVO.class);
         if (podMetricsInfoVO.getItems() != null && !podMetricsInfoVO.getItems().isEmpty()) {
+            Map<String, PodMetricsSampleVO> podSamples = new HashMap<>();
             podMetricsInfoVO.getItems().forEach(podMetricsItemVO -> {
-                PodMetricsRedisInfoVO podMetricsRedisInfoVO = new PodMetricsRedisInfoVO();
-                podMetricsRedisInfoVO.setNamespace(namespace);
-                podMetricsRedisInfoVO.setName(podMetricsItemVO.getName());
-                podMetricsRedisInfoVO.setClusterCode(devopsClusterDTO.getCode());
-                podMetricsRedisInfoVO.setCpu("0");
-                podMetricsRedisInfoVO.setMemory("0");
-                double[] cpu = {0L};
-                double[] memory = {0L};
-                podMetricsItemVO.getContainers().forEach(podMetricsContainerVO -> {
-                    if (!podMetricsContainerVO.getUsage().getCpu().equals("0")) {
-                        cpu[0] = cpu[0] + TypeUtil.objToLong(podMetricsContainerVO.getUsage().getCpu().substring(0, (podMetricsContainerVO.getUsage().getCpu().length() - 1)));
-                    }
-                    if (!podMetricsContainerVO.getUsage().getMemory().equals("0")) {
-                        memory[0] = memory[0] + TypeUtil.objToLong(podMetricsContainerVO.getUsage().getMemory().substring(0, (podMetricsContainerVO.getUsage().getMemory().length() - 2)));
-                    }
-                });
-                if (cpu[0] != 0L) {
-                    podMetricsRedisInfoVO.setCpu(((Double) Math.ceil(cpu[0] / (1000 * 1000))).longValue() + "m");
-                }
-                if (memory[0] != 0L) {
-                    podMetricsRedisInfoVO.setMemory(((Double) Math.floor(memory[0] / 1024)).longValue() + "Mi");
+                long cpuNanoCores = 0;
+                long memoryBytes = 0;
+                for (PodMetricsContainerVO podMetricsContainerVO : podMetricsItemVO.getContainers()) {
+                    cpuNanoCores += K8sQuantityUtil.parseNanoValue(podMetricsContainerVO.getUsage().getCpu());
+                    memoryBytes += K8sQuantityUtil.parseValue(podMetricsContainerVO.getUsage().getMemory());
                 }
-                podMetricsRedisInfoVOS.add(podMetricsRedisInfoVO);
+                PodMetricsSampleVO podMetricsSampleVO = new PodMetricsSampleVO();
+                // 毫核向上取整, 和之前按纳核累加后换算的结果一致
+                podMetricsSampleVO.setCpuMilliCores((cpuNanoCores + 999_999) / 1_000_000);
+                podMetricsSampleVO.setMemoryBytes(memoryBytes);
+                podSamples.put(podMetricsItemVO.getName(), podMetricsSampleVO);
             });
-            agentPodService.handleRealTimePodData(podMetricsRedisInfoVOS);
+            agentPodService.handleRealTimePodData(namespace, devopsClusterDTO.getCode(), podSamples);
         }
     }
 
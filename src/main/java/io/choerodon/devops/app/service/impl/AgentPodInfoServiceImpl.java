@@ -1,65 +1,302 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
-import com.alibaba.fastjson.JSON;
 import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
+import io.choerodon.devops.api.vo.PodMetricsSampleVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.devops.app.service.AgentPodService;
+import io.choerodon.devops.infra.util.PodMetricsSeriesCodec;
 
 /**
  * @author zmf
  */
 @Service
 public class AgentPodInfoServiceImpl implements AgentPodService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentPodInfoServiceImpl.class);
+
+    /**
+     * pod-metrics--${podName}--${namespace}--${clusterCode}
+     * 值是 {@link PodMetricsSeriesCodec} 编码的样本序列
+     */
+    private static final String KEY_PATTERN = "pod-metrics--%s--%s--%s";
+    /**
+     * 之前版本每个pod一个json列表的key, pod--${podName}--${namespace}--${clusterCode}, 没有过期时间
+     */
+    private static final String LEGACY_KEY_PATTERN = "pod--%s--%s--%s";
+    private static final String LEGACY_KEY_MATCH = "pod--*";
+    private static final int LEGACY_DELETE_BATCH_SIZE = 500;
+    /**
+     * 每次pipeline提交的pod数量, 避免单次请求过大
+     */
+    private static final int PIPELINE_BATCH_SIZE = 500;
+    private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+    /**
+     * 在redis端解码序列, 追加样本并只保留最近的样本后重新编码写入, 整个追加原子执行, 同一个pod并发上报时也不会丢失样本.
+     * 编码格式和 {@link PodMetricsSeriesCodec} 一致, 内容不合法时按空序列处理. 同时删除之前版本的key.
+     * KEYS[1]: key, KEYS[2]: 之前版本的key; ARGV: 时间戳, CPU, 内存, 保留的样本数, 过期时间(秒)
+     */
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "local function decode(data) " +
+                    "  local samples = {} " +
+                    "  if not data or #data == 0 or string.byte(data, 1) ~= 1 then return samples end " +
+                    "  local pos = 2 " +
+                    "  local function readVar() " +
+                    "    local result, mul = 0, 1 " +
+                    "    for _ = 1, 10 do " +
+                    "      if pos > #data then error('truncated') end " +
+                    "      local b = string.byte(data, pos) " +
+                    "      pos = pos + 1 " +
+                    "      result = result + (b % 128) * mul " +
+                    "      if b < 128 then return result end " +
+                    "      mul = mul * 128 " +
+                    "    end " +
+                    "    error('varint too long') " +
+                    "  end " +
+                    "  local size = readVar() " +
+                    "  if size > (#data - pos + 1) / 3 then error('illegal size') end " +
+                    "  local timestamp = 0 " +
+                    "  for i = 1, size do " +
+                    "    local t = readVar() " +
+                    "    if i == 1 then timestamp = t " +
+                    "    elseif t % 2 == 0 then timestamp = timestamp + t / 2 " +
+                    "    else timestamp = timestamp - (t + 1) / 2 end " +
+                    "    local cpu = readVar() " +
+                    "    local memory = readVar() " +
+                    "    samples[i] = {timestamp, cpu, memory} " +
+                    "  end " +
+                    "  if pos ~= #data + 1 then error('trailing bytes') end " +
+                    "  return samples " +
+                    "end " +
+                    "local function writeVar(out, value) " +
+                    "  while value >= 128 do " +
+                    "    out[#out + 1] = string.char(value % 128 + 128) " +
+                    "    value = math.floor(value / 128) " +
+                    "  end " +
+                    "  out[#out + 1] = string.char(value) " +
+                    "end " +
+                    "local ok, samples = pcall(decode, redis.call('GET', KEYS[1])) " +
+                    "if not ok then samples = {} end " +
+                    "samples[#samples + 1] = {tonumber(ARGV[1]), tonumber(ARGV[2]), tonumber(ARGV[3])} " +
+                    "local first = math.max(1, #samples - tonumber(ARGV[4]) + 1) " +
+                    "local out = {string.char(1)} " +
+                    "writeVar(out, #samples - first + 1) " +
+                    "for i = first, #samples do " +
+                    "  local sample = samples[i] " +
+                    "  if i == first then writeVar(out, sample[1]) " +
+                    "  else " +
+                    "    local delta = sample[1] - samples[i - 1][1] " +
+                    "    writeVar(out, delta >= 0 and delta * 2 or -delta * 2 - 1) " +
+                    "  end " +
+                    "  writeVar(out, sample[2]) " +
+                    "  writeVar(out, sample[3]) " +
+                    "end " +
+                    "redis.call('SETEX', KEYS[1], ARGV[5], table.concat(out)) " +
+                    "redis.call('DEL', KEYS[2]) " +
+                    "return #samples - first + 1", Long.class);
+    private static final byte[] APPEND_SCRIPT_BYTES = APPEND_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+    private static final long MEBIBYTE = 1024 * 1024L;
+
     /**
-     * pod--${podName}--${namespace}
+     * 每个pod保留的样本数量
      */
-    private static final String KEY_PATTERN = "pod--%s--%s--%s";
+    @Value("${devops.pod.metrics.retentionSize:120}")
+    private Integer retentionSize;
     /**
-     * 在redis中存的实时数据的最大数量
+     * pod实时数据的过期时间, 已删除的pod的数据在这个时间之后自动清除
      */
-    private static final long RECORD_SIZE = 30;
+    @Value("${devops.pod.metrics.expireSeconds:1800}")
+    private Long expireSeconds;
 
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
     @Override
-    public void handleRealTimePodData(List<PodMetricsRedisInfoVO> pods) {
-        Date snapshotTime = new Date();
-        pods.forEach(pod -> {
-            pod.setSnapShotTime(snapshotTime);
-            String key = String.format(KEY_PATTERN, pod.getName(), pod.getNamespace(), pod.getClusterCode());
-            Long size = stringRedisTemplate.opsForList().size(key);
-            if (size >= RECORD_SIZE) {
-                long stop = size - 1;
-                long start = stop - (RECORD_SIZE - 1) + 1;
-                stringRedisTemplate.opsForList().trim(key, start, stop);
-            }
-            stringRedisTemplate.opsForList().rightPush(key, JSON.toJSONString(pod));
+    public void handleRealTimePodData(String namespace, String clusterCode, Map<String, PodMetricsSampleVO> podSamples) {
+        long snapshotTime = System.currentTimeMillis();
+        List<String> podNames = new ArrayList<>(podSamples.size());
+        List<PodMetricsSampleVO> samples = new ArrayList<>(podSamples.size());
+        podSamples.forEach((podName, sample) -> {
+            sample.setTimestamp(snapshotTime);
+            podNames.add(podName);
+            samples.add(sample);
         });
+        // 一帧数据分批处理, 每批一次pipeline, 每个pod通过EVALSHA执行追加脚本
+        for (int from = 0; from < podNames.size(); from += PIPELINE_BATCH_SIZE) {
+            int to = Math.min(from + PIPELINE_BATCH_SIZE, podNames.size());
+            appendSamples(namespace, clusterCode, podNames.subList(from, to), samples.subList(from, to));
+        }
+    }
+
+    private void appendSamples(String namespace, String clusterCode, List<String> podNames, List<PodMetricsSampleVO> samples) {
+        List<Object> results = evalAppend(namespace, clusterCode, podNames, samples);
+        List<String> notLoadedPodNames = new ArrayList<>();
+        List<PodMetricsSampleVO> notLoadedSamples = new ArrayList<>();
+        for (int i = 0; i < podNames.size(); i++) {
+            Object result = results.get(i);
+            if (!(result instanceof Throwable)) {
+                continue;
+            }
+            if (isNoScriptError((Throwable) result)) {
+                notLoadedPodNames.add(podNames.get(i));
+                notLoadedSamples.add(samples.get(i));
+            } else {
+                LOGGER.warn("Failed to append metrics sample of pod {} in namespace {}", podNames.get(i), namespace, (Throwable) result);
+            }
+        }
+        if (notLoadedPodNames.isEmpty()) {
+            return;
+        }
+        // redis重启或清空了脚本缓存, 这些pod的脚本没有执行, 加载脚本后重新追加
+        stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.scriptLoad(APPEND_SCRIPT_BYTES));
+        evalAppend(namespace, clusterCode, notLoadedPodNames, notLoadedSamples).stream()
+                .filter(Throwable.class::isInstance)
+                .forEach(result -> LOGGER.warn("Failed to append metrics sample in namespace {}", namespace, (Throwable) result));
+    }
+
+    /**
+     * 在一个pipeline中为每个pod执行追加脚本
+     *
+     * @return 每个pod的执行结果, 执行失败的为异常
+     */
+    private List<Object> evalAppend(String namespace, String clusterCode, List<String> podNames, List<PodMetricsSampleVO> samples) {
+        byte[] retention = toBytes(retentionSize);
+        byte[] expire = toBytes(expireSeconds);
+        try {
+            return stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < podNames.size(); i++) {
+                    PodMetricsSampleVO sample = samples.get(i);
+                    connection.evalSha(APPEND_SCRIPT.getSha1(), ReturnType.INTEGER, 2,
+                            toKey(podNames.get(i), namespace, clusterCode),
+                            String.format(LEGACY_KEY_PATTERN, podNames.get(i), namespace, clusterCode).getBytes(StandardCharsets.UTF_8),
+                            toBytes(sample.getTimestamp()), toBytes(sample.getCpuMilliCores()), toBytes(sample.getMemoryBytes()),
+                            retention, expire);
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            // 部分命令失败时, 结果中失败的命令为异常, 其它命令已经执行
+            return e.getPipelineResult();
+        }
+    }
+
+    private static boolean isNoScriptError(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(NO_SCRIPT_ERROR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 启动后删除之前版本的key. 还在运行的pod的key在追加样本时删除, 这里删除已经不存在的pod的key, 它们没有过期时间
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void deleteLegacyKeys() {
+        ScanOptions options = ScanOptions.scanOptions().match(LEGACY_KEY_MATCH).count(LEGACY_DELETE_BATCH_SIZE).build();
+        try (Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection((RedisCallback<Cursor<byte[]>>) connection -> connection.scan(options))) {
+            List<byte[]> keys = new ArrayList<>(LEGACY_DELETE_BATCH_SIZE);
+            long deleted = 0;
+            while (cursor != null && cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() >= LEGACY_DELETE_BATCH_SIZE || !cursor.hasNext()) {
+                    byte[][] keyArray = keys.toArray(new byte[0][]);
+                    Long count = stringRedisTemplate.execute((RedisCallback<Long>) connection -> connection.del(keyArray));
+                    deleted += count == null ? 0 : count;
+                    keys.clear();
+                }
+            }
+            LOGGER.info("Deleted {} legacy pod metrics keys", deleted);
+        } catch (Exception e) {
+            // 只是清理过时的数据, 失败不影响启动
+            LOGGER.warn("Failed to delete legacy pod metrics keys", e);
+        }
     }
 
     @Override
-    public List<PodMetricsRedisInfoVO> queryAllPodSnapshots(String podName, String namespace, String clusterCode) {
-        return stringRedisTemplate.opsForList()
-                .range(String.format(KEY_PATTERN, podName, namespace, clusterCode), 0, RECORD_SIZE - 1)
-                .stream()
-                .map(p -> JSON.parseObject(p, PodMetricsRedisInfoVO.class))
-                .collect(Collectors.toList());
+    public List<PodMetricsSampleVO> queryPodMetricsSeries(String podName, String namespace, String clusterCode,
+                                                          @Nullable Date from, @Nullable Date to, int maxPoints) {
+        List<PodMetricsSampleVO> samples = querySeries(podName, namespace, clusterCode);
+        long start = from == null ? Long.MIN_VALUE : from.getTime();
+        long end = to == null ? Long.MAX_VALUE : to.getTime();
+        List<PodMetricsSampleVO> inRange = new ArrayList<>(samples.size());
+        for (PodMetricsSampleVO sample : samples) {
+            if (sample.getTimestamp() >= start && sample.getTimestamp() <= end) {
+                inRange.add(sample);
+            }
+        }
+        if (maxPoints <= 0 || inRange.size() <= maxPoints) {
+            return inRange;
+        }
+        return downsample(inRange, maxPoints);
     }
 
     @Nullable
     @Override
     public PodMetricsRedisInfoVO queryLatestPodSnapshot(String podName, String namespace, String clusterCode) {
-        String key = String.format(KEY_PATTERN, podName, namespace, clusterCode);
-        Long size = stringRedisTemplate.opsForList().size(key);
-        return JSON.parseObject(stringRedisTemplate.opsForList().index(key, size - 1), PodMetricsRedisInfoVO.class);
+        List<PodMetricsSampleVO> samples = querySeries(podName, namespace, clusterCode);
+        if (samples.isEmpty()) {
+            return null;
+        }
+        PodMetricsSampleVO latest = samples.get(samples.size() - 1);
+        PodMetricsRedisInfoVO podMetricsRedisInfoVO = new PodMetricsRedisInfoVO();
+        podMetricsRedisInfoVO.setName(podName);
+        podMetricsRedisInfoVO.setNamespace(namespace);
+        podMetricsRedisInfoVO.setClusterCode(clusterCode);
+        podMetricsRedisInfoVO.setSnapShotTime(new Date(latest.getTimestamp()));
+        podMetricsRedisInfoVO.setCpu(latest.getCpuMilliCores() == 0 ? "0" : latest.getCpuMilliCores() + "m");
+        long memoryMi = latest.getMemoryBytes() / MEBIBYTE;
+        podMetricsRedisInfoVO.setMemory(memoryMi == 0 ? "0" : memoryMi + "Mi");
+        return podMetricsRedisInfoVO;
+    }
+
+    private List<PodMetricsSampleVO> querySeries(String podName, String namespace, String clusterCode) {
+        byte[] key = toKey(podName, namespace, clusterCode);
+        return PodMetricsSeriesCodec.decode(stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key)));
+    }
+
+    /**
+     * 将样本均分为maxPoints组, 每组取平均值, 时间取组内最后一个样本的时间
+     */
+    private static List<PodMetricsSampleVO> downsample(List<PodMetricsSampleVO> samples, int maxPoints) {
+        List<PodMetricsSampleVO> result = new ArrayList<>(maxPoints);
+        for (int bucket = 0; bucket < maxPoints; bucket++) {
+            int start = (int) ((long) bucket * samples.size() / maxPoints);
+            int end = (int) ((long) (bucket + 1) * samples.size() / maxPoints);
+            long cpu = 0;
+            long memory = 0;
+            for (int i = start; i < end; i++) {
+                cpu += samples.get(i).getCpuMilliCores();
+                memory += samples.get(i).getMemoryBytes();
+            }
+            int count = end - start;
+            result.add(new PodMetricsSampleVO(samples.get(end - 1).getTimestamp(), cpu / count, memory / count));
+        }
+        return result;
+    }
+
+    private static byte[] toKey(String podName, String namespace, String clusterCode) {
+        return String.format(KEY_PATTERN, podName, namespace, clusterCode).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toBytes(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
     }
 }
@@ -57,6 +57,7 @@ import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
 import io.choerodon.devops.infra.gitops.ResourceConvertToYamlHandler;
 import io.choerodon.devops.infra.gitops.ResourceFileCheckHandler;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
+import io.choerodon.devops.infra.handler.HelmValuesMergeCache;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -151,6 +152,8 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
     private PermissionHelper permissionHelper;
     @Autowired
     private DevopsEnvApplicationService devopsEnvApplicationService;
+    @Autowired
+    private HelmValuesMergeCache helmValuesMergeCache;
 
     /**
      * 前端传入的排序字段和Mapper文件中的字段名的映射
@@ -1065,22 +1068,8 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
             return instanceValueVO;
         }
 
-        String fileName = GenerateUUID.generateUUID() + YAML_SUFFIX;
-        String path = "deployfile";
-        FileUtil.saveDataToFile(path, fileName, versionValue + "\n" + "---" + "\n" + deployValue);
-        InstanceValueVO instanceValueVO;
-        String absoluteFilePath = path + System.getProperty(FILE_SEPARATOR) + fileName;
-        try {
-            instanceValueVO = FileUtil.replaceNew(absoluteFilePath);
-        } catch (Exception e) {
-            FileUtil.deleteFile(absoluteFilePath);
-            throw new CommonException(e.getMessage(), e);
-        }
-        if (instanceValueVO.getHighlightMarkers() == null) {
-            instanceValueVO.setHighlightMarkers(new ArrayList<>());
-        }
+        InstanceValueVO instanceValueVO = helmValuesMergeCache.merge(versionValue, deployValue);
         instanceValueVO.setTotalLine(FileUtil.getFileTotalLine(instanceValueVO.getYaml()));
-        FileUtil.deleteFile(absoluteFilePath);
         return instanceValueVO;
     }
 
@@ -5,8 +5,6 @@ import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.toCollection;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -53,17 +51,6 @@ import io.choerodon.mybatis.pagehelper.domain.Sort;
 public class AppServiceVersionServiceImpl implements AppServiceVersionService {
     private static final Logger LOGGER = LoggerFactory.getLogger(AppServiceVersionServiceImpl.class);
 
-    /**
-     * 存储chart包的文件路径模板
-     * devops-应用服务id-版本号-commit值前8位
-     */
-    private static final String DESTINATION_PATH_TEMPLATE = "devops-%s-%s-%s";
-    /**
-     * 解压chart包的文件路径模板
-     * stores-应用服务id-版本号-commit值前8位
-     */
-    private static final String STORE_PATH_TEMPLATE = "stores-%s-%s-%s";
-
     private static final String APP_SERVICE = "appService";
     private static final String CHART = "chart";
     private static final String HARBOR_DEFAULT = "harbor_default";
@@ -164,50 +151,34 @@ public class AppServiceVersionServiceImpl implements AppServiceVersionService {
 
         appServiceVersionDTO.setRepository(helmUrl.endsWith("/") ? helmUrl + organization.getTenantNum() + "/" + projectDTO.getCode() + "/" : helmUrl + "/" + organization.getTenantNum() + "/" + projectDTO.getCode() + "/");
 
-        // 取commit的一部分作为文件路径
-        String commitPart = commit == null ? "" : commit.substring(0, 8);
-
-        String storeFilePath = String.format(STORE_PATH_TEMPLATE, appServiceDTO.getId(), version, commitPart);
-        String destFilePath = String.format(DESTINATION_PATH_TEMPLATE, appServiceDTO.getId(), version, commitPart);
-
-        String path = FileUtil.multipartFileToFile(storeFilePath, files);
+        // chart包只在内存中读取一遍, 取出values和README, 再把同样的内容上传到chartmuseum, 不写临时文件
+        byte[] chartArchive;
+        try {
+            chartArchive = files.getBytes();
+        } catch (IOException e) {
+            throw new CommonException("error.file.transfer", e);
+        }
+        // 只取最外层的values.yaml, 避免查询到子chart的values值
+        ChartArchiveUtil.ChartContent chartContent = ChartArchiveUtil.readChartContent(chartArchive);
 
         //上传chart包到chartmuseum
-        chartUtil.uploadChart(helmUrl, organization.getTenantNum(), projectDTO.getCode(), new File(path), helmConfig.getUserName(), helmConfig.getPassword());
-
-        FileUtil.unTarGZ(path, destFilePath);
-
-        // 使用深度优先遍历查找文件, 避免查询到子chart的values值
-        File valuesFile = FileUtil.queryFileFromFilesBFS(new File(destFilePath), "values.yaml");
+        chartUtil.uploadChart(helmUrl, organization.getTenantNum(), projectDTO.getCode(), files.getOriginalFilename(), chartArchive, helmConfig.getUserName(), helmConfig.getPassword());
 
-        if (valuesFile == null) {
-            FileUtil.deleteDirectories(storeFilePath, destFilePath);
+        String values = chartContent.getValues();
+        if (values == null) {
             throw new CommonException("error.find.values.yaml.in.chart");
         }
 
-        String values;
-        try (FileInputStream fis = new FileInputStream(valuesFile)) {
-            values = FileUtil.replaceReturnString(fis, null);
-        } catch (IOException e) {
-            FileUtil.deleteDirectories(storeFilePath, destFilePath);
-            throw new CommonException(e);
-        }
-
         // 有需求让重新上传chart包，所以校验重复推后
         if (newApplicationVersion != null) {
-            try {
-                // 重新上传chart包后更新values
-                updateValues(newApplicationVersion.getValueId(), values, newApplicationVersion);
-            } finally {
-                FileUtil.deleteDirectories(storeFilePath);
-            }
+            // 重新上传chart包后更新values
+            updateValues(newApplicationVersion.getValueId(), values, newApplicationVersion);
             return;
         }
 
         try {
             FileUtil.checkYamlFormat(values);
         } catch (CommonException e) {
-            FileUtil.deleteDirectories(storeFilePath, destFilePath);
             throw new CommonException("The format of the values.yaml in the chart is invalid!", e);
         }
         appServiceVersionValueDTO.setValue(values);
@@ -215,18 +186,16 @@ public class AppServiceVersionServiceImpl implements AppServiceVersionService {
             appServiceVersionDTO.setValueId(appServiceVersionValueService
                     .baseCreate(appServiceVersionValueDTO).getId());
         } catch (Exception e) {
-            FileUtil.deleteDirectories(storeFilePath, destFilePath);
             throw new CommonException(ERROR_VERSION_INSERT, e);
         }
 
         AppServiceVersionReadmeDTO appServiceVersionReadmeDTO = new AppServiceVersionReadmeDTO();
-        appServiceVersionReadmeDTO.setReadme(FileUtil.getReadme(destFilePath));
+        appServiceVersionReadmeDTO.setReadme(chartContent.getReadme() == null ? "# 暂无" : chartContent.getReadme());
         appServiceVersionReadmeMapper.insert(appServiceVersionReadmeDTO);
 
         appServiceVersionDTO.setReadmeValueId(appServiceVersionReadmeDTO.getId());
         baseCreate(appServiceVersionDTO);
 
-        FileUtil.deleteDirectories(destFilePath, storeFilePath);
         //流水线
         checkAutoDeploy(appServiceVersionDTO);
         //生成版本成功后发送webhook json
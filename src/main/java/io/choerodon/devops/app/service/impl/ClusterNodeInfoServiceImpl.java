@@ -9,20 +9,20 @@ import io.choerodon.devops.app.service.ClusterNodeInfoService;
 import io.choerodon.devops.app.service.DevopsClusterService;
 import io.choerodon.devops.infra.dto.DevopsClusterDTO;
 import io.choerodon.devops.infra.util.K8sUtil;
-import io.choerodon.devops.infra.util.TypeUtil;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -30,7 +30,39 @@ import java.util.stream.Collectors;
  */
 @Service
 public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
-    private static final String REDIS_CLUSTER_KEY_TEMPLATE = "node_info_project_id_%s_cluster_id_%s";
+    /**
+     * 节点信息以hash的形式存储, field是节点名称, value是节点信息的json
+     */
+    private static final String REDIS_CLUSTER_KEY_PREFIX = "node_info_hash_";
+    private static final String REDIS_CLUSTER_KEY_TEMPLATE = REDIS_CLUSTER_KEY_PREFIX + "project_id_%s_cluster_id_%s";
+    /**
+     * 之前以list的形式存储节点信息的key的前缀, 同步节点信息时删除旧的list
+     */
+    private static final String LEGACY_REDIS_CLUSTER_KEY_PREFIX = "node_info_";
+    /**
+     * 用集群当前的全部节点替换hash中的节点, 只写入内容有变化的节点, 删除已经不存在的节点.
+     * 整个替换在一个脚本中完成, 读取方不会看到空的或者只更新了一部分的集群.
+     * KEYS[1]是hash的key, KEYS[2]是旧的list的key; ARGV依次是节点名称和节点信息
+     * 返回写入和删除的节点数量
+     */
+    private static final RedisScript<Long> REPLACE_NODES_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[2]) " +
+                    "local changed = 0 " +
+                    "local names = {} " +
+                    "for i = 1, #ARGV, 2 do " +
+                    "  names[ARGV[i]] = true " +
+                    "  if redis.call('HGET', KEYS[1], ARGV[i]) ~= ARGV[i + 1] then " +
+                    "    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+                    "    changed = changed + 1 " +
+                    "  end " +
+                    "end " +
+                    "for _, name in ipairs(redis.call('HKEYS', KEYS[1])) do " +
+                    "  if not names[name] then " +
+                    "    redis.call('HDEL', KEYS[1], name) " +
+                    "    changed = changed + 1 " +
+                    "  end " +
+                    "end " +
+                    "return changed", Long.class);
     private static final String CPU_MEASURE_FORMAT = "%.2f";
     private static final String MEMORY_MEASURE_FORMAT = "%.2f%s";
     private static final String[] MEMORY_MEASURE = {"Ki", "Ki", "Mi", "Gi"};
@@ -64,8 +96,19 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
 
     @Override
     public void setValueForKey(String redisClusterKey, List<AgentNodeInfoVO> agentNodeInfoVOS) {
-        stringRedisTemplate.delete(redisClusterKey);
-        stringRedisTemplate.opsForList().rightPushAll(redisClusterKey, agentNodeInfoVOS.stream().map(this::node2JsonString).collect(Collectors.toList()));
+        String[] args = new String[agentNodeInfoVOS.size() * 2];
+        int i = 0;
+        for (AgentNodeInfoVO agentNodeInfoVO : agentNodeInfoVOS) {
+            args[i++] = agentNodeInfoVO.getNodeName();
+            args[i++] = node2JsonString(agentNodeInfoVO);
+        }
+        Long changed = stringRedisTemplate.execute(REPLACE_NODES_SCRIPT,
+                Arrays.asList(redisClusterKey, legacyKeyOf(redisClusterKey)), (Object[]) args);
+        LOGGER.debug("Node info of {} synced, {} node(s) changed", redisClusterKey, changed);
+    }
+
+    private String legacyKeyOf(String redisClusterKey) {
+        return LEGACY_REDIS_CLUSTER_KEY_PREFIX + redisClusterKey.substring(REDIS_CLUSTER_KEY_PREFIX.length());
     }
 
     private void setCpuPercentage(ClusterNodeInfoVO node) {
@@ -148,24 +191,23 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
     @Override
     public Page<ClusterNodeInfoVO> pageClusterNodeInfo(Long clusterId, Long projectId, PageRequest pageable) {
         // 现在分页从0开始了
-        long start = (long) (pageable.getPage()) * (long) pageable.getSize();
-        // stop不怕越界， redis会将边界之前的最后的那些元素返回
-        long stop = start + (long) pageable.getSize() - 1;
+        int start = pageable.getPage() * pageable.getSize();
         String redisKey = getRedisClusterKey(clusterId, projectId);
 
-        long total = stringRedisTemplate.opsForList().size(redisKey);
-        List<ClusterNodeInfoVO> nodes = stringRedisTemplate
-                .opsForList()
-                .range(redisKey, start, stop)
-                .stream()
-                .map(node -> JSONObject.parseObject(node, ClusterNodeInfoVO.class))
-                .collect(Collectors.toList());
-        Page<ClusterNodeInfoVO> result = new Page<>();
-        if (total < pageable.getSize() * pageable.getPage()) {
-            result.setSize(TypeUtil.objToInt(total) - (pageable.getSize() * (pageable.getPage() - 1)));
-        } else {
-            result.setSize(pageable.getSize());
+        // hash中的节点没有顺序, 按节点名称排序后分页, 只取当前页的节点信息
+        List<String> nodeNames = sortedNodeNames(redisKey);
+        long total = nodeNames.size();
+        List<ClusterNodeInfoVO> nodes = Collections.emptyList();
+        if (start < total) {
+            List<Object> pageNames = new ArrayList<>(nodeNames.subList(start, (int) Math.min(total, (long) start + pageable.getSize())));
+            nodes = stringRedisTemplate.opsForHash()
+                    .multiGet(redisKey, pageNames)
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .map(node -> JSONObject.parseObject((String) node, ClusterNodeInfoVO.class))
+                    .collect(Collectors.toList());
         }
+        Page<ClusterNodeInfoVO> result = new Page<>();
         result.setSize(pageable.getSize());
         result.setNumber(pageable.getPage());
         result.setTotalElements(total);
@@ -180,17 +222,8 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
         }
 
         String redisKey = getRedisClusterKey(clusterId, projectId);
-        long total = stringRedisTemplate.opsForList().size(redisKey);
-
-        // get all nodes according to the cluster id and filter the node with the certain name
-        return stringRedisTemplate
-                .opsForList()
-                .range(redisKey, 0, total - 1)
-                .stream()
-                .map(node -> JSONObject.parseObject(node, ClusterNodeInfoVO.class))
-                .filter(node -> nodeName.equals(node.getNodeName()))
-                .findFirst()
-                .orElse(null);
+        Object node = stringRedisTemplate.opsForHash().get(redisKey, nodeName);
+        return node == null ? null : JSONObject.parseObject((String) node, ClusterNodeInfoVO.class);
     }
 
     @Override
@@ -199,22 +232,22 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
 
         String rediskey = getRedisClusterKey(clusterId, devopsClusterDTO.getProjectId());
 
-        long total = stringRedisTemplate.opsForList().size(rediskey);
-
-        return Objects.requireNonNull(stringRedisTemplate
-                .opsForList()
-                .range(rediskey, 0, total - 1))
-                .stream()
-                .map(node -> JSONObject.parseObject(node, ClusterNodeInfoVO.class))
-                .map(ClusterNodeInfoVO::getNodeName)
-                .collect(Collectors.toList());
-
+        return sortedNodeNames(rediskey);
     }
 
     @Override
     public long countNodes(Long projectId, Long clusterId) {
         String key = getRedisClusterKey(clusterId, projectId);
-        Long count = stringRedisTemplate.opsForList().size(key);
+        Long count = stringRedisTemplate.opsForHash().size(key);
         return count == null ? 0 : count;
     }
+
+    private List<String> sortedNodeNames(String redisKey) {
+        return stringRedisTemplate.opsForHash()
+                .keys(redisKey)
+                .stream()
+                .map(String::valueOf)
+                .sorted()
+                .collect(Collectors.toList());
+    }
 }
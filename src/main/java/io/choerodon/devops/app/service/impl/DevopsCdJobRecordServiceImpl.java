@@ -112,9 +112,14 @@ public class DevopsCdJobRecordServiceImpl implements DevopsCdJobRecordService {
 
     @Override
     public void updateLogById(Long jobRecordId, StringBuilder log) {
-        DevopsCdJobRecordDTO cdJobRecordDTO = devopsCdJobRecordMapper.selectByPrimaryKey(jobRecordId);
-        cdJobRecordDTO.setLog(log.toString());
-        if (devopsCdJobRecordMapper.updateByPrimaryKey(cdJobRecordDTO) != 1) {
+        if (devopsCdJobRecordMapper.updateLog(jobRecordId, log.toString()) != 1) {
+            throw new CommonException(ERROR_UPDATE_JOB_RECORD_FAILED);
+        }
+    }
+
+    @Override
+    public void updateHostDeployStatusById(Long jobRecordId, String hostDeployStatus) {
+        if (devopsCdJobRecordMapper.updateHostDeployStatus(jobRecordId, hostDeployStatus) != 1) {
             throw new CommonException(ERROR_UPDATE_JOB_RECORD_FAILED);
         }
     }
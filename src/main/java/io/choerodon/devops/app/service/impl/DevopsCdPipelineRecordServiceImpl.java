@@ -9,15 +9,12 @@ import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.alibaba.fastjson.JSONArray;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import net.schmizz.sshj.SSHClient;
-import net.schmizz.sshj.common.IOUtils;
 import net.schmizz.sshj.connection.ConnectionException;
 import net.schmizz.sshj.connection.channel.direct.Session;
-import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
-import net.schmizz.sshj.userauth.keyprovider.KeyProvider;
 import org.apache.commons.lang.BooleanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +58,12 @@ import io.choerodon.devops.infra.enums.*;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.RdupmClientOperator;
 import io.choerodon.devops.infra.feign.operator.TestServiceClientOperator;
+import io.choerodon.devops.infra.handler.HostDeployLogHandler;
+import io.choerodon.devops.infra.handler.HostDeployLogHandler.HostDeployLog;
+import io.choerodon.devops.infra.handler.HostGroupDeployHandler;
+import io.choerodon.devops.infra.handler.SshConnectionPool;
+import io.choerodon.devops.infra.handler.SshConnectionPool.SshLease;
+import io.choerodon.devops.infra.handler.SshConnectionPool.SshTarget;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -88,6 +91,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
     private static final String TASK = "task";
     private static final String STOP = "stop";
     private static final Integer WAIT_SECONDS = 6;
+    private static final int TEST_CONNECTION_TIMEOUT_MILLISECONDS = 10000;
 
     public static final Logger LOGGER = LoggerFactory.getLogger(DevopsCdPipelineRecordServiceImpl.class);
 
@@ -164,6 +168,15 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
     @Autowired
     private DevopsHostMapper devopsHostMapper;
 
+    @Autowired
+    private HostDeployLogHandler hostDeployLogHandler;
+
+    @Autowired
+    private SshConnectionPool sshConnectionPool;
+
+    @Autowired
+    private HostGroupDeployHandler hostGroupDeployHandler;
+
     @Value("${choerodon.online:true}")
     private Boolean online;
 
@@ -289,8 +302,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         LOGGER.info("========================================");
         LOGGER.info("start image deploy cd host job,pipelineRecordId:{},cdStageRecordId:{},cdJobRecordId{}", pipelineRecordId, cdStageRecordId, cdJobRecordId);
         Boolean status = true;
-        SSHClient ssh = new SSHClient();
-        StringBuilder log = new StringBuilder();
+        HostDeployLog log = hostDeployLogHandler.open(cdJobRecordId);
         try {
             // 0.1
             DevopsCdJobRecordDTO jobRecordDTO = devopsCdJobRecordMapper.selectByPrimaryKey(cdJobRecordId);
@@ -339,17 +351,17 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             jobRecordDTO = devopsCdJobRecordMapper.selectByPrimaryKey(cdJobRecordId);
             jobRecordDTO.setDeployMetadata(gson.toJson(c7nImageDeployDTO));
             devopsCdJobRecordService.update(jobRecordDTO);
-            // 2.
-            sshConnect(cdHostDeployConfigVO.getHostConnectionVO(), ssh);
-            // 3.
-            // 3.1
-            dockerLogin(ssh, c7nImageDeployDTO, log);
-            // 3.2
-            dockerPull(ssh, c7nImageDeployDTO, log);
-
-            dockerStop(ssh, imageDeploy, log);
-            // 3.3
-            dockerRun(ssh, imageDeploy, c7nImageDeployDTO, log);
+            // 2. 部署到每个主机
+            deployHosts(cdJobRecordId, cdHostDeployConfigVO, log, (ssh, hostLog) -> {
+                // 3.1
+                dockerLogin(ssh, c7nImageDeployDTO, hostLog);
+                // 3.2
+                dockerPull(ssh, c7nImageDeployDTO, hostLog);
+
+                dockerStop(ssh, imageDeploy, hostLog);
+                // 3.3
+                dockerRun(ssh, imageDeploy, c7nImageDeployDTO, hostLog);
+            });
             devopsCdJobRecordService.updateStatusById(cdJobRecordId, PipelineStatus.SUCCESS.toValue());
             LOGGER.info("========================================");
             LOGGER.info("image deploy cd host job success!!!,pipelineRecordId:{},cdStageRecordId:{},cdJobRecordId{}", pipelineRecordId, cdStageRecordId, cdJobRecordId);
@@ -358,13 +370,12 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             status = false;
             jobFailed(pipelineRecordId, cdStageRecordId, cdJobRecordId);
         } finally {
-            devopsCdJobRecordService.updateLogById(cdJobRecordId, log);
-            closeSsh(ssh, null);
+            log.flush();
         }
         return status;
     }
 
-    private void dockerLogin(SSHClient ssh, C7nImageDeployDTO imageTagVo, StringBuilder log) throws IOException {
+    private void dockerLogin(SshLease ssh, C7nImageDeployDTO imageTagVo, HostDeployLog log) throws IOException {
         Session session = null;
         try {
             session = ssh.startSession();
@@ -372,13 +383,9 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             LOGGER.info(loginExec);
             Session.Command cmd = session.exec(loginExec);
 
-            String loggerInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-            String loggerError = IOUtils.readFully(cmd.getErrorStream()).toString();
+            String output = log.streamOutput(cmd);
             cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
-            log.append(loggerInfo);
-            log.append(loggerError);
-            LOGGER.info(loggerInfo);
-            LOGGER.info(loggerError);
+            LOGGER.info(output);
             LOGGER.info("docker login status:{}", cmd.getExitStatus());
 
             if (cmd.getExitStatus() != 0) {
@@ -391,20 +398,16 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         }
     }
 
-    private void dockerPull(SSHClient ssh, C7nImageDeployDTO imageTagVo, StringBuilder log) throws IOException {
+    private void dockerPull(SshLease ssh, C7nImageDeployDTO imageTagVo, HostDeployLog log) throws IOException {
         Session session = null;
         try {
             session = ssh.startSession();
             LOGGER.info(imageTagVo.getPullCmd());
             Session.Command cmd = session.exec(imageTagVo.getPullCmd());
-            String loggerInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-            String loggerError = IOUtils.readFully(cmd.getErrorStream()).toString();
-            execPullImage(cmd);
             log.append(System.lineSeparator());
-            log.append(loggerInfo);
-            log.append(loggerError);
-            LOGGER.info(loggerInfo);
-            LOGGER.info(loggerError);
+            String output = log.streamOutput(cmd);
+            execPullImage(ssh, cmd);
+            LOGGER.info(output);
             LOGGER.info("docker pull status:{}", cmd.getExitStatus());
             if (cmd.getExitStatus() != 0) {
                 throw new CommonException(ERROR_DOCKER_PULL);
@@ -419,7 +422,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
      * 解决pull 镜像时间较长
      * 等3分钟
      */
-    private void execPullImage(Session.Command cmd) {
+    private void execPullImage(SshLease ssh, Session.Command cmd) {
         for (int i = 0; i < 30; i++) {
             if (cmd.getExitStatus() == null) {
                 LOGGER.info("Pulling the image!!!");
@@ -432,9 +435,13 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
                 break;
             }
         }
+        if (cmd.getExitStatus() == null) {
+            // 拉取超时, 连接上仍有未结束的命令
+            ssh.invalidate();
+        }
     }
 
-    private void dockerRun(SSHClient ssh, CdHostDeployConfigVO.ImageDeploy imageDeploy, C7nImageDeployDTO c7nImageDeployDTO, StringBuilder log) throws IOException {
+    private void dockerRun(SshLease ssh, CdHostDeployConfigVO.ImageDeploy imageDeploy, C7nImageDeployDTO c7nImageDeployDTO, HostDeployLog log) throws IOException {
         Session session = null;
         try {
             session = ssh.startSession();
@@ -454,14 +461,10 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             dockerRunExec.append(values.replace("${containerName}", imageDeploy.getContainerName()).replace("${imageName}", c7nImageDeployDTO.getPullCmd().replace("docker pull", "")));
             LOGGER.info(dockerRunExec.toString());
             Session.Command cmd = session.exec(dockerRunExec.toString());
-            String loggerInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-            String loggerError = IOUtils.readFully(cmd.getErrorStream()).toString();
-            LOGGER.info(loggerInfo);
-            LOGGER.info(loggerError);
-            cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
             log.append(System.lineSeparator());
-            log.append(loggerInfo);
-            log.append(loggerError);
+            String output = log.streamOutput(cmd);
+            LOGGER.info(output);
+            cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
             LOGGER.info("docker run status:{}", cmd.getExitStatus());
             if (cmd.getExitStatus() != 0) {
                 throw new CommonException(ERROR_DOCKER_RUN);
@@ -473,7 +476,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
 
     }
 
-    private void dockerStop(SSHClient ssh, CdHostDeployConfigVO.ImageDeploy imageDeploy, StringBuilder log) throws IOException {
+    private void dockerStop(SshLease ssh, CdHostDeployConfigVO.ImageDeploy imageDeploy, HostDeployLog log) throws IOException {
         Session session = null;
         try {
             session = ssh.startSession();
@@ -484,14 +487,10 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             dockerRunExec.append("docker rm ").append(imageDeploy.getContainerName());
             LOGGER.info(dockerRunExec.toString());
             Session.Command cmd = session.exec(dockerRunExec.toString());
-            cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
-            String loggerInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-            String loggerError = IOUtils.readFully(cmd.getErrorStream()).toString();
             log.append(System.lineSeparator());
-            log.append(loggerInfo);
-            log.append(loggerError);
-            LOGGER.info(loggerInfo);
-            LOGGER.info(loggerError);
+            String output = log.streamOutput(cmd);
+            cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
+            LOGGER.info(output);
             LOGGER.info("docker stop status:{}", cmd.getExitStatus());
         } finally {
             assert session != null;
@@ -500,24 +499,59 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
 
     }
 
-    private void sshConnect(HostConnectionVO hostConnectionVO, SSHClient ssh) throws IOException {
-        // 3.
-//        ssh.loadKnownHosts();
-        ssh.addHostKeyVerifier(new PromiscuousVerifier());
+    /**
+     * 对任务的每个主机执行部署, 主机组部署时按配置的数量并行部署
+     * 每个主机从连接池借出自己的ssh连接, 部署结束后归还
+     */
+    private void deployHosts(Long cdJobRecordId, CdHostDeployConfigVO cdHostDeployConfigVO, HostDeployLog log, SshDeployStep step) {
+        hostGroupDeployHandler.deploy(cdJobRecordId, log, listDeployHosts(cdHostDeployConfigVO),
+                cdHostDeployConfigVO.getParallelism(), cdHostDeployConfigVO.getFailureThreshold(),
+                (host, hostLog) -> {
+                    try (SshLease ssh = borrowSsh(host)) {
+                        try {
+                            step.deploy(ssh, hostLog);
+                        } catch (IOException | RuntimeException e) {
+                            // 命令超时或者失败后连接的状态未知, 不归还到连接池
+                            ssh.invalidate();
+                            throw e;
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 主机组部署时为主机列表, 否则为单个主机
+     */
+    private List<HostConnectionVO> listDeployHosts(CdHostDeployConfigVO cdHostDeployConfigVO) {
+        List<HostConnectionVO> hosts = CollectionUtils.isEmpty(cdHostDeployConfigVO.getHostConnectionVOS())
+                ? Collections.singletonList(cdHostDeployConfigVO.getHostConnectionVO())
+                : cdHostDeployConfigVO.getHostConnectionVOS();
+        // 先填充连接信息, 部署结果和日志中需要主机的ip
+        hosts.forEach(this::fillHostConnection);
+        return hosts;
+    }
+
+    /**
+     * 从连接池借出主机的ssh连接, 同一个主机的连接数达到上限时等待, 主机的连接信息需要已经填充
+     */
+    private SshLease borrowSsh(HostConnectionVO hostConnectionVO) {
+        return sshConnectionPool.borrow(toSshTarget(hostConnectionVO));
+    }
+
+    private void fillHostConnection(HostConnectionVO hostConnectionVO) {
         //根据主机来源获取主机连接信息
         if (HostSourceEnum.EXISTHOST.getValue().equalsIgnoreCase(hostConnectionVO.getHostSource())) {
             DevopsHostDTO devopsHostDTO = devopsHostMapper.selectByPrimaryKey(hostConnectionVO.getHostId());
             dtoToHostConnVo(hostConnectionVO, devopsHostDTO);
         }
+    }
 
-        ssh.connect(hostConnectionVO.getHostIp(), TypeUtil.objToInteger(hostConnectionVO.getHostPort()));
-        if (hostConnectionVO.getAccountType().equals(CdHostAccountType.ACCOUNTPASSWORD.value())) {
-            ssh.authPassword(hostConnectionVO.getUserName(), hostConnectionVO.getPassword());
-        } else {
-            String str = Base64Util.getBase64DecodedString(hostConnectionVO.getAccountKey());
-            KeyProvider keyProvider = ssh.loadKeys(str, null, null);
-            ssh.authPublickey(hostConnectionVO.getUserName(), keyProvider);
-        }
+    private SshTarget toSshTarget(HostConnectionVO hostConnectionVO) {
+        String credential = hostConnectionVO.getAccountType().equals(CdHostAccountType.ACCOUNTPASSWORD.value())
+                ? hostConnectionVO.getPassword()
+                : Base64Util.getBase64DecodedString(hostConnectionVO.getAccountKey());
+        return new SshTarget(hostConnectionVO.getHostIp(), TypeUtil.objToInteger(hostConnectionVO.getHostPort()),
+                hostConnectionVO.getAccountType(), hostConnectionVO.getUserName(), credential);
     }
 
     private void dtoToHostConnVo(HostConnectionVO hostConnectionVO, DevopsHostDTO devopsHostDTO) {
@@ -561,9 +595,8 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
     public Boolean cdHostJarDeploy(Long pipelineRecordId, Long cdStageRecordId, Long cdJobRecordId) {
         LOGGER.info("========================================");
         LOGGER.info("start jar deploy cd host job,pipelineRecordId:{},cdStageRecordId:{},cdJobRecordId{}", pipelineRecordId, cdStageRecordId, cdJobRecordId);
-        SSHClient ssh = new SSHClient();
         Boolean status = true;
-        StringBuilder log = new StringBuilder();
+        HostDeployLog log = hostDeployLogHandler.open(cdJobRecordId);
         try {
             // 0.1 查询部署信息
             DevopsCdJobRecordDTO jobRecordDTO = devopsCdJobRecordMapper.selectByPrimaryKey(cdJobRecordId);
@@ -619,11 +652,12 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             jobRecordDTO.setDeployMetadata(gson.toJson(c7nNexusDeployDTO));
             devopsCdJobRecordService.update(jobRecordDTO);
 
-            sshConnect(cdHostDeployConfigVO.getHostConnectionVO(), ssh);
-
-            // 2. 执行jar部署
-            sshStopJar(ssh, jobRecordDTO.getJobId(), log);
-            sshExec(ssh, c7nNexusDeployDTO, jarDeploy, log);
+            // 2. 对每个主机执行jar部署
+            Long jobId = jobRecordDTO.getJobId();
+            deployHosts(cdJobRecordId, cdHostDeployConfigVO, log, (ssh, hostLog) -> {
+                sshStopJar(ssh, jobId, hostLog);
+                sshExec(ssh, c7nNexusDeployDTO, jarDeploy, hostLog);
+            });
             devopsCdEnvDeployInfoService.updateOrUpdateByCdJob(jobRecordDTO.getJobId(), c7nNexusDeployDTO.getJarName());
             devopsCdJobRecordService.updateStatusById(cdJobRecordId, PipelineStatus.SUCCESS.toValue());
         } catch (Exception e) {
@@ -631,8 +665,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             status = false;
             jobFailed(pipelineRecordId, cdStageRecordId, cdJobRecordId);
         } finally {
-            devopsCdJobRecordService.updateLogById(cdJobRecordId, log);
-            closeSsh(ssh, null);
+            log.flush();
         }
         return status;
     }
@@ -641,29 +674,26 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
     public Boolean cdHostCustomDeploy(Long pipelineRecordId, Long cdStageRecordId, Long cdJobRecordId) {
         LOGGER.info("========================================");
         LOGGER.info("start custom deploy cd host job,pipelineRecordId:{},cdStageRecordId:{},cdJobRecordId{}", pipelineRecordId, cdStageRecordId, cdJobRecordId);
-        SSHClient ssh = new SSHClient();
         Boolean status = true;
-        StringBuilder log = new StringBuilder();
+        HostDeployLog log = hostDeployLogHandler.open(cdJobRecordId);
         try {
             // 0.1 查询部署信息
             DevopsCdJobRecordDTO jobRecordDTO = devopsCdJobRecordMapper.selectByPrimaryKey(cdJobRecordId);
             CdHostDeployConfigVO cdHostDeployConfigVO = gson.fromJson(jobRecordDTO.getMetadata(), CdHostDeployConfigVO.class);
             String value = new String(decoder.decodeBuffer(cdHostDeployConfigVO.getCustomize().getValues()), "UTF-8");
-            sshConnect(cdHostDeployConfigVO.getHostConnectionVO(), ssh);
-            sshExecCustom(ssh, value, log);
+            deployHosts(cdJobRecordId, cdHostDeployConfigVO, log, (ssh, hostLog) -> sshExecCustom(ssh, value, hostLog));
             devopsCdJobRecordService.updateStatusById(cdJobRecordId, PipelineStatus.SUCCESS.toValue());
         } catch (Exception e) {
             e.printStackTrace();
             status = false;
             jobFailed(pipelineRecordId, cdStageRecordId, cdJobRecordId);
         } finally {
-            devopsCdJobRecordService.updateLogById(cdJobRecordId, log);
-            closeSsh(ssh, null);
+            log.flush();
         }
         return status;
     }
 
-    private void sshStopJar(SSHClient ssh, Long jobId, StringBuilder log) throws IOException {
+    private void sshStopJar(SshLease ssh, Long jobId, HostDeployLog log) throws IOException {
         DevopsCdEnvDeployInfoDTO cdEnvDeployInfoDTO = devopsCdEnvDeployInfoService.queryByCdJobId(jobId);
         if (cdEnvDeployInfoDTO != null && !StringUtils.isEmpty(cdEnvDeployInfoDTO.getJarName())) {
             StringBuilder stopJar = new StringBuilder();
@@ -677,11 +707,8 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             try {
                 session = ssh.startSession();
                 final Session.Command cmd = session.exec(stopJar.toString());
+                log.streamOutput(cmd);
                 cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
-                String logInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-                String errorInfo = IOUtils.readFully(cmd.getErrorStream()).toString();
-                log.append(logInfo);
-                log.append(errorInfo);
             } finally {
                 assert session != null;
                 session.close();
@@ -689,7 +716,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         }
     }
 
-    private void sshExec(SSHClient ssh, C7nNexusDeployDTO c7nNexusDeployDTO, CdHostDeployConfigVO.JarDeploy jarDeploy, StringBuilder log) throws IOException {
+    private void sshExec(SshLease ssh, C7nNexusDeployDTO c7nNexusDeployDTO, CdHostDeployConfigVO.JarDeploy jarDeploy, HostDeployLog log) throws IOException {
         StringBuilder cmdStr = new StringBuilder();
         if (StringUtils.isEmpty(jarDeploy.getWorkingPath())) {
             cmdStr.append("mkdir -p /temp/jar && ");
@@ -731,17 +758,13 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             LOGGER.info(cmdStr.toString());
 
             final Session.Command cmd = session.exec(cmdStr.toString());
-            cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
-            String loggerInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-            String loggerError = IOUtils.readFully(cmd.getErrorStream()).toString();
             log.append(System.lineSeparator());
-            log.append(loggerInfo);
-            log.append(loggerError);
-            if (loggerError.contains("Unauthorized") || loggerInfo.contains("Unauthorized") || cmd.getExitStatus() != 0) {
+            String output = log.streamOutput(cmd);
+            cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
+            if (output.contains("Unauthorized") || cmd.getExitStatus() != 0) {
                 throw new CommonException(ERROR_DOWNLOAD_JAY);
             }
-            LOGGER.info(loggerInfo);
-            LOGGER.info(loggerError);
+            LOGGER.info(output);
         } finally {
             assert session != null;
             session.close();
@@ -749,7 +772,7 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
 
     }
 
-    private void sshExecCustom(SSHClient ssh, String value, StringBuilder log) throws IOException {
+    private void sshExecCustom(SshLease ssh, String value, HostDeployLog log) throws IOException {
         Session session = null;
         try {
             session = ssh.startSession();
@@ -766,13 +789,9 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
 
             LOGGER.info(values);
             final Session.Command cmd = session.exec(values);
+            String output = log.streamOutput(cmd);
             cmd.join(WAIT_SECONDS, TimeUnit.SECONDS);
-            String loggerInfo = IOUtils.readFully(cmd.getInputStream()).toString();
-            String loggerError = IOUtils.readFully(cmd.getErrorStream()).toString();
-            LOGGER.info(loggerInfo);
-            LOGGER.info(loggerError);
-            log.append(loggerInfo);
-            log.append(loggerError);
+            LOGGER.info(output);
         } finally {
             assert session != null;
             session.close();
@@ -780,17 +799,6 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
 
     }
 
-    private void closeSsh(SSHClient ssh, Session session) {
-        try {
-            if (session != null) {
-                session.close();
-            }
-            ssh.disconnect();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     private String getJarName(String url) {
         String[] arr = url.split("/");
         return arr[arr.length - 1].replace(".jar", "-") + GenerateUUID.generateRandomString() + ".jar";
@@ -855,21 +863,20 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         CdHostDeployConfigVO cdHostDeployConfigVO = gson.fromJson(cdJobRecordDTO.getMetadata(), CdHostDeployConfigVO.class);
         CdHostDeployConfigVO.ImageDeploy imageDeploy = cdHostDeployConfigVO.getImageDeploy();
         C7nImageDeployDTO imageTagVoRecord = gson.fromJson(cdJobRecordDTO.getDeployMetadata(), C7nImageDeployDTO.class);
-        SSHClient ssh = new SSHClient();
-        StringBuilder log = new StringBuilder();
+        HostDeployLog log = hostDeployLogHandler.open(cdJobRecordId);
         try {
-            sshConnect(cdHostDeployConfigVO.getHostConnectionVO(), ssh);
-            dockerLogin(ssh, imageTagVoRecord, log);
-            dockerPull(ssh, imageTagVoRecord, log);
-            dockerStop(ssh, imageDeploy, log);
-            dockerRun(ssh, imageDeploy, imageTagVoRecord, log);
+            deployHosts(cdJobRecordId, cdHostDeployConfigVO, log, (ssh, hostLog) -> {
+                dockerLogin(ssh, imageTagVoRecord, hostLog);
+                dockerPull(ssh, imageTagVoRecord, hostLog);
+                dockerStop(ssh, imageDeploy, hostLog);
+                dockerRun(ssh, imageDeploy, imageTagVoRecord, hostLog);
+            });
 
             devopsCdJobRecordService.updateStatusById(cdJobRecordId, PipelineStatus.SUCCESS.toValue());
         } catch (Exception e) {
             jobFailed(pipelineRecordId, cdStageRecordId, cdJobRecordId);
         } finally {
-            devopsCdJobRecordService.updateLogById(cdJobRecordId, log);
-            closeSsh(ssh, null);
+            log.flush();
         }
     }
 
@@ -879,20 +886,19 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         devopsCdJobRecordService.updateStatusById(cdJobRecordId, PipelineStatus.RUNNING.toValue());
         CdHostDeployConfigVO cdHostDeployConfigVO = gson.fromJson(cdJobRecordDTO.getMetadata(), CdHostDeployConfigVO.class);
         C7nNexusDeployDTO c7nNexusDeployDTO = gson.fromJson(cdJobRecordDTO.getDeployMetadata(), C7nNexusDeployDTO.class);
-        SSHClient ssh = new SSHClient();
-        StringBuilder log = new StringBuilder();
+        HostDeployLog log = hostDeployLogHandler.open(cdJobRecordId);
         try {
-            sshConnect(cdHostDeployConfigVO.getHostConnectionVO(), ssh);
             // 2.1
-            sshStopJar(ssh, cdJobRecordDTO.getJobId(), log);
-            sshExec(ssh, c7nNexusDeployDTO, cdHostDeployConfigVO.getJarDeploy(), log);
+            deployHosts(cdJobRecordId, cdHostDeployConfigVO, log, (ssh, hostLog) -> {
+                sshStopJar(ssh, cdJobRecordDTO.getJobId(), hostLog);
+                sshExec(ssh, c7nNexusDeployDTO, cdHostDeployConfigVO.getJarDeploy(), hostLog);
+            });
             devopsCdEnvDeployInfoService.updateOrUpdateByCdJob(cdJobRecordDTO.getJobId(), c7nNexusDeployDTO.getJarName());
             devopsCdJobRecordService.updateStatusById(cdJobRecordId, PipelineStatus.SUCCESS.toValue());
         } catch (Exception e) {
             jobFailed(pipelineRecordId, cdStageRecordId, cdJobRecordId);
         } finally {
-            devopsCdJobRecordService.updateLogById(cdJobRecordId, log);
-            closeSsh(ssh, null);
+            log.flush();
         }
     }
 
@@ -1198,6 +1204,10 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
             if (JobTypeEnum.CD_HOST.value().equals(devopsCdJobRecordVO.getType())) {
                 CdHostDeployConfigVO cdHostDeployConfigVO = gson.fromJson(devopsCdJobRecordVO.getMetadata(), CdHostDeployConfigVO.class);
                 devopsCdJobRecordVO.setCdHostDeployConfigVO(cdHostDeployConfigVO);
+                // 每个主机的部署结果
+                if (!StringUtils.isEmpty(devopsCdJobRecordVO.getHostDeployStatus())) {
+                    devopsCdJobRecordVO.setHostDeployStatusVOS(JSONArray.parseArray(devopsCdJobRecordVO.getHostDeployStatus(), HostDeployStatusVO.class));
+                }
             }
 
             if (JobTypeEnum.CD_API_TEST.value().equals(devopsCdJobRecordVO.getType())) {
@@ -1214,26 +1224,8 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
 
     @Override
     public Boolean testConnection(HostConnectionVO hostConnectionVO) {
-        SSHClient ssh = new SSHClient();
-        Session session = null;
-        Boolean index = true;
-        try {
-            sshConnect(hostConnectionVO, ssh);
-            session = ssh.startSession();
-            Session.Command cmd = session.exec("echo Hello World!!!");
-            LOGGER.info(IOUtils.readFully(cmd.getInputStream()).toString());
-            cmd.join(5, TimeUnit.SECONDS);
-            LOGGER.info("\n** exit status: " + cmd.getExitStatus());
-            if (cmd.getExitStatus() != 0) {
-                throw new CommonException("error.test.connection");
-            }
-        } catch (IOException e) {
-            index = false;
-            e.printStackTrace();
-        } finally {
-            closeSsh(ssh, session);
-        }
-        return index;
+        fillHostConnection(hostConnectionVO);
+        return sshConnectionPool.testConnection(toSshTarget(hostConnectionVO), TEST_CONNECTION_TIMEOUT_MILLISECONDS);
     }
 
     private DevopsCdStageRecordVO dtoToVo(DevopsCdStageRecordDTO devopsCdStageRecordDTO) {
@@ -1293,4 +1285,11 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         return devopsCdPipelineRecordVO;
     }
 
+    /**
+     * 在一个主机上执行的部署步骤
+     */
+    @FunctionalInterface
+    private interface SshDeployStep {
+        void deploy(SshLease ssh, HostDeployLog log) throws IOException;
+    }
 }
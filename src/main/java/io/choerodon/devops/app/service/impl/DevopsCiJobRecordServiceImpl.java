@@ -1,8 +1,6 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import org.springframework.context.annotation.Lazy;
@@ -60,16 +58,28 @@ public class DevopsCiJobRecordServiceImpl implements DevopsCiJobRecordService {
 
     @Override
     public void update(JobWebHookVO jobWebHookVO) {
-        DevopsCiJobRecordDTO recordDTO = new DevopsCiJobRecordDTO();
-        recordDTO.setGitlabJobId(jobWebHookVO.getBuildId());
-        DevopsCiJobRecordDTO devopsCiJobRecordDTO = devopsCiJobRecordMapper.selectOne(recordDTO);
-        if (devopsCiJobRecordDTO != null) {
-            devopsCiJobRecordDTO.setStatus(jobWebHookVO.getBuildStatus());
-            devopsCiJobRecordDTO.setStartedDate(jobWebHookVO.getBuildStartedAt());
-            devopsCiJobRecordDTO.setFinishedDate(jobWebHookVO.getBuildFinishedAt());
-            devopsCiJobRecordDTO.setDurationSeconds(jobWebHookVO.getBuildDuration());
-            devopsCiJobRecordMapper.updateByPrimaryKeySelective(devopsCiJobRecordDTO);
+        update(Collections.singletonList(jobWebHookVO));
+    }
+
+    @Override
+    public void update(List<JobWebHookVO> jobWebHookVOS) {
+        Map<Long, JobWebHookVO> jobs = new HashMap<>(jobWebHookVOS.size());
+        jobWebHookVOS.stream().filter(job -> job.getBuildId() != null).forEach(job -> jobs.put(job.getBuildId(), job));
+        if (jobs.isEmpty()) {
+            return;
+        }
+        List<DevopsCiJobRecordDTO> records = devopsCiJobRecordMapper.listByGitlabJobIds(jobs.keySet());
+        if (records.isEmpty()) {
+            return;
         }
+        records.forEach(record -> {
+            JobWebHookVO job = jobs.get(record.getGitlabJobId());
+            record.setStatus(job.getBuildStatus());
+            record.setStartedDate(job.getBuildStartedAt());
+            record.setFinishedDate(job.getBuildFinishedAt());
+            record.setDurationSeconds(job.getBuildDuration());
+        });
+        devopsCiJobRecordMapper.batchUpdateStatus(records);
     }
 
     @Override
@@ -1,9 +1,14 @@
 package io.choerodon.devops.app.service.impl;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 import org.hzero.boot.file.FileClient;
 import org.slf4j.Logger;
@@ -16,18 +21,21 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.DevopsCiJobTraceVO;
 import io.choerodon.devops.api.vo.SonarInfoVO;
 import io.choerodon.devops.api.vo.SonarQubeConfigVO;
 import io.choerodon.devops.app.service.*;
 import io.choerodon.devops.infra.dto.*;
 import io.choerodon.devops.infra.dto.gitlab.JobDTO;
 import io.choerodon.devops.infra.enums.AppServiceEvent;
+import io.choerodon.devops.infra.enums.JobStatusEnum;
 import io.choerodon.devops.infra.enums.JobTypeEnum;
 import io.choerodon.devops.infra.enums.sonar.SonarAuthType;
 import io.choerodon.devops.infra.exception.DevopsCiInvalidException;
 import io.choerodon.devops.infra.feign.SonarClient;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.handler.CiJobTraceCache;
 import io.choerodon.devops.infra.handler.RetrofitHandler;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.GitUserNameUtil;
@@ -54,6 +62,16 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
     private static final String ERROR_TOKEN_MISMATCH = "error.app.service.token.mismatch";
     private static final String ERROR_CI_JOB_NON_EXIST = "error.ci.job.non.exist";
     private static final String ERROR_TOKEN_PIPELINE_MISMATCH = "error.app.service.token.pipeline.mismatch";
+    private static final String ERROR_APP_PROJECT_NOT_MATCH = "error.app.project.notMatch";
+
+    /**
+     * 结束后日志不再变化的job状态
+     */
+    private static final Set<String> COMPLETED_JOB_STATUS = new HashSet<>(Arrays.asList(
+            JobStatusEnum.SUCCESS.value(),
+            JobStatusEnum.FAILED.value(),
+            JobStatusEnum.CANCELED.value(),
+            JobStatusEnum.SKIPPED.value()));
 
     private static final String SONAR_KEY = "%s-%s:%s";
     private static final String SONAR = "sonar";
@@ -71,6 +89,7 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
     private BaseServiceClientOperator baseServiceClientOperator;
     private AppServiceMapper appServiceMapper;
     private CheckGitlabAccessLevelService checkGitlabAccessLevelService;
+    private CiJobTraceCache ciJobTraceCache;
 
     public DevopsCiJobServiceImpl(DevopsCiJobMapper devopsCiJobMapper,
                                   GitlabServiceClientOperator gitlabServiceClientOperator,
@@ -84,7 +103,8 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
                                   AppServiceMapper appServiceMapper,
                                   CheckGitlabAccessLevelService checkGitlabAccessLevelService,
                                   BaseServiceClientOperator baseServiceClientOperator,
-                                  DevopsCiPipelineRecordMapper devopsCiPipelineRecordMapper) {
+                                  DevopsCiPipelineRecordMapper devopsCiPipelineRecordMapper,
+                                  CiJobTraceCache ciJobTraceCache) {
         this.devopsCiJobMapper = devopsCiJobMapper;
         this.gitlabServiceClientOperator = gitlabServiceClientOperator;
         this.userAttrService = userAttrService;
@@ -98,6 +118,7 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
         this.appServiceMapper = appServiceMapper;
         this.checkGitlabAccessLevelService = checkGitlabAccessLevelService;
         this.baseServiceClientOperator = baseServiceClientOperator;
+        this.ciJobTraceCache = ciJobTraceCache;
     }
 
     @Override
@@ -168,9 +189,42 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
     }
 
     @Override
-    public String queryTrace(Long gitlabProjectId, Long jobId) {
-        UserAttrDTO userAttrDTO = userAttrService.baseQueryById(GitUserNameUtil.getUserId());
-        return gitlabServiceClientOperator.queryTrace(gitlabProjectId.intValue(), jobId.intValue(), userAttrDTO.getGitlabUserId().intValue());
+    public String queryTrace(Long projectId, Long gitlabProjectId, Long jobId) {
+        return queryTrace(projectId, gitlabProjectId, jobId, null).getContent();
+    }
+
+    @Override
+    public DevopsCiJobTraceVO queryTrace(Long projectId, Long gitlabProjectId, Long jobId, @Nullable Long offset) {
+        Assert.notNull(gitlabProjectId, ERROR_GITLAB_PROJECT_ID_IS_NULL);
+        Assert.notNull(jobId, ERROR_GITLAB_JOB_ID_IS_NULL);
+        // 日志在同一个job的查看者之间共享, 不能只依赖gitlab对拉取日志的那个用户的权限校验
+        AppServiceDTO appServiceDTO = appServiceMapper.selectOne(new AppServiceDTO().setGitlabProjectId(TypeUtil.objToInteger(gitlabProjectId)));
+        if (appServiceDTO == null || !Objects.equals(appServiceDTO.getProjectId(), projectId)) {
+            throw new CommonException(ERROR_APP_PROJECT_NOT_MATCH);
+        }
+        checkGitlabAccessLevelService.checkGitlabPermission(projectId, appServiceDTO.getId(), AppServiceEvent.CI_PIPELINE_DETAIL);
+
+        DevopsCiJobRecordDTO devopsCiJobRecordDTO = devopsCiJobRecordService.queryByGitlabJobId(jobId);
+        boolean completed = devopsCiJobRecordDTO != null && COMPLETED_JOB_STATUS.contains(devopsCiJobRecordDTO.getStatus());
+        CiJobTraceCache.Trace trace = ciJobTraceCache.read(gitlabProjectId, jobId, completed, () -> {
+            UserAttrDTO userAttrDTO = userAttrService.baseQueryById(GitUserNameUtil.getUserId());
+            return gitlabServiceClientOperator.queryTrace(gitlabProjectId.intValue(), jobId.intValue(), userAttrDTO.getGitlabUserId().intValue());
+        });
+
+        byte[] content = trace.getContent();
+        // 刚结束的job的日志可能还没有归档完, 缓存了最终的日志之后才告诉查看者不需要继续查询
+        boolean traceCompleted = trace.isCompleted();
+        long length = content.length;
+        if (offset == null || offset < 0 || (offset > length && (traceCompleted || trace.isOverrunExpired(offset)))) {
+            // 没有偏移量或偏移量不合法时返回完整的日志, 偏移量超出日志长度一个刷新间隔以上说明日志被清除或者变短了
+            return new DevopsCiJobTraceVO(new String(content, StandardCharsets.UTF_8), length, offset != null, traceCompleted);
+        }
+        if (offset >= length) {
+            // 其它实例上的缓冲区可能比这里的更新, 保持偏移量等待这里的缓冲区追上
+            return new DevopsCiJobTraceVO("", offset, false, traceCompleted);
+        }
+        // 偏移量总是之前某次返回的日志长度, 日志只会追加, 所以不会截断多字节字符
+        return new DevopsCiJobTraceVO(new String(content, offset.intValue(), (int) (length - offset), StandardCharsets.UTF_8), length, false, traceCompleted);
     }
 
     @Override
@@ -43,6 +43,7 @@ import io.choerodon.devops.infra.enums.*;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
 import io.choerodon.devops.infra.handler.CiPipelineSyncHandler;
+import io.choerodon.devops.infra.handler.ParallelLookupHandler;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -86,6 +87,7 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
     private final DevopsCiCdPipelineMapper devopsCiCdPipelineMapper;
     private final AppServiceVersionMapper appServiceVersionMapper;
     private StringRedisTemplate stringRedisTemplate;
+    private final ParallelLookupHandler parallelLookupHandler;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -110,7 +112,8 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
                                              @Lazy DevopsPipelineRecordRelService devopsPipelineRecordRelService,
                                              DevopsCiCdPipelineMapper devopsCiCdPipelineMapper,
                                              AppServiceVersionMapper appServiceVersionMapper,
-                                             StringRedisTemplate stringRedisTemplate
+                                             StringRedisTemplate stringRedisTemplate,
+                                             ParallelLookupHandler parallelLookupHandler
     ) {
         this.devopsCiPipelineRecordMapper = devopsCiPipelineRecordMapper;
         this.devopsCiJobRecordService = devopsCiJobRecordService;
@@ -133,6 +136,7 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
         this.devopsCiCdPipelineMapper = devopsCiCdPipelineMapper;
         this.appServiceVersionMapper = appServiceVersionMapper;
         this.stringRedisTemplate = stringRedisTemplate;
+        this.parallelLookupHandler = parallelLookupHandler;
     }
 
     @Override
@@ -282,34 +286,48 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
         if (CollectionUtils.isEmpty(pipelineRecordVOList)) {
             return pipelineRecordInfo;
         }
-        pipelineRecordVOList.forEach(pipelineRecord -> {
+        // 同一条流水线的记录的阶段信息相同, 只查询一次
+        List<DevopsCiStageDTO> devopsCiStageDTOList = devopsCiStageService.listByPipelineId(ciPipelineId);
+        // 每条记录的job记录并行查询
+        List<ParallelLookupHandler.Lookup<List<DevopsCiStageRecordVO>>> stageLookups = pipelineRecordVOList.stream().map(pipelineRecord -> {
             ciPipelineSyncHandler.syncPipeline(pipelineRecord.getStatus(), pipelineRecord.getLastUpdateDate(), pipelineRecord.getId(), TypeUtil.objToInteger(pipelineRecord.getGitlabPipelineId()));
-            // 查询流水线记录下的job记录
-            DevopsCiJobRecordDTO recordDTO = new DevopsCiJobRecordDTO();
-            recordDTO.setCiPipelineRecordId(pipelineRecord.getId());
-            List<DevopsCiJobRecordDTO> devopsCiJobRecordDTOS = devopsCiJobRecordMapper.select(recordDTO);
-
-            // 只返回job的最新记录
-            devopsCiJobRecordDTOS = filterJobs(devopsCiJobRecordDTOS);
-            Map<String, List<DevopsCiJobRecordDTO>> jobRecordMap = devopsCiJobRecordDTOS.stream().collect(Collectors.groupingBy(DevopsCiJobRecordDTO::getStage));
-            // 查询阶段信息
-            List<DevopsCiStageDTO> devopsCiStageDTOList = devopsCiStageService.listByPipelineId(ciPipelineId);
-            List<DevopsCiStageRecordVO> devopsCiStageRecordVOS = ConvertUtils.convertList(devopsCiStageDTOList, DevopsCiStageRecordVO.class);
-            // 计算stage状态
-            devopsCiStageRecordVOS.forEach(stageRecord -> {
-                List<DevopsCiJobRecordDTO> ciJobRecordDTOS = jobRecordMap.get(stageRecord.getName());
-                if (!CollectionUtils.isEmpty(ciJobRecordDTOS)) {
-                    Map<String, List<DevopsCiJobRecordDTO>> statusMap = ciJobRecordDTOS.stream().collect(Collectors.groupingBy(DevopsCiJobRecordDTO::getStatus));
-                    //计算stage状态
-                    calculateStageStatus(stageRecord, statusMap);
-                }
+            return parallelLookupHandler.submit("ciStageRecord", () -> listStageRecords(pipelineRecord.getId(), devopsCiStageDTOList));
+        }).collect(Collectors.toList());
+        for (int i = 0; i < pipelineRecordVOList.size(); i++) {
+            pipelineRecordVOList.get(i).setStageRecordVOList(stageLookups.get(i).get());
+        }
+        return pipelineRecordInfo;
+    }
+
+    /**
+     * 根据流水线记录下的job记录计算各个阶段的状态
+     *
+     * @param ciPipelineRecordId   流水线记录id
+     * @param devopsCiStageDTOList 流水线的阶段信息
+     * @return 有状态的阶段, 按顺序排列
+     */
+    private List<DevopsCiStageRecordVO> listStageRecords(Long ciPipelineRecordId, List<DevopsCiStageDTO> devopsCiStageDTOList) {
+        // 查询流水线记录下的job记录
+        DevopsCiJobRecordDTO recordDTO = new DevopsCiJobRecordDTO();
+        recordDTO.setCiPipelineRecordId(ciPipelineRecordId);
+        List<DevopsCiJobRecordDTO> devopsCiJobRecordDTOS = devopsCiJobRecordMapper.select(recordDTO);
+
+        // 只返回job的最新记录
+        devopsCiJobRecordDTOS = filterJobs(devopsCiJobRecordDTOS);
+        Map<String, List<DevopsCiJobRecordDTO>> jobRecordMap = devopsCiJobRecordDTOS.stream().collect(Collectors.groupingBy(DevopsCiJobRecordDTO::getStage));
+        List<DevopsCiStageRecordVO> devopsCiStageRecordVOS = ConvertUtils.convertList(devopsCiStageDTOList, DevopsCiStageRecordVO.class);
+        // 计算stage状态
+        devopsCiStageRecordVOS.forEach(stageRecord -> {
+            List<DevopsCiJobRecordDTO> ciJobRecordDTOS = jobRecordMap.get(stageRecord.getName());
+            if (!CollectionUtils.isEmpty(ciJobRecordDTOS)) {
+                Map<String, List<DevopsCiJobRecordDTO>> statusMap = ciJobRecordDTOS.stream().collect(Collectors.groupingBy(DevopsCiJobRecordDTO::getStatus));
+                //计算stage状态
+                calculateStageStatus(stageRecord, statusMap);
+            }
 
-            });
-            // stage排序
-            devopsCiStageRecordVOS = devopsCiStageRecordVOS.stream().sorted(Comparator.comparing(DevopsCiStageRecordVO::getSequence)).filter(v -> v.getStatus() != null).collect(Collectors.toList());
-            pipelineRecord.setStageRecordVOList(devopsCiStageRecordVOS);
         });
-        return pipelineRecordInfo;
+        // stage排序
+        return devopsCiStageRecordVOS.stream().sorted(Comparator.comparing(DevopsCiStageRecordVO::getSequence)).filter(v -> v.getStatus() != null).collect(Collectors.toList());
     }
 
     @Transactional(rollbackFor = Exception.class)
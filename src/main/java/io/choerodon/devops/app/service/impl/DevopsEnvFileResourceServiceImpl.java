@@ -1,9 +1,8 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
 
+import com.google.common.collect.Lists;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -17,6 +16,7 @@ import io.choerodon.devops.infra.util.TypeUtil;
 
 @Service
 public class DevopsEnvFileResourceServiceImpl implements DevopsEnvFileResourceService {
+    private static final int PATH_BATCH_SIZE = 500;
 
     @Autowired
     private DevopsEnvFileResourceService devopsEnvFileResourceService;
@@ -82,6 +82,18 @@ public class DevopsEnvFileResourceServiceImpl implements DevopsEnvFileResourceSe
         return devopsEnvFileResourceMapper.select(devopsEnvFileResourceDTO);
     }
 
+    @Override
+    public List<DevopsEnvFileResourceDTO> baseListByEnvIdAndPaths(Long envId, Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 分批查询, 避免首次同步时整个仓库的文件拼成过长的in条件
+        List<DevopsEnvFileResourceDTO> result = new ArrayList<>();
+        Lists.partition(new ArrayList<>(new HashSet<>(paths)), PATH_BATCH_SIZE)
+                .forEach(batch -> result.addAll(devopsEnvFileResourceMapper.listByEnvIdAndFilePaths(envId, batch)));
+        return result;
+    }
+
     @Override
     public void baseDeleteByEnvIdAndResourceId(Long envId, Long resourceId, String resourceType) {
         DevopsEnvFileResourceDTO devopsEnvFileResourceDTO = new DevopsEnvFileResourceDTO();
@@ -1,9 +1,8 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
+import com.google.common.collect.Lists;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +34,7 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
  */
 @Service
 public class DevopsEnvFileServiceImpl implements DevopsEnvFileService {
+    private static final int PATH_BATCH_SIZE = 500;
 
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
@@ -103,6 +103,18 @@ public class DevopsEnvFileServiceImpl implements DevopsEnvFileService {
         return devopsEnvFileMapper.selectOne(devopsEnvFileDTO);
     }
 
+    @Override
+    public List<DevopsEnvFileDTO> baseListByEnvIdAndPaths(Long envId, Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 分批查询, 避免首次同步时整个仓库的文件拼成过长的in条件
+        List<DevopsEnvFileDTO> result = new ArrayList<>();
+        Lists.partition(new ArrayList<>(new HashSet<>(paths)), PATH_BATCH_SIZE)
+                .forEach(batch -> result.addAll(devopsEnvFileMapper.listByEnvIdAndFilePaths(envId, batch)));
+        return result;
+    }
+
     @Override
     public DevopsEnvFileDTO baseQueryByEnvAndPathAndCommit(Long envId, String path, String commit) {
         DevopsEnvFileDTO devopsEnvFileDTO = new DevopsEnvFileDTO();
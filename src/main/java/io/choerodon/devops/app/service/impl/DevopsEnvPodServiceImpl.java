@@ -5,6 +5,7 @@ import io.choerodon.devops.api.vo.ContainerVO;
 import io.choerodon.devops.api.vo.DevopsEnvPodInfoVO;
 import io.choerodon.devops.api.vo.DevopsEnvPodVO;
 import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
+import io.choerodon.devops.api.vo.PodMetricsSampleVO;
 import io.choerodon.devops.app.service.*;
 import io.choerodon.devops.infra.dto.*;
 import io.choerodon.devops.infra.enums.ResourceType;
@@ -292,4 +293,16 @@ public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
 
         agentCommandService.deletePod(devopsEnvPodDTO.getName(), devopsEnvironmentDTO.getCode(), devopsEnvironmentDTO.getClusterId());
     }
+
+    @Override
+    public List<PodMetricsSampleVO> queryPodMetrics(Long projectId, Long envId, Long podId, Date startTime, Date endTime, int maxPoints) {
+        DevopsEnvironmentDTO devopsEnvironmentDTO = permissionHelper.checkEnvBelongToProject(projectId, envId);
+        DevopsEnvPodDTO devopsEnvPodDTO = baseQueryById(podId);
+        // pod的namespace就是环境编码, 不属于这个环境的pod不返回数据
+        if (devopsEnvPodDTO == null || !Objects.equals(devopsEnvPodDTO.getNamespace(), devopsEnvironmentDTO.getCode())) {
+            return Collections.emptyList();
+        }
+        DevopsClusterDTO devopsClusterDTO = devopsClusterService.baseQuery(devopsEnvironmentDTO.getClusterId());
+        return agentPodService.queryPodMetricsSeries(devopsEnvPodDTO.getName(), devopsEnvPodDTO.getNamespace(), devopsClusterDTO.getCode(), startTime, endTime, maxPoints);
+    }
 }
@@ -55,4 +55,22 @@ public class DevopsEnvResourceDetailServiceImpl implements DevopsEnvResourceDeta
        }
        return  devopsEnvResourceDetailDTOS;
     }
+
+    @Override
+    public void batchCreate(List<DevopsEnvResourceDetailDTO> details) {
+        if (CollectionUtils.isEmpty(details)) {
+            return;
+        }
+        if (devopsEnvResourceDetailMapper.batchInsert(details) != details.size()) {
+            throw new CommonException("error.message.insert");
+        }
+    }
+
+    @Override
+    public void batchUpdateMessage(List<DevopsEnvResourceDetailDTO> details) {
+        if (CollectionUtils.isEmpty(details)) {
+            return;
+        }
+        devopsEnvResourceDetailMapper.batchUpdateMessage(details);
+    }
 }
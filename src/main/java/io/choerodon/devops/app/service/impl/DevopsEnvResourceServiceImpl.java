@@ -2,14 +2,17 @@ package io.choerodon.devops.app.service.impl;
 
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import io.kubernetes.client.JSON;
 import io.kubernetes.client.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
@@ -34,6 +37,7 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
     private static final String ERROR_COMMAND_ID_IS_NULL = "error.command.id.is.null";
     private static final String LINE_SEPARATOR = "line.separator";
     private static final String NONE_LABEL = "<none>";
+    private static final int RESOURCE_BATCH_SIZE = 500;
     private static JSON json = new JSON();
 
     @Autowired
@@ -601,6 +605,93 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
         return devopsEnvResourceMapper.listEnvResourceByOptions(envId, type, names);
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void batchSaveOrUpdate(Long envId, List<DevopsEnvResourceDTO> resources, List<DevopsEnvResourceDetailDTO> details, AppServiceInstanceDTO instance) {
+        if (CollectionUtils.isEmpty(resources)) {
+            return;
+        }
+        Map<String, DevopsEnvResourceDTO> existed = devopsEnvResourceMapper.listByEnvIdAndKindAndNames(envId, resources)
+                .stream()
+                .collect(Collectors.toMap(r -> r.getKind() + "/" + r.getName(), Function.identity(), (a, b) -> a));
+
+        List<DevopsEnvResourceDTO> toSave = new ArrayList<>();
+        List<DevopsEnvResourceDetailDTO> detailsToCreate = new ArrayList<>();
+        List<DevopsEnvResourceDetailDTO> detailsToUpdate = new ArrayList<>();
+        for (int i = 0; i < resources.size(); i++) {
+            DevopsEnvResourceDTO resource = resources.get(i);
+            DevopsEnvResourceDetailDTO detail = details.get(i);
+            resource.setEnvId(envId);
+            if (resource.getReversion() == null) {
+                resource.setReversion(0L);
+            }
+            DevopsEnvResourceDTO old = existed.get(resource.getKind() + "/" + resource.getName());
+            if (old == null) {
+                if (instance != null) {
+                    resource.setInstanceId(instance.getId());
+                    resource.setCommandId(instance.getCommandId());
+                }
+                detailsToCreate.add(detail);
+                toSave.add(resource);
+                continue;
+            }
+
+            // 已存在的纪录保留原有的command和详情纪录
+            resource.setId(old.getId());
+            resource.setCommandId(old.getCommandId());
+            resource.setResourceDetailId(old.getResourceDetailId());
+            resource.setInstanceId(instance == null ? old.getInstanceId() : instance.getId());
+            if (resource.getWeight() == null) {
+                resource.setWeight(old.getWeight());
+            }
+            boolean versionChanged = !resource.getReversion().equals(old.getReversion() == null ? 0L : old.getReversion());
+            if (versionChanged) {
+                if (old.getResourceDetailId() == null) {
+                    detailsToCreate.add(detail);
+                } else {
+                    detail.setId(old.getResourceDetailId());
+                    detailsToUpdate.add(detail);
+                }
+            }
+            if (versionChanged || !Objects.equals(resource.getInstanceId(), old.getInstanceId())) {
+                toSave.add(resource);
+            }
+        }
+
+        devopsEnvResourceDetailService.batchCreate(detailsToCreate);
+        devopsEnvResourceDetailService.batchUpdateMessage(detailsToUpdate);
+        // 新插入的详情纪录回写了id, 将其关联到资源上
+        for (int i = 0; i < resources.size(); i++) {
+            DevopsEnvResourceDTO resource = resources.get(i);
+            if (resource.getResourceDetailId() == null) {
+                resource.setResourceDetailId(details.get(i).getId());
+            }
+        }
+        if (!toSave.isEmpty()) {
+            devopsEnvResourceMapper.batchUpsert(toSave);
+        }
+    }
+
+    @Override
+    public void deleteByEnvIdAndKindAndNames(Long envId, String kind, List<String> names) {
+        if (CollectionUtils.isEmpty(names)) {
+            return;
+        }
+        devopsEnvResourceMapper.deleteByEnvIdAndKindAndNames(envId, kind, names);
+    }
+
+    @Override
+    public List<DevopsEnvResourceDTO> listByEnvIdAndKindAndNames(Long envId, List<DevopsEnvResourceDTO> resources) {
+        if (CollectionUtils.isEmpty(resources)) {
+            return Collections.emptyList();
+        }
+        // 分批查询, 避免in条件过长
+        List<DevopsEnvResourceDTO> result = new ArrayList<>();
+        Lists.partition(resources, RESOURCE_BATCH_SIZE)
+                .forEach(batch -> result.addAll(devopsEnvResourceMapper.listByEnvIdAndKindAndNames(envId, batch)));
+        return result;
+    }
+
     @Override
     public List<PodEventVO> listPodEventBycommandId(Long commandId) {
 
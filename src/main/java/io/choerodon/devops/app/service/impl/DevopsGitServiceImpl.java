@@ -5,8 +5,11 @@ import static io.choerodon.devops.infra.constant.KubernetesConstants.NAME;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
@@ -17,8 +20,10 @@ import org.eclipse.jgit.api.Git;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -55,6 +60,7 @@ import io.choerodon.devops.infra.exception.GitlabAccessInvalidException;
 import io.choerodon.devops.infra.feign.operator.AgileServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.handler.ParallelLookupHandler;
 import io.choerodon.devops.infra.mapper.DevopsMergeRequestMapper;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
@@ -125,11 +131,16 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     private MessageSource messageSource;
     @Autowired
     private CheckGitlabAccessLevelService checkGitlabAccessLevelService;
+    @Autowired
+    private ParallelLookupHandler parallelLookupHandler;
 
     @Autowired
     private List<HandlerObjectFileRelationsService> handlerObjectFileRelationsServices;
     @Autowired
     private List<ConvertK8sObjectService> convertK8sObjectServices;
+    @Autowired
+    @Qualifier(GitOpsConstants.GITOPS_PARSE_EXECUTOR)
+    private AsyncTaskExecutor gitOpsParseExecutor;
 
     /**
      * 初始化转换类和处理关系的类
@@ -307,78 +318,108 @@ public class DevopsGitServiceImpl implements DevopsGitService {
         } catch (GitlabAccessInvalidException e) {
             return null;
         }
-        ProjectDTO projectDTO = baseServiceClientOperator.queryIamProjectById(projectId, false, false, false);
-        Tenant organizationDTO = baseServiceClientOperator.queryOrganizationById(projectDTO.getOrganizationId(), false);
-        AppServiceDTO applicationDTO = appServiceService.baseQuery(appServiceId);
+        // 互不依赖的查询并行执行, 分两轮: 先查项目, 应用服务, 用户和分支, 再查组织, gitlab成员, 分支的用户和敏捷问题
+        Long iamUserId = TypeUtil.objToLong(GitUserNameUtil.getUserId());
+        ParallelLookupHandler.Lookup<ProjectDTO> projectLookup = parallelLookupHandler.submit("project",
+                () -> baseServiceClientOperator.queryIamProjectById(projectId, false, false, false));
+        ParallelLookupHandler.Lookup<AppServiceDTO> appServiceLookup = parallelLookupHandler.submit("appService",
+                () -> appServiceService.baseQuery(appServiceId));
+        ParallelLookupHandler.Lookup<UserAttrDTO> userAttrLookup = parallelLookupHandler.submit("userAttr",
+                () -> userAttrService.baseQueryById(iamUserId));
+        ParallelLookupHandler.Lookup<Boolean> ownerLookup = parallelLookupHandler.submit("gitlabOwner",
+                () -> permissionHelper.isGitlabProjectOwnerOrGitlabAdmin(projectId));
+        ParallelLookupHandler.Lookup<Page<DevopsBranchDTO>> branchLookup = parallelLookupHandler.submit("branch",
+                () -> devopsBranchService.basePageBranch(appServiceId, pageable, params));
+
+        ProjectDTO projectDTO = projectLookup.get();
+        ParallelLookupHandler.Lookup<Tenant> organizationLookup = parallelLookupHandler.submit("organization",
+                () -> baseServiceClientOperator.queryOrganizationById(projectDTO.getOrganizationId(), false));
+        AppServiceDTO applicationDTO = appServiceLookup.get();
         if (applicationDTO == null) {
             return null;
         }
         // 查询用户是否在该gitlab project下
-        UserAttrDTO userAttrDTO = userAttrService.baseQueryById(TypeUtil.objToLong(GitUserNameUtil.getUserId()));
+        UserAttrDTO userAttrDTO = userAttrLookup.get();
         if (userAttrDTO == null) {
             throw new CommonException(ERROR_GITLAB_USER_SYNC_FAILED);
         }
-        if (!permissionHelper.isGitlabProjectOwnerOrGitlabAdmin(projectId)) {
-            MemberDTO memberDTO = gitlabServiceClientOperator.getProjectMember(applicationDTO.getGitlabProjectId(), TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
-            if (memberDTO == null) {
-                throw new CommonException("error.user.not.in.gitlab.project");
-            }
+        ParallelLookupHandler.Lookup<MemberDTO> memberLookup = null;
+        if (!ownerLookup.get()) {
+            memberLookup = parallelLookupHandler.submit("gitlabMember",
+                    () -> gitlabServiceClientOperator.getProjectMember(applicationDTO.getGitlabProjectId(), TypeUtil.objToInteger(userAttrDTO.getGitlabUserId())));
         }
 
+        Page<DevopsBranchDTO> devopsBranchDTOPageInfo = branchLookup.get();
+        List<DevopsBranchDTO> branches = devopsBranchDTOPageInfo.getContent();
+        ParallelLookupHandler.Lookup<Map<Long, IamUserDTO>> createrLookup = null;
+        ParallelLookupHandler.Lookup<Map<Long, IamUserDTO>> lastCommitUserLookup = null;
+        ParallelLookupHandler.Lookup<Map<Long, IssueDTO>> issueLookup = null;
+        if (!CollectionUtils.isEmpty(branches)) {
+            Set<Long> branchCreaterGitlabUserIds = branches.stream().map(DevopsBranchDTO::getUserId).collect(Collectors.toSet());
+            Set<Long> lastCommitGitlabUserIds = branches.stream().map(DevopsBranchDTO::getLastCommitUser).collect(Collectors.toSet());
+            List<Long> issuedIds = branches.stream().map(DevopsBranchDTO::getIssueId).collect(Collectors.toList());
+            createrLookup = parallelLookupHandler.submit("branchCreater", () -> listIamUsersByGitlabUserIds(branchCreaterGitlabUserIds));
+            lastCommitUserLookup = parallelLookupHandler.submit("lastCommitUser", () -> listIamUsersByGitlabUserIds(lastCommitGitlabUserIds));
+            // 读取敏捷问题列表可能会失败，但是不希望影响查询分支逻辑，所以失败或超时时不设置问题
+            issueLookup = parallelLookupHandler.submit("agileIssue",
+                    () -> agileServiceClientOperator.listIssueByIds(projectId, issuedIds).stream().collect(Collectors.toMap(IssueDTO::getIssueId, v -> v)),
+                    null);
+        }
+
+        if (memberLookup != null && memberLookup.get() == null) {
+            throw new CommonException("error.user.not.in.gitlab.project");
+        }
+        Tenant organizationDTO = organizationLookup.get();
         String urlSlash = gitlabUrl.endsWith("/") ? "" : "/";
         String path = String.format("%s%s%s-%s/%s",
                 gitlabUrl, urlSlash, organizationDTO.getTenantNum(), projectDTO.getCode(), applicationDTO.getCode());
-        Page<DevopsBranchDTO> devopsBranchDTOPageInfo =
-                devopsBranchService.basePageBranch(appServiceId, pageable, params);
         Page<BranchVO> devopsBranchVOPageInfo = ConvertUtils.convertPage(devopsBranchDTOPageInfo, BranchVO.class);
 
         if (CollectionUtils.isEmpty(devopsBranchVOPageInfo.getContent())) {
             return devopsBranchVOPageInfo;
         }
-        Set<Long> branchCreaterGitlabUserIds = devopsBranchDTOPageInfo.getContent().stream().map(DevopsBranchDTO::getUserId).collect(Collectors.toSet());
-        Set<Long> lastCommitGitlabUserIds = devopsBranchDTOPageInfo.getContent().stream().map(DevopsBranchDTO::getLastCommitUser).collect(Collectors.toSet());
-
-        List<UserAttrVO> creater = userAttrService.listUsersByGitlabUserIds(branchCreaterGitlabUserIds);
-        List<Long> createIamUserIds = creater.stream().map(UserAttrVO::getIamUserId).collect(Collectors.toList());
-        Map<Long, Long> createrIamUserIdAndGitlabUserIdMap = creater.stream().filter(userAttrVO -> userAttrVO.getIamUserId() != null && userAttrVO.getGitlabUserId() != null).collect(Collectors.toMap(UserAttrVO::getGitlabUserId, UserAttrVO::getIamUserId));
-
-
-        List<UserAttrVO> lastCommitUser = userAttrService.listUsersByGitlabUserIds(lastCommitGitlabUserIds);
-        List<Long> lastCommitIamUserIds = lastCommitUser.stream().map(UserAttrVO::getIamUserId).collect(Collectors.toList());
-        Map<Long, Long> lastCommitIamUserIdAndGitlabUserIdMap = lastCommitUser.stream().filter(userAttrVO -> userAttrVO.getIamUserId() != null && userAttrVO.getGitlabUserId() != null).collect(Collectors.toMap(UserAttrVO::getGitlabUserId, UserAttrVO::getIamUserId));
-
-        List<Long> issuedIds = devopsBranchDTOPageInfo.getContent().stream().map(DevopsBranchDTO::getIssueId).collect(Collectors.toList());
-
-        Map<Long, IamUserDTO> iamUserDTOMap = baseServiceClientOperator.listUsersByIds(createIamUserIds).stream().collect(Collectors.toMap(IamUserDTO::getId, v -> v));
-        Map<Long, IamUserDTO> lastCommitUserDTOMap = baseServiceClientOperator.listUsersByIds(lastCommitIamUserIds).stream().collect(Collectors.toMap(IamUserDTO::getId, v -> v));
-        Map<Long, IssueDTO> issues = null;
-        // 读取敏捷问题列表可能会失败，但是不希望影响查询分支逻辑，所以捕获异常
-        try {
-            issues = agileServiceClientOperator.listIssueByIds(projectId, issuedIds).stream().collect(Collectors.toMap(IssueDTO::getIssueId, v -> v));
-        } catch (Exception e) {
-            LOGGER.error("query agile issue failed.", e);
-        }
 
-        Map<Long, IssueDTO> finalIssues = issues;
-        devopsBranchVOPageInfo.setContent(devopsBranchDTOPageInfo.getContent().stream().map(t -> {
+        Map<Long, IamUserDTO> creaters = createrLookup.get();
+        Map<Long, IamUserDTO> lastCommitUsers = lastCommitUserLookup.get();
+        Map<Long, IssueDTO> issues = issueLookup.get();
+        devopsBranchVOPageInfo.setContent(branches.stream().map(t -> {
             IssueDTO issueDTO = null;
-            if (!CollectionUtils.isEmpty(finalIssues)) {
+            if (!CollectionUtils.isEmpty(issues)) {
                 if (t.getIssueId() != null) {
-                    issueDTO = finalIssues.get(t.getIssueId());
+                    issueDTO = issues.get(t.getIssueId());
                 }
             }
 
-            Long createUserId = createrIamUserIdAndGitlabUserIdMap.get(t.getUserId());
-            IamUserDTO userDTO = createUserId == null ? null : iamUserDTOMap.get(createUserId);
-
-            Long lastCommitUserId = lastCommitIamUserIdAndGitlabUserIdMap.get(t.getLastCommitUser());
-            IamUserDTO commitUserDTO = lastCommitUserId == null ? null : lastCommitUserDTOMap.get(lastCommitUserId);
+            IamUserDTO userDTO = creaters.get(t.getUserId());
+            IamUserDTO commitUserDTO = lastCommitUsers.get(t.getLastCommitUser());
             String commitUrl = String.format("%s/commit/%s?view=parallel", path, t.getLastCommit());
             return getBranchVO(t, commitUrl, commitUserDTO, userDTO, issueDTO);
         }).collect(Collectors.toList()));
         return devopsBranchVOPageInfo;
     }
 
+    /**
+     * 根据gitlab用户id查询iam用户
+     *
+     * @param gitlabUserIds gitlab用户id
+     * @return key是gitlab用户id, value是iam用户
+     */
+    private Map<Long, IamUserDTO> listIamUsersByGitlabUserIds(Set<Long> gitlabUserIds) {
+        List<UserAttrVO> userAttrVOS = userAttrService.listUsersByGitlabUserIds(gitlabUserIds);
+        List<Long> iamUserIds = userAttrVOS.stream().map(UserAttrVO::getIamUserId).collect(Collectors.toList());
+        Map<Long, IamUserDTO> iamUsers = baseServiceClientOperator.listUsersByIds(iamUserIds).stream().collect(Collectors.toMap(IamUserDTO::getId, v -> v));
+        Map<Long, IamUserDTO> result = new HashMap<>();
+        userAttrVOS.forEach(userAttrVO -> {
+            if (userAttrVO.getIamUserId() != null && userAttrVO.getGitlabUserId() != null) {
+                IamUserDTO iamUserDTO = iamUsers.get(userAttrVO.getIamUserId());
+                if (iamUserDTO != null) {
+                    result.put(userAttrVO.getGitlabUserId(), iamUserDTO);
+                }
+            }
+        });
+        return result;
+    }
+
     @Override
     public DevopsBranchVO queryBranch(Long projectId, Long applicationId, String branchName) {
         DevopsBranchDTO branchDTO = devopsBranchService.baseQueryByAppAndBranchName(applicationId, branchName);
@@ -443,16 +484,23 @@ public class DevopsGitServiceImpl implements DevopsGitService {
             throw new CommonException("error.gitlabProjectId.not.exists");
         }
 
+        //查询某个应用代码仓库各种状态合并请求的数量, 和查询合并请求的详情并行
+        ParallelLookupHandler.Lookup<DevopsMergeRequestDTO> countLookup = parallelLookupHandler.submit("mergeRequestCount",
+                () -> devopsMergeRequestService.baseCountMergeRequest(appServiceDTO.getGitlabProjectId()));
+
         Page<DevopsMergeRequestDTO> devopsMergeRequestDTOPageInfo = devopsMergeRequestService
                 .basePageByOptions(appServiceDTO.getGitlabProjectId(), state, pageable);
 
         List<MergeRequestVO> pageContent = new ArrayList<>();
         List<DevopsMergeRequestDTO> devopsMergeRequestDTOS = devopsMergeRequestDTOPageInfo.getContent();
 
-        //设置每个合并请求下关联的commit
+        //设置每个合并请求下关联的commit, 每个合并请求的用户和commit并行查询
         if (devopsMergeRequestDTOS != null && !devopsMergeRequestDTOS.isEmpty()) {
-            devopsMergeRequestDTOS.forEach(content -> {
-                MergeRequestVO mergeRequestVO = devopsMergeRequestToMergeRequest(content);
+            List<ParallelLookupHandler.Lookup<MergeRequestVO>> lookups = devopsMergeRequestDTOS.stream()
+                    .map(content -> parallelLookupHandler.submit("mergeRequest", () -> devopsMergeRequestToMergeRequest(content)))
+                    .collect(Collectors.toList());
+            lookups.forEach(lookup -> {
+                MergeRequestVO mergeRequestVO = lookup.get();
                 if (mergeRequestVO != null) {
                     pageContent.add(mergeRequestVO);
                 }
@@ -461,8 +509,7 @@ public class DevopsGitServiceImpl implements DevopsGitService {
         Page<MergeRequestVO> mergeRequestVOPageInfo = ConvertUtils.convertPage(devopsMergeRequestDTOPageInfo, MergeRequestVO.class);
         mergeRequestVOPageInfo.setContent(pageContent);
 
-        //查询某个应用代码仓库各种状态合并请求的数量
-        DevopsMergeRequestDTO devopsMergeRequestDTO = devopsMergeRequestService.baseCountMergeRequest(appServiceDTO.getGitlabProjectId());
+        DevopsMergeRequestDTO devopsMergeRequestDTO = countLookup.get();
 
         MergeRequestTotalVO mergeRequestTotalVO = new MergeRequestTotalVO();
         mergeRequestTotalVO.setMergeRequestVOPageInfo(mergeRequestVOPageInfo);
@@ -625,13 +672,7 @@ public class DevopsGitServiceImpl implements DevopsGitService {
 
             if (tagNotExist) {
                 operationFiles.addAll(FileUtil.getFilesPath(path));
-                operationFiles.forEach(file -> {
-                    List<DevopsEnvFileResourceDTO> devopsEnvFileResourceDTOS = devopsEnvFileResourceService
-                            .baseQueryByEnvIdAndPath(devopsEnvironmentDTO.getId(), file);
-                    if (!devopsEnvFileResourceDTOS.isEmpty()) {
-                        beforeSync.addAll(devopsEnvFileResourceDTOS);
-                    }
-                });
+                beforeSync.addAll(devopsEnvFileResourceService.baseListByEnvIdAndPaths(devopsEnvironmentDTO.getId(), operationFiles));
             } else {
                 handleDiffs(gitLabProjectId, operationFiles, deletedFiles, beforeSync, beforeSyncDelete,
                         devopsEnvironmentDTO, devopsEnvCommitDTO);
@@ -733,17 +774,23 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     private void handleFiles(List<String> operationFiles, List<String> deletedFiles,
                              DevopsEnvironmentDTO devopsEnvironmentDTO, DevopsEnvCommitDTO devopsEnvCommitDTO, String path) {
         //新增解释文件记录
+        // 一次查出所有文件的纪录, 一次遍历提交历史得到所有文件的最新提交
+        Map<String, DevopsEnvFileDTO> existingFiles = devopsEnvFileService
+                .baseListByEnvIdAndPaths(devopsEnvironmentDTO.getId(), operationFiles)
+                .stream()
+                .collect(Collectors.toMap(DevopsEnvFileDTO::getFilePath, Function.identity(), (a, b) -> a));
+        Map<String, String> latestCommits = GitUtil.getFilesLatestCommits(path + GIT_SUFFIX, operationFiles);
         for (String filePath : operationFiles) {
-            DevopsEnvFileDTO devopsEnvFileDTO = devopsEnvFileService
-                    .baseQueryByEnvAndPath(devopsEnvironmentDTO.getId(), filePath);
+            DevopsEnvFileDTO devopsEnvFileDTO = existingFiles.get(filePath);
+            String latestCommit = latestCommits.get(filePath);
             if (devopsEnvFileDTO == null) {
                 devopsEnvFileDTO = new DevopsEnvFileDTO();
-                devopsEnvFileDTO.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                devopsEnvFileDTO.setDevopsCommit(latestCommit);
                 devopsEnvFileDTO.setFilePath(filePath);
                 devopsEnvFileDTO.setEnvId(devopsEnvCommitDTO.getEnvId());
                 devopsEnvFileService.baseCreate(devopsEnvFileDTO);
-            } else {
-                devopsEnvFileDTO.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+            } else if (!Objects.equals(latestCommit, devopsEnvFileDTO.getDevopsCommit())) {
+                devopsEnvFileDTO.setDevopsCommit(latestCommit);
                 devopsEnvFileService.baseUpdate(devopsEnvFileDTO);
             }
         }
@@ -778,6 +825,7 @@ public class DevopsGitServiceImpl implements DevopsGitService {
         //获取将此次最新提交与tag作比价得到diff
         CompareResultDTO compareResultDTO = gitlabServiceClientOperator
                 .queryCompareResult(gitLabProjectId, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
+        List<String> oldPaths = new ArrayList<>();
         compareResultDTO.getDiffs().forEach(t -> {
             if (t.getNewPath().contains("yaml") || t.getNewPath().contains("yml")) {
                 if (t.getDeletedFile()) {
@@ -791,25 +839,19 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                 }
             }
 
-            List<DevopsEnvFileResourceDTO> devopsEnvFileResourceDTOS = devopsEnvFileResourceService
-                    .baseQueryByEnvIdAndPath(devopsEnvironmentDTO.getId(), t.getOldPath());
-            if (!devopsEnvFileResourceDTOS.isEmpty()) {
-                beforeSync.addAll(devopsEnvFileResourceDTOS);
-            }
+            oldPaths.add(t.getOldPath());
         });
 
-        deletedFiles.forEach(file -> {
-            List<DevopsEnvFileResourceDTO> devopsEnvFileResourceDTOS = devopsEnvFileResourceService
-                    .baseQueryByEnvIdAndPath(devopsEnvironmentDTO.getId(), file);
-            if (!devopsEnvFileResourceDTOS.isEmpty()) {
-                beforeSyncDelete.addAll(devopsEnvFileResourceDTOS);
-            }
-        });
+        beforeSync.addAll(devopsEnvFileResourceService.baseListByEnvIdAndPaths(devopsEnvironmentDTO.getId(), oldPaths));
+        beforeSyncDelete.addAll(devopsEnvFileResourceService.baseListByEnvIdAndPaths(devopsEnvironmentDTO.getId(), deletedFiles));
     }
 
 
     /**
      * 将涉及的文件内的对象进行反序列化处理，获取后续处理所需要的元数据
+     * 各个文件的yaml解析和参数校验互不依赖, 在线程池中并行处理;
+     * 之后按照文件的顺序依次校验资源是否已存在(包括和之前文件中的资源重名),
+     * 所以报出的错误和串行处理时一样, 总是按顺序第一个出错的文件
      *
      * @param files             对应之前diff操作的operationFiles
      * @param path              环境库的本地目录
@@ -826,23 +868,69 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                                                         Long envId,
                                                         List<DevopsEnvFileResourceDTO> beforeSyncDelete) {
         Map<String, String> objectPath = new HashMap<>();
-        Yaml yaml = new Yaml();
         final Map<String, ConvertK8sObjectService> converters = EnvironmentType.USER == environmentType ? userEnvSupportedResourceConverters : systemEnvSupportedResourceConverters;
 
-        files.forEach(filePath -> {
-            File file = new File(String.format("%s/%s", path, filePath));
-            Iterable<Object> allParts;
-            try {
-                allParts = yaml.loadAll(new FileInputStream(file));
-            } catch (FileNotFoundException e) {
-                throw new CommonException(e.getMessage(), e);
+        List<Future<ParsedFile>> futures = new ArrayList<>(files.size());
+        try {
+            files.forEach(filePath -> futures.add(gitOpsParseExecutor.submit(() -> parseFile(path, filePath, converters, envId))));
+
+            for (Future<ParsedFile> future : futures) {
+                ParsedFile parsedFile = waitForParsedFile(future);
+                objectPath.putAll(parsedFile.objectPath);
+                for (ParsedResource parsedResource : parsedFile.resources) {
+                    ConvertK8sObjectService currentHandler = parsedResource.handler;
+                    Object resource = parsedResource.resource;
+                    if (currentHandler == null) {
+                        // PVC的处理方式需要查询数据库才能确定, 放在这里处理
+                        currentHandler = isPvcTreatedAsCustomizeResourceBefore(envId, parsedResource.pvcName)
+                                // 0.20版本之前被作为自定义资源解析的PVC仍然作为自定义资源看待
+                                ? converters.get(ResourceType.MISSTYPE.getType())
+                                : converters.get(ResourceType.PERSISTENT_VOLUME_CLAIM.getType());
+                        resource = currentHandler.serializableObject(parsedResource.jsonObject.toJSONString(), parsedFile.filePath, objectPath, envId);
+                        currentHandler.checkParameters(resource, objectPath);
+                    }
+                    resourceContainer.computeIfAbsent(resource.getClass(), t -> new ArrayList<>());
+
+                    // 校验资源是否已经存在
+                    currentHandler.checkIfExist(resourceContainer.get(resource.getClass()), envId, beforeSyncDelete, objectPath, resource);
+                }
+                if (parsedFile.error != null) {
+                    throw parsedFile.error;
+                }
             }
-            while (allParts.iterator().hasNext()) {
+        } finally {
+            // 出错时不再需要其它文件的解析结果
+            futures.forEach(future -> future.cancel(true));
+        }
+        return objectPath;
+    }
+
+    /**
+     * 解析一个文件中的所有资源并校验参数, 在线程池中执行, 不访问数据库, 也不修改共享的数据
+     * 遇到第一个错误时停止解析, 错误放在结果中, 由调用方按文件顺序抛出
+     *
+     * @param path       环境库的本地目录
+     * @param filePath   文件的相对路径
+     * @param converters 资源类型和处理类的映射
+     * @param envId      环境id
+     * @return 解析结果
+     */
+    private ParsedFile parseFile(String path,
+                                 String filePath,
+                                 Map<String, ConvertK8sObjectService> converters,
+                                 Long envId) {
+        ParsedFile parsedFile = new ParsedFile(filePath);
+        // Yaml实例不是线程安全的, 每个文件使用单独的实例
+        Yaml yaml = new Yaml();
+        File file = new File(String.format("%s/%s", path, filePath));
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            Iterator<Object> allParts = yaml.loadAll(inputStream).iterator();
+            while (allParts.hasNext()) {
                 Object data;
                 try {
                     // 真正对数据进行解析是在next方法中调用
                     // next方法会调用 org.yaml.snakeyaml.constructor.BaseConstructor.getData()
-                    data = allParts.iterator().next();
+                    data = allParts.next();
                 } catch (Exception e) {
                     // 捕获Yaml解析出错，如： "---{}\n---"
                     // 返回友好的方式
@@ -859,46 +947,53 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                     throw new GitOpsExplainException(GitOpsObjectError.FILE_NOT_YAML.getError(), filePath);
                 }
 
-                JSONObject JSONObject = new JSONObject((Map<String, Object>) data);
-                if (JSONObject.get("kind") == null) {
+                JSONObject jsonObject = new JSONObject((Map<String, Object>) data);
+                if (jsonObject.get("kind") == null) {
                     throw new GitOpsExplainException(GitOpsObjectError.CUSTOM_RESOURCE_KIND_NOT_FOUND.getError(), filePath);
                 }
 
-
                 // 之前都是对数据进行校验的阶段
-                String type = JSONObject.get("kind").toString();
+                String type = jsonObject.get("kind").toString();
+
+                if (ResourceType.PERSISTENT_VOLUME_CLAIM.getType().equals(type)) {
+                    parsedFile.resources.add(new ParsedResource(jsonObject, getPersistentVolumeClaimName(jsonObject, filePath)));
+                    continue;
+                }
 
                 // 处理当前资源的处理逻辑
-                ConvertK8sObjectService currentHandler;
-                if (ResourceType.PERSISTENT_VOLUME_CLAIM.getType().equals(type)
-                        && isPvcTreatedAsCustomizeResourceBefore(envId, getPersistentVolumeClaimName(JSONObject, filePath))) {
-                    // 0.20版本之前被作为自定义资源解析的PVC仍然作为自定义资源看待
+                ConvertK8sObjectService currentHandler = converters.get(type);
+                if (currentHandler == null) {
+                    // 准备默认处理方式，用户环境默认处理方式是作为自定义资源处理，
+                    // 系统环境的默认处理方式是抛出异常以表示不支持
                     currentHandler = converters.get(ResourceType.MISSTYPE.getType());
-                } else {
-                    currentHandler = converters.get(type);
-                    if (currentHandler == null) {
-                        // 跳过不解析的资源
-//                        if (GitOpsConstants.IGNORE_RESOURCES.contains(type)) {
-//                            break;
-//                        }
-
-                        // 准备默认处理方式，用户环境默认处理方式是作为自定义资源处理，
-                        // 系统环境的默认处理方式是抛出异常以表示不支持
-                        currentHandler = converters.get(ResourceType.MISSTYPE.getType());
-                    }
                 }
 
-                Object resource = currentHandler.serializableObject(JSONObject.toJSONString(), filePath, objectPath, envId);
-                resourceContainer.computeIfAbsent(resource.getClass(), t -> new ArrayList<>());
+                Object resource = currentHandler.serializableObject(jsonObject.toJSONString(), filePath, parsedFile.objectPath, envId);
 
                 // 校验参数
-                currentHandler.checkParameters(resource, objectPath);
+                currentHandler.checkParameters(resource, parsedFile.objectPath);
+                parsedFile.resources.add(new ParsedResource(currentHandler, resource));
+            }
+        } catch (IOException e) {
+            parsedFile.error = new CommonException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            parsedFile.error = e;
+        }
+        return parsedFile;
+    }
 
-                // 校验资源是否已经存在
-                currentHandler.checkIfExist(resourceContainer.get(resource.getClass()), envId, beforeSyncDelete, objectPath, resource);
+    private static ParsedFile waitForParsedFile(Future<ParsedFile> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-        });
-        return objectPath;
+            throw new CommonException(e.getMessage(), e);
+        }
     }
 
     private static String getPersistentVolumeClaimName(JSONObject jsonObject, String filePath) {
@@ -1117,4 +1212,49 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     }
 
 
+
+    /**
+     * 一个文件的解析结果
+     */
+    private static class ParsedFile {
+        private final String filePath;
+        private final List<ParsedResource> resources = new ArrayList<>();
+        /**
+         * 对象hashcode和文件路径的映射, 只包含这个文件的对象
+         */
+        private final Map<String, String> objectPath = new HashMap<>();
+        /**
+         * 解析或校验这个文件时遇到的第一个错误
+         */
+        private RuntimeException error;
+
+        private ParsedFile(String filePath) {
+            this.filePath = filePath;
+        }
+    }
+
+    /**
+     * 文件中解析出的一个资源
+     * PVC的处理类需要查询数据库才能确定, 所以只记录原始数据, handler为null
+     */
+    private static class ParsedResource {
+        private final ConvertK8sObjectService handler;
+        private final Object resource;
+        private final JSONObject jsonObject;
+        private final String pvcName;
+
+        private ParsedResource(ConvertK8sObjectService handler, Object resource) {
+            this.handler = handler;
+            this.resource = resource;
+            this.jsonObject = null;
+            this.pvcName = null;
+        }
+
+        private ParsedResource(JSONObject jsonObject, String pvcName) {
+            this.handler = null;
+            this.resource = null;
+            this.jsonObject = jsonObject;
+            this.pvcName = pvcName;
+        }
+    }
 }
@@ -200,28 +200,41 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
 
     @Override
     public void updateStages(JobWebHookVO jobWebHookVO) {
-        //按照job的状态实时更新pipeline阶段的状态
-        DevopsGitlabCommitDTO devopsGitlabCommitDTO = devopsGitlabCommitService.baseQueryByShaAndRef(jobWebHookVO.getSha(), jobWebHookVO.getRef());
+        updateStages(Collections.singletonList(jobWebHookVO));
+    }
 
-        if (jobWebHookVO.getCommit() == null || jobWebHookVO.getCommit().getId() == null) {
-            LOGGER.info("The commit attribute or the commit.id attribute is null of jobWebHook {}", jobWebHookVO.getBuildName());
-            return;
+    @Override
+    public void updateStages(List<JobWebHookVO> jobWebHookVOS) {
+        //按照job的状态实时更新pipeline阶段的状态, 同一个pipeline的job只查询和更新一次
+        Map<Long, List<JobWebHookVO>> pipelineJobs = new LinkedHashMap<>();
+        for (JobWebHookVO jobWebHookVO : jobWebHookVOS) {
+            if (jobWebHookVO.getCommit() == null || jobWebHookVO.getCommit().getId() == null) {
+                LOGGER.info("The commit attribute or the commit.id attribute is null of jobWebHook {}", jobWebHookVO.getBuildName());
+                continue;
+            }
+            if (!"created".equals(jobWebHookVO.getBuildStatus())) {
+                pipelineJobs.computeIfAbsent(jobWebHookVO.getCommit().getId(), k -> new ArrayList<>()).add(jobWebHookVO);
+            }
         }
 
-        if (devopsGitlabCommitDTO != null && !"created".equals(jobWebHookVO.getBuildStatus())) {
-            DevopsGitlabPipelineDTO devopsGitlabPipelineDTO = baseQueryByGitlabPipelineId(jobWebHookVO.getCommit().getId());
+        pipelineJobs.forEach((gitlabPipelineId, jobs) -> {
+            // 同一个pipeline的job的commit相同
+            if (devopsGitlabCommitService.baseQueryByShaAndRef(jobs.get(0).getSha(), jobs.get(0).getRef()) == null) {
+                return;
+            }
+            DevopsGitlabPipelineDTO devopsGitlabPipelineDTO = baseQueryByGitlabPipelineId(gitlabPipelineId);
             if (devopsGitlabPipelineDTO != null) {
-                LOGGER.debug("Found gitlab pipeline by id {}", jobWebHookVO.getCommit().getId());
+                LOGGER.debug("Found gitlab pipeline by id {}", gitlabPipelineId);
                 List<Stage> stages = JSONArray.parseArray(devopsGitlabPipelineDTO.getStage(), Stage.class);
-                stages.stream().filter(stage -> jobWebHookVO.getBuildName().equals(stage.getName())).forEach(stage ->
+                jobs.forEach(jobWebHookVO -> stages.stream().filter(stage -> jobWebHookVO.getBuildName().equals(stage.getName())).forEach(stage ->
                         stage.setStatus(jobWebHookVO.getBuildStatus())
-                );
+                ));
                 devopsGitlabPipelineDTO.setStage(JSONArray.toJSONString(stages));
                 baseUpdate(devopsGitlabPipelineDTO);
             } else {
-                LOGGER.debug("Not Found gitlab pipeline by id {}", jobWebHookVO.getCommit().getId());
+                LOGGER.debug("Not Found gitlab pipeline by id {}", gitlabPipelineId);
             }
-        }
+        });
     }
 
     @Override
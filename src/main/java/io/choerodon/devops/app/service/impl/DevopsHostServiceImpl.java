@@ -30,6 +30,9 @@ import io.choerodon.devops.infra.dto.iam.IamUserDTO;
 import io.choerodon.devops.infra.enums.*;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.TestServiceClientOperator;
+import io.choerodon.devops.infra.handler.HostProbeHandler;
+import io.choerodon.devops.infra.handler.SshConnectionPool;
+import io.choerodon.devops.infra.handler.SshConnectionPool.SshTarget;
 import io.choerodon.devops.infra.mapper.DevopsCdJobMapper;
 import io.choerodon.devops.infra.mapper.DevopsHostMapper;
 import io.choerodon.devops.infra.util.*;
@@ -47,6 +50,10 @@ public class DevopsHostServiceImpl implements DevopsHostService {
      * 主机状态处于处理中的超时时长
      */
     private static final long OPERATING_TIMEOUT = 60 * 1000;
+    /**
+     * 测试ssh连接的默认超时时间, 10秒
+     */
+    private static final int SSH_TIMEOUT_MILLISECONDS = 10000;
 
     @Autowired
     private DevopsHostMapper devopsHostMapper;
@@ -59,6 +66,10 @@ public class DevopsHostServiceImpl implements DevopsHostService {
     private DevopsCdJobMapper devopsCdJobMapper;
     @Autowired
     private TestServiceClientOperator testServiceClientOperator;
+    @Autowired
+    private HostProbeHandler hostProbeHandler;
+    @Autowired
+    private SshConnectionPool sshConnectionPool;
 
 
     @Transactional(rollbackFor = Exception.class)
@@ -123,8 +134,60 @@ public class DevopsHostServiceImpl implements DevopsHostService {
     @Override
     public void asyncBatchCorrectStatus(Long projectId, Set<Long> hostIds) {
         LOGGER.debug("asyncBatchCorrectStatus: projectId: {}, hostIds: {}", projectId, hostIds);
-        // 这么调用, 是解决事务代理不生效问题
-        hostIds.forEach(hostId -> ApplicationContextHelper.getContext().getBean(DevopsHostService.class).correctStatus(projectId, hostId));
+        if (CollectionUtils.isEmpty(hostIds)) {
+            return;
+        }
+
+        List<DevopsHostDTO> hosts = devopsHostMapper.listByProjectIdAndIds(projectId, hostIds);
+        if (CollectionUtils.isEmpty(hosts)) {
+            return;
+        }
+
+        boolean noContextPre = DetailsHelper.getUserDetails() == null;
+        try {
+            // 设置上下文, 校验jmeter状态时调用测试服务需要
+            if (noContextPre) {
+                CustomContextUtil.setDefault();
+            }
+
+            // 并行探测所有主机, 不可达的主机最多占用一个探测的超时时间
+            Map<Long, DevopsHostConnectionTestResultVO> results = hostProbeHandler.probe(projectId, hosts,
+                    (host, timeoutMillis) -> testConnection(ConvertUtils.convertObject(host, DevopsHostConnectionTestVO.class), timeoutMillis));
+
+            // 分类测试主机和部署的主机
+            List<DevopsHostDTO> deployHosts = new ArrayList<>();
+            List<DevopsHostDTO> testHosts = new ArrayList<>();
+            hosts.forEach(host -> {
+                DevopsHostConnectionTestResultVO result = results.get(host.getId());
+                host.setHostStatus(result.getHostStatus());
+                host.setHostCheckError(result.getHostCheckError());
+                host.setJmeterStatus(result.getJmeterStatus());
+                host.setJmeterCheckError(result.getJmeterCheckError());
+                LOGGER.debug("connection result for host with id {} is {}", host.getId(), result);
+                if (DevopsHostType.DEPLOY.getValue().equalsIgnoreCase(host.getType())) {
+                    deployHosts.add(host);
+                } else {
+                    testHosts.add(host);
+                }
+            });
+
+            // 所有结果一次写入
+            Date current = new Date();
+            if (!CollectionUtils.isEmpty(deployHosts)) {
+                devopsHostMapper.batchUpdateStatus(projectId, deployHosts, false, current);
+            }
+            if (!CollectionUtils.isEmpty(testHosts)) {
+                devopsHostMapper.batchUpdateStatus(projectId, testHosts, true, current);
+            }
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to correct status for hosts with ids {}", hostIds);
+            LOGGER.warn("The ex is ", ex);
+        } finally {
+            // 如果之前没有上下文, 清除上下文
+            if (noContextPre) {
+                CustomContextUtil.clearContext();
+            }
+        }
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -316,8 +379,19 @@ public class DevopsHostServiceImpl implements DevopsHostService {
 
     @Override
     public DevopsHostConnectionTestResultVO testConnection(Long projectId, DevopsHostConnectionTestVO devopsHostConnectionTestVO) {
+        return testConnection(devopsHostConnectionTestVO, SSH_TIMEOUT_MILLISECONDS);
+    }
+
+    /**
+     * 测试主机的ssh连接, 测试主机还要测试jmeter的状态
+     *
+     * @param devopsHostConnectionTestVO 主机连接信息
+     * @param sshTimeoutMillis           等待和建立ssh连接的超时时间, 单位: 毫秒
+     * @return 测试结果
+     */
+    private DevopsHostConnectionTestResultVO testConnection(DevopsHostConnectionTestVO devopsHostConnectionTestVO, int sshTimeoutMillis) {
         DevopsHostConnectionTestResultVO result = new DevopsHostConnectionTestResultVO();
-        boolean sshConnected = SshUtil.sshConnect(devopsHostConnectionTestVO.getHostIp(), devopsHostConnectionTestVO.getSshPort(), devopsHostConnectionTestVO.getAuthType(), devopsHostConnectionTestVO.getUsername(), devopsHostConnectionTestVO.getPassword());
+        boolean sshConnected = sshConnectionPool.testConnection(new SshTarget(devopsHostConnectionTestVO.getHostIp(), devopsHostConnectionTestVO.getSshPort(), devopsHostConnectionTestVO.getAuthType(), devopsHostConnectionTestVO.getUsername(), devopsHostConnectionTestVO.getPassword()), sshTimeoutMillis);
         result.setHostStatus(sshConnected ? DevopsHostStatus.SUCCESS.getValue() : DevopsHostStatus.FAILED.getValue());
         if (!sshConnected) {
             result.setHostCheckError("failed to check ssh, please ensure network and authentication is valid");
@@ -345,7 +419,7 @@ public class DevopsHostServiceImpl implements DevopsHostService {
         CommonExAssertUtil.assertTrue(projectId.equals(devopsHostDTO.getProjectId()), MiscConstants.ERROR_OPERATING_RESOURCE_IN_OTHER_PROJECT);
         CommonExAssertUtil.assertTrue(DevopsHostType.DEPLOY.getValue().equals(devopsHostDTO.getType()), "error.host.type.invalid");
 
-        return SshUtil.sshConnect(devopsHostDTO.getHostIp(), devopsHostDTO.getSshPort(), devopsHostDTO.getAuthType(), devopsHostDTO.getUsername(), devopsHostDTO.getPassword());
+        return sshConnectionPool.testConnection(new SshTarget(devopsHostDTO.getHostIp(), devopsHostDTO.getSshPort(), devopsHostDTO.getAuthType(), devopsHostDTO.getUsername(), devopsHostDTO.getPassword()), SSH_TIMEOUT_MILLISECONDS);
     }
 
     @Override
@@ -437,12 +511,17 @@ public class DevopsHostServiceImpl implements DevopsHostService {
             if (!HostDeployType.CUSTOMIZE_DEPLOY.getValue().equalsIgnoreCase(cdHostDeployConfigVO.getHostDeployType().trim())) {
                 continue;
             }
-            HostConnectionVO hostConnectionVO = cdHostDeployConfigVO.getHostConnectionVO();
-            if (!HostSourceEnum.EXISTHOST.getValue().equalsIgnoreCase(hostConnectionVO.getHostSource().trim())) {
-                continue;
-            }
-            if (hostConnectionVO.getHostId().equals(hostId)) {
-                return Boolean.FALSE;
+            // 主机组部署时检查组内的每个主机
+            List<HostConnectionVO> hostConnectionVOS = CollectionUtils.isEmpty(cdHostDeployConfigVO.getHostConnectionVOS())
+                    ? Collections.singletonList(cdHostDeployConfigVO.getHostConnectionVO())
+                    : cdHostDeployConfigVO.getHostConnectionVOS();
+            for (HostConnectionVO hostConnectionVO : hostConnectionVOS) {
+                if (!HostSourceEnum.EXISTHOST.getValue().equalsIgnoreCase(hostConnectionVO.getHostSource().trim())) {
+                    continue;
+                }
+                if (hostConnectionVO.getHostId().equals(hostId)) {
+                    return Boolean.FALSE;
+                }
             }
         }
         return Boolean.TRUE;
@@ -778,27 +778,18 @@ public class DevopsServiceServiceImpl implements DevopsServiceService {
             podLiveInfoVO.setContainers(containerVOS);
 
             //设置实时CPU、内存信息
-            List<PodMetricsRedisInfoVO> agentPodInfoVOS = agentPodInfoService.queryAllPodSnapshots(devopsEnvPodDTO.getName(), devopsEnvPodDTO.getNamespace(), devopsClusterDTO.getCode());
-
-            if (!agentPodInfoVOS.isEmpty()) {
-                List<Long> cpuUsedList = agentPodInfoVOS.stream()
-                        .map(info -> {
-                            if (info.getCpu().equals("0")) {
-                                return 0L;
-                            } else {
-                                return TypeUtil.objToLong(info.getCpu().substring(0, (info.getCpu().length() - 1)));
-                            }
-                        }).collect(Collectors.toList());
-                List<Long> memoryUsedList = agentPodInfoVOS.stream()
-                        .map(info -> {
-                            if (info.getMemory().equals("0")) {
-                                return 0L;
-                            } else {
-                                return TypeUtil.objToLong(info.getMemory().substring(0, (info.getMemory()).length() - 2));
-                            }
-                        })
-                        .collect(Collectors.toList());
-                List<Date> timeList = agentPodInfoVOS.stream().map(PodMetricsRedisInfoVO::getSnapShotTime).collect(Collectors.toList());
+            List<PodMetricsSampleVO> podMetricsSamples = agentPodInfoService.queryPodMetricsSeries(devopsEnvPodDTO.getName(), devopsEnvPodDTO.getNamespace(), devopsClusterDTO.getCode(), null, null, 0);
+
+            if (!podMetricsSamples.isEmpty()) {
+                List<Long> cpuUsedList = new ArrayList<>(podMetricsSamples.size());
+                List<Long> memoryUsedList = new ArrayList<>(podMetricsSamples.size());
+                List<Date> timeList = new ArrayList<>(podMetricsSamples.size());
+                // cpu单位为毫核, 内存单位为Mi
+                podMetricsSamples.forEach(sample -> {
+                    cpuUsedList.add(sample.getCpuMilliCores());
+                    memoryUsedList.add(sample.getMemoryBytes() / (1024 * 1024));
+                    timeList.add(new Date(sample.getTimestamp()));
+                });
 
                 podLiveInfoVO.setCpuUsedList(cpuUsedList);
                 podLiveInfoVO.setMemoryUsedList(memoryUsedList);
@@ -1,20 +1,30 @@
 package io.choerodon.devops.app.service.impl;
 
+import java.util.*;
+
 import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.vo.DevopsMergeRequestVO;
 import io.choerodon.devops.api.vo.JobWebHookVO;
 import io.choerodon.devops.api.vo.PipelineWebHookVO;
 import io.choerodon.devops.api.vo.PushWebHookVO;
 import io.choerodon.devops.app.service.*;
 import io.choerodon.devops.infra.constant.GitOpsConstants;
+import io.choerodon.devops.infra.dto.AppServiceDTO;
+import io.choerodon.devops.infra.dto.DevopsGitlabWebhookEventDTO;
 import io.choerodon.devops.infra.dto.iam.IamUserDTO;
+import io.choerodon.devops.infra.enums.JobStatusEnum;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
+import io.choerodon.devops.infra.handler.GitlabWebhookEventDispatcher;
 import io.choerodon.devops.infra.util.CustomContextUtil;
 import io.choerodon.devops.infra.util.FastjsonParserConfigProvider;
 
@@ -22,6 +32,14 @@ import io.choerodon.devops.infra.util.FastjsonParserConfigProvider;
 public class GitlabWebHookServiceImpl implements GitlabWebHookService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GitlabWebHookServiceImpl.class);
+    private static final String OBJECT_KIND = "object_kind";
+    private static final String OBJECT_ATTRIBUTES = "object_attributes";
+    private static final String MERGE_REQUEST = "merge_request";
+    private static final String PUSH = "push";
+    private static final String PIPELINE = "pipeline";
+    private static final String BUILD = "build";
+    private static final String TAG_PUSH = "tag_push";
+    private static final Set<String> HANDLED_KINDS = new HashSet<>(Arrays.asList(MERGE_REQUEST, PUSH, PIPELINE, BUILD, TAG_PUSH));
 
     private DevopsMergeRequestService devopsMergeRequestService;
     private DevopsGitService devopsGitService;
@@ -31,6 +49,14 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
     private DevopsCiJobRecordService devopsCiJobRecordService;
     private BaseServiceClientOperator baseServiceClientOperator;
     private DevopsCdPipelineService devopsCdPipelineService;
+    private GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher;
+    private AppServiceService appServiceService;
+
+    /**
+     * webhook内容的长度上限, 超过的webhook不持久化, 直接拒绝
+     */
+    @Value("${devops.gitlab.webhook.maxBodyLength:5242880}")
+    private Integer maxBodyLength;
 
     public GitlabWebHookServiceImpl(DevopsMergeRequestService devopsMergeRequestService,
                                     DevopsGitService devopsGitService,
@@ -39,7 +65,9 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
                                     DevopsCiPipelineRecordService devopsCiPipelineRecordService,
                                     DevopsCiJobRecordService devopsCiJobRecordService,
                                     BaseServiceClientOperator baseServiceClientOperator,
-                                    DevopsCdPipelineService devopsCdPipelineService) {
+                                    DevopsCdPipelineService devopsCdPipelineService,
+                                    @Lazy GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher,
+                                    AppServiceService appServiceService) {
         this.devopsMergeRequestService = devopsMergeRequestService;
         this.devopsGitService = devopsGitService;
         this.devopsGitlabCommitService = devopsGitlabCommitService;
@@ -48,19 +76,72 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
         this.devopsCiJobRecordService = devopsCiJobRecordService;
         this.baseServiceClientOperator = baseServiceClientOperator;
         this.devopsCdPipelineService = devopsCdPipelineService;
+        this.gitlabWebhookEventDispatcher = gitlabWebhookEventDispatcher;
+        this.appServiceService = appServiceService;
     }
 
     @Override
     public void forwardingEventToPortal(String body, String token) {
-        JsonObject returnData = new JsonParser().parse(body).getAsJsonObject();
-        String kind = returnData.get("object_kind").getAsString();
+        if (body.length() > maxBodyLength) {
+            LOGGER.warn("Gitlab webhook with body length {} is rejected", body.length());
+            throw new CommonException("error.gitlab.webhook.body.too.large");
+        }
+        JSONObject returnData = JSONObject.parseObject(body);
+        String kind = returnData.getString(OBJECT_KIND);
+        if (!HANDLED_KINDS.contains(kind)) {
+            return;
+        }
+        Long gitlabProjectId = getGitlabProjectId(returnData);
+        // webhook接口不需要认证, 持久化之前先校验token是这个gitlab项目的应用服务的token
+        AppServiceDTO appServiceDTO = token == null ? null : appServiceService.baseQueryByToken(token);
+        if (appServiceDTO == null || appServiceDTO.getGitlabProjectId() == null
+                || appServiceDTO.getGitlabProjectId().longValue() != gitlabProjectId) {
+            LOGGER.warn("Gitlab webhook of gitlab project {} with an invalid token is rejected", gitlabProjectId);
+            throw new CommonException("error.gitlab.webhook.token.invalid");
+        }
+        DevopsGitlabWebhookEventDTO event = new DevopsGitlabWebhookEventDTO();
+        event.setObjectKind(kind);
+        event.setGitlabProjectId(gitlabProjectId);
+        event.setToken(token);
+        event.setBody(body);
+        JSONObject attributes = returnData.getJSONObject(OBJECT_ATTRIBUTES);
         switch (kind) {
-            case "merge_request":
+            case MERGE_REQUEST:
+                event.setObjectId(attributes.getString("id"));
+                event.setObjectStatus(attributes.getString("state") + ":" + attributes.getString("action"));
+                event.setObjectUpdatedAt(attributes.getString("updated_at"));
+                break;
+            case PIPELINE:
+                event.setObjectId(attributes.getString("id"));
+                event.setObjectStatus(attributes.getString("status"));
+                event.setObjectUpdatedAt(firstNonNull(attributes.getString("updated_at"),
+                        attributes.getString("finished_at"), attributes.getString("created_at")));
+                break;
+            case BUILD:
+                event.setObjectId(returnData.getString("build_id"));
+                event.setObjectStatus(returnData.getString("build_status"));
+                event.setObjectUpdatedAt(firstNonNull(returnData.getString("build_finished_at"),
+                        returnData.getString("build_started_at"), returnData.getString("build_created_at")));
+                break;
+            default:
+                // push和tag_push事件没有id, 用分支和推送前后的commit区分
+                event.setObjectId(returnData.getString("ref"));
+                event.setObjectStatus(returnData.getString("after"));
+                event.setObjectUpdatedAt(returnData.getString("before"));
+                break;
+        }
+        gitlabWebhookEventDispatcher.accept(event);
+    }
+
+    @Override
+    public void handleEvent(String kind, String body, String token) {
+        switch (kind) {
+            case MERGE_REQUEST:
                 DevopsMergeRequestVO devopsMergeRequestVO = JSONArray.parseObject(body, DevopsMergeRequestVO.class, FastjsonParserConfigProvider.getParserConfig());
                 setUserContext(devopsMergeRequestVO.getUser().getUsername());
                 devopsMergeRequestService.create(devopsMergeRequestVO);
                 break;
-            case "push":
+            case PUSH:
                 PushWebHookVO pushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
                 setUserContext(pushWebHookVO.getUserUserName());
                 if (LOGGER.isInfoEnabled()) {
@@ -69,7 +150,7 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
 
                 devopsGitService.branchSync(pushWebHookVO, token);
                 break;
-            case "pipeline":
+            case PIPELINE:
                 PipelineWebHookVO pipelineWebHookVO = JSONArray.parseObject(body, PipelineWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
                 devopsGitlabPipelineService.create(pipelineWebHookVO, token);
                 // 保存ci流水线执行记录
@@ -77,12 +158,12 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
                 // 处理流水线执行成功逻辑, 只处理纯cd流水线逻辑
                 devopsCdPipelineService.handlerCiPipelineStatusSuccess(pipelineWebHookVO, token);
                 break;
-            case "build":
-                JobWebHookVO jobWebHookVO = JSONArray.parseObject(body, JobWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case BUILD:
+                JobWebHookVO jobWebHookVO = parseBuildEvent(body);
                 devopsGitlabPipelineService.updateStages(jobWebHookVO);
                 devopsCiJobRecordService.update(jobWebHookVO);
                 break;
-            case "tag_push":
+            case TAG_PUSH:
                 PushWebHookVO tagPushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
                 setUserContext(tagPushWebHookVO.getUserUserName());
                 devopsGitlabCommitService.create(tagPushWebHookVO, token);
@@ -92,11 +173,77 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
         }
     }
 
+    @Override
+    public JobWebHookVO parseBuildEvent(String body) {
+        JobWebHookVO jobWebHookVO = JSONArray.parseObject(body, JobWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+        if (jobWebHookVO == null || jobWebHookVO.getBuildId() == null) {
+            throw new CommonException("error.gitlab.webhook.build.illegal");
+        }
+        return jobWebHookVO;
+    }
+
+    @Override
+    public void handleBuildEvents(List<JobWebHookVO> jobWebHookVOS) {
+        // 同一个job只保留最新的状态, 乱序到达的更早的状态不覆盖之后的状态
+        Map<Long, JobWebHookVO> latestJobs = new LinkedHashMap<>();
+        for (JobWebHookVO jobWebHookVO : jobWebHookVOS) {
+            JobWebHookVO previous = latestJobs.get(jobWebHookVO.getBuildId());
+            if (previous == null || jobStatusRank(jobWebHookVO.getBuildStatus()) >= jobStatusRank(previous.getBuildStatus())) {
+                latestJobs.remove(jobWebHookVO.getBuildId());
+                latestJobs.put(jobWebHookVO.getBuildId(), jobWebHookVO);
+            }
+        }
+        List<JobWebHookVO> latestJobWebHookVOS = new ArrayList<>(latestJobs.values());
+        LOGGER.debug("Coalesced {} build events into {} job updates", jobWebHookVOS.size(), latestJobWebHookVOS.size());
+        devopsGitlabPipelineService.updateStages(latestJobWebHookVOS);
+        devopsCiJobRecordService.update(latestJobWebHookVOS);
+    }
+
+    /**
+     * job状态的先后顺序, 用于判断乱序到达的状态
+     */
+    private static int jobStatusRank(String status) {
+        if (JobStatusEnum.CREATED.value().equals(status)) {
+            return 0;
+        }
+        if (JobStatusEnum.RUNNING.value().equals(status)) {
+            return 2;
+        }
+        if (JobStatusEnum.SUCCESS.value().equals(status) || JobStatusEnum.FAILED.value().equals(status)
+                || JobStatusEnum.CANCELED.value().equals(status) || JobStatusEnum.SKIPPED.value().equals(status)) {
+            return 3;
+        }
+        // pending, manual等等待执行的状态
+        return 1;
+    }
+
+    private static Long getGitlabProjectId(JSONObject returnData) {
+        Long gitlabProjectId = returnData.getLong("project_id");
+        if (gitlabProjectId == null && returnData.getJSONObject("project") != null) {
+            gitlabProjectId = returnData.getJSONObject("project").getLong("id");
+        }
+        return gitlabProjectId == null ? 0L : gitlabProjectId;
+    }
+
+    private static String firstNonNull(String... values) {
+        for (String value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int replayFailedEvents(Long gitlabProjectId) {
+        return gitlabWebhookEventDispatcher.replayFailedEvents(gitlabProjectId);
+    }
+
     @Override
     public void gitOpsWebHook(String body, String token) {
         JsonObject returnData = new JsonParser().parse(body).getAsJsonObject();
         String kind = returnData.get("object_kind").getAsString();
-        if ("push".equals(kind)) {
+        if (PUSH.equals(kind)) {
             PushWebHookVO pushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(pushWebHookVO.toString());
@@ -1,6 +1,8 @@
 package io.choerodon.devops.app.service.impl;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -17,6 +19,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.devops.api.vo.*;
@@ -33,6 +36,9 @@ import io.choerodon.devops.infra.util.CommonExAssertUtil;
 import io.choerodon.devops.infra.util.ConvertUtils;
 import io.choerodon.devops.infra.util.LogUtil;
 import io.choerodon.devops.infra.util.MapperUtil;
+import io.choerodon.devops.infra.util.PageInfoUtil;
+import io.choerodon.devops.infra.util.PolarisDetailCodec;
+import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 /**
  * @author zmf
@@ -51,6 +57,12 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     @Value("${polaris.scanning.timeout.seconds:300}")
     private Long scanningTimeoutSeconds;
 
+    /**
+     * 正在分批接收扫描结果的扫描纪录的进度, key是扫描纪录id
+     * 同一次扫描的所有批次都在agent的同一个连接上顺序发送, 所以只保存在当前实例的内存中
+     */
+    private final Map<Long, ScanProgress> scanProgresses = new ConcurrentHashMap<>();
+
     @Autowired
     private AgentCommandService agentCommandService;
     @Autowired
@@ -193,7 +205,10 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
         DevopsPolarisRecordDTO recordDTO = queryRecordByScopeIdAndScope(envId, PolarisScopeType.ENV.getValue());
         if (recordDTO != null) {
             Long recordId = recordDTO.getId();
-            return devopsPolarisNamespaceResultMapper.queryNamespaceResultDetail(recordId, envId);
+            List<DevopsPolarisNamespaceDetailDTO> parts = devopsPolarisNamespaceResultMapper.queryNamespaceResultDetail(recordId, envId);
+            return parts.isEmpty() ? null : mergeJsonArrays(parts.stream()
+                    .map(part -> PolarisDetailCodec.read(part.getDetail(), part.getCompressedDetail()))
+                    .collect(Collectors.toList()));
         } else {
             return JSONObject.toJSONString(devopsPolarisNamespaceResultMapper.queryInstanceWithoutResult(envId));
         }
@@ -253,7 +268,7 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     }
 
     @Override
-    public DevopsPolarisSummaryVO clusterPolarisSummary(Long projectId, Long clusterId) {
+    public DevopsPolarisSummaryVO clusterPolarisSummary(Long projectId, Long clusterId, boolean withDetail) {
         DevopsClusterDTO devopsClusterDTO = devopsClusterService.baseQuery(clusterId);
         if (devopsClusterDTO == null || !Objects.equals(devopsClusterDTO.getProjectId(), projectId)) {
             throw new CommonException("error.cluster.not.exist", clusterId);
@@ -268,9 +283,17 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
 
         DevopsPolarisSummaryVO summaryVO = new DevopsPolarisSummaryVO(Boolean.TRUE);
         List<ClusterPolarisSummaryItemVO> items = devopsPolarisCategoryResultMapper.queryPolarisSummary(devopsPolarisRecordDTO.getId());
+        // 不需要详情时不查询和解压详情, 详情通过分页接口查询
+        Map<String, List<String>> details = !withDetail ? Collections.emptyMap() : devopsPolarisCategoryDetailMapper.listByRecordId(devopsPolarisRecordDTO.getId())
+                .stream()
+                .collect(Collectors.groupingBy(DevopsPolarisCategoryDetailDTO::getCategory,
+                        Collectors.mapping(part -> PolarisDetailCodec.read(part.getDetail(), part.getCompressedDetail()), Collectors.toList())));
         Map<PolarisItemCategory, ClusterPolarisSummaryItemVO> map = new HashMap<>();
 
         items.forEach(i -> {
+            if (withDetail) {
+                i.setDetail(mergeJsonArrays(details.get(i.getCategory())));
+            }
             PolarisItemCategory category = PolarisItemCategory.forValue(i.getCategory());
             if (category != null) {
                 map.put(category, i);
@@ -286,7 +309,7 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     }
 
     @Override
-    public ClusterPolarisEnvDetailsVO clusterPolarisEnvDetail(Long projectId, Long clusterId) {
+    public ClusterPolarisEnvDetailsVO clusterPolarisEnvDetail(Long projectId, Long clusterId, boolean withDetail) {
         DevopsClusterDTO devopsClusterDTO = devopsClusterService.baseQuery(clusterId);
         if (devopsClusterDTO == null || !Objects.equals(devopsClusterDTO.getProjectId(), projectId)) {
             throw new CommonException("error.cluster.not.exist", clusterId);
@@ -299,7 +322,125 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
             return handleEnvWithoutPolaris(devopsPolarisNamespaceResultMapper.queryEnvWithoutPolarisResult(clusterId), devopsClusterDTO.getNamespaces());
         }
 
-        return handleEnvWithPolaris(devopsPolarisNamespaceResultMapper.queryEnvWithPolarisResult(recordDTO.getId(), recordDTO.getScopeId()), devopsClusterDTO.getNamespaces());
+        List<DevopsEnvWithPolarisResultVO> results = devopsPolarisNamespaceResultMapper.queryEnvWithPolarisResult(recordDTO.getId(), recordDTO.getScopeId());
+        if (!withDetail) {
+            // 详情通过分页接口按namespace查询
+            return handleEnvWithPolaris(results, devopsClusterDTO.getNamespaces());
+        }
+        Map<String, List<String>> details = devopsPolarisNamespaceDetailMapper.listByRecordId(recordDTO.getId(), null)
+                .stream()
+                .collect(Collectors.groupingBy(DevopsPolarisNamespaceDetailDTO::getNamespace,
+                        Collectors.mapping(part -> PolarisDetailCodec.read(part.getDetail(), part.getCompressedDetail()), Collectors.toList())));
+        results.stream()
+                .filter(result -> result.getDetailJson() == null)
+                .forEach(result -> result.setDetailJson(mergeJsonArrays(details.get(result.getNamespace()))));
+        return handleEnvWithPolaris(results, devopsClusterDTO.getNamespaces());
+    }
+
+    @Override
+    public Page<PolarisStorageControllerResultVO> pageClusterNamespaceDetail(Long projectId, Long clusterId, String namespace, PageRequest pageRequest) {
+        DevopsPolarisRecordDTO recordDTO = queryFinishedClusterRecord(projectId, clusterId);
+        if (recordDTO == null) {
+            return PageInfoUtil.createPageFromList(Collections.emptyList(), pageRequest);
+        }
+        // 只解压当前页涉及的纪录
+        return pageDetailParts(devopsPolarisNamespaceDetailMapper.listPartsByRecordId(recordDTO.getId(), namespace),
+                DevopsPolarisNamespaceDetailDTO::getItemCount,
+                part -> {
+                    DevopsPolarisNamespaceDetailDTO detailDTO = devopsPolarisNamespaceDetailMapper.selectByPrimaryKey(part.getId());
+                    return JSONArray.parseArray(PolarisDetailCodec.read(detailDTO.getDetail(), detailDTO.getCompressedDetail()), PolarisStorageControllerResultVO.class);
+                },
+                pageRequest);
+    }
+
+    @Override
+    public Page<PolarisSummaryItemContentVO> pageClusterCategoryDetail(Long projectId, Long clusterId, String category, @Nullable String namespace, PageRequest pageRequest) {
+        DevopsPolarisRecordDTO recordDTO = queryFinishedClusterRecord(projectId, clusterId);
+        if (recordDTO == null) {
+            return PageInfoUtil.createPageFromList(Collections.emptyList(), pageRequest);
+        }
+        List<DevopsPolarisCategoryDetailDTO> parts = devopsPolarisCategoryDetailMapper.listPartsByRecordId(recordDTO.getId(), category);
+        Function<DevopsPolarisCategoryDetailDTO, List<PolarisSummaryItemContentVO>> itemsOf = part -> {
+            DevopsPolarisCategoryDetailDTO detailDTO = devopsPolarisCategoryDetailMapper.selectByPrimaryKey(part.getId());
+            return JSONArray.parseArray(PolarisDetailCodec.read(detailDTO.getDetail(), detailDTO.getCompressedDetail()), PolarisSummaryItemContentVO.class);
+        };
+        if (StringUtils.isEmpty(namespace)) {
+            return pageDetailParts(parts, DevopsPolarisCategoryDetailDTO::getItemCount, itemsOf, pageRequest);
+        }
+        // 按namespace过滤时需要解压这个类别的所有纪录, 但不涉及其它类别
+        List<PolarisSummaryItemContentVO> items = parts.stream()
+                .flatMap(part -> itemsOf.apply(part).stream())
+                .filter(item -> namespace.equals(item.getNamespace()))
+                .collect(Collectors.toList());
+        return PageInfoUtil.createPageFromList(items, pageRequest);
+    }
+
+    /**
+     * 查询集群已完成的扫描纪录, 并校验集群属于这个项目
+     *
+     * @param projectId 项目id
+     * @param clusterId 集群id
+     * @return 没有扫描过或者扫描未完成时为null
+     */
+    @Nullable
+    private DevopsPolarisRecordDTO queryFinishedClusterRecord(Long projectId, Long clusterId) {
+        DevopsClusterDTO devopsClusterDTO = devopsClusterService.baseQuery(clusterId);
+        if (devopsClusterDTO == null || !Objects.equals(devopsClusterDTO.getProjectId(), projectId)) {
+            throw new CommonException("error.cluster.not.exist", clusterId);
+        }
+        DevopsPolarisRecordDTO recordDTO = queryRecordByScopeIdAndScope(clusterId, PolarisScopeType.CLUSTER.getValue());
+        if (recordDTO == null || !PolarisScanningStatus.FINISHED.getStatus().equals(recordDTO.getStatus())) {
+            return null;
+        }
+        return recordDTO;
+    }
+
+    /**
+     * 对分批存储的详情分页, 根据每条纪录的元素数量跳过当前页之外的纪录, 只读取和解压当前页涉及的纪录
+     *
+     * @param parts       按顺序排列的详情纪录, 不含详情内容
+     * @param itemCountOf 纪录的元素数量, 之前的纪录为null, 需要读取后计算
+     * @param itemsOf     读取纪录的详情
+     * @param pageRequest 分页参数
+     * @return 当前页
+     */
+    private static <D, T> Page<T> pageDetailParts(List<D> parts, Function<D, Integer> itemCountOf, Function<D, List<T>> itemsOf, PageRequest pageRequest) {
+        boolean queryAll = pageRequest.getSize() <= 0;
+        long start = queryAll ? 0 : (long) pageRequest.getPage() * pageRequest.getSize();
+        long end = queryAll ? Long.MAX_VALUE : start + pageRequest.getSize();
+
+        long total = 0;
+        List<T> content = new ArrayList<>();
+        for (D part : parts) {
+            Integer itemCount = itemCountOf.apply(part);
+            List<T> items = null;
+            if (itemCount == null) {
+                items = itemsOf.apply(part);
+                itemCount = items.size();
+            }
+            long partStart = total;
+            total += itemCount;
+            if (total <= start || partStart >= end) {
+                continue;
+            }
+            if (items == null) {
+                items = itemsOf.apply(part);
+            }
+            int from = (int) Math.max(0, start - partStart);
+            int to = (int) Math.min(items.size(), end - partStart);
+            if (from < to) {
+                content.addAll(items.subList(from, to));
+            }
+        }
+
+        Page<T> page = new Page<>();
+        page.setNumber(pageRequest.getPage());
+        page.setSize(queryAll ? content.size() : pageRequest.getSize());
+        page.setNumberOfElements(content.size());
+        page.setTotalElements(total);
+        page.setTotalPages(queryAll || total == 0 ? 1 : (int) ((total + pageRequest.getSize() - 1) / pageRequest.getSize()));
+        page.setContent(content);
+        return page;
     }
 
     /**
@@ -459,7 +600,6 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
     @Override
     public void handleAgentPolarisMessage(PolarisResponsePayloadVO message) {
-        LOGGER.info("Polaris: Unhandled polaris message...");
         if (message == null) {
             LOGGER.warn("Polaris: Null message for polaris from agent.");
             return;
@@ -490,52 +630,154 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
             clusterId = recordDTO.getScopeId();
         }
 
+        // 旧版本的agent一次发送全部结果, 没有批次信息
+        ScanProgress progress = message.getChunkIndex() == null ? new ScanProgress() : acquireProgress(recordId, message.getChunkIndex());
+        if (progress == null) {
+            return;
+        }
+
+        try {
+            PolarisScanResultVO polarisScanResultVO = message.getPolarisResult();
+            progress.collectSummary(polarisScanResultVO);
+            List<PolarisControllerResultVO> results = polarisScanResultVO == null || polarisScanResultVO.getAuditData() == null
+                    ? null : polarisScanResultVO.getAuditData().getResults();
+            LOGGER.info("Polaris: handling chunk {} of record {}, the size of results is {}", message.getChunkIndex(), recordId, results == null ? 0 : results.size());
+
+            if (!CollectionUtils.isEmpty(results)) {
+                progress.resultCount += results.size();
+                if (PolarisScopeType.CLUSTER.getValue().equals(recordDTO.getScope())) {
+                    // 处理扫描结果项
+                    handleClusterResults(recordId, progress, results);
+                } else {
+                    handleEnvResults(recordDTO.getScopeId(), progress, results);
+                }
+            }
+
+            if (message.lastMessage()) {
+                scanProgresses.remove(recordId);
+                finishScanning(recordDTO, clusterId, progress);
+            }
+        } catch (RuntimeException e) {
+            // 这一批的数据会回滚, 之后的批次也不再处理, 扫描纪录等待超时
+            scanProgresses.remove(recordId);
+            throw e;
+        }
+    }
+
+    /**
+     * 取得分批处理的进度, 第一批时创建
+     *
+     * @param recordId   扫描纪录id
+     * @param chunkIndex 这一批的序号
+     * @return 进度, 批次不连续时返回null, 丢弃这次扫描的结果
+     */
+    @Nullable
+    private ScanProgress acquireProgress(Long recordId, int chunkIndex) {
+        long now = System.currentTimeMillis();
+        // 清除超时未收到最后一批的进度
+        scanProgresses.values().removeIf(p -> now - p.lastActiveMillis > scanningTimeoutSeconds * 1000);
+
+        ScanProgress progress;
+        if (chunkIndex == 0) {
+            progress = new ScanProgress();
+            scanProgresses.put(recordId, progress);
+        } else {
+            progress = scanProgresses.get(recordId);
+            if (progress == null || progress.nextChunkIndex != chunkIndex) {
+                LOGGER.warn("Polaris: unexpected chunk {} of record {}, discard the scanning result", chunkIndex, recordId);
+                scanProgresses.remove(recordId);
+                return null;
+            }
+        }
+        progress.nextChunkIndex = chunkIndex + 1;
+        progress.lastActiveMillis = now;
+        return progress;
+    }
 
-        PolarisScanResultVO polarisScanResultVO = message.getPolarisResult();
-        PolarisScanSummaryVO summaryVO = polarisScanResultVO.getSummary();
+    @Override
+    public void discardUnfinishedScanning(Long recordId) {
+        if (scanProgresses.remove(recordId) != null) {
+            LOGGER.warn("Polaris: the connection closed before the last chunk of record {} arrived", recordId);
+        }
+    }
+
+    /**
+     * 收到所有批次后更新扫描纪录, 写入namespace和类别的汇总结果
+     *
+     * @param recordDTO 扫描纪录
+     * @param clusterId 集群id
+     * @param progress  累计的扫描结果
+     */
+    private void finishScanning(DevopsPolarisRecordDTO recordDTO, Long clusterId, ScanProgress progress) {
+        PolarisScanSummaryVO summaryVO = progress.summary;
+        ClusterSummaryInfoVO clusterInfo = progress.clusterInfo;
+        if (summaryVO == null || clusterInfo == null) {
+            LOGGER.warn("Polaris: no summary or cluster info in the scanning result of record {}", recordDTO.getId());
+            return;
+        }
 
         // 存储集群信息
-        devopsClusterService.saveClusterSummaryInfo(clusterId, polarisScanResultVO.getAuditData().getClusterInfo());
+        devopsClusterService.saveClusterSummaryInfo(clusterId, clusterInfo);
 
         // 处理record信息
-        LOGGER.info("Polaris: auditTime: {}", polarisScanResultVO.getAuditData().getAuditTime());
-        recordDTO.setLastScanDateTime(polarisScanResultVO.getAuditData().getAuditTime());
+        LOGGER.info("Polaris: auditTime: {}", progress.auditTime);
+        recordDTO.setLastScanDateTime(progress.auditTime);
         recordDTO.setSuccesses(summaryVO.getSuccesses());
         recordDTO.setWarnings(summaryVO.getWarnings());
         recordDTO.setErrors(summaryVO.getErrors());
         recordDTO.setStatus(PolarisScanningStatus.FINISHED.getStatus());
         recordDTO.setScore(countScore(recordDTO.getSuccesses(), recordDTO.getWarnings(), recordDTO.getErrors()));
-        recordDTO.setKubernetesVersion(polarisScanResultVO.getAuditData().getClusterInfo().getVersion());
-        recordDTO.setPods(polarisScanResultVO.getAuditData().getClusterInfo().getPods());
-        recordDTO.setNamespaces(polarisScanResultVO.getAuditData().getClusterInfo().getNamespaces());
-        recordDTO.setNodes(polarisScanResultVO.getAuditData().getClusterInfo().getNodes());
+        recordDTO.setKubernetesVersion(clusterInfo.getVersion());
+        recordDTO.setPods(clusterInfo.getPods());
+        recordDTO.setNamespaces(clusterInfo.getNamespaces());
+        recordDTO.setNodes(clusterInfo.getNodes());
         checkedUpdate(recordDTO);
 
         if (PolarisScopeType.CLUSTER.getValue().equals(recordDTO.getScope())) {
-            // 处理扫描结果项
-            handleClusterResults(recordId, polarisScanResultVO.getAuditData().getResults());
+            // 处理 devops_polaris_namespace_result 数据
+            handleNamespaceResultList(analyzeNamespaceResults(progress, clusterId, recordDTO.getId()));
+            // 批量插入 devops_polaris_category_result 纪录
+            handleCategoryResultList(analyzeCategoryResults(progress, recordDTO.getId()));
         } else {
-            handleEnvResults(recordId, polarisScanResultVO.getAuditData().getResults());
+            finishEnvResults(recordDTO.getId(), recordDTO.getScopeId(), progress);
         }
     }
 
     /**
-     * 处理环境扫描的结果
+     * 处理环境扫描的一批结果, 只挑出和实例关联的资源的结果, 等收到所有批次后再写入
+     *
+     * @param envId    环境id
+     * @param progress 累计的扫描结果
+     * @param results  这一批的扫描结果
+     */
+    private void handleEnvResults(Long envId, ScanProgress progress, List<PolarisControllerResultVO> results) {
+        Map<String, Long> instanceIds = resolveInstanceIds(envId, results);
+        results.forEach(result -> {
+            Long instanceId = instanceIds.get(resourceKey(result.getKind(), result.getName()));
+            if (instanceId == null) {
+                return;
+            }
+            // 挑选出各个层级未通过的检测项放入到要作为json传出到数据库的对象中
+            progress.instanceResults.computeIfAbsent(instanceId, id -> new ArrayList<>()).add(analyzePolarisResult(result));
+        });
+    }
+
+    /**
+     * 写入环境扫描的结果
      * 设计两个表：
      * devops_polaris_namespace_result
      * devops_polaris_namespace_detail
      *
      * @param recordId 扫描环境的扫描纪录id
-     * @param results  扫描结果
+     * @param envId    环境id
+     * @param progress 累计的扫描结果
      */
-    private void handleEnvResults(Long recordId, List<PolarisControllerResultVO> results) {
-        if (CollectionUtils.isEmpty(results)) {
-            LOGGER.info("Polaris: env controller results empty... {}", results);
+    private void finishEnvResults(Long recordId, Long envId, ScanProgress progress) {
+        if (progress.resultCount == 0) {
+            LOGGER.info("Polaris: env controller results empty...");
             return;
         }
 
-        DevopsPolarisRecordDTO devopsPolarisRecordDTO = devopsPolarisRecordMapper.selectByPrimaryKey(recordId);
-        Long envId = devopsPolarisRecordDTO.getScopeId();
         DevopsEnvironmentDTO devopsEnvironmentDTO = devopsEnvironmentService.baseQueryById(envId);
         if (devopsEnvironmentDTO == null) {
             LogUtil.loggerInfoObjectNullWithId("env", envId, LOGGER);
@@ -547,18 +789,11 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
         // 以下是查出环境下的实例然后和检测项关联起来存成json放入数据库
         DevopsPolarisNamespaceResultDTO devopsPolarisNamespaceResultDTO = new DevopsPolarisNamespaceResultDTO(envId, devopsEnvironmentDTO.getCode(), recordId, Boolean.FALSE);
 
-        Map<Long, List<PolarisStorageControllerResultVO>> map = new HashMap<>();
-        results.forEach(result -> {
-            Long instanceId = findAssociatedInstanceId(envId, result.getName(), result.getKind());
-            if (instanceId == null) {
-                return;
-            }
-            // 挑选出各个层级未通过的检测项放入到要作为json传出到数据库的对象中
-            map.computeIfAbsent(instanceId, id -> new ArrayList<>()).add(analyzePolarisResult(result));
-        });
-
+        Map<Long, List<PolarisStorageControllerResultVO>> map = progress.instanceResults;
         // 查出实例信息
-        List<InstanceWithPolarisStorageVO> instances = appServiceInstanceMapper.queryInstancesWithAppServiceByIds(new ArrayList<>(map.keySet()));
+        List<InstanceWithPolarisStorageVO> instances = map.isEmpty()
+                ? Collections.emptyList()
+                : appServiceInstanceMapper.queryInstancesWithAppServiceByIds(new ArrayList<>(map.keySet()));
         // 这里是只将有实例对应的扫描结果取出来
         instances.forEach(ins -> {
             ins.setItems(map.get(ins.getInstanceId()));
@@ -568,9 +803,9 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
                     .reduce((one, another) -> one || another)
                     .ifPresent(ins::setHasErrors);
         });
-        DevopsPolarisNamespaceDetailDTO detailDTO = new DevopsPolarisNamespaceDetailDTO(JSONObject.toJSONString(instances));
+        DevopsPolarisNamespaceDetailDTO detailDTO = new DevopsPolarisNamespaceDetailDTO(recordId, devopsEnvironmentDTO.getCode(),
+                PolarisDetailCodec.compress(JSONObject.toJSONString(instances)), instances.size());
         checkedInsertNamespaceDetail(detailDTO);
-        devopsPolarisNamespaceResultDTO.setDetailId(detailDTO.getId());
         checkedInsertNamespaceResult(devopsPolarisNamespaceResultDTO);
     }
 
@@ -644,25 +879,16 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     }
 
     /**
-     * 处理集群扫描详细的数据
-     * 涉及四个表:
+     * 处理集群扫描的一批结果, 这一批的详情直接写入, 汇总数据累计到进度中
+     * 涉及两个表:
      * devops_polaris_namespace_detail
-     * devops_polaris_namespace_record
-     * devops_polaris_category_record
      * devops_polaris_category_detail
      *
      * @param recordId 扫描纪录id
-     * @param results  详细的扫描数据
+     * @param progress 累计的扫描结果
+     * @param results  这一批的扫描数据
      */
-    private void handleClusterResults(Long recordId, List<PolarisControllerResultVO> results) {
-        if (CollectionUtils.isEmpty(results)) {
-            LOGGER.info("Polaris: controller results empty... {}", results);
-            return;
-        }
-
-        DevopsPolarisRecordDTO devopsPolarisRecordDTO = devopsPolarisRecordMapper.selectByPrimaryKey(recordId);
-        Long finalClusterId = devopsPolarisRecordDTO.getScopeId();
-
+    private void handleClusterResults(Long recordId, ScanProgress progress, List<PolarisControllerResultVO> results) {
         // 这两个map分别是从环境和检测项类别角度对数据进行处理的结果
         Map<String, List<PolarisStorageControllerResultVO>> namespaceMap = new HashMap<>();
         Map<String, List<PolarisSummaryItemContentVO>> categoryMap = new HashMap<>();
@@ -719,53 +945,62 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
             namespaceMap.computeIfAbsent(storageControllerResultVO.getNamespace(), n -> new ArrayList<>()).add(storageControllerResultVO);
         });
 
+        LOGGER.info("Polaris: the namespaceMap size of this chunk is {}", namespaceMap.size());
+        LOGGER.info("Polaris: the categoryMap size of this chunk is {}", categoryMap.size());
 
-        LOGGER.info("Polaris: finished analyzing message...");
-        LOGGER.info("Polaris: the namespaceMap size is {}", namespaceMap.size());
-        LOGGER.info("Polaris: the categoryMap size is {}", categoryMap.size());
-        // 处理 devops_polaris_namespace_result 数据
-        handleNamespaceResultList(analyzeNamespaceResults(namespaceMap, finalClusterId, recordId));
-        // 批量插入 devops_polaris_category_record 纪录
-        handleCategoryResultList(analyzeCategoryResults(categoryMap, recordId));
+        List<DevopsPolarisNamespaceDetailDTO> namespaceDetails = new ArrayList<>();
+        namespaceMap.forEach((namespace, controllers) -> {
+            namespaceDetails.add(new DevopsPolarisNamespaceDetailDTO(recordId, namespace,
+                    PolarisDetailCodec.compress(JSONObject.toJSONString(controllers)), controllers.size()));
+            boolean namespaceHasErrors = controllers.stream().anyMatch(c -> Boolean.TRUE.equals(c.getHasErrors()));
+            progress.namespaceErrors.merge(namespace, namespaceHasErrors, Boolean::logicalOr);
+        });
+        devopsPolarisNamespaceDetailMapper.batchInsert(namespaceDetails);
+
+        List<DevopsPolarisCategoryDetailDTO> categoryDetails = new ArrayList<>();
+        categoryMap.forEach((category, contents) -> {
+            countItemScore(progress.categoryScores.computeIfAbsent(category, c -> new CategoryScore()), contents);
+            // 全部通过的类别不需要存储详情
+            if (!contents.isEmpty()) {
+                categoryDetails.add(new DevopsPolarisCategoryDetailDTO(recordId, category,
+                        PolarisDetailCodec.compress(JSONObject.toJSONString(contents)), contents.size()));
+            }
+        });
+        if (!categoryDetails.isEmpty()) {
+            devopsPolarisCategoryDetailMapper.batchInsert(categoryDetails);
+        }
     }
 
-    private List<DevopsPolarisNamespaceResultDTO> analyzeNamespaceResults(Map<String, List<PolarisStorageControllerResultVO>> namespaceMap, Long clusterId, Long recordId) {
+    private List<DevopsPolarisNamespaceResultDTO> analyzeNamespaceResults(ScanProgress progress, Long clusterId, Long recordId) {
+        // 只有用户环境对应的namespace关联环境id
+        Map<String, Long> envIds = devopsEnvironmentService.baseListUserEnvByClusterId(clusterId)
+                .stream()
+                .collect(Collectors.toMap(DevopsEnvironmentDTO::getCode, DevopsEnvironmentDTO::getId, (one, another) -> one));
         List<DevopsPolarisNamespaceResultDTO> namespaceResults = new ArrayList<>();
-        namespaceMap.forEach((namespace, controllers) -> {
-            Long envId = queryEnvIdByClusterIdAndNamespace(clusterId, namespace);
-            DevopsPolarisNamespaceResultDTO result = new DevopsPolarisNamespaceResultDTO(envId, namespace, recordId, Boolean.FALSE);
-            result.setDetail(JSONObject.toJSONString(controllers));
-            controllers.stream()
-                    .map(PolarisStorageControllerResultVO::getHasErrors)
-                    .reduce((one, another) -> one || another)
-                    .ifPresent(result::setHasErrors);
-            namespaceResults.add(result);
+        progress.namespaceErrors.forEach((namespace, namespaceHasErrors) -> {
+            Long envId = envIds.get(namespace);
+            namespaceResults.add(new DevopsPolarisNamespaceResultDTO(envId, namespace, recordId, namespaceHasErrors));
         });
         return namespaceResults;
     }
 
-    private List<DevopsPolarisCategoryResultDTO> analyzeCategoryResults(Map<String, List<PolarisSummaryItemContentVO>> categoryMap, Long recordId) {
+    private List<DevopsPolarisCategoryResultDTO> analyzeCategoryResults(ScanProgress progress, Long recordId) {
         List<DevopsPolarisCategoryResultDTO> categoryResults = new ArrayList<>();
-        categoryMap.forEach((category, cResults) -> {
-            DevopsPolarisCategoryResultDTO cResult = new DevopsPolarisCategoryResultDTO(category, recordId, null, null, Boolean.FALSE, null, cResults);
-            countItemScore(cResult);
-            cResult.setDetail(JSONObject.toJSONString(cResult.getItems()));
-            categoryResults.add(cResult);
+        progress.categoryScores.forEach((category, score) -> {
+            long categoryScore = countScore(score.successes, score.warnings, score.errors);
+            categoryResults.add(new DevopsPolarisCategoryResultDTO(category, recordId, null, categoryScore, score.hasErrors, null, null));
         });
         return categoryResults;
     }
 
     /**
-     * 计算分值并移除通过的检测项
+     * 累计分值并移除通过的检测项
      *
-     * @param categoryItems 数据
+     * @param score    这个类别累计的分值
+     * @param contents 这一批中这个类别的数据
      */
-    private static void countItemScore(DevopsPolarisCategoryResultDTO categoryItems) {
-        long errors = 0;
-        long warnings = 0;
-        long successes = 0;
-        // TODO 想办法优化
-        Iterator<PolarisSummaryItemContentVO> iterator = categoryItems.getItems().iterator();
+    private static void countItemScore(CategoryScore score, List<PolarisSummaryItemContentVO> contents) {
+        Iterator<PolarisSummaryItemContentVO> iterator = contents.iterator();
         while (iterator.hasNext()) {
             PolarisSummaryItemContentVO content = iterator.next();
             content.setHasErrors(Boolean.FALSE);
@@ -774,18 +1009,18 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
             while (detailIterator.hasNext()) {
                 PolarisSummaryItemDetailVO detail = detailIterator.next();
                 if (Boolean.TRUE.equals(detail.getApproved())) {
-                    successes++;
+                    score.successes++;
                     detailIterator.remove();
                 } else {
                     if (PolarisSeverity.IGNORE.getValue().equals(detail.getSeverity())) {
                         detailIterator.remove();
-                        successes++;
+                        score.successes++;
                     } else if (PolarisSeverity.WARNING.getValue().equals(detail.getSeverity())) {
-                        warnings++;
+                        score.warnings++;
                     } else if (PolarisSeverity.ERROR.getValue().equals(detail.getSeverity())) {
-                        errors++;
+                        score.errors++;
                         content.setHasErrors(Boolean.TRUE);
-                        categoryItems.setHasErrors(Boolean.TRUE);
+                        score.hasErrors = Boolean.TRUE;
                     }
                 }
             }
@@ -794,7 +1029,6 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
                 iterator.remove();
             }
         }
-        categoryItems.setScore(countScore(successes, warnings, errors));
     }
 
     private PolarisSummaryItemDetailVO convert(PolarisResultItemVO item) {
@@ -806,15 +1040,6 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
         return polarisSummaryItemDetailVO;
     }
 
-    @Nullable
-    private Long queryEnvIdByClusterIdAndNamespace(Long clusterId, String namespace) {
-        DevopsEnvironmentDTO devopsEnvironmentDTO = devopsEnvironmentService.baseQueryByClusterIdAndCode(clusterId, namespace);
-        if (devopsEnvironmentDTO != null && EnvironmentType.USER.getValue().equals(devopsEnvironmentDTO.getType())) {
-            return devopsEnvironmentDTO.getId();
-        }
-        return null;
-    }
-
     /**
      * 将未通过的item挑出来，放在新的列表
      *
@@ -871,21 +1096,11 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
      * @param polarisNamespaceResultDTOS 待插入的数据
      */
     private void handleNamespaceResultList(List<DevopsPolarisNamespaceResultDTO> polarisNamespaceResultDTOS) {
-        LOGGER.info("Polaris: handleNamespaceResultList");
         if (CollectionUtils.isEmpty(polarisNamespaceResultDTOS)) {
             return;
         }
         LOGGER.info("Polaris: handleNamespaceResultList: the size is {}", polarisNamespaceResultDTOS.size());
-        DevopsPolarisNamespaceDetailDTO detailDTO = new DevopsPolarisNamespaceDetailDTO();
-        // 这里无法将detail纪录批量插入
-        polarisNamespaceResultDTOS.forEach(i -> {
-            detailDTO.setId(null);
-            detailDTO.setDetail(i.getDetail());
-            MapperUtil.resultJudgedInsertSelective(devopsPolarisNamespaceDetailMapper, detailDTO, "error.insert.polaris.namespace.detail");
-            i.setDetailId(detailDTO.getId());
-        });
         devopsPolarisNamespaceResultMapper.batchInsert(polarisNamespaceResultDTOS);
-        LOGGER.info("Polaris: handleNamespaceResultList: finished...");
     }
 
     /**
@@ -897,17 +1112,33 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
         if (CollectionUtils.isEmpty(categoryResultDTOList)) {
             return;
         }
-        DevopsPolarisCategoryDetailDTO detailDTO = new DevopsPolarisCategoryDetailDTO();
-        // 这里无法将detail纪录批量插入
-        categoryResultDTOList.forEach(i -> {
-            detailDTO.setId(null);
-            detailDTO.setDetail(i.getDetail());
-            MapperUtil.resultJudgedInsertSelective(devopsPolarisCategoryDetailMapper, detailDTO, "error.insert.polaris.category.detail");
-            i.setDetailId(detailDTO.getId());
-        });
         devopsPolarisCategoryResultMapper.batchInsert(categoryResultDTOList);
     }
 
+    /**
+     * 按顺序拼接分批存储的json数组
+     *
+     * @param parts 每一批的json数组
+     * @return 拼接后的json数组
+     */
+    private static String mergeJsonArrays(@Nullable List<String> parts) {
+        if (CollectionUtils.isEmpty(parts)) {
+            return "[]";
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        parts.forEach(part -> {
+            String elements = part.trim();
+            elements = elements.substring(1, elements.length() - 1).trim();
+            if (!elements.isEmpty()) {
+                joiner.add(elements);
+            }
+        });
+        return joiner.toString();
+    }
+
     /**
      * 从map中读取{@link PolarisResultItemVO}列表
      *
@@ -935,17 +1166,31 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     }
 
     /**
-     * 找到这个资源关联的实例id
+     * 一次查出这批资源关联的实例id
      *
-     * @param envId        环境id
-     * @param resourceName 资源名称
-     * @param resourceKind 资源类型
-     * @return 实例id，可为null
+     * @param envId   环境id
+     * @param results 扫描结果
+     * @return key是 {@link #resourceKey(String, String)}, value是实例id, 没有关联实例的资源不在其中
      */
-    @Nullable
-    private Long findAssociatedInstanceId(Long envId, String resourceName, String resourceKind) {
-        DevopsEnvResourceDTO devopsEnvResourceDTO = devopsEnvResourceService.baseQueryOptions(null, null, envId, resourceKind, resourceName);
-        return devopsEnvResourceDTO == null ? null : devopsEnvResourceDTO.getInstanceId();
+    private Map<String, Long> resolveInstanceIds(Long envId, List<PolarisControllerResultVO> results) {
+        Map<String, DevopsEnvResourceDTO> resources = new HashMap<>();
+        results.forEach(result -> resources.computeIfAbsent(resourceKey(result.getKind(), result.getName()), k -> {
+            DevopsEnvResourceDTO resource = new DevopsEnvResourceDTO();
+            resource.setKind(result.getKind());
+            resource.setName(result.getName());
+            return resource;
+        }));
+
+        Map<String, Long> instanceIds = new HashMap<>();
+        devopsEnvResourceService.listByEnvIdAndKindAndNames(envId, new ArrayList<>(resources.values()))
+                .stream()
+                .filter(resource -> resource.getInstanceId() != null)
+                .forEach(resource -> instanceIds.put(resourceKey(resource.getKind(), resource.getName()), resource.getInstanceId()));
+        return instanceIds;
+    }
+
+    private static String resourceKey(String kind, String name) {
+        return kind + "/" + name;
     }
 
     @Override
@@ -1039,11 +1284,66 @@ public class PolarisScanningServiceImpl implements PolarisScanningService {
     }
 
     private DevopsPolarisNamespaceDetailDTO checkedInsertNamespaceDetail(DevopsPolarisNamespaceDetailDTO detailDTO) {
-        Objects.requireNonNull(detailDTO.getDetail());
+        Objects.requireNonNull(detailDTO.getCompressedDetail());
         return MapperUtil.resultJudgedInsertSelective(devopsPolarisNamespaceDetailMapper, detailDTO, "error.insert.polaris.namespace.detail");
     }
 
     private DevopsPolarisNamespaceResultDTO checkedInsertNamespaceResult(DevopsPolarisNamespaceResultDTO resultDTO) {
         return MapperUtil.resultJudgedInsertSelective(devopsPolarisNamespaceResultMapper, resultDTO, "error.insert.polaris.namespace.record");
     }
+
+    /**
+     * 一次扫描已经收到的批次的累计结果
+     */
+    private static final class ScanProgress {
+        private int nextChunkIndex;
+        private long lastActiveMillis = System.currentTimeMillis();
+        private long resultCount;
+        private PolarisScanSummaryVO summary;
+        private Date auditTime;
+        private ClusterSummaryInfoVO clusterInfo;
+        /**
+         * 集群扫描: namespace -> 是否有error级别的检测项
+         */
+        private final Map<String, Boolean> namespaceErrors = new HashMap<>();
+        /**
+         * 集群扫描: 类别 -> 累计的分值
+         */
+        private final Map<String, CategoryScore> categoryScores = new HashMap<>();
+        /**
+         * 环境扫描: 实例id -> 实例关联的资源的结果
+         */
+        private final Map<Long, List<PolarisStorageControllerResultVO>> instanceResults = new HashMap<>();
+
+        /**
+         * 汇总数据可以在任意一批中
+         */
+        private void collectSummary(@Nullable PolarisScanResultVO result) {
+            if (result == null) {
+                return;
+            }
+            if (result.getSummary() != null) {
+                summary = result.getSummary();
+            }
+            PolarisScanAuditDataVO auditData = result.getAuditData();
+            if (auditData != null) {
+                if (auditData.getAuditTime() != null) {
+                    auditTime = auditData.getAuditTime();
+                }
+                if (auditData.getClusterInfo() != null) {
+                    clusterInfo = auditData.getClusterInfo();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个类别累计的检测项数量
+     */
+    private static final class CategoryScore {
+        private long successes;
+        private long warnings;
+        private long errors;
+        private Boolean hasErrors = Boolean.FALSE;
+    }
 }
@@ -0,0 +1,41 @@
+package io.choerodon.devops.infra.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 分页列表接口并行查询关联数据的线程池
+ * 队列满时由请求线程自己查询, 退化为串行而不是拒绝请求
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class EnrichmentAsyncTheadPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnrichmentAsyncTheadPoolConfig.class);
+
+    @Bean(name = GitOpsConstants.ENRICHMENT_EXECUTOR)
+    @Qualifier(GitOpsConstants.ENRICHMENT_EXECUTOR)
+    public AsyncTaskExecutor enrichment(@Value("${devops.enrichment.executor.corePoolSize:8}") Integer corePoolSize,
+                                        @Value("${devops.enrichment.executor.maxPoolSize:32}") Integer maxPoolSize,
+                                        @Value("${devops.enrichment.executor.queueCapacity:100}") Integer queueCapacity) {
+        LOGGER.info("Create AsyncTaskExecutor for enrichment lookups. The coreSize is {}, the maxSize is {} and the queueCapacity is {}", corePoolSize, maxPoolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(GitOpsConstants.ENRICHMENT_EXECUTOR);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
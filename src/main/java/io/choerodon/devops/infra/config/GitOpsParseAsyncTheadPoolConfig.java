@@ -0,0 +1,41 @@
+package io.choerodon.devops.infra.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 解析GitOps文件的线程池
+ * 队列满时由提交任务的线程自己解析, 从而限制同时在解析的文件数量
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class GitOpsParseAsyncTheadPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsParseAsyncTheadPoolConfig.class);
+
+    @Bean(name = GitOpsConstants.GITOPS_PARSE_EXECUTOR)
+    @Qualifier(GitOpsConstants.GITOPS_PARSE_EXECUTOR)
+    public AsyncTaskExecutor gitOpsParse(@Value("${devops.gitops.parse.executor.corePoolSize:4}") Integer corePoolSize,
+                                         @Value("${devops.gitops.parse.executor.maxPoolSize:8}") Integer maxPoolSize,
+                                         @Value("${devops.gitops.parse.executor.queueCapacity:200}") Integer queueCapacity) {
+        LOGGER.info("Create AsyncTaskExecutor for GitOps parsing. The coreSize is {}, the maxSize is {} and the queueCapacity is {}", corePoolSize, maxPoolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(GitOpsConstants.GITOPS_PARSE_EXECUTOR);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,42 @@
+package io.choerodon.devops.infra.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 主机组部署时并行部署多个主机的线程池
+ * 部署的耗时主要在等待远程命令执行, 线程数可以比cpu核数多
+ * 队列满时由执行部署任务的线程自己部署
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class HostDeployAsyncTheadPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostDeployAsyncTheadPoolConfig.class);
+
+    @Bean(name = GitOpsConstants.HOST_DEPLOY_EXECUTOR)
+    @Qualifier(GitOpsConstants.HOST_DEPLOY_EXECUTOR)
+    public AsyncTaskExecutor hostDeploy(@Value("${devops.host.deploy.executor.corePoolSize:8}") Integer corePoolSize,
+                                        @Value("${devops.host.deploy.executor.maxPoolSize:32}") Integer maxPoolSize,
+                                        @Value("${devops.host.deploy.executor.queueCapacity:200}") Integer queueCapacity) {
+        LOGGER.info("Create AsyncTaskExecutor for host deploy. The coreSize is {}, the maxSize is {} and the queueCapacity is {}", corePoolSize, maxPoolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(GitOpsConstants.HOST_DEPLOY_EXECUTOR);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
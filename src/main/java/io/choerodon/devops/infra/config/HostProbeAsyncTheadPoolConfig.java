@@ -0,0 +1,42 @@
+package io.choerodon.devops.infra.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 并行探测主机连接状态的线程池
+ * 探测的耗时主要在等待网络, 线程数可以比cpu核数多
+ * 队列满时由校准主机状态的线程自己探测
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class HostProbeAsyncTheadPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostProbeAsyncTheadPoolConfig.class);
+
+    @Bean(name = GitOpsConstants.HOST_PROBE_EXECUTOR)
+    @Qualifier(GitOpsConstants.HOST_PROBE_EXECUTOR)
+    public AsyncTaskExecutor hostProbe(@Value("${devops.host.probe.executor.corePoolSize:16}") Integer corePoolSize,
+                                       @Value("${devops.host.probe.executor.maxPoolSize:32}") Integer maxPoolSize,
+                                       @Value("${devops.host.probe.executor.queueCapacity:500}") Integer queueCapacity) {
+        LOGGER.info("Create AsyncTaskExecutor for host probe. The coreSize is {}, the maxSize is {} and the queueCapacity is {}", corePoolSize, maxPoolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(GitOpsConstants.HOST_PROBE_EXECUTOR);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,27 @@
+package io.choerodon.devops.infra.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * devops-service实例间通过redis发布订阅同步本地状态共用的监听容器
+ * 所有频道共用一个订阅连接, 各模块在初始化时注册自己的监听, 容器的启动和关闭由spring管理
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class RedisMessageListenerConfig {
+    public static final String REDIS_MESSAGE_LISTENER_CONTAINER = "devopsRedisMessageListenerContainer";
+
+    @Bean(name = REDIS_MESSAGE_LISTENER_CONTAINER)
+    @Qualifier(REDIS_MESSAGE_LISTENER_CONTAINER)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+}
@@ -11,6 +11,7 @@ public final class DevOpsWebSocketConstants {
     public static final String FRONT_LOG = "front_log";
     public static final String FRONT_EXEC = "front_exec";
     public static final String FRONT_DESCRIBE = "front_describe";
+    public static final String FRONT_HOST_DEPLOY_LOG = "front_host_deploy_log";
     public static final String AGENT_LOG = "agent_log";
     public static final String AGENT_EXEC = "agent_exec";
     public static final String AGENT_DESCRIBE = "agent_describe";
@@ -24,6 +25,7 @@ public final class DevOpsWebSocketConstants {
     public static final String KIND = "kind";
     public static final String NAME = "name";
     public static final String DESCRIBE_Id = "describeId";
+    public static final String CD_JOB_RECORD = "cd_job_record";
 
     /**
      * 形如:  cluster:123
@@ -246,4 +246,24 @@ public class GitOpsConstants {
      * 主机状态校准的线程池名称
      */
     public static final String HOST_STATUS_EXECUTOR = "host-status-executor";
+
+    /**
+     * 并行探测主机连接状态的线程池名称
+     */
+    public static final String HOST_PROBE_EXECUTOR = "host-probe-executor";
+
+    /**
+     * 主机组部署时并行部署多个主机的线程池名称
+     */
+    public static final String HOST_DEPLOY_EXECUTOR = "host-deploy-executor";
+
+    /**
+     * 解析GitOps文件的线程池名称
+     */
+    public static final String GITOPS_PARSE_EXECUTOR = "gitops-parse-executor";
+
+    /**
+     * 并行查询分页列表关联数据(用户, 项目, 敏捷问题等)的线程池名称
+     */
+    public static final String ENRICHMENT_EXECUTOR = "enrich-executor";
 }
@@ -64,6 +64,9 @@ public class DevopsCdJobRecordDTO extends AuditDomain {
     @ApiModelProperty("日志信息")
     private String log;
 
+    @ApiModelProperty("主机部署 每个主机的部署结果json")
+    private String hostDeployStatus;
+
     public String getLog() {
         return log;
     }
@@ -72,6 +75,14 @@ public class DevopsCdJobRecordDTO extends AuditDomain {
         this.log = log;
     }
 
+    public String getHostDeployStatus() {
+        return hostDeployStatus;
+    }
+
+    public void setHostDeployStatus(String hostDeployStatus) {
+        this.hostDeployStatus = hostDeployStatus;
+    }
+
     public Long getPipelineRecordId() {
         return pipelineRecordId;
     }
@@ -280,6 +291,7 @@ public class DevopsCdJobRecordDTO extends AuditDomain {
                 ", finishedDate=" + finishedDate +
                 ", durationSeconds=" + durationSeconds +
                 ", deployMetadata='" + deployMetadata + '\'' +
+                ", hostDeployStatus='" + hostDeployStatus + '\'' +
                 ", deployInfoId=" + deployInfoId +
                 ", commandId=" + commandId +
                 ", pipelineRecordId=" + pipelineRecordId +
@@ -0,0 +1,188 @@
+package io.choerodon.devops.infra.dto;
+
+import java.util.Date;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import io.swagger.annotations.ApiModelProperty;
+
+import io.choerodon.mybatis.annotation.ModifyAudit;
+import io.choerodon.mybatis.annotation.VersionAudit;
+import io.choerodon.mybatis.domain.AuditDomain;
+
+/**
+ * 接收到的gitlab webhook事件
+ * 事件先持久化再按gitlab项目顺序异步处理, 相同去重键的事件(gitlab的重试)只保存一次
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@ModifyAudit
+@VersionAudit
+@Table(name = "devops_gitlab_webhook_event")
+public class DevopsGitlabWebhookEventDTO extends AuditDomain {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @ApiModelProperty("自增id")
+    private Long id;
+
+    @ApiModelProperty("去重键, (事件类型, gitlab项目id, 对象id, 状态, 更新时间)的sha256")
+    private String eventKey;
+
+    @ApiModelProperty("gitlab项目id")
+    private Long gitlabProjectId;
+
+    @ApiModelProperty("事件类型 push/tag_push/merge_request/pipeline/build")
+    private String objectKind;
+
+    @ApiModelProperty("事件对象的id, push事件为分支")
+    private String objectId;
+
+    @ApiModelProperty("事件对象的状态, push事件为推送后的commit")
+    private String objectStatus;
+
+    @ApiModelProperty("事件对象的更新时间, push事件为推送前的commit")
+    private String objectUpdatedAt;
+
+    @ApiModelProperty("webhook的token")
+    private String token;
+
+    @ApiModelProperty("webhook的原始内容")
+    private String body;
+
+    /**
+     * {@link io.choerodon.devops.infra.enums.GitlabWebhookEventStatus}
+     */
+    @ApiModelProperty("处理状态 pending/success/failed")
+    private String status;
+
+    @ApiModelProperty("处理失败的原因")
+    private String errorMessage;
+
+    @ApiModelProperty("处理失败的次数")
+    private Integer attemptCount;
+
+    @ApiModelProperty("处理失败后下次重试的时间")
+    private Date nextAttemptTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEventKey() {
+        return eventKey;
+    }
+
+    public void setEventKey(String eventKey) {
+        this.eventKey = eventKey;
+    }
+
+    public Long getGitlabProjectId() {
+        return gitlabProjectId;
+    }
+
+    public void setGitlabProjectId(Long gitlabProjectId) {
+        this.gitlabProjectId = gitlabProjectId;
+    }
+
+    public String getObjectKind() {
+        return objectKind;
+    }
+
+    public void setObjectKind(String objectKind) {
+        this.objectKind = objectKind;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public void setObjectId(String objectId) {
+        this.objectId = objectId;
+    }
+
+    public String getObjectStatus() {
+        return objectStatus;
+    }
+
+    public void setObjectStatus(String objectStatus) {
+        this.objectStatus = objectStatus;
+    }
+
+    public String getObjectUpdatedAt() {
+        return objectUpdatedAt;
+    }
+
+    public void setObjectUpdatedAt(String objectUpdatedAt) {
+        this.objectUpdatedAt = objectUpdatedAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Integer getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(Integer attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    public Date getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+
+    public void setNextAttemptTime(Date nextAttemptTime) {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+
+    @Override
+    public String toString() {
+        // 不输出token和内容
+        return "DevopsGitlabWebhookEventDTO{" +
+                "id=" + id +
+                ", gitlabProjectId=" + gitlabProjectId +
+                ", objectKind='" + objectKind + '\'' +
+                ", objectId='" + objectId + '\'' +
+                ", objectStatus='" + objectStatus + '\'' +
+                ", objectUpdatedAt='" + objectUpdatedAt + '\'' +
+                ", status='" + status + '\'' +
+                ", attemptCount=" + attemptCount +
+                '}';
+    }
+}
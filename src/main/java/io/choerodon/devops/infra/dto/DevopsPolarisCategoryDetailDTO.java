@@ -13,6 +13,8 @@ import io.choerodon.mybatis.domain.AuditDomain;
 
 /**
  * 按类别分的资源详细扫描结果
+ * 详情gzip压缩后存在compressed_detail, 之前的纪录只有未压缩的detail
+ * 扫描结果分批处理, 一个类别的详情可能有多条纪录, 按id的顺序拼接
  *
  * @author zmf
  * @since 2/17/20
@@ -26,12 +28,34 @@ public class DevopsPolarisCategoryDetailDTO extends AuditDomain {
     @ApiModelProperty("自增id")
     private Long id;
 
+    @ApiModelProperty("扫描纪录id")
+    private Long recordId;
+
+    @ApiModelProperty("检测项的类别")
+    private String category;
+
     /**
      * json结构是 {@link io.choerodon.devops.api.vo.polaris.PolarisSummaryItemContentVO} 数组
      */
     @ApiModelProperty("每一类的扫描结果json数据")
     private String detail;
 
+    @ApiModelProperty("gzip压缩的详情, 不为空时代替detail字段")
+    private byte[] compressedDetail;
+
+    @ApiModelProperty("详情json数组的元素数量")
+    private Integer itemCount;
+
+    public DevopsPolarisCategoryDetailDTO() {
+    }
+
+    public DevopsPolarisCategoryDetailDTO(Long recordId, String category, byte[] compressedDetail, Integer itemCount) {
+        this.recordId = recordId;
+        this.category = category;
+        this.compressedDetail = compressedDetail;
+        this.itemCount = itemCount;
+    }
+
     public Long getId() {
         return id;
     }
@@ -40,6 +64,22 @@ public class DevopsPolarisCategoryDetailDTO extends AuditDomain {
         this.id = id;
     }
 
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
     public String getDetail() {
         return detail;
     }
@@ -47,4 +87,20 @@ public class DevopsPolarisCategoryDetailDTO extends AuditDomain {
     public void setDetail(String detail) {
         this.detail = detail;
     }
+
+    public byte[] getCompressedDetail() {
+        return compressedDetail;
+    }
+
+    public void setCompressedDetail(byte[] compressedDetail) {
+        this.compressedDetail = compressedDetail;
+    }
+
+    public Integer getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(Integer itemCount) {
+        this.itemCount = itemCount;
+    }
 }
@@ -29,7 +29,7 @@ public class DevopsPolarisCategoryResultDTO extends AuditDomain {
     @ApiModelProperty("扫描纪录id")
     private Long recordId;
 
-    @ApiModelProperty("此条资源详细扫描纪录id")
+    @ApiModelProperty("此条资源详细扫描纪录id, 已不再使用, 详情通过recordId和category关联")
     private Long detailId;
 
     @ApiModelProperty("扫描结果的得分")
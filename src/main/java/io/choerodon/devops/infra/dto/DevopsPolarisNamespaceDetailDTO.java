@@ -13,6 +13,8 @@ import io.choerodon.mybatis.domain.AuditDomain;
 
 /**
  * 资源详细扫描结果
+ * 详情gzip压缩后存在compressed_detail, 之前的纪录只有未压缩的detail
+ * 扫描结果分批处理, 一个namespace的详情可能有多条纪录, 按id的顺序拼接
  *
  * @author zmf
  * @since 2/17/20
@@ -26,6 +28,12 @@ public class DevopsPolarisNamespaceDetailDTO extends AuditDomain {
     @ApiModelProperty("自增id")
     private Long id;
 
+    @ApiModelProperty("扫描纪录id")
+    private Long recordId;
+
+    @ApiModelProperty("集群namespace")
+    private String namespace;
+
     /**
      * 当，是扫描的集群时，json结构是 {@link io.choerodon.devops.api.vo.polaris.PolarisStorageControllerResultVO} 的数组
      * 当，是扫描的环境时，json结构是 {@link io.choerodon.devops.api.vo.polaris.InstanceWithPolarisStorageVO} 的数组
@@ -33,11 +41,20 @@ public class DevopsPolarisNamespaceDetailDTO extends AuditDomain {
     @ApiModelProperty("是这个namespace下所有扫描数据json，根据扫描范围是env或者是cluster结构会有不同")
     private String detail;
 
+    @ApiModelProperty("gzip压缩的详情, 不为空时代替detail字段")
+    private byte[] compressedDetail;
+
+    @ApiModelProperty("详情json数组的元素数量")
+    private Integer itemCount;
+
     public DevopsPolarisNamespaceDetailDTO() {
     }
 
-    public DevopsPolarisNamespaceDetailDTO(String detail) {
-        this.detail = detail;
+    public DevopsPolarisNamespaceDetailDTO(Long recordId, String namespace, byte[] compressedDetail, Integer itemCount) {
+        this.recordId = recordId;
+        this.namespace = namespace;
+        this.compressedDetail = compressedDetail;
+        this.itemCount = itemCount;
     }
 
     public Long getId() {
@@ -48,6 +65,22 @@ public class DevopsPolarisNamespaceDetailDTO extends AuditDomain {
         this.id = id;
     }
 
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
     public String getDetail() {
         return detail;
     }
@@ -55,4 +88,20 @@ public class DevopsPolarisNamespaceDetailDTO extends AuditDomain {
     public void setDetail(String detail) {
         this.detail = detail;
     }
+
+    public byte[] getCompressedDetail() {
+        return compressedDetail;
+    }
+
+    public void setCompressedDetail(byte[] compressedDetail) {
+        this.compressedDetail = compressedDetail;
+    }
+
+    public Integer getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(Integer itemCount) {
+        this.itemCount = itemCount;
+    }
 }
@@ -32,7 +32,7 @@ public class DevopsPolarisNamespaceResultDTO extends AuditDomain {
     @ApiModelProperty("扫描纪录id")
     private Long recordId;
 
-    @ApiModelProperty("此namespace详细扫描纪录id")
+    @ApiModelProperty("此namespace详细扫描纪录id, 已不再使用, 详情通过recordId和namespace关联")
     private Long detailId;
 
     @ApiModelProperty("是否有error级别的检测项")
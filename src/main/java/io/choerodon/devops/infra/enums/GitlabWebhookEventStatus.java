@@ -0,0 +1,32 @@
+package io.choerodon.devops.infra.enums;
+
+/**
+ * 持久化的gitlab webhook事件的处理状态
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public enum GitlabWebhookEventStatus {
+    /**
+     * 待处理
+     */
+    PENDING("pending"),
+    /**
+     * 处理成功
+     */
+    SUCCESS("success"),
+    /**
+     * 处理失败, 失败次数未达到上限时在退避时间之后重新处理
+     */
+    FAILED("failed");
+
+    private final String value;
+
+    GitlabWebhookEventStatus(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
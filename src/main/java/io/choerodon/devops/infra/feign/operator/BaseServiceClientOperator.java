@@ -1,15 +1,29 @@
 package io.choerodon.devops.infra.feign.operator;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 
 import com.alibaba.fastjson.JSONObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.gson.Gson;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
@@ -20,6 +34,7 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.vo.OrgAdministratorVO;
 import io.choerodon.devops.api.vo.ResourceLimitVO;
 import io.choerodon.devops.api.vo.RoleAssignmentSearchVO;
+import io.choerodon.devops.infra.config.RedisMessageListenerConfig;
 import io.choerodon.devops.infra.dto.iam.*;
 import io.choerodon.devops.infra.enums.LabelType;
 import io.choerodon.devops.infra.feign.BaseServiceClient;
@@ -41,9 +56,136 @@ public class BaseServiceClientOperator {
     private static final String LOGIN_NAME = "loginName";
     private static final String REAL_NAME = "realName";
 
+    /**
+     * 通知所有devops-service实例清除iam数据缓存的频道, 消息格式是 "类型:id", 如 "user:1"
+     */
+    private static final String CACHE_EVICT_CHANNEL = "devops-service:iam-cache-evict";
+    private static final String CACHE_TYPE_PROJECT = "project";
+    private static final String CACHE_TYPE_TENANT = "tenant";
+    private static final String CACHE_TYPE_USER = "user";
+    private static final String CACHE_METRIC_PREFIX = "devops.iam.cache.";
+
+    @Value("${devops.iam.cache.project.maximumSize:2000}")
+    private Long projectCacheMaximumSize;
+    @Value("${devops.iam.cache.project.expireSeconds:300}")
+    private Long projectCacheExpireSeconds;
+    @Value("${devops.iam.cache.tenant.maximumSize:500}")
+    private Long tenantCacheMaximumSize;
+    @Value("${devops.iam.cache.tenant.expireSeconds:600}")
+    private Long tenantCacheExpireSeconds;
+    @Value("${devops.iam.cache.user.maximumSize:10000}")
+    private Long userCacheMaximumSize;
+    @Value("${devops.iam.cache.user.expireSeconds:300}")
+    private Long userCacheExpireSeconds;
 
     @Autowired
     private BaseServiceClient baseServiceClient;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    @Qualifier(RedisMessageListenerConfig.REDIS_MESSAGE_LISTENER_CONTAINER)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 项目, 组织和用户的本地缓存, 只缓存按id查询的默认参数的结果.
+     * 缓存的对象不会直接返回给调用方, 返回的是它的深拷贝, 避免调用方修改缓存中的数据.
+     * devops-service不消费组织的变更事件, 组织缓存只依赖过期时间失效
+     */
+    private Cache<Long, ProjectDTO> projectCache;
+    private Cache<Long, Tenant> tenantCache;
+    private Cache<Long, IamUserDTO> userCache;
+
+    @PostConstruct
+    public void initCaches() {
+        projectCache = buildCache(CACHE_TYPE_PROJECT, projectCacheMaximumSize, projectCacheExpireSeconds);
+        tenantCache = buildCache(CACHE_TYPE_TENANT, tenantCacheMaximumSize, tenantCacheExpireSeconds);
+        userCache = buildCache(CACHE_TYPE_USER, userCacheMaximumSize, userCacheExpireSeconds);
+        // iam的数据变化只会由一个devops-service实例消费, 通过redis的发布订阅通知其它实例
+        redisMessageListenerContainer.addMessageListener(this::onCacheEvict, new ChannelTopic(CACHE_EVICT_CHANNEL));
+    }
+
+    private <T> Cache<Long, T> buildCache(String type, Long maximumSize, Long expireSeconds) {
+        LOGGER.info("Create iam {} cache. The maximumSize is {} and the expireSeconds is {}", type, maximumSize, expireSeconds);
+        Cache<Long, T> cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        // 命中率等指标通过actuator的metrics端点暴露, 如 devops.iam.cache.user
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_METRIC_PREFIX + type);
+        return cache;
+    }
+
+    /**
+     * 项目信息变化后清除所有实例上的项目缓存
+     *
+     * @param projectId 项目id
+     */
+    public void evictProjectCache(Long projectId) {
+        publishCacheEvict(CACHE_TYPE_PROJECT, projectId);
+    }
+
+    /**
+     * 用户信息变化后清除所有实例上的用户缓存
+     *
+     * @param userId 用户id
+     */
+    public void evictUserCache(Long userId) {
+        publishCacheEvict(CACHE_TYPE_USER, userId);
+    }
+
+    private void publishCacheEvict(String type, Long id) {
+        if (id == null) {
+            return;
+        }
+        // 先清除本实例的缓存, 发布失败时其它实例的缓存也会在过期后失效
+        evictLocalCache(type, id);
+        try {
+            stringRedisTemplate.convertAndSend(CACHE_EVICT_CHANNEL, type + ":" + id);
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to publish iam cache eviction of {} {}", type, id, ex);
+        }
+    }
+
+    private void onCacheEvict(Message message, byte[] pattern) {
+        String body = new String(message.getBody());
+        int index = body.indexOf(':');
+        if (index == -1) {
+            return;
+        }
+        evictLocalCache(body.substring(0, index), TypeUtil.objToLong(body.substring(index + 1)));
+    }
+
+    private void evictLocalCache(String type, Long id) {
+        if (id == null) {
+            return;
+        }
+        switch (type) {
+            case CACHE_TYPE_PROJECT:
+                projectCache.invalidate(id);
+                break;
+            case CACHE_TYPE_USER:
+                userCache.invalidate(id);
+                break;
+            default:
+                LOGGER.info("Unknown iam cache type {}", type);
+        }
+    }
+
+    /**
+     * 通过序列化得到深拷贝, 嵌套的集合和对象也不会和缓存共用
+     */
+    private <T> T copyOf(T source, Class<T> type) {
+        try {
+            return objectMapper.readValue(objectMapper.writeValueAsBytes(source), type);
+        } catch (IOException e) {
+            throw new CommonException("error.iam.cache.copy", e);
+        }
+    }
 
     /**
      * @param organizationId 组织id
@@ -61,7 +203,12 @@ public class BaseServiceClientOperator {
     }
 
     public ProjectDTO queryIamProjectById(Long projectId) {
-        return queryIamProjectById(projectId, true, true, true);
+        ProjectDTO cached = projectCache.getIfPresent(Objects.requireNonNull(projectId));
+        if (cached == null) {
+            cached = queryIamProjectById(projectId, true, true, true);
+            projectCache.put(projectId, cached);
+        }
+        return copyOf(cached, ProjectDTO.class);
     }
 
     public ProjectDTO queryIamProjectById(Long projectId, Boolean withCategory, Boolean withUserInfo, Boolean withAgileInfo) {
@@ -75,7 +222,12 @@ public class BaseServiceClientOperator {
     }
 
     public Tenant queryOrganizationById(Long organizationId) {
-        return queryOrganizationById(organizationId, true);
+        Tenant cached = organizationId == null ? null : tenantCache.getIfPresent(organizationId);
+        if (cached == null) {
+            cached = queryOrganizationById(organizationId, true);
+            tenantCache.put(organizationId, cached);
+        }
+        return copyOf(cached, Tenant.class);
     }
 
     public Tenant queryOrganizationById(Long organizationId, Boolean withMoreInfo) {
@@ -133,17 +285,42 @@ public class BaseServiceClientOperator {
 
     public List<IamUserDTO> listUsersByIds(List<Long> ids) {
         List<IamUserDTO> userDTOS = new ArrayList<>();
-        if (ids != null && !ids.isEmpty()) {
-            Long[] newIds = new Long[ids.size()];
+        if (ids == null || ids.isEmpty()) {
+            return userDTOS;
+        }
+        // 先从缓存中取, 只向iam查询缓存中没有的用户
+        Map<Long, IamUserDTO> users = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            IamUserDTO cached = id == null ? null : userCache.getIfPresent(id);
+            if (cached == null) {
+                missingIds.add(id);
+            } else {
+                users.put(id, cached);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            List<IamUserDTO> fetched;
             try {
-                userDTOS = baseServiceClient
-                        .listUsersByIds(ids.toArray(newIds), false).getBody();
-                if (userDTOS == null) {
-                    userDTOS = Collections.emptyList();
-                }
+                fetched = baseServiceClient
+                        .listUsersByIds(missingIds.toArray(new Long[0]), false).getBody();
             } catch (Exception e) {
                 throw new CommonException("error.users.get", e);
             }
+            if (fetched != null) {
+                fetched.stream()
+                        .filter(user -> user.getId() != null)
+                        .forEach(user -> {
+                            userCache.put(user.getId(), user);
+                            users.put(user.getId(), user);
+                        });
+            }
+        }
+        for (Long id : new LinkedHashSet<>(ids)) {
+            IamUserDTO user = users.get(id);
+            if (user != null) {
+                userDTOS.add(copyOf(user, IamUserDTO.class));
+            }
         }
         return userDTOS;
     }
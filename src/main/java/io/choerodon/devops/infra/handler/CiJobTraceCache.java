@@ -0,0 +1,307 @@
+package io.choerodon.devops.infra.handler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * ci job日志的共享缓冲区
+ * <p>
+ * 运行中的job: 每个job一个缓冲区, 同一个job的所有查看者共用. 距上次从gitlab拉取超过刷新间隔时,
+ * 只由一个请求去拉取, 同时到达的请求等待并复用这次的结果, 因此不论有多少人在看, 一个job在一个刷新间隔内最多拉取一次.
+ * 缓冲区按日志的字节数限制大小.
+ * <p>
+ * 已结束的job: job结束后gitlab还要归档日志, 刚结束时拉取的日志可能不完整, 所以结束后继续按运行中的job拉取,
+ * 直到有一次拉取在看到job结束之后至少一个刷新间隔才开始, 这次的日志不再变化, gzip压缩缓存,
+ * 按压缩后的字节数限制大小, 命中率等指标通过actuator的metrics端点暴露
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class CiJobTraceCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CiJobTraceCache.class);
+    private static final String CACHE_METRIC_NAME = "devops.ci.trace.cache";
+    private static final String METRIC_FETCH = "devops.ci.trace.fetch";
+    private static final String TAG_STATE = "state";
+    private static final String STATE_RUNNING = "running";
+    private static final String STATE_COMPLETED = "completed";
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 运行中的job两次从gitlab拉取日志的最小间隔, 单位: 毫秒
+     */
+    @Value("${devops.ci.trace.refreshMillis:2000}")
+    private Long refreshMillis;
+
+    /**
+     * 运行中的job的缓冲区的日志字节数上限
+     */
+    @Value("${devops.ci.trace.running.maximumWeight:104857600}")
+    private Long runningMaximumWeight;
+
+    /**
+     * 运行中的job的缓冲区没有查看者之后的保留时长, 单位: 秒
+     */
+    @Value("${devops.ci.trace.running.expireSeconds:60}")
+    private Long runningExpireSeconds;
+
+    /**
+     * 已结束的job压缩后的日志的字节数上限
+     */
+    @Value("${devops.ci.trace.completed.maximumWeight:52428800}")
+    private Long completedMaximumWeight;
+
+    /**
+     * 已结束的job的日志未被访问后的过期时间, 单位: 秒
+     */
+    @Value("${devops.ci.trace.completed.expireSeconds:1800}")
+    private Long completedExpireSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, TraceBuffer> runningTraces;
+    private Cache<String, byte[]> completedTraces;
+    private Counter runningFetchCounter;
+    private Counter completedFetchCounter;
+
+    @PostConstruct
+    public void initCache() {
+        LOGGER.info("Create ci job trace cache. The refreshMillis is {}, the running maximumWeight is {}, the completed maximumWeight is {}",
+                refreshMillis, runningMaximumWeight, completedMaximumWeight);
+        // 权重在放入缓存时计算, 每次拉取后重新放入缓冲区以更新权重
+        runningTraces = CacheBuilder.newBuilder()
+                .maximumWeight(runningMaximumWeight)
+                .weigher((String key, TraceBuffer value) -> key.length() + value.fetched.content.length)
+                .expireAfterAccess(runningExpireSeconds, TimeUnit.SECONDS)
+                .build();
+        completedTraces = CacheBuilder.newBuilder()
+                .maximumWeight(completedMaximumWeight)
+                .weigher((String key, byte[] value) -> key.length() + value.length)
+                .expireAfterAccess(completedExpireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, completedTraces, CACHE_METRIC_NAME);
+        runningFetchCounter = fetchCounter(STATE_RUNNING);
+        completedFetchCounter = fetchCounter(STATE_COMPLETED);
+    }
+
+    /**
+     * 获取job的完整日志
+     *
+     * @param gitlabProjectId gitlab项目id
+     * @param jobId           gitlab job id
+     * @param completed       job是否已结束
+     * @param fetcher         从gitlab拉取完整日志
+     * @return job的日志
+     */
+    public Trace read(Long gitlabProjectId, Long jobId, boolean completed, Supplier<String> fetcher) {
+        String key = gitlabProjectId + ":" + jobId;
+        try {
+            if (!completed) {
+                TraceBuffer buffer = runningTraces.get(key, TraceBuffer::new);
+                return new Trace(refresh(key, buffer, fetcher, runningFetchCounter).content, false, buffer, refreshMillis);
+            }
+            byte[] compressed = completedTraces.getIfPresent(key);
+            if (compressed != null) {
+                return new Trace(gunzip(compressed), true, null, refreshMillis);
+            }
+            TraceBuffer buffer = runningTraces.get(key, TraceBuffer::new);
+            long completedAt = buffer.markCompleted();
+            Fetched fetched = refresh(key, buffer, fetcher, completedFetchCounter);
+            if (fetched.startedAt - completedAt < refreshMillis) {
+                // gitlab可能还在归档日志, 之后再拉取一次
+                return new Trace(fetched.content, false, buffer, refreshMillis);
+            }
+            completedTraces.put(key, gzip(fetched.content));
+            runningTraces.invalidate(key);
+            return new Trace(fetched.content, true, null, refreshMillis);
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof CommonException) {
+                throw (CommonException) e.getCause();
+            }
+            throw new CommonException("error.ci.job.trace.query", e.getCause());
+        } catch (IOException e) {
+            throw new CommonException("error.ci.job.trace.query", e);
+        }
+    }
+
+    private Fetched refresh(String key, TraceBuffer buffer, Supplier<String> fetcher, Counter fetchCounter) {
+        if (buffer.isStale(refreshMillis)) {
+            synchronized (buffer) {
+                // 等待锁期间其它请求可能已经拉取过了
+                if (buffer.isStale(refreshMillis)) {
+                    fetchCounter.increment();
+                    long startedAt = System.currentTimeMillis();
+                    byte[] content = toBytes(fetcher.get());
+                    buffer.fetched = new Fetched(content, startedAt, System.currentTimeMillis());
+                    // 已经追上的偏移量不再算作超出
+                    buffer.overruns.keySet().removeIf(offset -> offset <= content.length);
+                    runningTraces.put(key, buffer);
+                }
+            }
+        }
+        return buffer.fetched;
+    }
+
+    private static byte[] toBytes(String trace) {
+        return trace == null ? EMPTY : trace.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        try (OutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(content);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new CommonException("error.ci.job.trace.query", e);
+        }
+    }
+
+    private Counter fetchCounter(String state) {
+        return Counter.builder(METRIC_FETCH)
+                .tag(TAG_STATE, state)
+                .description("ci job traces fetched from gitlab")
+                .register(meterRegistry);
+    }
+
+    /**
+     * job的日志
+     */
+    public static class Trace {
+        private final byte[] content;
+        private final boolean completed;
+        private final TraceBuffer buffer;
+        private final long refreshMillis;
+
+        private Trace(byte[] content, boolean completed, TraceBuffer buffer, long refreshMillis) {
+            this.content = content;
+            this.completed = completed;
+            this.buffer = buffer;
+            this.refreshMillis = refreshMillis;
+        }
+
+        /**
+         * @return UTF-8编码的日志内容, 调用方不能修改
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * @return 日志是否是最终的, 之后不再变化
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * 查看者的偏移量超出日志长度的时间是否已经超过一个刷新间隔.
+         * 其它实例上更新的缓冲区造成的超出在一个刷新间隔内就会追上, 超过时说明日志被清除或者变短了, 应该从头返回
+         *
+         * @param offset 查看者的偏移量
+         * @return 超过一个刷新间隔时返回true
+         */
+        public boolean isOverrunExpired(long offset) {
+            if (offset <= content.length) {
+                return false;
+            }
+            if (buffer == null) {
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            Long since = buffer.overruns.putIfAbsent(offset, now);
+            if (since != null && now - since >= refreshMillis) {
+                buffer.overruns.remove(offset);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一次拉取的日志
+     */
+    private static class Fetched {
+        private static final Fetched NONE = new Fetched(EMPTY, 0, 0);
+
+        private final byte[] content;
+        /**
+         * 开始拉取的时间
+         */
+        private final long startedAt;
+        /**
+         * 拉取完成的时间, 为0表示还没有拉取过
+         */
+        private final long finishedAt;
+
+        private Fetched(byte[] content, long startedAt, long finishedAt) {
+            this.content = content;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+        }
+    }
+
+    /**
+     * 运行中的job最近一次拉取的日志
+     */
+    private static class TraceBuffer {
+        private volatile Fetched fetched = Fetched.NONE;
+        /**
+         * 第一次看到job已结束的时间, 为0表示还没有结束
+         */
+        private final AtomicLong completedAt = new AtomicLong();
+        /**
+         * 超出日志长度的偏移量和第一次超出的时间
+         */
+        private final Map<Long, Long> overruns = new ConcurrentHashMap<>();
+
+        private boolean isStale(long refreshMillis) {
+            return fetched.finishedAt == 0 || System.currentTimeMillis() - fetched.finishedAt >= refreshMillis;
+        }
+
+        private long markCompleted() {
+            completedAt.compareAndSet(0, System.currentTimeMillis());
+            return completedAt.get();
+        }
+    }
+}
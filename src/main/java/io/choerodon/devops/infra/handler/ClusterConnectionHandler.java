@@ -3,23 +3,28 @@ package io.choerodon.devops.infra.handler;
 import static io.choerodon.devops.infra.constant.DevOpsWebSocketConstants.*;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.vo.ClusterSessionVO;
 import io.choerodon.devops.app.service.DevopsClusterService;
+import io.choerodon.devops.infra.config.RedisMessageListenerConfig;
 import io.choerodon.devops.infra.dto.DevopsClusterDTO;
 import io.choerodon.devops.infra.dto.iam.ProjectDTO;
 import io.choerodon.devops.infra.dto.iam.Tenant;
@@ -38,6 +43,10 @@ import io.choerodon.devops.infra.util.*;
 public class ClusterConnectionHandler {
     private static final String CLUSTER_ID = "clusterId";
     public static final String CLUSTER_SESSION = "cluster-sessions-cache";
+    /**
+     * 集群连接信息变更的通知频道, 消息内容是变更的registerKey
+     */
+    private static final String CLUSTER_SESSION_CHANNEL = "devops-service:cluster-sessions-changed";
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterConnectionHandler.class);
 
     private Pattern pattern = Pattern.compile("^[-+]?[\\d]*$");
@@ -53,6 +62,97 @@ public class ClusterConnectionHandler {
     private RedisTemplate<String, Object> redisTemplate;
     @Autowired
     private DevopsClusterService devopsClusterService;
+    @Autowired
+    @Qualifier(RedisMessageListenerConfig.REDIS_MESSAGE_LISTENER_CONTAINER)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 本地缓存的集群连接信息, 和redis中的 {@link #CLUSTER_SESSION} 保持一致
+     * registerKey -> session
+     */
+    private final Map<String, ClusterSessionVO> localClusterSessions = new ConcurrentHashMap<>();
+    /**
+     * 由 localClusterSessions 计算得到的索引, clusterId -> agent版本是否是最新的
+     * 只在连接信息变更时重建, 查询时不需要再比较版本
+     */
+    private volatile Map<Long, Boolean> clusterUpToDateIndex = Collections.emptyMap();
+
+    @PostConstruct
+    public void initClusterSessionRegistry() {
+        refreshClusterSessions();
+        // 其它devops-service实例上的agent连接变化通过redis的发布订阅同步到本地
+        redisMessageListenerContainer.addMessageListener(this::onClusterSessionChanged, new ChannelTopic(CLUSTER_SESSION_CHANNEL));
+    }
+
+    /**
+     * 定时全量同步一次, 作为发布订阅消息丢失时的兜底
+     */
+    @Scheduled(fixedDelayString = "${devops.cluster.session.refreshIntervalMilliseconds:60000}")
+    public void refreshClusterSessions() {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(CLUSTER_SESSION);
+        Map<String, ClusterSessionVO> latest = new HashMap<>();
+        entries.forEach((k, v) -> {
+            if (v instanceof ClusterSessionVO) {
+                latest.put(TypeUtil.objToString(k), (ClusterSessionVO) v);
+            }
+        });
+        synchronized (localClusterSessions) {
+            localClusterSessions.keySet().retainAll(latest.keySet());
+            localClusterSessions.putAll(latest);
+            rebuildClusterIndex();
+        }
+    }
+
+    /**
+     * 保存agent的连接信息, 并通知其它实例
+     *
+     * @param clusterSession 连接信息
+     */
+    public void putClusterSession(ClusterSessionVO clusterSession) {
+        redisTemplate.opsForHash().put(CLUSTER_SESSION, clusterSession.getRegisterKey(), clusterSession);
+        updateLocalClusterSession(clusterSession.getRegisterKey(), clusterSession);
+        redisTemplate.convertAndSend(CLUSTER_SESSION_CHANNEL, clusterSession.getRegisterKey());
+    }
+
+    /**
+     * 删除agent的连接信息, 并通知其它实例
+     *
+     * @param registerKey 连接的registerKey
+     */
+    public void removeClusterSession(String registerKey) {
+        redisTemplate.opsForHash().delete(CLUSTER_SESSION, registerKey);
+        updateLocalClusterSession(registerKey, null);
+        redisTemplate.convertAndSend(CLUSTER_SESSION_CHANNEL, registerKey);
+    }
+
+    private void onClusterSessionChanged(Message message, byte[] pattern) {
+        Object registerKey = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (registerKey == null) {
+            return;
+        }
+        Object value = redisTemplate.opsForHash().get(CLUSTER_SESSION, registerKey);
+        updateLocalClusterSession(TypeUtil.objToString(registerKey), value instanceof ClusterSessionVO ? (ClusterSessionVO) value : null);
+    }
+
+    private void updateLocalClusterSession(String registerKey, ClusterSessionVO clusterSession) {
+        synchronized (localClusterSessions) {
+            if (clusterSession == null) {
+                localClusterSessions.remove(registerKey);
+            } else {
+                localClusterSessions.put(registerKey, clusterSession);
+            }
+            rebuildClusterIndex();
+        }
+    }
+
+    private void rebuildClusterIndex() {
+        Map<Long, Boolean> index = new HashMap<>();
+        localClusterSessions.values().forEach(session -> {
+            boolean upToDate = compareVersion(session.getVersion() == null ? "0" : session.getVersion(), agentExpectVersion) != 1;
+            index.merge(session.getClusterId(), upToDate, Boolean::logicalOr);
+        });
+        clusterUpToDateIndex = index;
+    }
 
     private static int compareVersion(String a, String b) {
         if (!a.contains("-") && !b.contains("-")) {
@@ -118,11 +218,7 @@ public class ClusterConnectionHandler {
      * @return true 表示已连接
      */
     private boolean getEnvConnectionStatus(Long clusterId) {
-        Map<String, ClusterSessionVO> clusterSessions = (Map<String, ClusterSessionVO>) (Map) redisTemplate.opsForHash().entries(CLUSTER_SESSION);
-
-        return clusterSessions.entrySet().stream()
-                .anyMatch(t -> clusterId.equals(t.getValue().getClusterId())
-                        && compareVersion(t.getValue().getVersion() == null ? "0" : t.getValue().getVersion(), agentExpectVersion) != 1);
+        return Boolean.TRUE.equals(clusterUpToDateIndex.get(clusterId));
     }
 
 //
@@ -145,11 +241,13 @@ public class ClusterConnectionHandler {
      * @return 环境更新列表
      */
     public List<Long> getUpdatedClusterList() {
-        Map<String, ClusterSessionVO> clusterSessions = (Map<String, ClusterSessionVO>) (Map) redisTemplate.opsForHash().entries(CLUSTER_SESSION);
-        return clusterSessions.entrySet().stream()
-                .filter(t -> compareVersion(t.getValue().getVersion() == null ? "0" : t.getValue().getVersion(), agentExpectVersion) != 1)
-                .map(t -> t.getValue().getClusterId())
-                .collect(Collectors.toCollection(ArrayList::new));
+        List<Long> updatedClusters = new ArrayList<>();
+        clusterUpToDateIndex.forEach((clusterId, upToDate) -> {
+            if (Boolean.TRUE.equals(upToDate)) {
+                updatedClusters.add(clusterId);
+            }
+        });
+        return updatedClusters;
     }
 
 
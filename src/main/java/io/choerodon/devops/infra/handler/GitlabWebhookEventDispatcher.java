@@ -0,0 +1,429 @@
+package io.choerodon.devops.infra.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.JobWebHookVO;
+import io.choerodon.devops.app.service.GitlabWebHookService;
+import io.choerodon.devops.infra.dto.DevopsGitlabWebhookEventDTO;
+import io.choerodon.devops.infra.enums.GitlabWebhookEventStatus;
+import io.choerodon.devops.infra.mapper.DevopsGitlabWebhookEventMapper;
+
+/**
+ * gitlab webhook事件的分发器
+ * <p>
+ * webhook请求中只把事件插入数据库就返回, 相同去重键的事件(gitlab超时后的重试)只插入一次.
+ * 事件按gitlab项目id分配到固定的处理通道(lane)上, 同一个项目的事件按接收的顺序处理.
+ * 多个devops-service实例之间通过redis的锁保证同一个项目同时只在一个实例上处理.
+ * 通道的队列满了或者实例重启时, 未处理的事件由定时任务重新分发.
+ * 处理失败的事件按失败次数指数退避后由定时任务重新处理, 达到次数上限后需要管理员手动重新处理.
+ * 失败的事件重试成功或达到次数上限之前, 同一个项目之后的事件不处理, 所以重试的事件不会覆盖之后的事件的结果.
+ * 连续的job(build)事件延迟一会儿后合并处理, 同一个job只按最新的状态更新一次, 合并更新失败时逐个重新处理
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class GitlabWebhookEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitlabWebhookEventDispatcher.class);
+
+    private static final String THREAD_NAME_PREFIX = "gitlab-webhook-";
+    private static final String LOCK_KEY_PREFIX = "devops-service:gitlab-webhook-lock:";
+    private static final String METRIC_ACCEPT = "devops.gitlab.webhook.accept";
+    private static final String METRIC_HANDLE = "devops.gitlab.webhook.handle";
+    private static final String TAG_KIND = "kind";
+    private static final String TAG_RESULT = "result";
+    private static final String RESULT_DUPLICATE = "duplicate";
+    private static final String RESULT_ACCEPTED = "accepted";
+    private static final String KIND_BUILD = "build";
+    private static final int DELETE_BATCH_SIZE = 1000;
+    /**
+     * 事件内容是对象的完整状态, 会被同一个对象之后的事件覆盖的事件类型. push事件是增量的, 不会被覆盖
+     */
+    private static final List<String> SUPERSEDED_KINDS = Arrays.asList("merge_request", "pipeline", KIND_BUILD);
+    private static final List<String> FINISHED_STATUSES = Arrays.asList(
+            GitlabWebhookEventStatus.SUCCESS.getValue(), GitlabWebhookEventStatus.FAILED.getValue());
+    private static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'EX', ARGV[2]) then return 1 else return 0 end", Long.class);
+    /**
+     * 只释放自己持有的锁
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+    /**
+     * 只续期自己持有的锁
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+
+    /**
+     * 处理通道的数量, 也就是处理webhook事件的线程数
+     */
+    @Value("${devops.gitlab.webhook.dispatch.laneCount:4}")
+    private Integer laneCount;
+
+    /**
+     * 每个通道的队列长度, 队列满时事件等待定时任务重新分发
+     */
+    @Value("${devops.gitlab.webhook.dispatch.queueCapacity:1000}")
+    private Integer queueCapacity;
+
+    /**
+     * 每次从数据库中查询的一个项目的事件数量
+     */
+    @Value("${devops.gitlab.webhook.dispatch.batchSize:100}")
+    private Integer batchSize;
+
+    /**
+     * 项目锁的过期时间, 单位: 秒, 每处理完一个事件续期一次
+     */
+    @Value("${devops.gitlab.webhook.dispatch.lockExpireSeconds:300}")
+    private Long lockExpireSeconds;
+
+    /**
+     * 接收后超过这个时长仍未处理的事件由定时任务重新分发, 单位: 毫秒
+     */
+    @Value("${devops.gitlab.webhook.dispatch.recoverDelayMillis:10000}")
+    private Long recoverDelayMillis;
+
+    /**
+     * 收到job事件后延迟处理的时长, 单位: 毫秒, 期间同一个项目的job事件合并成一次更新
+     */
+    @Value("${devops.gitlab.webhook.dispatch.buildBufferMillis:1000}")
+    private Long buildBufferMillis;
+
+    /**
+     * 处理完的事件的保留天数
+     */
+    @Value("${devops.gitlab.webhook.dispatch.retentionDays:7}")
+    private Integer retentionDays;
+
+    /**
+     * 一个事件最多处理的次数, 包括第一次
+     */
+    @Value("${devops.gitlab.webhook.dispatch.maxAttempts:5}")
+    private Integer maxAttempts;
+
+    /**
+     * 第一次失败后的重试间隔, 之后每次失败翻倍, 单位: 秒
+     */
+    @Value("${devops.gitlab.webhook.dispatch.retryDelaySeconds:30}")
+    private Long retryDelaySeconds;
+
+    /**
+     * 重试间隔的上限, 单位: 秒
+     */
+    @Value("${devops.gitlab.webhook.dispatch.retryMaxDelaySeconds:3600}")
+    private Long retryMaxDelaySeconds;
+
+    @Autowired
+    private DevopsGitlabWebhookEventMapper devopsGitlabWebhookEventMapper;
+    @Autowired
+    private GitlabWebHookService gitlabWebHookService;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    /**
+     * 已经提交到通道但还没开始处理的项目, 同一个项目的多个事件只需要提交一次
+     */
+    private final Set<Long> scheduledProjectIds = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor[] lanes;
+    private ScheduledExecutorService delayer;
+
+    @PostConstruct
+    public void init() {
+        LOGGER.info("Create gitlab webhook dispatcher. The lane count is {} and the queue capacity of each lane is {}", laneCount, queueCapacity);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+        threadFactory.setDaemon(true);
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        }
+        delayer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        delayer.shutdown();
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * 持久化事件并提交到项目对应的通道上, 重复的事件直接忽略
+     *
+     * @param event 事件, 需要填充去重键以外的字段
+     */
+    public void accept(DevopsGitlabWebhookEventDTO event) {
+        event.setEventKey(DigestUtils.sha256Hex(String.join("\n", event.getObjectKind(),
+                String.valueOf(event.getGitlabProjectId()), event.getObjectId(), event.getObjectStatus(),
+                event.getObjectUpdatedAt()).getBytes(StandardCharsets.UTF_8)));
+        event.setStatus(GitlabWebhookEventStatus.PENDING.getValue());
+        boolean inserted = devopsGitlabWebhookEventMapper.insertIgnoreDuplicate(event) > 0;
+        acceptCounter(event.getObjectKind(), inserted).increment();
+        if (inserted) {
+            // 流水线执行时job事件很密集, 稍等一会儿让同一个流水线的job事件合并处理
+            schedule(event.getGitlabProjectId(), KIND_BUILD.equals(event.getObjectKind()) ? buildBufferMillis : 0);
+        } else {
+            LOGGER.debug("Duplicate gitlab webhook event is ignored: {}", event);
+        }
+    }
+
+    /**
+     * 重新分发接收后长时间未处理的事件, 包括实例重启前未处理完的事件, 以及到了重试时间的失败事件
+     */
+    @Scheduled(initialDelayString = "${devops.gitlab.webhook.dispatch.recoverIntervalMillis:10000}",
+            fixedDelayString = "${devops.gitlab.webhook.dispatch.recoverIntervalMillis:10000}")
+    public void recoverPendingEvents() {
+        int retried = devopsGitlabWebhookEventMapper.retryFailedEvents(
+                GitlabWebhookEventStatus.FAILED.getValue(), GitlabWebhookEventStatus.PENDING.getValue(), maxAttempts);
+        if (retried > 0) {
+            LOGGER.info("Retry {} failed gitlab webhook events", retried);
+        }
+        Date before = new Date(System.currentTimeMillis() - recoverDelayMillis);
+        devopsGitlabWebhookEventMapper.listGitlabProjectIdsByStatus(GitlabWebhookEventStatus.PENDING.getValue(), before)
+                .forEach(this::schedule);
+    }
+
+    /**
+     * 重新处理失败的事件, 包括达到失败次数上限的事件. 同一个对象之后的事件已经处理成功的事件不再处理
+     *
+     * @param gitlabProjectId gitlab项目id, 为空时重新处理所有项目的失败事件
+     * @return 重新处理的事件数量
+     */
+    public int replayFailedEvents(Long gitlabProjectId) {
+        int replayed = devopsGitlabWebhookEventMapper.replayFailedEvents(GitlabWebhookEventStatus.FAILED.getValue(),
+                GitlabWebhookEventStatus.PENDING.getValue(), GitlabWebhookEventStatus.SUCCESS.getValue(), SUPERSEDED_KINDS, gitlabProjectId);
+        LOGGER.info("Replay {} failed gitlab webhook events of gitlab project {}", replayed, gitlabProjectId == null ? "all" : gitlabProjectId);
+        if (replayed > 0) {
+            if (gitlabProjectId != null) {
+                schedule(gitlabProjectId);
+            } else {
+                devopsGitlabWebhookEventMapper.listGitlabProjectIdsByStatus(GitlabWebhookEventStatus.PENDING.getValue(), new Date())
+                        .forEach(this::schedule);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * 删除超过保留天数的处理完的事件
+     */
+    @Scheduled(fixedDelayString = "${devops.gitlab.webhook.dispatch.cleanIntervalMillis:3600000}")
+    public void cleanFinishedEvents() {
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        int deleted;
+        do {
+            deleted = devopsGitlabWebhookEventMapper.deleteByStatusBefore(FINISHED_STATUSES, before, DELETE_BATCH_SIZE);
+        } while (deleted >= DELETE_BATCH_SIZE);
+    }
+
+    private void schedule(Long gitlabProjectId) {
+        schedule(gitlabProjectId, 0);
+    }
+
+    /**
+     * 把项目提交到通道上, 已经提交还没开始处理的项目不重复提交
+     *
+     * @param gitlabProjectId gitlab项目id
+     * @param delayMillis     延迟提交的时长, 用于等待之后的事件一起处理
+     */
+    private void schedule(Long gitlabProjectId, long delayMillis) {
+        if (!scheduledProjectIds.add(gitlabProjectId)) {
+            return;
+        }
+        if (delayMillis > 0) {
+            delayer.schedule(() -> submit(gitlabProjectId), delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            submit(gitlabProjectId);
+        }
+    }
+
+    private void submit(Long gitlabProjectId) {
+        try {
+            laneOf(gitlabProjectId).execute(() -> {
+                scheduledProjectIds.remove(gitlabProjectId);
+                drain(gitlabProjectId);
+            });
+        } catch (RejectedExecutionException e) {
+            scheduledProjectIds.remove(gitlabProjectId);
+            LOGGER.info("Gitlab webhook lane is full, events of gitlab project {} will be recovered later", gitlabProjectId);
+        }
+    }
+
+    /**
+     * 按顺序处理一个项目所有待处理的事件
+     */
+    private void drain(Long gitlabProjectId) {
+        String lockKey = LOCK_KEY_PREFIX + gitlabProjectId;
+        Long locked = stringRedisTemplate.execute(LOCK_SCRIPT, Collections.singletonList(lockKey), instanceId, String.valueOf(lockExpireSeconds));
+        if (!Long.valueOf(1L).equals(locked)) {
+            // 其它实例正在处理这个项目的事件, 处理完之前插入的事件由它处理或者之后重新分发
+            return;
+        }
+        try {
+            List<DevopsGitlabWebhookEventDTO> events;
+            do {
+                events = devopsGitlabWebhookEventMapper.listByGitlabProjectIdAndStatus(gitlabProjectId,
+                        GitlabWebhookEventStatus.PENDING.getValue(), GitlabWebhookEventStatus.FAILED.getValue(), maxAttempts, batchSize);
+                // 连续的job事件合并处理, 其它事件按顺序逐个处理.
+                // 有事件失败时停止处理, 之后的事件等失败的事件重试成功或达到次数上限后再处理, 避免过时的状态覆盖之后的状态
+                List<DevopsGitlabWebhookEventDTO> buildEvents = new ArrayList<>();
+                for (DevopsGitlabWebhookEventDTO event : events) {
+                    if (KIND_BUILD.equals(event.getObjectKind())) {
+                        buildEvents.add(event);
+                        continue;
+                    }
+                    if (!handleBuildEvents(buildEvents)
+                            || !handle(Collections.singletonList(event), () -> gitlabWebHookService.handleEvent(event.getObjectKind(), event.getBody(), event.getToken()), true)
+                            || !renewLock(lockKey)) {
+                        return;
+                    }
+                }
+                if (!handleBuildEvents(buildEvents) || !renewLock(lockKey)) {
+                    return;
+                }
+            } while (events.size() >= batchSize);
+        } catch (Exception e) {
+            // 将异常捕获，避免通道线程因为一个项目的异常而退出, 未处理的事件之后重新分发
+            LOGGER.warn("Failed to handle gitlab webhook events of gitlab project {}", gitlabProjectId, e);
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), instanceId);
+        }
+    }
+
+    /**
+     * 续期项目锁, 锁已经过期并被其它实例获取时停止处理, 剩下的事件由持有锁的实例处理
+     */
+    private boolean renewLock(String lockKey) {
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lockKey), instanceId, String.valueOf(lockExpireSeconds));
+        if (!Long.valueOf(1L).equals(renewed)) {
+            LOGGER.warn("Lost the gitlab webhook lock {}, stop handling the events", lockKey);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 合并处理连续的job事件, 内容不合法的事件单独标记为失败且不再重试.
+     * 合并更新失败时逐个重新处理, 第一个处理失败的事件标记为失败, 之后的事件保持待处理
+     *
+     * @return 是否所有事件都处理完了
+     */
+    private boolean handleBuildEvents(List<DevopsGitlabWebhookEventDTO> buildEvents) {
+        if (buildEvents.isEmpty()) {
+            return true;
+        }
+        List<DevopsGitlabWebhookEventDTO> events = new ArrayList<>();
+        List<JobWebHookVO> jobWebHookVOS = new ArrayList<>();
+        for (DevopsGitlabWebhookEventDTO event : buildEvents) {
+            try {
+                jobWebHookVOS.add(gitlabWebHookService.parseBuildEvent(event.getBody()));
+                events.add(event);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to parse gitlab webhook event {}", event, e);
+                devopsGitlabWebhookEventMapper.updateExhaustedByIds(Collections.singletonList(event.getId()),
+                        GitlabWebhookEventStatus.FAILED.getValue(), String.valueOf(e.getMessage()), maxAttempts);
+            }
+        }
+        buildEvents.clear();
+        if (events.isEmpty()) {
+            return true;
+        }
+        boolean single = events.size() == 1;
+        if (handle(events, () -> gitlabWebHookService.handleBuildEvents(jobWebHookVOS), single)) {
+            return true;
+        }
+        if (single) {
+            return false;
+        }
+        // 合并更新失败时不知道是哪个事件导致的, 按接收的顺序逐个处理
+        for (DevopsGitlabWebhookEventDTO event : events) {
+            if (!handle(Collections.singletonList(event), () -> gitlabWebHookService.handleEvent(event.getObjectKind(), event.getBody(), event.getToken()), true)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 处理事件并更新事件的状态, 合并处理的事件一起成功或失败
+     *
+     * @param markFailed 失败时是否把事件标记为失败, 之后还要逐个重新处理的事件不标记
+     * @return 是否处理成功
+     */
+    private boolean handle(List<DevopsGitlabWebhookEventDTO> events, Runnable handler, boolean markFailed) {
+        String kind = events.get(0).getObjectKind();
+        List<Long> ids = events.stream().map(DevopsGitlabWebhookEventDTO::getId).collect(Collectors.toList());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            handler.run();
+            success = true;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to handle gitlab webhook events {}", events, e);
+            if (markFailed) {
+                markFailed(ids, e);
+            }
+        } finally {
+            // 处理事件时会按事件的用户设置上下文, 不能带到下一个事件
+            SecurityContextHolder.clearContext();
+            handleTimer(kind, success).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (success) {
+            devopsGitlabWebhookEventMapper.updateStatusByIds(ids, GitlabWebhookEventStatus.SUCCESS.getValue(), null);
+        }
+        return success;
+    }
+
+    private void markFailed(List<Long> ids, Exception e) {
+        devopsGitlabWebhookEventMapper.updateFailedByIds(ids, GitlabWebhookEventStatus.FAILED.getValue(), String.valueOf(e.getMessage()),
+                retryDelaySeconds, retryMaxDelaySeconds);
+    }
+
+    private ThreadPoolExecutor laneOf(Long gitlabProjectId) {
+        int hash = gitlabProjectId == null ? 0 : Long.hashCode(gitlabProjectId);
+        return lanes[Math.floorMod(hash, lanes.length)];
+    }
+
+    private Counter acceptCounter(String kind, boolean inserted) {
+        return Counter.builder(METRIC_ACCEPT)
+                .tag(TAG_KIND, String.valueOf(kind))
+                .tag(TAG_RESULT, inserted ? RESULT_ACCEPTED : RESULT_DUPLICATE)
+                .description("gitlab webhook events received")
+                .register(meterRegistry);
+    }
+
+    private Timer handleTimer(String kind, boolean success) {
+        return Timer.builder(METRIC_HANDLE)
+                .tag(TAG_KIND, String.valueOf(kind))
+                .tag(TAG_RESULT, success ? GitlabWebhookEventStatus.SUCCESS.getValue() : GitlabWebhookEventStatus.FAILED.getValue())
+                .description("time spent handling gitlab webhook events")
+                .register(meterRegistry);
+    }
+}
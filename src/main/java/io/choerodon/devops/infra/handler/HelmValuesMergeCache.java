@@ -0,0 +1,129 @@
+package io.choerodon.devops.infra.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO;
+import io.choerodon.devops.infra.util.FileUtil;
+import io.choerodon.devops.infra.util.GenerateUUID;
+import io.choerodon.devops.infra.util.HelmValuesMerger;
+
+/**
+ * chart values和部署values合并结果的本地缓存
+ * <p>
+ * 缓存的键是两份values内容的摘要, 不依赖版本和实例的id, 同一个版本的多个实例、
+ * 界面上反复的预览和批量部署都只合并一次. values内容变化后摘要随之变化, 不需要主动清除缓存.
+ * 缓存按合并结果的字符数限制大小, 命中率等指标通过actuator的metrics端点暴露.
+ * 开启devops.values.merge.script.enabled时改回调用镜像中的values_yaml脚本合并, 用于和脚本的结果不一致时回退
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class HelmValuesMergeCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HelmValuesMergeCache.class);
+    private static final String CACHE_METRIC_NAME = "devops.values.merge.cache";
+    private static final String SCRIPT_FILE_PATH = "deployfile";
+
+    /**
+     * 缓存的合并结果的字符数上限
+     */
+    @Value("${devops.values.merge.cache.maximumWeight:20000000}")
+    private Long maximumWeight;
+
+    /**
+     * 合并结果未被访问后的过期时间, 单位: 秒
+     */
+    @Value("${devops.values.merge.cache.expireSeconds:1800}")
+    private Long expireSeconds;
+
+    /**
+     * 是否调用values_yaml脚本合并, 默认在内存中合并
+     */
+    @Value("${devops.values.merge.script.enabled:false}")
+    private Boolean scriptEnabled;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, InstanceValueVO> cache;
+
+    @PostConstruct
+    public void initCache() {
+        LOGGER.info("Create values merge cache. The maximumWeight is {} and the expireSeconds is {}", maximumWeight, expireSeconds);
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, InstanceValueVO value) -> key.length() + value.getYaml().length() + value.getDeltaYaml().length())
+                .expireAfterAccess(expireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_METRIC_NAME);
+    }
+
+    /**
+     * 合并values, 相同内容的合并结果从缓存中获取
+     *
+     * @param versionValue chart的values
+     * @param deployValue  部署的values
+     * @return 合并结果, 每次返回新的对象, 调用方可以修改
+     */
+    public InstanceValueVO merge(String versionValue, String deployValue) {
+        String key = digest(versionValue) + digest(deployValue);
+        try {
+            return copy(cache.get(key, () -> Boolean.TRUE.equals(scriptEnabled)
+                    ? mergeByScript(versionValue, deployValue)
+                    : HelmValuesMerger.merge(versionValue, deployValue)));
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof CommonException) {
+                throw (CommonException) e.getCause();
+            }
+            throw new CommonException("error.value.illegal", e.getCause());
+        }
+    }
+
+    private static InstanceValueVO mergeByScript(String versionValue, String deployValue) {
+        String fileName = GenerateUUID.generateUUID() + ".yaml";
+        String absoluteFilePath = SCRIPT_FILE_PATH + System.getProperty("file.separator") + fileName;
+        FileUtil.saveDataToFile(SCRIPT_FILE_PATH, fileName, versionValue + "\n" + "---" + "\n" + deployValue);
+        try {
+            InstanceValueVO instanceValueVO = FileUtil.replaceNew(absoluteFilePath);
+            if (instanceValueVO.getHighlightMarkers() == null) {
+                instanceValueVO.setHighlightMarkers(new ArrayList<>());
+            }
+            return instanceValueVO;
+        } catch (Exception e) {
+            throw new CommonException(e.getMessage(), e);
+        } finally {
+            FileUtil.deleteFile(absoluteFilePath);
+        }
+    }
+
+    private static String digest(String value) {
+        return DigestUtils.sha256Hex(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InstanceValueVO copy(InstanceValueVO cached) {
+        InstanceValueVO instanceValueVO = new InstanceValueVO();
+        instanceValueVO.setYaml(cached.getYaml());
+        instanceValueVO.setDeltaYaml(cached.getDeltaYaml());
+        instanceValueVO.setNewLines(new ArrayList<>(cached.getNewLines()));
+        instanceValueVO.setHighlightMarkers(new ArrayList<>(cached.getHighlightMarkers()));
+        return instanceValueVO;
+    }
+}
@@ -0,0 +1,295 @@
+package io.choerodon.devops.infra.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import net.schmizz.sshj.connection.channel.direct.Session;
+import org.hzero.websocket.helper.KeySocketSendHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.choerodon.devops.api.ws.WebSocketTool;
+import io.choerodon.devops.app.service.DevopsCdJobRecordService;
+
+/**
+ * 主机部署日志的增量输出
+ * <p>
+ * 边执行命令边读取输出, 定时写入任务记录的日志, 部署过程中就能看到进度.
+ * 在事务中部署时(比如重试任务), 写入的日志要等事务提交后才能看到, 所以不定时写入, 只在结束时写入一次.
+ * 日志只保留最近的 maxLength 个字符, 输出很多时不会占用过多内存, 也不会超出log字段的长度.
+ * 开启推送时, 新的输出同时推送给订阅了这个任务记录日志的前端连接.
+ * 主机组部署时每个主机通过 {@link HostDeployLog#forHost(String)} 写入同一份日志, 每行带上主机的前缀
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class HostDeployLogHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostDeployLogHandler.class);
+    private static final String HOST_DEPLOY_LOG = "HostDeployLog";
+    private static final String TRUNCATED_MARK = "...(earlier output truncated)" + System.lineSeparator();
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    /**
+     * 日志保留的最大字符数, 超出时丢弃最早的输出
+     */
+    @Value("${devops.host.deploy.log.maxLength:60000}")
+    private Integer maxLength;
+
+    /**
+     * 执行命令过程中把日志写入任务记录的间隔, 单位: 毫秒
+     */
+    @Value("${devops.host.deploy.log.flushIntervalMillis:3000}")
+    private Long flushIntervalMillis;
+
+    /**
+     * 是否通过websocket把新的输出推送给前端
+     */
+    @Value("${devops.host.deploy.log.push.enabled:false}")
+    private Boolean pushEnabled;
+
+    @Autowired
+    private DevopsCdJobRecordService devopsCdJobRecordService;
+
+    @Lazy
+    @Autowired
+    private KeySocketSendHelper keySocketSendHelper;
+
+    /**
+     * 开始记录一个任务的部署日志
+     *
+     * @param cdJobRecordId 任务记录id
+     * @return 部署日志
+     */
+    public HostDeployLog open(Long cdJobRecordId) {
+        return new HostDeployLog(cdJobRecordId);
+    }
+
+    /**
+     * 一个任务的部署日志
+     * <p>
+     * 任务的日志只由打开它的线程写入任务记录, 主机的日志视图可以在其它线程中追加内容, 但不会写入任务记录
+     */
+    public final class HostDeployLog {
+        private final Long cdJobRecordId;
+        private final String frontGroup;
+        /**
+         * 主机的日志视图所属的任务日志, 任务日志本身为null
+         */
+        private final HostDeployLog parent;
+        private final String linePrefix;
+        private final StringBuilder content = new StringBuilder();
+        private boolean truncated;
+        private boolean dirty;
+        /**
+         * 主机的日志视图中还没有换行的内容, 凑成整行后再追加到任务日志, 避免和其它主机的输出混在一行
+         */
+        private final StringBuilder pendingLine = new StringBuilder();
+        private long lastFlushTime = System.currentTimeMillis();
+
+        private HostDeployLog(Long cdJobRecordId) {
+            this.cdJobRecordId = cdJobRecordId;
+            this.frontGroup = WebSocketTool.buildFrontGroup(WebSocketTool.buildHostDeployLogKey(cdJobRecordId));
+            this.parent = null;
+            this.linePrefix = null;
+        }
+
+        private HostDeployLog(HostDeployLog parent, String host) {
+            this.cdJobRecordId = parent.cdJobRecordId;
+            this.frontGroup = parent.frontGroup;
+            this.parent = parent;
+            this.linePrefix = "[" + host + "] ";
+        }
+
+        /**
+         * 一个主机的日志视图, 追加的每行内容带上主机的前缀, 只在部署这个主机的线程中使用
+         *
+         * @param host 主机的ip和端口
+         * @return 主机的日志视图
+         */
+        public HostDeployLog forHost(String host) {
+            return new HostDeployLog(parent == null ? this : parent, host);
+        }
+
+        /**
+         * 追加日志
+         *
+         * @param text 日志内容
+         */
+        public void append(CharSequence text) {
+            if (text == null || text.length() == 0) {
+                return;
+            }
+            if (parent != null) {
+                appendLines(text);
+                return;
+            }
+            synchronized (this) {
+                content.append(text);
+                if (content.length() > maxLength) {
+                    content.delete(0, content.length() - maxLength);
+                    truncated = true;
+                }
+                dirty = true;
+            }
+            push(text.toString());
+        }
+
+        /**
+         * 读取命令的标准输出和错误输出直到命令结束, 读取过程中定时写入日志
+         *
+         * @param cmd 执行中的命令
+         * @return 这个命令的输出, 同样只保留最近的 maxLength 个字符
+         * @throws IOException 读取输出失败或线程被中断
+         */
+        public String streamOutput(Session.Command cmd) throws IOException {
+            StringBuilder output = new StringBuilder();
+            OutputDrainer stdout = new OutputDrainer(cmd.getInputStream());
+            OutputDrainer stderr = new OutputDrainer(cmd.getErrorStream());
+            while (true) {
+                // 两个流都要读, 只读一个时另一个的缓冲区满了会阻塞远程的命令
+                boolean read = stdout.drain(output) | stderr.drain(output);
+                if (!read) {
+                    if (cmd.isEOF() || !cmd.isOpen()) {
+                        // 收到EOF之前到达的输出可能还在缓冲区中
+                        stdout.drain(output);
+                        stderr.drain(output);
+                        break;
+                    }
+                    sleepQuietly();
+                }
+                flushIfDue();
+            }
+            return output.toString();
+        }
+
+        /**
+         * 距离上次写入超过间隔时写入任务记录, 主机的日志视图不写入.
+         * 当前线程在事务中时不写入, 事务提交前其它人看不到, 而且会一直持有任务记录的行锁
+         */
+        public void flushIfDue() {
+            if (parent == null && isDirty() && System.currentTimeMillis() - lastFlushTime >= flushIntervalMillis
+                    && !TransactionSynchronizationManager.isActualTransactionActive()) {
+                flush();
+            }
+        }
+
+        /**
+         * 把日志写入任务记录. 主机的日志视图只把还没有换行的内容追加到任务日志, 由任务日志所在的线程写入任务记录
+         */
+        public void flush() {
+            if (parent != null) {
+                if (pendingLine.length() > 0) {
+                    parent.append(new StringBuilder(linePrefix).append(pendingLine));
+                    pendingLine.setLength(0);
+                }
+                return;
+            }
+            StringBuilder snapshot;
+            synchronized (this) {
+                snapshot = truncated ? new StringBuilder(TRUNCATED_MARK).append(content) : new StringBuilder(content);
+                dirty = false;
+            }
+            devopsCdJobRecordService.updateLogById(cdJobRecordId, snapshot);
+            lastFlushTime = System.currentTimeMillis();
+        }
+
+        private synchronized boolean isDirty() {
+            return dirty;
+        }
+
+        private void appendLines(CharSequence text) {
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                pendingLine.append(c);
+                if (c == '\n') {
+                    lines.append(linePrefix).append(pendingLine);
+                    pendingLine.setLength(0);
+                }
+            }
+            if (pendingLine.length() > maxLength) {
+                // 一直不换行的输出按整行处理, 不在视图中无限积累
+                lines.append(linePrefix).append(pendingLine);
+                pendingLine.setLength(0);
+            }
+            if (lines.length() > 0) {
+                parent.append(lines);
+            }
+        }
+
+        private void push(String text) {
+            if (!Boolean.TRUE.equals(pushEnabled)) {
+                return;
+            }
+            try {
+                keySocketSendHelper.sendByGroup(frontGroup, HOST_DEPLOY_LOG, text);
+            } catch (Exception ex) {
+                // 推送只是为了实时查看, 失败不影响部署
+                LOGGER.debug("Failed to push host deploy log of job record {}", cdJobRecordId, ex);
+            }
+        }
+
+        private void sleepQuietly() throws InterruptedIOException {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while reading output of job record " + cdJobRecordId);
+            }
+        }
+
+        /**
+         * 非阻塞地读取一个流中已到达的输出, 跨越多次读取的多字节字符也能正确解码
+         */
+        private final class OutputDrainer {
+            private final InputStream inputStream;
+            private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            private final ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            private final CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+
+            private OutputDrainer(InputStream inputStream) {
+                this.inputStream = inputStream;
+            }
+
+            private boolean drain(StringBuilder output) throws IOException {
+                boolean read = false;
+                int available;
+                while ((available = inputStream.available()) > 0) {
+                    int length = inputStream.read(bytes.array(), bytes.position(), Math.min(available, bytes.remaining()));
+                    if (length <= 0) {
+                        break;
+                    }
+                    read = true;
+                    bytes.position(bytes.position() + length);
+                    bytes.flip();
+                    decoder.decode(bytes, chars, false);
+                    // 不完整的多字节字符留到下次读取
+                    bytes.compact();
+                    chars.flip();
+                    append(chars);
+                    output.append(chars);
+                    if (output.length() > maxLength) {
+                        output.delete(0, output.length() - maxLength);
+                    }
+                    chars.clear();
+                }
+                return read;
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.HostConnectionVO;
+import io.choerodon.devops.api.vo.HostDeployStatusVO;
+import io.choerodon.devops.app.service.DevopsCdJobRecordService;
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+import io.choerodon.devops.infra.enums.PipelineStatus;
+import io.choerodon.devops.infra.handler.HostDeployLogHandler.HostDeployLog;
+import io.choerodon.devops.infra.util.JsonHelper;
+
+/**
+ * 主机部署任务对多个主机执行相同的部署
+ * <p>
+ * 主机按同时部署的数量分批, 一批内的主机并行部署, 一批都结束后再部署下一批.
+ * 失败的主机数超过允许的数量时不再部署剩余的主机, 剩余的主机记为跳过.
+ * 每个主机的部署结果在每批开始时和全部结束后写入任务记录, 部署日志的每行带上主机的前缀
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class HostGroupDeployHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostGroupDeployHandler.class);
+    private static final long WAIT_INTERVAL_MILLIS = 500;
+
+    /**
+     * 未指定同时部署的主机数量时的默认值
+     */
+    @Value("${devops.host.deploy.group.defaultParallelism:5}")
+    private Integer defaultParallelism;
+
+    /**
+     * 同时部署的主机数量上限
+     */
+    @Value("${devops.host.deploy.group.maxParallelism:20}")
+    private Integer maxParallelism;
+
+    @Autowired
+    @Qualifier(GitOpsConstants.HOST_DEPLOY_EXECUTOR)
+    private AsyncTaskExecutor hostDeployExecutor;
+
+    @Autowired
+    private DevopsCdJobRecordService devopsCdJobRecordService;
+
+    /**
+     * 分批部署主机, 在调用的线程中写入部署日志, 有多个主机时还写入每个主机的部署结果
+     *
+     * @param cdJobRecordId    任务记录id
+     * @param log              任务的部署日志
+     * @param hosts            主机, 已经填充了ip和端口
+     * @param parallelism      同时部署的主机数量, 为空时使用默认值
+     * @param failureThreshold 允许失败的主机数量, 为空时为0
+     * @param deployer         部署单个主机的逻辑
+     * @return 每个主机的部署结果, 顺序和主机一致
+     * @throws CommonException 失败的主机数超过允许的数量
+     */
+    public List<HostDeployStatusVO> deploy(Long cdJobRecordId, HostDeployLog log, List<HostConnectionVO> hosts,
+                                           @Nullable Integer parallelism, @Nullable Integer failureThreshold,
+                                           HostDeployer deployer) {
+        int batchSize = Math.max(1, Math.min(parallelism == null ? defaultParallelism : parallelism, maxParallelism));
+        int allowedFailures = failureThreshold == null ? 0 : Math.max(0, failureThreshold);
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        List<HostDeployStatusVO> statuses = new ArrayList<>(hosts.size());
+        hosts.forEach(host -> statuses.add(initStatus(host)));
+
+        if (hosts.size() == 1) {
+            // 只有一个主机时在调用的线程中部署, 日志也不需要前缀
+            // 任务本身的状态就是这个主机的结果, 不需要记录每个主机的部署结果
+            statuses.get(0).setStatus(PipelineStatus.RUNNING.toValue());
+            statuses.get(0).setStartedDate(new Date());
+            deployHost(securityContext, hosts.get(0), statuses.get(0), log, deployer);
+            return checkFailures(statuses, allowedFailures);
+        }
+
+        int failed = 0;
+        for (int from = 0; from < hosts.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, hosts.size());
+            if (failed > allowedFailures) {
+                statuses.subList(from, hosts.size()).forEach(status -> status.setStatus(PipelineStatus.SKIPPED.toValue()));
+                break;
+            }
+
+            List<Future<?>> futures = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                statuses.get(i).setStatus(PipelineStatus.RUNNING.toValue());
+                statuses.get(i).setStartedDate(new Date());
+            }
+            saveStatuses(cdJobRecordId, statuses);
+            for (int i = from; i < to; i++) {
+                HostConnectionVO host = hosts.get(i);
+                HostDeployStatusVO status = statuses.get(i);
+                HostDeployLog hostLog = log.forHost(hostAddress(host));
+                futures.add(hostDeployExecutor.submit(() -> deployHost(securityContext, host, status, hostLog, deployer)));
+            }
+
+            for (int i = from; i < to; i++) {
+                HostDeployStatusVO status = statuses.get(i);
+                waitFor(futures.get(i - from), status, log);
+                if (!PipelineStatus.SUCCESS.toValue().equals(status.getStatus())) {
+                    failed++;
+                }
+            }
+        }
+        saveStatuses(cdJobRecordId, statuses);
+        return checkFailures(statuses, allowedFailures);
+    }
+
+    private static List<HostDeployStatusVO> checkFailures(List<HostDeployStatusVO> statuses, int allowedFailures) {
+        long failed = statuses.stream().filter(status -> PipelineStatus.FAILED.toValue().equals(status.getStatus())).count();
+        if (failed > allowedFailures) {
+            throw new CommonException("error.host.group.deploy.failed", failed, statuses.size(), allowedFailures);
+        }
+        return statuses;
+    }
+
+    private void deployHost(SecurityContext securityContext, HostConnectionVO host, HostDeployStatusVO status,
+                            HostDeployLog hostLog, HostDeployer deployer) {
+        // 线程池满时由提交的线程自己执行, 所以执行完要恢复而不是清空上下文
+        SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+        SecurityContextHolder.setContext(securityContext);
+        try {
+            deployer.deploy(host, hostLog);
+            status.setStatus(PipelineStatus.SUCCESS.toValue());
+        } catch (Exception e) {
+            LOGGER.warn("Failed to deploy host {}", hostAddress(host), e);
+            hostLog.append(System.lineSeparator() + "deploy failed: " + e.getMessage() + System.lineSeparator());
+            status.setStatus(PipelineStatus.FAILED.toValue());
+            status.setError(e.getMessage());
+        } finally {
+            status.setFinishedDate(new Date());
+            hostLog.flush();
+            SecurityContextHolder.setContext(previousSecurityContext);
+        }
+    }
+
+    /**
+     * 等待一个主机部署结束, 等待过程中定时写入部署日志
+     */
+    private void waitFor(Future<?> future, HostDeployStatusVO status, HostDeployLog log) {
+        while (true) {
+            try {
+                future.get(WAIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                log.flushIfDue();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                markFailed(status, "interrupted while waiting for deployment");
+                return;
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to deploy host {}:{}", status.getHostIp(), status.getHostPort(), e.getCause());
+                markFailed(status, String.valueOf(e.getCause()));
+                return;
+            }
+        }
+    }
+
+    private void saveStatuses(Long cdJobRecordId, List<HostDeployStatusVO> statuses) {
+        devopsCdJobRecordService.updateHostDeployStatusById(cdJobRecordId, JsonHelper.marshalByJackson(statuses));
+    }
+
+    private static void markFailed(HostDeployStatusVO status, String error) {
+        status.setStatus(PipelineStatus.FAILED.toValue());
+        status.setError(error);
+        status.setFinishedDate(new Date());
+    }
+
+    private static HostDeployStatusVO initStatus(HostConnectionVO host) {
+        HostDeployStatusVO status = new HostDeployStatusVO();
+        status.setHostIp(host.getHostIp());
+        status.setHostPort(host.getHostPort());
+        status.setHostId(host.getHostId());
+        status.setStatus(PipelineStatus.CREATED.toValue());
+        return status;
+    }
+
+    private static String hostAddress(HostConnectionVO host) {
+        return host.getHostIp() + ":" + host.getHostPort();
+    }
+
+    /**
+     * 部署单个主机的逻辑
+     */
+    @FunctionalInterface
+    public interface HostDeployer {
+        /**
+         * 部署主机
+         *
+         * @param host 主机
+         * @param log  主机的部署日志
+         * @throws Exception 部署失败
+         */
+        void deploy(HostConnectionVO host, HostDeployLog log) throws Exception;
+    }
+}
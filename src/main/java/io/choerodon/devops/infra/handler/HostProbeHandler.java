@@ -0,0 +1,159 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.DevopsHostConnectionTestResultVO;
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+import io.choerodon.devops.infra.dto.DevopsHostDTO;
+import io.choerodon.devops.infra.enums.DevopsHostStatus;
+import io.choerodon.devops.infra.enums.DevopsHostType;
+
+/**
+ * 并行探测多个主机的连接状态
+ * <p>
+ * 每个主机的探测有单独的超时时间, 所有主机的探测有总的超时时间,
+ * 一两个不可达的主机不会拖慢整批主机的校准. 到期还未完成的探测会被取消, 结果记为失败
+ * <p>
+ * 探测的耗时按项目记录到 {@link #METRIC_PROBE} 的直方图中
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class HostProbeHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostProbeHandler.class);
+    private static final String METRIC_PROBE = "devops.host.probe";
+    private static final String TAG_PROJECT_ID = "project_id";
+    private static final String TAG_TYPE = "type";
+    private static final String TAG_RESULT = "result";
+    private static final String PROBE_TIMEOUT_ERROR = "timeout to probe host";
+
+    /**
+     * 单个主机等待和建立ssh连接的超时时间, 单位: 毫秒
+     */
+    @Value("${devops.host.probe.timeoutMillis:10000}")
+    private Integer timeoutMillis;
+
+    /**
+     * 一批主机探测的总超时时间, 单位: 毫秒
+     */
+    @Value("${devops.host.probe.deadlineMillis:50000}")
+    private Long deadlineMillis;
+
+    @Autowired
+    @Qualifier(GitOpsConstants.HOST_PROBE_EXECUTOR)
+    private AsyncTaskExecutor hostProbeExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 并行探测主机, 最多等到总的超时时间
+     *
+     * @param projectId 项目id
+     * @param hosts     主机
+     * @param prober    探测单个主机的逻辑
+     * @return 主机id和探测结果, 每个主机都有结果
+     */
+    public Map<Long, DevopsHostConnectionTestResultVO> probe(Long projectId, List<DevopsHostDTO> hosts, HostProber prober) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        List<Future<DevopsHostConnectionTestResultVO>> futures = new ArrayList<>(hosts.size());
+        for (DevopsHostDTO host : hosts) {
+            futures.add(hostProbeExecutor.submit(() -> {
+                // 线程池满时由提交的线程自己执行, 所以执行完要恢复而不是清空上下文
+                SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+                SecurityContextHolder.setContext(securityContext);
+                long start = System.nanoTime();
+                DevopsHostConnectionTestResultVO result = null;
+                try {
+                    result = prober.probe(host, timeoutMillis);
+                    return result;
+                } finally {
+                    SecurityContextHolder.setContext(previousSecurityContext);
+                    probeTimer(projectId, host, result).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+
+        Map<Long, DevopsHostConnectionTestResultVO> results = new HashMap<>(hosts.size());
+        for (int i = 0; i < hosts.size(); i++) {
+            DevopsHostDTO host = hosts.get(i);
+            Future<DevopsHostConnectionTestResultVO> future = futures.get(i);
+            try {
+                results.put(host.getId(), future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                LOGGER.warn("Probe for host with id {} timed out", host.getId());
+                results.put(host.getId(), failedResult(host, PROBE_TIMEOUT_ERROR));
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                results.put(host.getId(), failedResult(host, PROBE_TIMEOUT_ERROR));
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to probe host with id {}", host.getId(), e.getCause());
+                results.put(host.getId(), failedResult(host, "failed to probe host"));
+            }
+        }
+        return results;
+    }
+
+    private Timer probeTimer(Long projectId, DevopsHostDTO host, DevopsHostConnectionTestResultVO result) {
+        boolean success = result != null
+                && DevopsHostStatus.SUCCESS.getValue().equals(result.getHostStatus())
+                && (result.getJmeterStatus() == null || DevopsHostStatus.SUCCESS.getValue().equals(result.getJmeterStatus()));
+        return Timer.builder(METRIC_PROBE)
+                .tag(TAG_PROJECT_ID, String.valueOf(projectId))
+                .tag(TAG_TYPE, String.valueOf(host.getType()))
+                .tag(TAG_RESULT, success ? DevopsHostStatus.SUCCESS.getValue() : DevopsHostStatus.FAILED.getValue())
+                .description("time spent probing the connection of hosts")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static DevopsHostConnectionTestResultVO failedResult(DevopsHostDTO host, String error) {
+        DevopsHostConnectionTestResultVO result = new DevopsHostConnectionTestResultVO();
+        result.setHostStatus(DevopsHostStatus.FAILED.getValue());
+        result.setHostCheckError(error);
+        if (DevopsHostType.DISTRIBUTE_TEST.getValue().equals(host.getType())) {
+            result.setJmeterStatus(DevopsHostStatus.FAILED.getValue());
+            result.setJmeterCheckError(error);
+        }
+        return result;
+    }
+
+    /**
+     * 探测单个主机的逻辑
+     */
+    @FunctionalInterface
+    public interface HostProber {
+        /**
+         * 探测主机
+         *
+         * @param host          主机
+         * @param timeoutMillis 等待和建立ssh连接的超时时间, 单位: 毫秒
+         * @return 探测结果
+         */
+        DevopsHostConnectionTestResultVO probe(DevopsHostDTO host, int timeoutMillis);
+    }
+}
@@ -0,0 +1,168 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 并行执行互不依赖的远程调用或数据库查询, 用于分页列表接口查询关联数据(用户, 项目, 敏捷问题等)
+ * 使接口的耗时取决于最慢的一次查询而不是所有查询的耗时之和
+ * <p>
+ * 提交时把当前线程的用户上下文和请求上下文带到执行查询的线程, feign调用需要用到
+ * 查询中不要再通过这个类提交查询并等待结果, 否则线程池满时可能相互等待
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class ParallelLookupHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelLookupHandler.class);
+
+    /**
+     * 必需的查询的超时时间, 和feign调用的超时时间一致, 单位: 毫秒
+     */
+    @Value("${devops.enrichment.requiredTimeoutMillis:30000}")
+    private Long requiredTimeoutMillis;
+
+    /**
+     * 可选的查询的默认超时时间, 超时后使用默认值, 单位: 毫秒
+     */
+    @Value("${devops.enrichment.optionalTimeoutMillis:5000}")
+    private Long optionalTimeoutMillis;
+
+    @Autowired
+    @Qualifier(GitOpsConstants.ENRICHMENT_EXECUTOR)
+    private AsyncTaskExecutor enrichmentExecutor;
+
+    /**
+     * 提交必需的查询, 查询失败时 {@link Lookup#get()} 抛出原来的异常
+     *
+     * @param name     查询的名称, 用于日志和错误信息
+     * @param supplier 查询
+     * @param <T>      结果的类型
+     * @return 查询的结果
+     */
+    public <T> Lookup<T> submit(String name, Supplier<T> supplier) {
+        return submit(name, requiredTimeoutMillis, true, supplier, null);
+    }
+
+    /**
+     * 提交可选的查询, 查询失败或超时时 {@link Lookup#get()} 返回默认值
+     *
+     * @param name     查询的名称, 用于日志
+     * @param supplier 查询
+     * @param fallback 查询失败或超时时的默认值
+     * @param <T>      结果的类型
+     * @return 查询的结果
+     */
+    public <T> Lookup<T> submit(String name, Supplier<T> supplier, T fallback) {
+        return submit(name, optionalTimeoutMillis, supplier, fallback);
+    }
+
+    /**
+     * 提交可选的查询, 查询失败或超时时 {@link Lookup#get()} 返回默认值
+     *
+     * @param name          查询的名称, 用于日志
+     * @param timeoutMillis 从提交开始计算的超时时间, 单位: 毫秒
+     * @param supplier      查询
+     * @param fallback      查询失败或超时时的默认值
+     * @param <T>           结果的类型
+     * @return 查询的结果
+     */
+    public <T> Lookup<T> submit(String name, long timeoutMillis, Supplier<T> supplier, T fallback) {
+        return submit(name, timeoutMillis, false, supplier, fallback);
+    }
+
+    private <T> Lookup<T> submit(String name, long timeoutMillis, boolean required, Supplier<T> supplier, T fallback) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        Future<T> future = enrichmentExecutor.submit(() -> {
+            // 线程池满时由提交的线程自己执行, 所以执行完要恢复而不是清空上下文
+            SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+            RequestAttributes previousRequestAttributes = RequestContextHolder.getRequestAttributes();
+            SecurityContextHolder.setContext(securityContext);
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            try {
+                return supplier.get();
+            } finally {
+                SecurityContextHolder.setContext(previousSecurityContext);
+                RequestContextHolder.setRequestAttributes(previousRequestAttributes);
+            }
+        });
+        return new Lookup<>(name, deadline, required, future, fallback);
+    }
+
+    /**
+     * 已提交的查询
+     *
+     * @param <T> 结果的类型
+     */
+    public static final class Lookup<T> {
+        private final String name;
+        private final long deadline;
+        private final boolean required;
+        private final Future<T> future;
+        private final T fallback;
+
+        private Lookup(String name, long deadline, boolean required, Future<T> future, T fallback) {
+            this.name = name;
+            this.deadline = deadline;
+            this.required = required;
+            this.future = future;
+            this.fallback = fallback;
+        }
+
+        /**
+         * 等待查询的结果, 最多等到提交时计算的超时时间
+         *
+         * @return 查询的结果, 可选的查询失败或超时时返回默认值
+         */
+        public T get() {
+            try {
+                return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                if (required) {
+                    throw new CommonException("error.remote.lookup.timeout", name);
+                }
+                LOGGER.warn("Lookup {} timed out, use the fallback value", name);
+                return fallback;
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new CommonException("error.remote.lookup.interrupted", name);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (!required) {
+                    LOGGER.warn("Lookup {} failed, use the fallback value", name, cause);
+                    return fallback;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CommonException("error.remote.lookup.failed", cause, name);
+            }
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package io.choerodon.devops.infra.handler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import net.schmizz.keepalive.KeepAliveProvider;
+import net.schmizz.keepalive.KeepAliveRunner;
+import net.schmizz.sshj.DefaultConfig;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.common.IOUtils;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
+import net.schmizz.sshj.userauth.keyprovider.KeyProvider;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.infra.enums.CdHostAccountType;
+
+/**
+ * 按主机复用的ssh连接池, 主机部署任务和主机连接状态的探测共用
+ * <p>
+ * 连接按 (主机, 端口, 用户名, 认证方式和凭证的摘要) 区分, 凭证变化后不会复用之前的连接.
+ * 同一个主机(ip和端口)同时借出给部署任务的连接数有上限, 避免并发的部署任务触发sshd的MaxStartups限制.
+ * 连接状态的探测不占用部署任务的名额, 每个主机同时只有一个探测, 主机上的部署任务较多时探测也不会失败.
+ * 空闲的连接通过心跳检测是否可用, 心跳多次没有回应时断开, 空闲超时后也断开
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class SshConnectionPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SshConnectionPool.class);
+    private static final String TEST_COMMAND = "echo Hello World!!!";
+    private static final int TEST_WAIT_SECONDS = 5;
+    private static final int PROBE_PERMITS_PER_HOST = 1;
+
+    /**
+     * 同一个主机同时借出的连接数上限
+     */
+    @Value("${devops.ssh.pool.maxActivePerHost:4}")
+    private Integer maxActivePerHost;
+
+    /**
+     * 每个连接键保留的空闲连接数上限
+     */
+    @Value("${devops.ssh.pool.maxIdlePerKey:2}")
+    private Integer maxIdlePerKey;
+
+    /**
+     * 空闲连接的保留时长, 单位: 毫秒
+     */
+    @Value("${devops.ssh.pool.idleTimeoutMillis:300000}")
+    private Long idleTimeoutMillis;
+
+    /**
+     * 建立连接的超时时间, 单位: 毫秒
+     */
+    @Value("${devops.ssh.pool.connectTimeoutMillis:10000}")
+    private Integer connectTimeoutMillis;
+
+    /**
+     * 连接上读取数据的超时时间, 单位: 毫秒, 超时后连接断开. 需要大于心跳间隔, 否则空闲的连接会因为超时断开
+     */
+    @Value("${devops.ssh.pool.readTimeoutMillis:120000}")
+    private Integer readTimeoutMillis;
+
+    /**
+     * 主机的连接数达到上限时, 部署任务等待连接的时长, 单位: 毫秒
+     */
+    @Value("${devops.ssh.pool.borrowWaitMillis:600000}")
+    private Long borrowWaitMillis;
+
+    /**
+     * 心跳间隔, 单位: 秒, 连接断开后心跳失败, 借出时不会再使用这个连接
+     */
+    @Value("${devops.ssh.pool.keepAliveIntervalSeconds:30}")
+    private Integer keepAliveIntervalSeconds;
+
+    /**
+     * 连续多少次心跳没有回应后断开连接
+     */
+    @Value("${devops.ssh.pool.keepAliveMaxCount:3}")
+    private Integer keepAliveMaxCount;
+
+    private final Map<SshTarget, Deque<IdleConnection>> idleConnections = new ConcurrentHashMap<>();
+    /**
+     * 部署任务的连接名额, 按主机区分
+     */
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    /**
+     * 连接状态探测的名额, 按主机区分, 和部署任务分开计算
+     */
+    private final Map<String, Semaphore> probePermits = new ConcurrentHashMap<>();
+
+    /**
+     * 借出一个已认证的连接, 用完后需要关闭租约以归还连接
+     *
+     * @param target 主机和认证信息
+     * @return 连接的租约
+     */
+    public SshLease borrow(SshTarget target) {
+        return borrow(target, hostPermits, maxActivePerHost, borrowWaitMillis, connectTimeoutMillis);
+    }
+
+    /**
+     * 测试主机是否能通过ssh连接并执行命令
+     *
+     * @param target        主机和认证信息
+     * @param timeoutMillis 等待连接和建立连接的超时时间, 单位: 毫秒
+     * @return true表示连接成功
+     */
+    public boolean testConnection(SshTarget target, int timeoutMillis) {
+        try (SshLease lease = borrow(target, probePermits, PROBE_PERMITS_PER_HOST, timeoutMillis, Math.min(connectTimeoutMillis, timeoutMillis))) {
+            return probe(lease);
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to connect to host by ssh, the host is {}, username: {}", target.hostAddress(), target.getUsername());
+            LOGGER.warn("The ex is ", ex);
+            return false;
+        }
+    }
+
+    private static boolean probe(SshLease lease) throws IOException {
+        try (Session session = lease.startSession()) {
+            Session.Command cmd = session.exec(TEST_COMMAND);
+            // 超时时抛出异常, 不会一直等待命令的输出
+            cmd.join(TEST_WAIT_SECONDS, TimeUnit.SECONDS);
+            LOGGER.info(IOUtils.readFully(cmd.getInputStream()).toString());
+            LOGGER.info("\n** exit status: " + cmd.getExitStatus());
+            return cmd.getExitStatus() != null && cmd.getExitStatus() == 0;
+        } catch (IOException | RuntimeException e) {
+            // 命令超时或者失败后连接的状态未知, 不再复用
+            lease.invalidate();
+            throw e;
+        }
+    }
+
+    /**
+     * 断开空闲超时的连接, 并清理已经没有连接的主机的记录
+     */
+    @Scheduled(fixedDelayString = "${devops.ssh.pool.evictIntervalMillis:60000}")
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        idleConnections.forEach((target, idles) -> {
+            synchronized (idles) {
+                Iterator<IdleConnection> iterator = idles.iterator();
+                while (iterator.hasNext()) {
+                    IdleConnection idle = iterator.next();
+                    if (now - idle.idleSince >= idleTimeoutMillis || !isHealthy(idle.client)) {
+                        iterator.remove();
+                        disconnectQuietly(idle.client);
+                    }
+                }
+                // 移除后归还的连接会重新创建队列, 见release
+                if (idles.isEmpty()) {
+                    idleConnections.remove(target, idles);
+                }
+            }
+        });
+        prunePermits(hostPermits, maxActivePerHost);
+        prunePermits(probePermits, PROBE_PERMITS_PER_HOST);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        idleConnections.values().forEach(idles -> {
+            synchronized (idles) {
+                idles.forEach(idle -> disconnectQuietly(idle.client));
+                idles.clear();
+            }
+        });
+    }
+
+    private SshLease borrow(SshTarget target, Map<String, Semaphore> permitsByHost, int permitCount, long waitMillis, int connectTimeout) {
+        Semaphore permits = acquire(permitsByHost, permitCount, target.hostAddress(), waitMillis);
+        return new SshLease(target, pollIdle(target), connectTimeout, permits);
+    }
+
+    private static Semaphore acquire(Map<String, Semaphore> permitsByHost, int permitCount, String host, long waitMillis) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        try {
+            while (true) {
+                Semaphore permits = permitsByHost.computeIfAbsent(host, k -> new Semaphore(permitCount, true));
+                if (!permits.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    throw new CommonException("error.ssh.connection.pool.exhausted", host);
+                }
+                if (permitsByHost.get(host) == permits) {
+                    return permits;
+                }
+                // 等待期间这个主机的名额已经被清理, 归还后重新获取
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException("error.ssh.connection.pool.interrupted", host);
+        }
+    }
+
+    /**
+     * 清理没有借出连接的主机的名额. 先占用全部名额再移除, 移除后仍在等待这个信号量的请求会重新获取
+     */
+    private static void prunePermits(Map<String, Semaphore> permitsByHost, int permitCount) {
+        permitsByHost.forEach((host, permits) -> {
+            if (permits.tryAcquire(permitCount)) {
+                permitsByHost.remove(host, permits);
+                permits.release(permitCount);
+            }
+        });
+    }
+
+    private SSHClient pollIdle(SshTarget target) {
+        Deque<IdleConnection> idles = idleConnections.get(target);
+        if (idles == null) {
+            return null;
+        }
+        synchronized (idles) {
+            IdleConnection idle;
+            while ((idle = idles.pollFirst()) != null) {
+                if (isHealthy(idle.client) && System.currentTimeMillis() - idle.idleSince < idleTimeoutMillis) {
+                    return idle.client;
+                }
+                disconnectQuietly(idle.client);
+            }
+        }
+        return null;
+    }
+
+    private void release(SshTarget target, SSHClient client, boolean reusable) {
+        if (!reusable || !isHealthy(client)) {
+            disconnectQuietly(client);
+            return;
+        }
+        while (true) {
+            Deque<IdleConnection> idles = idleConnections.computeIfAbsent(target, k -> new ArrayDeque<>());
+            synchronized (idles) {
+                // 队列为空时可能已经被清理, 需要重新创建
+                if (idleConnections.get(target) != idles) {
+                    continue;
+                }
+                if (idles.size() < maxIdlePerKey) {
+                    // 后归还的先借出, 较早的连接空闲超时后被清理
+                    idles.addFirst(new IdleConnection(client));
+                    return;
+                }
+            }
+            disconnectQuietly(client);
+            return;
+        }
+    }
+
+    private SSHClient connect(SshTarget target, int connectTimeout) throws IOException {
+        // 心跳需要对端回应, 对端失联时连接会被断开, 不会一直认为空闲连接可用
+        DefaultConfig config = new DefaultConfig();
+        config.setKeepAliveProvider(KeepAliveProvider.KEEP_ALIVE);
+        SSHClient client = new SSHClient(config);
+        client.setConnectTimeout(connectTimeout);
+        client.setTimeout(readTimeoutMillis);
+        KeepAliveRunner keepAlive = (KeepAliveRunner) client.getConnection().getKeepAlive();
+        keepAlive.setKeepAliveInterval(keepAliveIntervalSeconds);
+        keepAlive.setMaxAliveCount(keepAliveMaxCount);
+        try {
+            client.addHostKeyVerifier(new PromiscuousVerifier());
+            client.connect(target.getHostIp(), target.getPort());
+            if (CdHostAccountType.ACCOUNTPASSWORD.value().equals(target.getAuthType())) {
+                client.authPassword(target.getUsername(), target.credential);
+            } else {
+                KeyProvider keyProvider = client.loadKeys(target.credential, null, null);
+                client.authPublickey(target.getUsername(), keyProvider);
+            }
+        } catch (IOException | RuntimeException e) {
+            disconnectQuietly(client);
+            throw e;
+        }
+        return client;
+    }
+
+    /**
+     * 对端失联时心跳会断开连接, 所以这里检查本地的连接状态即可
+     */
+    private static boolean isHealthy(SSHClient client) {
+        return client.isConnected() && client.isAuthenticated();
+    }
+
+    private static void disconnectQuietly(SSHClient client) {
+        try {
+            client.disconnect();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to disconnect ssh client", e);
+        }
+    }
+
+    private static final class IdleConnection {
+        private final SSHClient client;
+        private final long idleSince = System.currentTimeMillis();
+
+        private IdleConnection(SSHClient client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * 借出的连接, 同一时间只在一个线程中使用
+     */
+    public final class SshLease implements AutoCloseable {
+        private final SshTarget target;
+        private final int connectTimeout;
+        private final Semaphore permits;
+        private SSHClient client;
+        private boolean reusable = true;
+        private boolean closed;
+
+        private SshLease(SshTarget target, SSHClient client, int connectTimeout, Semaphore permits) {
+            this.target = target;
+            this.client = client;
+            this.connectTimeout = connectTimeout;
+            this.permits = permits;
+        }
+
+        /**
+         * 在连接上打开一个会话, 复用的连接已经失效时重新建立连接
+         *
+         * @return 会话
+         * @throws IOException 建立连接或打开会话失败
+         */
+        public Session startSession() throws IOException {
+            if (client != null) {
+                try {
+                    return client.startSession();
+                } catch (IOException e) {
+                    LOGGER.info("Pooled ssh connection to {} is broken, reconnect", target.hostAddress());
+                    disconnectQuietly(client);
+                    client = null;
+                }
+            }
+            client = connect(target, connectTimeout);
+            return client.startSession();
+        }
+
+        /**
+         * 标记连接不可复用, 命令执行超时或者失败后连接状态未知, 调用方需要标记, 归还时直接断开
+         */
+        public void invalidate() {
+            this.reusable = false;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (client != null) {
+                    release(target, client, reusable);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * 连接的主机和认证信息, 作为连接池的键时按凭证的摘要比较
+     */
+    public static final class SshTarget {
+        private final String hostIp;
+        private final int port;
+        private final String authType;
+        private final String username;
+        private final String credential;
+        private final String credentialFingerprint;
+
+        /**
+         * @param hostIp     主机ip
+         * @param port       ssh端口
+         * @param authType   {@link CdHostAccountType}
+         * @param username   用户名
+         * @param credential 密码或者私钥的内容
+         */
+        public SshTarget(String hostIp, Integer port, String authType, String username, String credential) {
+            this.hostIp = Objects.requireNonNull(hostIp);
+            this.port = Objects.requireNonNull(port);
+            this.authType = authType;
+            this.username = username;
+            this.credential = credential;
+            this.credentialFingerprint = DigestUtils.sha256Hex((authType + ":" + credential).getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String getHostIp() {
+            return hostIp;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public String getAuthType() {
+            return authType;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        private String hostAddress() {
+            return hostIp + ":" + port;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SshTarget that = (SshTarget) o;
+            return port == that.port
+                    && hostIp.equals(that.hostIp)
+                    && Objects.equals(username, that.username)
+                    && credentialFingerprint.equals(that.credentialFingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hostIp, port, username, credentialFingerprint);
+        }
+
+        @Override
+        public String toString() {
+            // 不输出凭证
+            return username + "@" + hostAddress();
+        }
+    }
+}
@@ -21,5 +21,17 @@ public interface DevopsCdJobRecordMapper extends BaseMapper<DevopsCdJobRecordDTO
     int updateNotAuditJobStatus(@Param("jobRecordId") Long jobRecordId,
                                 @Param("status") String status);
 
+    /**
+     * 只更新主机部署结果, 不读写日志等其它字段
+     */
+    int updateHostDeployStatus(@Param("jobRecordId") Long jobRecordId,
+                               @Param("hostDeployStatus") String hostDeployStatus);
+
+    /**
+     * 只更新日志, 不读写状态等其它字段
+     */
+    int updateLog(@Param("jobRecordId") Long jobRecordId,
+                  @Param("log") String log);
+
     List<DevopsCdJobRecordDTO> listByIds(@Param("ids") List<Long> ids);
 }
@@ -1,5 +1,10 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
 import io.choerodon.devops.infra.dto.DevopsCiJobRecordDTO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -11,5 +16,18 @@ import io.choerodon.mybatis.common.BaseMapper;
  * @Date 2020/4/3 9:22
  */
 public interface DevopsCiJobRecordMapper extends BaseMapper<DevopsCiJobRecordDTO> {
+    /**
+     * 根据gitlab job id批量查询job记录
+     *
+     * @param gitlabJobIds gitlab job id, 不能为空
+     * @return job记录
+     */
+    List<DevopsCiJobRecordDTO> listByGitlabJobIds(@Param("gitlabJobIds") Collection<Long> gitlabJobIds);
 
+    /**
+     * 批量更新job记录的状态和时间, 为空的字段不更新
+     *
+     * @param records job记录, 不能为空
+     */
+    void batchUpdateStatus(@Param("records") List<DevopsCiJobRecordDTO> records);
 }
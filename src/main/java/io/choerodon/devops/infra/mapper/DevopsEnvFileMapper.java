@@ -1,5 +1,8 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dto.DevopsEnvFileDTO;
@@ -8,4 +11,6 @@ import io.choerodon.mybatis.common.BaseMapper;
 public interface DevopsEnvFileMapper extends BaseMapper<DevopsEnvFileDTO> {
 
     DevopsEnvFileDTO queryLatestByEnvAndPath(@Param("envId") Long envId, @Param("filePath") String filePath);
+
+    List<DevopsEnvFileDTO> listByEnvIdAndFilePaths(@Param("envId") Long envId, @Param("filePaths") Collection<String> filePaths);
 }
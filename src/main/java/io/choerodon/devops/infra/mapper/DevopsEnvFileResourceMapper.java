@@ -1,5 +1,8 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dto.DevopsEnvFileResourceDTO;
@@ -23,4 +26,14 @@ public interface DevopsEnvFileResourceMapper extends BaseMapper<DevopsEnvFileRes
     int countRecords(@Param("envId") Long envId,
                      @Param("resourceType") String resourceType,
                      @Param("resourceId") Long resourceId);
+
+    /**
+     * 查询环境下多个文件的资源文件关系
+     *
+     * @param envId     环境id
+     * @param filePaths 文件路径, 不能为空
+     * @return 资源文件关系
+     */
+    List<DevopsEnvFileResourceDTO> listByEnvIdAndFilePaths(@Param("envId") Long envId,
+                                                           @Param("filePaths") Collection<String> filePaths);
 }
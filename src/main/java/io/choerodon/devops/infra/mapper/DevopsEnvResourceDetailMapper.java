@@ -13,4 +13,15 @@ import io.choerodon.mybatis.common.BaseMapper;
  */
 public interface DevopsEnvResourceDetailMapper extends BaseMapper<DevopsEnvResourceDetailDTO> {
     List<DevopsEnvResourceDetailDTO> listByMessageIds(@Param("resourceDetailIds") Set<Long> resourceDetailIds);
+
+    /**
+     * 批量插入并回写自增id
+     * 参数不加@Param注解, 以便MyBatis能将生成的主键回写到列表中的每个元素
+     *
+     * @param details 待插入的纪录
+     * @return 插入的行数
+     */
+    int batchInsert(List<DevopsEnvResourceDetailDTO> details);
+
+    void batchUpdateMessage(@Param("details") List<DevopsEnvResourceDetailDTO> details);
 }
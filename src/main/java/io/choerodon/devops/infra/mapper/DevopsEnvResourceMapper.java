@@ -28,4 +28,25 @@ public interface DevopsEnvResourceMapper extends BaseMapper<DevopsEnvResourceDTO
     String getResourceDetailByNameAndTypeAndInstanceId(@Param("instanceId") Long instanceId, @Param("name") String name, @Param("kind") String resourceType);
 
     List<DevopsEnvResourceDTO> listEnvResourceByOptions(@Param("envId") Long envId, @Param("kind") String type, @Param("names") List<String> names);
+
+    /**
+     * 根据 (kind, name) 查询环境下的资源
+     *
+     * @param envId     环境id
+     * @param resources 只用到kind和name字段
+     * @return 已存在的资源
+     */
+    List<DevopsEnvResourceDTO> listByEnvIdAndKindAndNames(@Param("envId") Long envId,
+                                                          @Param("resources") List<DevopsEnvResourceDTO> resources);
+
+    /**
+     * 批量插入, 和 uk_devops_env_resource_env_id_kind_name 冲突时更新
+     *
+     * @param resources 资源
+     */
+    void batchUpsert(@Param("resources") List<DevopsEnvResourceDTO> resources);
+
+    void deleteByEnvIdAndKindAndNames(@Param("envId") Long envId,
+                                      @Param("kind") String kind,
+                                      @Param("names") List<String> names);
 }
@@ -0,0 +1,129 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dto.DevopsGitlabWebhookEventDTO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+/**
+ * @author agent
+ * @since 2026/10/18
+ */
+public interface DevopsGitlabWebhookEventMapper extends BaseMapper<DevopsGitlabWebhookEventDTO> {
+    /**
+     * 插入事件, 去重键已经存在时忽略, 插入成功时回写id
+     *
+     * @param event 事件
+     * @return 插入的行数, 0表示重复的事件
+     */
+    int insertIgnoreDuplicate(@Param("event") DevopsGitlabWebhookEventDTO event);
+
+    /**
+     * 按接收顺序查询一个gitlab项目待处理的事件, 只查询第一个还要重试的失败事件之前的事件
+     *
+     * @param gitlabProjectId gitlab项目id
+     * @param status          待处理的状态
+     * @param failedStatus    失败的状态
+     * @param maxAttempts     失败次数的上限, 达到上限的失败事件不再阻塞之后的事件
+     * @param limit           数量上限
+     * @return 事件
+     */
+    List<DevopsGitlabWebhookEventDTO> listByGitlabProjectIdAndStatus(@Param("gitlabProjectId") Long gitlabProjectId,
+                                                                     @Param("status") String status,
+                                                                     @Param("failedStatus") String failedStatus,
+                                                                     @Param("maxAttempts") Integer maxAttempts,
+                                                                     @Param("limit") Integer limit);
+
+    /**
+     * 查询在指定时间之前接收且还未处理的事件的gitlab项目id
+     *
+     * @param status 待处理的状态
+     * @param before 接收时间的上限
+     * @return gitlab项目id
+     */
+    List<Long> listGitlabProjectIdsByStatus(@Param("status") String status,
+                                            @Param("before") Date before);
+
+    /**
+     * 批量更新事件的处理状态
+     *
+     * @param ids          事件id, 不能为空
+     * @param status       处理状态
+     * @param errorMessage 失败的原因, 可为空
+     */
+    void updateStatusByIds(@Param("ids") List<Long> ids,
+                           @Param("status") String status,
+                           @Param("errorMessage") String errorMessage);
+
+    /**
+     * 把事件更新为失败, 失败次数加一, 下次重试的时间按失败次数指数退避
+     *
+     * @param ids                  事件id, 不能为空
+     * @param status               失败的状态
+     * @param errorMessage         失败的原因
+     * @param retryDelaySeconds    第一次失败后的重试间隔, 单位: 秒
+     * @param retryMaxDelaySeconds 重试间隔的上限, 单位: 秒
+     */
+    void updateFailedByIds(@Param("ids") List<Long> ids,
+                           @Param("status") String status,
+                           @Param("errorMessage") String errorMessage,
+                           @Param("retryDelaySeconds") Long retryDelaySeconds,
+                           @Param("retryMaxDelaySeconds") Long retryMaxDelaySeconds);
+
+    /**
+     * 把事件更新为失败并且不再重试, 用于重试也不会成功的事件, 比如内容不合法
+     *
+     * @param ids          事件id, 不能为空
+     * @param status       失败的状态
+     * @param errorMessage 失败的原因
+     * @param maxAttempts  失败次数的上限
+     */
+    void updateExhaustedByIds(@Param("ids") List<Long> ids,
+                              @Param("status") String status,
+                              @Param("errorMessage") String errorMessage,
+                              @Param("maxAttempts") Integer maxAttempts);
+
+    /**
+     * 把到了重试时间且失败次数未达到上限的事件恢复为待处理
+     *
+     * @param failedStatus  失败的状态
+     * @param pendingStatus 待处理的状态
+     * @param maxAttempts   失败次数的上限
+     * @return 恢复的事件数量
+     */
+    int retryFailedEvents(@Param("failedStatus") String failedStatus,
+                          @Param("pendingStatus") String pendingStatus,
+                          @Param("maxAttempts") Integer maxAttempts);
+
+    /**
+     * 把失败的事件恢复为待处理并清空失败次数, 不论是否达到失败次数的上限.
+     * 同一个对象之后的事件已经处理成功时, 失败的事件已经过时, 不再恢复
+     *
+     * @param failedStatus    失败的状态
+     * @param pendingStatus   待处理的状态
+     * @param successStatus   成功的状态
+     * @param supersededKinds 会被同一个对象之后的事件覆盖的事件类型
+     * @param gitlabProjectId gitlab项目id, 为空时恢复所有项目的事件
+     * @return 恢复的事件数量
+     */
+    int replayFailedEvents(@Param("failedStatus") String failedStatus,
+                           @Param("pendingStatus") String pendingStatus,
+                           @Param("successStatus") String successStatus,
+                           @Param("supersededKinds") List<String> supersededKinds,
+                           @Param("gitlabProjectId") Long gitlabProjectId);
+
+    /**
+     * 删除指定时间之前处理完的事件
+     *
+     * @param statuses 处理完的状态
+     * @param before   更新时间的上限
+     * @param limit    一次删除的数量上限
+     * @return 删除的数量
+     */
+    int deleteByStatusBefore(@Param("statuses") List<String> statuses,
+                             @Param("before") Date before,
+                             @Param("limit") Integer limit);
+}
@@ -51,4 +51,17 @@ public interface DevopsHostMapper extends BaseMapper<DevopsHostDTO> {
                                      @Param("hostIds") Set<Long> hostIds,
                                      @Param("isTestType") Boolean isTestType,
                                      @Param("date") Date date);
+
+    /**
+     * 批量更新同一类型主机的校准结果, 一条语句更新所有主机
+     *
+     * @param projectId  项目id
+     * @param hosts      带有校准结果的主机
+     * @param isTestType 是否是测试主机, 是的话同时更新jmeter状态
+     * @param date       更新时间
+     */
+    void batchUpdateStatus(@Param("projectId") Long projectId,
+                           @Param("hosts") List<DevopsHostDTO> hosts,
+                           @Param("isTestType") Boolean isTestType,
+                           @Param("date") Date date);
 }
@@ -19,6 +19,13 @@ public interface DevopsPolarisCategoryDetailMapper extends BaseMapper<DevopsPola
      */
     void batchDelete(@Param("ids") List<Long> detailIds);
 
+    /**
+     * 批量插入详情纪录, 不回写id
+     *
+     * @param items 详情纪录，不能为空
+     */
+    void batchInsert(@Param("items") List<DevopsPolarisCategoryDetailDTO> items);
+
     /**
      * 查询这次扫描对应的所有detail纪录id
      *
@@ -26,4 +33,22 @@ public interface DevopsPolarisCategoryDetailMapper extends BaseMapper<DevopsPola
      * @return id列表
      */
     List<Long> queryDetailIdsByRecordId(@Param("recordId") Long recordId);
+
+    /**
+     * 按插入顺序查询扫描纪录所有类别的详情
+     *
+     * @param recordId 扫描纪录id
+     * @return 详情纪录
+     */
+    List<DevopsPolarisCategoryDetailDTO> listByRecordId(@Param("recordId") Long recordId);
+
+    /**
+     * 按插入顺序查询一个类别的详情纪录的id和元素数量, 不查询详情内容
+     *
+     * @param recordId 扫描纪录id
+     * @param category 检测项的类别
+     * @return 只有id, category和itemCount字段的纪录
+     */
+    List<DevopsPolarisCategoryDetailDTO> listPartsByRecordId(@Param("recordId") Long recordId,
+                                                              @Param("category") String category);
 }
@@ -1,6 +1,7 @@
 package io.choerodon.devops.infra.mapper;
 
 import java.util.List;
+import javax.annotation.Nullable;
 
 import org.apache.ibatis.annotations.Param;
 
@@ -19,6 +20,13 @@ public interface DevopsPolarisNamespaceDetailMapper extends BaseMapper<DevopsPol
      */
     void batchDelete(@Param("ids") List<Long> detailIds);
 
+    /**
+     * 批量插入详情纪录, 不回写id
+     *
+     * @param items 详情纪录，不能为空
+     */
+    void batchInsert(@Param("items") List<DevopsPolarisNamespaceDetailDTO> items);
+
     /**
      * 查询这次扫描对应的所有detail纪录id
      *
@@ -26,4 +34,24 @@ public interface DevopsPolarisNamespaceDetailMapper extends BaseMapper<DevopsPol
      * @return id列表
      */
     List<Long> queryDetailIdsByRecordId(@Param("recordId") Long recordId);
+
+    /**
+     * 按插入顺序查询扫描纪录的详情
+     *
+     * @param recordId  扫描纪录id
+     * @param namespace 为空时查询所有namespace的详情
+     * @return 详情纪录
+     */
+    List<DevopsPolarisNamespaceDetailDTO> listByRecordId(@Param("recordId") Long recordId,
+                                                         @Nullable @Param("namespace") String namespace);
+
+    /**
+     * 按插入顺序查询一个namespace的详情纪录的id和元素数量, 不查询详情内容
+     *
+     * @param recordId  扫描纪录id
+     * @param namespace 集群namespace
+     * @return 只有id, namespace和itemCount字段的纪录
+     */
+    List<DevopsPolarisNamespaceDetailDTO> listPartsByRecordId(@Param("recordId") Long recordId,
+                                                               @Param("namespace") String namespace);
 }
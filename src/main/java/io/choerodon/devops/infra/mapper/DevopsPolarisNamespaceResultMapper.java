@@ -6,6 +6,7 @@ import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.api.vo.DevopsEnvWithPolarisResultVO;
 import io.choerodon.devops.api.vo.polaris.InstanceWithPolarisStorageVO;
+import io.choerodon.devops.infra.dto.DevopsPolarisNamespaceDetailDTO;
 import io.choerodon.devops.infra.dto.DevopsPolarisNamespaceResultDTO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -17,13 +18,13 @@ public interface DevopsPolarisNamespaceResultMapper extends BaseMapper<DevopsPol
     void batchInsert(@Param("items") List<DevopsPolarisNamespaceResultDTO> items);
 
     /**
-     * 查询带有扫描结果的实例数据
+     * 查询带有扫描结果的实例数据, 按插入顺序返回分批存储的详情
      *
      * @param recordId 扫描纪录id
      * @param envId    环境id
-     * @return 数据
+     * @return 每一批的详情纪录
      */
-    String queryNamespaceResultDetail(
+    List<DevopsPolarisNamespaceDetailDTO> queryNamespaceResultDetail(
             @Param("recordId") Long recordId,
             @Param("envId") Long envId);
 
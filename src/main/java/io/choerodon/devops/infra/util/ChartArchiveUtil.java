@@ -0,0 +1,114 @@
+package io.choerodon.devops.infra.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 在内存中读取chart包(.tgz)中需要的文件, 不解压到磁盘
+ * <p>
+ * 顺序读一遍压缩包, 只读取层级最浅的 values.yaml 和 README.md 的内容,
+ * 和解压后广度优先查找文件的结果一致, 不会取到子chart中的文件
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public final class ChartArchiveUtil {
+    private static final String VALUES_FILE_NAME = "values.yaml";
+    private static final String README_FILE_NAME = "README.md";
+    private static final String CURRENT_DIR_PREFIX = "./";
+    private static final char SEPARATOR = '/';
+
+    private ChartArchiveUtil() {
+    }
+
+    /**
+     * 读取chart包中的values和README
+     *
+     * @param chartArchive chart包的内容
+     * @return chart包中的values和README, 没有对应文件时为null
+     */
+    public static ChartContent readChartContent(byte[] chartArchive) {
+        ChartContent content = new ChartContent();
+        int valuesDepth = Integer.MAX_VALUE;
+        int readmeDepth = Integer.MAX_VALUE;
+        try (TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                new GzipCompressorInputStream(new ByteArrayInputStream(chartArchive)))) {
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextTarEntry()) != null) {
+                if (!entry.isFile()) {
+                    continue;
+                }
+                String name = entry.getName();
+                if (name.startsWith(CURRENT_DIR_PREFIX)) {
+                    name = name.substring(CURRENT_DIR_PREFIX.length());
+                }
+                int depth = depthOf(name);
+                if (depth < valuesDepth && VALUES_FILE_NAME.equals(fileNameOf(name))) {
+                    valuesDepth = depth;
+                    content.values = new String(IOUtils.toByteArray(tarIn), StandardCharsets.UTF_8);
+                } else if (depth < readmeDepth && README_FILE_NAME.equals(fileNameOf(name))) {
+                    readmeDepth = depth;
+                    content.readme = readLines(tarIn);
+                }
+            }
+        } catch (IOException e) {
+            throw new CommonException("error.chart.archive.read", e);
+        }
+        return content;
+    }
+
+    private static int depthOf(String name) {
+        int depth = 0;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) == SEPARATOR) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static String fileNameOf(String name) {
+        return name.substring(name.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    /**
+     * 和 {@link FileUtil#getFileContent(java.io.File)} 一样, 每一行以换行符结尾
+     */
+    private static String readLines(InputStream inputStream) throws IOException {
+        StringBuilder content = new StringBuilder();
+        // 不关闭reader, 关闭会关闭整个压缩包的流
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            content.append(line).append("\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * chart包中的values和README
+     */
+    public static final class ChartContent {
+        private String values;
+        private String readme;
+
+        public String getValues() {
+            return values;
+        }
+
+        public String getReadme() {
+            return readme;
+        }
+    }
+}
@@ -54,6 +54,28 @@ public class ChartUtil {
     DevopsConfigService devopsConfigService;
 
     public void uploadChart(String repository, String organizationCode, String projectCode, File file, @Nullable String username, @Nullable String password) {
+        file = new File(file.getAbsolutePath());
+        RequestBody requestFile = RequestBody.create(MediaType.parse("multipart/form-data"), file);
+        uploadChart(repository, organizationCode, projectCode, file.getName(), requestFile, username, password);
+    }
+
+    /**
+     * 上传内存中的chart包, 不写临时文件
+     *
+     * @param repository       chart仓库地址
+     * @param organizationCode 组织编码
+     * @param projectCode      项目编码
+     * @param fileName         chart包的文件名
+     * @param content          chart包的内容
+     * @param username         仓库用户名
+     * @param password         仓库密码
+     */
+    public void uploadChart(String repository, String organizationCode, String projectCode, String fileName, byte[] content, @Nullable String username, @Nullable String password) {
+        RequestBody requestFile = RequestBody.create(MediaType.parse("multipart/form-data"), content);
+        uploadChart(repository, organizationCode, projectCode, fileName, requestFile, username, password);
+    }
+
+    private void uploadChart(String repository, String organizationCode, String projectCode, String fileName, RequestBody requestFile, @Nullable String username, @Nullable String password) {
         ConfigurationProperties configurationProperties = new ConfigurationProperties();
         configurationProperties.setType(CHART);
         repository = repository.endsWith("/") ? repository.substring(0, repository.length() - 1) : repository;
@@ -61,9 +83,7 @@ public class ChartUtil {
         configurationProperties.setUsername(username);
         configurationProperties.setPassword(password);
         Retrofit retrofit = RetrofitHandler.initRetrofit(configurationProperties);
-        file = new File(file.getAbsolutePath());
-        RequestBody requestFile = RequestBody.create(MediaType.parse("multipart/form-data"), file);
-        MultipartBody.Part body = MultipartBody.Part.createFormData(CHART, file.getName(), requestFile);
+        MultipartBody.Part body = MultipartBody.Part.createFormData(CHART, fileName, requestFile);
         ChartClient chartClient = retrofit.create(ChartClient.class);
         Call<Object> uploadTaz = chartClient.uploadTaz(organizationCode, projectCode, body);
         try {
@@ -459,7 +459,9 @@ public class FileUtil {
 
 
     /**
-     * 指定values文件路径
+     * 指定values文件路径, 调用values_yaml脚本合并
+     * <p>
+     * 只在开启devops.values.merge.script.enabled时使用, 默认由{@link HelmValuesMerger}合并
      *
      * @param path 路径
      * @return 返回替换结果
@@ -2,9 +2,7 @@ package io.choerodon.devops.infra.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 import java.util.regex.Pattern;
 
 import com.jcraft.jsch.JSch;
@@ -19,8 +17,11 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.*;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -136,6 +137,107 @@ public class GitUtil {
         return "";
     }
 
+    /**
+     * 一次遍历提交历史, 得到多个文件各自最近一次修改的提交, 结果和逐个调用 {@link #getFileLatestCommit(String, String)} 一致
+     * <p>
+     * 和git log -- &lt;file&gt;一样做合并提交的历史简化: 合并提交中文件和某个父提交相同时, 这个文件只沿着第一个相同的父提交继续查找,
+     * 其它父提交带进来的修改不算, 因此每个文件单独记录还需要查看的提交
+     *
+     * @param path      仓库的.git目录
+     * @param filePaths 文件的相对路径
+     * @return 文件路径和提交sha的映射, 找不到提交的文件对应空字符串
+     */
+    public static Map<String, String> getFilesLatestCommits(String path, Collection<String> filePaths) {
+        Map<String, String> result = new HashMap<>();
+        // 和getFileLatestCommit一致, 按照文件名查找
+        Map<String, List<String>> filePathsByName = new HashMap<>();
+        for (String filePath : filePaths) {
+            if (filePath == null) {
+                continue;
+            }
+            result.put(filePath, "");
+            String[] fileName = filePath.split("/");
+            filePathsByName.computeIfAbsent(fileName[fileName.length - 1], k -> new ArrayList<>()).add(filePath);
+        }
+        if (filePathsByName.isEmpty()) {
+            return result;
+        }
+
+        File file = new File(path);
+        try (Repository repository = new FileRepository(file.getAbsolutePath());
+             RevWalk revWalk = new RevWalk(repository);
+             TreeWalk treeWalk = new TreeWalk(repository)) {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                return result;
+            }
+            RevCommit headCommit = revWalk.parseCommit(head);
+            // 每个还没找到提交的文件在简化后的历史中还需要查看的提交
+            Map<String, Set<RevCommit>> pending = new HashMap<>();
+            filePathsByName.keySet().forEach(name -> pending.put(name, new HashSet<>(Collections.singleton(headCommit))));
+            revWalk.sort(RevSort.COMMIT_TIME_DESC);
+            revWalk.markStart(headCommit);
+            treeWalk.setRecursive(true);
+            for (RevCommit commit : revWalk) {
+                List<String> names = new ArrayList<>();
+                pending.forEach((name, commits) -> {
+                    if (commits.remove(commit)) {
+                        names.add(name);
+                    }
+                });
+                if (!names.isEmpty()) {
+                    RevCommit[] parents = commit.getParents();
+                    treeWalk.reset(commit.getTree());
+                    for (RevCommit parent : parents) {
+                        treeWalk.addTree(revWalk.parseCommit(parent).getTree());
+                    }
+                    treeWalk.setFilter(PathFilterGroup.createFromStrings(names));
+                    Set<String> unvisited = new HashSet<>(names);
+                    while (treeWalk.next()) {
+                        String name = treeWalk.getPathString();
+                        if (!unvisited.remove(name)) {
+                            continue;
+                        }
+                        int sameParent = firstSameParent(treeWalk);
+                        if (sameParent < 0) {
+                            pending.remove(name);
+                            filePathsByName.get(name).forEach(filePath -> result.put(filePath, commit.getName()));
+                        } else {
+                            pending.get(name).add(parents[sameParent]);
+                        }
+                    }
+                    // 提交和父提交中都不存在的文件, 和第一个父提交相同
+                    for (String name : unvisited) {
+                        if (parents.length > 0) {
+                            pending.get(name).add(parents[0]);
+                        }
+                    }
+                }
+                pending.values().removeIf(Set::isEmpty);
+                if (pending.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.info(e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 当前文件和哪个父提交相同
+     *
+     * @return 第一个相同的父提交的下标, 和所有父提交都不同(包括没有父提交)时返回-1
+     */
+    private static int firstSameParent(TreeWalk treeWalk) {
+        for (int i = 1; i < treeWalk.getTreeCount(); i++) {
+            if (treeWalk.getRawMode(0) == treeWalk.getRawMode(i) && treeWalk.idEqual(0, i)) {
+                return i - 1;
+            }
+        }
+        return -1;
+    }
+
     public static String getGitlabSshUrl(Pattern pattern, String url, String orgCode, String proCode, String envCode, EnvironmentType environmentType, String clusterCode) {
         final String groupSuffix = GitOpsUtil.getGroupSuffixByEnvType(environmentType);
         String result = "";
@@ -0,0 +1,946 @@
+package io.choerodon.devops.infra.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.nodes.*;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+import org.yaml.snakeyaml.serializer.Serializer;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.kubernetes.HighlightMarker;
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO;
+
+/**
+ * 在内存中合并chart的values和部署的values, 代替之前每次调用都启动一个进程的values_yaml脚本(docker/values_yaml.py)
+ * <p>
+ * 合并规则和脚本(ruamel.yaml 0.16, YAML 1.2)一致:
+ * <ul>
+ * <li>标量按YAML 1.2识别类型, yes/no/on/off是字符串, 1_000和0x1F是整数</li>
+ * <li>部署values中的标量只有str/int/bool参与比较, null、浮点数、时间、多行字符串(| >)、带锚点的值,
+ * 以及0x1F、010、1_000这类非十进制写法的整数都被忽略, 即使是新增的键</li>
+ * <li>部署values中有而chart values中没有的键记为新增</li>
+ * <li>两边都是map时递归比较, chart values中的map为空时整体记为新增</li>
+ * <li>部署values中的值是标量且和chart values不同时记为修改, chart values中的值是null/str/int/bool而部署values中是map时记为新增</li>
+ * <li>两边都是数组时, 原数组为空记为新增, 长度或者任一元素不同记为修改</li>
+ * <li>数组和map互相替换的情况忽略</li>
+ * <li>比较和python一致: 1、1.0和true相等, map不比较键的顺序</li>
+ * </ul>
+ * 合并结果在chart values第一个文档的原文上修改, 未修改的部分(包括注释和格式)保持原样. 对于已经是脚本输出格式的values
+ * (缩进两格, 数组的 "- " 和键对齐, 字符串只在需要时加引号且优先用单引号), 合并后的values和差异与脚本的输出逐字节一致:
+ * <ul>
+ * <li>新增的键追加到所在map的末尾, 在最后一个值之后的注释和空行之后</li>
+ * <li>替换的标量按脚本的规则重新输出, 行尾注释保持原来的列; 替换的块使用部署values中的原文并调整缩进</li>
+ * <li>需要修改的内容在flow风格({a: 1})中时, 整个flow重新输出</li>
+ * </ul>
+ * 和脚本不同的地方: chart values为空时脚本会失败, 这里直接使用部署values; 超过80列的长字符串不换行.
+ * HelmValuesMergerCompatibilitySpec比较的脚本输出是按脚本的规则手工推导的, 还没有在base镜像中用脚本重新生成,
+ * 和脚本不一致时可以开启devops.values.merge.script.enabled改回调用脚本合并
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public final class HelmValuesMerger {
+    private static final String LINE_SEPARATOR = "\n";
+    private static final int INDENT = 2;
+    private static final String PLACEHOLDER_KEY = "k";
+    private static final Pattern DOCUMENT_MARKER = Pattern.compile("^(---|\\.\\.\\.)(\\s.*)?$");
+    private static final Pattern DECIMAL_INT = Pattern.compile("^[-+]?(0|[1-9][0-9]*)$");
+
+    private HelmValuesMerger() {
+    }
+
+    /**
+     * 合并values
+     *
+     * @param versionValue chart的values
+     * @param deployValue  部署的values
+     * @return 合并后的values, 部署values相对chart values的差异, 新增的行和修改的位置
+     */
+    public static InstanceValueVO merge(String versionValue, String deployValue) {
+        Source version = new Source(firstDocument(normalize(versionValue)));
+        Source deploy = new Source(normalize(deployValue));
+        Node versionRoot = compose(version.text, true);
+        Node deployRoot = compose(deploy.text, false);
+        if ((versionRoot != null && !(versionRoot instanceof MappingNode))
+                || (deployRoot != null && !(deployRoot instanceof MappingNode))) {
+            throw new CommonException("error.value.illegal");
+        }
+
+        Merge merge = new Merge(version, deploy, deployRoot);
+        String yaml = version.text;
+        if (deployRoot != null) {
+            yaml = merge.run((MappingNode) versionRoot, (MappingNode) deployRoot);
+        }
+        if (!yaml.isEmpty() && !yaml.endsWith(LINE_SEPARATOR)) {
+            yaml = yaml + LINE_SEPARATOR;
+        }
+
+        InstanceValueVO instanceValueVO = markChanges(yaml, merge.addList, merge.updateList);
+        // 和之前按分隔符切分脚本输出得到的内容一致, 以换行开头
+        instanceValueVO.setDeltaYaml(LINE_SEPARATOR + dump(merge.delta, true));
+        return instanceValueVO;
+    }
+
+    /**
+     * 在合并后的values中标记新增的行和修改的位置, 和之前解析脚本输出的方式一致
+     */
+    static InstanceValueVO markChanges(String yaml, List<List<String>> addList, List<List<String>> updateList) {
+        Node root = yaml.isEmpty() ? null : compose(yaml, true);
+        MappingNode mappingNode = root instanceof MappingNode ? (MappingNode) root : null;
+
+        List<Integer> addLines = new ArrayList<>();
+        for (List<String> keys : addList) {
+            Node node = getKeysNode(keys, mappingNode);
+            if (node != null) {
+                for (int i = node.getStartMark().getLine(); i <= node.getEndMark().getLine(); i++) {
+                    addLines.add(i);
+                }
+            }
+        }
+
+        List<HighlightMarker> highlightMarkers = new ArrayList<>();
+        for (List<String> keys : updateList) {
+            Node node = getKeysNode(keys, mappingNode);
+            if (node != null) {
+                HighlightMarker highlightMarker = new HighlightMarker();
+                highlightMarker.setLine(node.getStartMark().getLine());
+                highlightMarker.setEndLine(node.getEndMark().getLine());
+                highlightMarker.setStartColumn(node.getStartMark().getColumn());
+                highlightMarker.setEndColumn(node.getEndMark().getColumn());
+                highlightMarkers.add(highlightMarker);
+            }
+        }
+
+        InstanceValueVO instanceValueVO = new InstanceValueVO();
+        instanceValueVO.setNewLines(addLines);
+        instanceValueVO.setHighlightMarkers(highlightMarkers);
+        instanceValueVO.setYaml(yaml);
+        return instanceValueVO;
+    }
+
+    private static Node getKeysNode(List<String> keys, MappingNode mappingNode) {
+        Node value = null;
+        for (String key : keys) {
+            if (mappingNode == null) {
+                return null;
+            }
+            NodeTuple tuple = findTuple(mappingNode, key);
+            if (tuple == null) {
+                return null;
+            }
+            value = tuple.getValueNode();
+            mappingNode = value instanceof MappingNode ? (MappingNode) value : null;
+        }
+        return value;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.replace("\r\n", LINE_SEPARATOR);
+    }
+
+    /**
+     * 脚本只输出chart values的第一个文档, 文档开头的 --- 也不输出
+     */
+    private static String firstDocument(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean content = false;
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            String line = text.substring(start, end);
+            String trimmed = line.trim();
+            if (DOCUMENT_MARKER.matcher(line.replace(LINE_SEPARATOR, "")).matches()) {
+                if (content) {
+                    break;
+                }
+                String rest = trimmed.substring(3).trim();
+                if (rest.isEmpty() || rest.startsWith("#")) {
+                    start = end;
+                    continue;
+                }
+            }
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#") && !trimmed.startsWith("%")) {
+                content = true;
+            }
+            result.append(line);
+            start = end;
+        }
+        return result.toString();
+    }
+
+    /**
+     * 解析yaml的节点, 多个文档时chart values取第一个, 部署values取最后一个, 和之前的脚本一致
+     */
+    private static Node compose(String text, boolean first) {
+        try {
+            Composer composer = new Composer(new ParserImpl(new StreamReader(text)), new ScriptResolver());
+            Node result = null;
+            while (composer.checkNode()) {
+                Node node = composer.getNode();
+                if (first) {
+                    return node;
+                }
+                if (node != null) {
+                    result = node;
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            throw new CommonException("error.value.illegal", e);
+        }
+    }
+
+    private static NodeTuple findTuple(MappingNode mappingNode, String key) {
+        for (NodeTuple tuple : mappingNode.getValue()) {
+            if (tuple.getKeyNode() instanceof ScalarNode && ((ScalarNode) tuple.getKeyNode()).getValue().equals(key)) {
+                return tuple;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按python的规则查找键, 键区分类型, 1和"1"是不同的键
+     */
+    private static NodeTuple findTuple(MappingNode mappingNode, Node key) {
+        for (NodeTuple tuple : mappingNode.getValue()) {
+            if (scriptEquals(tuple.getKeyNode(), key)) {
+                return tuple;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNull(Node node) {
+        return node instanceof ScalarNode && Tag.NULL.equals(node.getTag());
+    }
+
+    /**
+     * 按python的规则比较两个节点的值, map不比较键的顺序
+     */
+    private static boolean scriptEquals(Node a, Node b) {
+        if (a instanceof ScalarNode && b instanceof ScalarNode) {
+            return scalarEquals((ScalarNode) a, (ScalarNode) b);
+        }
+        if (a instanceof SequenceNode && b instanceof SequenceNode) {
+            List<Node> as = ((SequenceNode) a).getValue();
+            List<Node> bs = ((SequenceNode) b).getValue();
+            if (as.size() != bs.size()) {
+                return false;
+            }
+            for (int i = 0; i < as.size(); i++) {
+                if (!scriptEquals(as.get(i), bs.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof MappingNode && b instanceof MappingNode) {
+            List<NodeTuple> as = ((MappingNode) a).getValue();
+            if (as.size() != ((MappingNode) b).getValue().size()) {
+                return false;
+            }
+            for (NodeTuple tuple : as) {
+                NodeTuple other = findTuple((MappingNode) b, tuple.getKeyNode());
+                if (other == null || !scriptEquals(tuple.getValueNode(), other.getValueNode())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 数值(bool, int, float)之间按数值比较, 其余的同类型按值比较
+     */
+    private static boolean scalarEquals(ScalarNode a, ScalarNode b) {
+        Number x = numberOf(a);
+        Number y = numberOf(b);
+        if (x != null && y != null) {
+            if (x instanceof Double || y instanceof Double) {
+                return x.doubleValue() == y.doubleValue();
+            }
+            return x.equals(y);
+        }
+        return x == null && y == null && a.getTag().equals(b.getTag()) && a.getValue().equals(b.getValue());
+    }
+
+    private static Number numberOf(ScalarNode node) {
+        String value = node.getValue().replace("_", "");
+        if (Tag.BOOL.equals(node.getTag())) {
+            return Character.toLowerCase(value.charAt(0)) == 't' ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        if (Tag.INT.equals(node.getTag())) {
+            boolean negative = value.startsWith("-");
+            String digits = negative || value.startsWith("+") ? value.substring(1) : value;
+            int radix = 10;
+            if (digits.startsWith("0b") || digits.startsWith("0o") || digits.startsWith("0x")) {
+                radix = digits.charAt(1) == 'b' ? 2 : (digits.charAt(1) == 'o' ? 8 : 16);
+                digits = digits.substring(2);
+            }
+            BigInteger number = new BigInteger(digits, radix);
+            return negative ? number.negate() : number;
+        }
+        if (Tag.FLOAT.equals(node.getTag())) {
+            String lower = value.toLowerCase();
+            if (lower.endsWith(".nan")) {
+                return Double.NaN;
+            }
+            if (lower.endsWith(".inf")) {
+                return lower.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            }
+            return Double.valueOf(value);
+        }
+        return null;
+    }
+
+    /**
+     * 按脚本输出的格式转换标量: null输出为空, bool和十进制整数使用规范的写法, 字符串只在需要时加引号, 其余保持原文
+     *
+     * @param blockStyle 字符串原来的块风格(| >), 没有时为null
+     */
+    private static ScalarNode scriptScalar(ScalarNode node, DumperOptions.ScalarStyle blockStyle) {
+        Tag tag = node.getTag();
+        String value = node.getValue();
+        if (Tag.NULL.equals(tag)) {
+            value = "";
+        } else if (Tag.BOOL.equals(tag)) {
+            value = Character.toLowerCase(value.charAt(0)) == 't' ? "true" : "false";
+        } else if (Tag.INT.equals(tag) && DECIMAL_INT.matcher(value).matches()) {
+            value = new BigInteger(value).toString();
+        }
+        return new ScalarNode(tag, value, null, null, blockStyle == null ? DumperOptions.ScalarStyle.PLAIN : blockStyle);
+    }
+
+    /**
+     * 使用和脚本一致的规则输出节点
+     *
+     * @param splitLines 超过80列时是否换行
+     */
+    private static String dump(Node node, boolean splitLines) {
+        DumperOptions options = new DumperOptions();
+        options.setIndent(INDENT);
+        options.setSplitLines(splitLines);
+        if (!splitLines) {
+            options.setWidth(Integer.MAX_VALUE);
+        }
+        StringWriter writer = new StringWriter();
+        Serializer serializer = new Serializer(new Emitter(writer, options), new ScriptResolver(), options, null);
+        try {
+            serializer.open();
+            serializer.serialize(node);
+            serializer.close();
+        } catch (IOException e) {
+            throw new CommonException("error.value.illegal", e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 输出block map中的一项, 值为空时只输出 "键:"
+     */
+    private static String dumpTuple(ScalarNode key, ScalarNode value) {
+        List<NodeTuple> tuples = Collections.singletonList(new NodeTuple(key, value));
+        String text = dump(new MappingNode(Tag.MAP, tuples, DumperOptions.FlowStyle.BLOCK), false);
+        return text.substring(0, text.length() - LINE_SEPARATOR.length());
+    }
+
+    /**
+     * 输出flow中的一个标量
+     */
+    private static String dumpFlowScalar(ScalarNode node) {
+        String text = dump(new SequenceNode(Tag.SEQ, Collections.singletonList(node), DumperOptions.FlowStyle.FLOW), false);
+        return text.substring(1, text.lastIndexOf(']'));
+    }
+
+    private static String spaces(int count) {
+        char[] chars = new char[Math.max(0, count)];
+        Arrays.fill(chars, ' ');
+        return new String(chars);
+    }
+
+    /**
+     * 调整多行文本的缩进
+     *
+     * @param text      文本
+     * @param delta     缩进的变化, 负数时只删除行首的空格
+     * @param firstLine 是否调整第一行
+     */
+    private static String shift(String text, int delta, boolean firstLine) {
+        if (delta == 0) {
+            return text;
+        }
+        String[] lines = text.split(LINE_SEPARATOR, -1);
+        StringBuilder result = new StringBuilder(text.length() + lines.length * Math.max(0, delta));
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (i > 0) {
+                result.append(LINE_SEPARATOR);
+            }
+            if ((i == 0 && !firstLine) || line.isEmpty()) {
+                result.append(line);
+            } else if (delta > 0) {
+                result.append(spaces(delta)).append(line);
+            } else {
+                int remove = 0;
+                while (remove < -delta && remove < line.length() && line.charAt(remove) == ' ') {
+                    remove++;
+                }
+                result.append(line, remove, line.length());
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * yaml原文, 节点的位置按code point计算, 转换为字符串的下标
+     */
+    private static final class Source {
+        private final String text;
+        private final boolean hasSurrogates;
+
+        private Source(String text) {
+            this.text = text;
+            boolean surrogates = false;
+            for (int i = 0; i < text.length() && !surrogates; i++) {
+                surrogates = Character.isSurrogate(text.charAt(i));
+            }
+            this.hasSurrogates = surrogates;
+        }
+
+        private int index(Mark mark) {
+            return hasSurrogates ? text.offsetByCodePoints(0, mark.getIndex()) : mark.getIndex();
+        }
+
+        private int lineStart(int index) {
+            return text.lastIndexOf('\n', index - 1) + 1;
+        }
+
+        private int lineEnd(int index) {
+            int end = text.indexOf('\n', index);
+            return end < 0 ? text.length() : end;
+        }
+
+        private int column(int index) {
+            return text.codePointCount(lineStart(index), index);
+        }
+
+        /**
+         * 跳过节点开头的锚点(&a)和标签(!!str)
+         */
+        private int skipProperties(int index) {
+            while (index < text.length() && (text.charAt(index) == '&' || text.charAt(index) == '!')) {
+                while (index < text.length() && !Character.isWhitespace(text.charAt(index))) {
+                    index++;
+                }
+                while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+                    index++;
+                }
+            }
+            return index;
+        }
+
+        private boolean isAnchored(Node node) {
+            int index = index(node.getStartMark());
+            while (index < text.length() && (text.charAt(index) == '&' || text.charAt(index) == '!')) {
+                if (text.charAt(index) == '&') {
+                    return true;
+                }
+                index = skipProperties(index);
+            }
+            return false;
+        }
+
+        /**
+         * 多行字符串的风格(| >), 不是多行字符串时为null
+         */
+        private DumperOptions.ScalarStyle blockStyle(ScalarNode node) {
+            int start = skipProperties(index(node.getStartMark()));
+            if (start < text.length() && text.charAt(start) == '|') {
+                return DumperOptions.ScalarStyle.LITERAL;
+            }
+            return start < text.length() && text.charAt(start) == '>' ? DumperOptions.ScalarStyle.FOLDED : null;
+        }
+
+        private boolean isFlow(Node node) {
+            int start = skipProperties(index(node.getStartMark()));
+            return start < text.length() && (text.charAt(start) == '{' || text.charAt(start) == '[');
+        }
+
+        private boolean isBlockCollection(Node node) {
+            return (node instanceof MappingNode || node instanceof SequenceNode) && !isFlow(node);
+        }
+
+        /**
+         * 块的第一行内容的位置: map的第一个键, 数组的第一个 "-"
+         */
+        private int blockStart(Node node) {
+            if (node instanceof MappingNode) {
+                return index(((MappingNode) node).getValue().get(0).getKeyNode().getStartMark());
+            }
+            int index = index(((SequenceNode) node).getValue().get(0).getStartMark());
+            while (index > 0 && text.charAt(index) != '-') {
+                index--;
+            }
+            return index;
+        }
+
+        /**
+         * 键后面冒号的下一个位置
+         */
+        private int afterColon(Node keyNode) {
+            int index = index(keyNode.getEndMark());
+            while (index < text.length() && text.charAt(index) != ':') {
+                index++;
+            }
+            return Math.min(index + 1, text.length());
+        }
+
+        /**
+         * 值是否是别名(*a), 别名节点的位置是锚点所在的位置
+         */
+        private boolean isAlias(Node keyNode, Node value) {
+            return keyNode != null && index(value.getStartMark()) < index(keyNode.getEndMark());
+        }
+
+        private int aliasEnd(Node keyNode) {
+            int index = afterColon(keyNode);
+            while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            while (index < text.length() && !Character.isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * 值的内容结束的位置, 不包括之后的空白和注释
+         *
+         * @param keyNode 值对应的键, 值为空时用于定位
+         * @param value   值
+         */
+        private int contentEnd(Node keyNode, Node value) {
+            if (isAlias(keyNode, value)) {
+                return aliasEnd(keyNode);
+            }
+            if (value instanceof ScalarNode) {
+                int start = index(value.getStartMark());
+                int end = index(value.getEndMark());
+                if (start == end && ((ScalarNode) value).getValue().isEmpty() && keyNode != null) {
+                    // `key:` 后面没有内容时, 空节点的位置在下一个键
+                    return afterColon(keyNode);
+                }
+                while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+                return end;
+            }
+            if (isFlow(value)) {
+                return index(value.getEndMark());
+            }
+            if (value instanceof MappingNode) {
+                List<NodeTuple> tuples = ((MappingNode) value).getValue();
+                NodeTuple last = tuples.get(tuples.size() - 1);
+                return contentEnd(last.getKeyNode(), last.getValueNode());
+            }
+            List<Node> items = ((SequenceNode) value).getValue();
+            return contentEnd(null, items.get(items.size() - 1));
+        }
+
+        /**
+         * 内容所在行之后的注释和空行结束的位置, 脚本把它们当作前一个值的注释
+         */
+        private int afterTrailingComments(int index) {
+            int end = lineEnd(index);
+            while (end + 1 < text.length()) {
+                int nextEnd = lineEnd(end + 1);
+                String line = text.substring(end + 1, nextEnd).trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    break;
+                }
+                end = nextEnd;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * 对原文的一处修改
+     */
+    private static final class Edit {
+        private final int start;
+        private final int end;
+        private final String text;
+        /**
+         * 同一位置的修改: 替换值在前, 追加的键在后; 追加的键中层级深的在前
+         */
+        private final int priority;
+        private final int depth;
+        private final int sequence;
+
+        private Edit(int start, int end, String text, int priority, int depth, int sequence) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.priority = priority;
+            this.depth = depth;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 一次合并的状态
+     */
+    private static final class Merge {
+        private static final int PRIORITY_REPLACE = 0;
+        private static final int PRIORITY_APPEND = 1;
+
+        private final Source version;
+        private final Source deploy;
+        private final Set<Node> deployNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Edit> edits = new ArrayList<>();
+        private final List<List<String>> addList = new ArrayList<>();
+        private final List<List<String>> updateList = new ArrayList<>();
+        private final MappingNode delta = new MappingNode(Tag.MAP, new ArrayList<>(), DumperOptions.FlowStyle.BLOCK);
+
+        private Merge(Source version, Source deploy, Node deployRoot) {
+            this.version = version;
+            this.deploy = deploy;
+            if (deployRoot != null) {
+                collectDeployNodes(deployRoot);
+            }
+        }
+
+        private String run(MappingNode versionRoot, MappingNode deployRoot) {
+            if (versionRoot == null) {
+                // chart values为空时所有的键都是新增, 直接使用部署values的原文
+                traverse(new MappingNode(Tag.MAP, new ArrayList<>(), DumperOptions.FlowStyle.BLOCK), deployRoot,
+                        Collections.emptyList(), Collections.emptyList(), 0, true);
+                return changes() == 0 ? version.text : deploy.text.substring(deploy.lineStart(deploy.index(deployRoot.getStartMark())));
+            }
+            if (version.isFlow(versionRoot)) {
+                traverse(versionRoot, deployRoot, Collections.emptyList(), Collections.emptyList(), 0, true);
+                return changes() == 0 ? version.text : renderFlow(versionRoot);
+            }
+            traverse(versionRoot, deployRoot, Collections.emptyList(), Collections.emptyList(), 0, false);
+            return applyEdits();
+        }
+
+        private void collectDeployNodes(Node node) {
+            if (!deployNodes.add(node)) {
+                return;
+            }
+            if (node instanceof MappingNode) {
+                for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+                    collectDeployNodes(tuple.getKeyNode());
+                    collectDeployNodes(tuple.getValueNode());
+                }
+            } else if (node instanceof SequenceNode) {
+                ((SequenceNode) node).getValue().forEach(this::collectDeployNodes);
+            }
+        }
+
+        private Source sourceOf(Node node) {
+            return deployNodes.contains(node) ? deploy : version;
+        }
+
+        private int changes() {
+            return addList.size() + updateList.size();
+        }
+
+        /**
+         * 脚本比较的标量: python中的类型是str/int/bool的值
+         */
+        private boolean isScriptScalar(Node node) {
+            if (!(node instanceof ScalarNode) || sourceOf(node).isAnchored(node)) {
+                return false;
+            }
+            Tag tag = node.getTag();
+            if (Tag.STR.equals(tag)) {
+                return sourceOf(node).blockStyle((ScalarNode) node) == null;
+            }
+            return Tag.BOOL.equals(tag) || (Tag.INT.equals(tag) && DECIMAL_INT.matcher(((ScalarNode) node).getValue()).matches());
+        }
+
+        /**
+         * 按脚本的规则比较一层map, 记录修改并修改chart values的节点
+         *
+         * @param insideFlow 是否在flow风格的map中, 是的话不记录对原文的修改, 由外层的flow map整体重新输出
+         */
+        private void traverse(MappingNode versionMap, MappingNode deployMap, List<String> path, List<Node> keyPath,
+                              int depth, boolean insideFlow) {
+            if (!insideFlow && (version.isFlow(versionMap) || sourceOf(versionMap) == deploy)) {
+                int before = changes();
+                traverse(versionMap, deployMap, path, keyPath, depth, true);
+                if (changes() > before && sourceOf(versionMap) == version) {
+                    edits.add(new Edit(version.index(versionMap.getStartMark()), version.index(versionMap.getEndMark()),
+                            renderFlow(versionMap), PRIORITY_REPLACE, depth, edits.size()));
+                }
+                return;
+            }
+            // 修改节点之前计算追加键的位置
+            int appendAt = insideFlow ? -1 : version.afterTrailingComments(version.contentEnd(null, versionMap));
+            int keyColumn = insideFlow ? 0 : version.column(version.blockStart(versionMap));
+
+            for (NodeTuple deployTuple : deployMap.getValue()) {
+                Node keyNode = deployTuple.getKeyNode();
+                if (!(keyNode instanceof ScalarNode)) {
+                    continue;
+                }
+                List<String> keys = new ArrayList<>(path);
+                keys.add(((ScalarNode) keyNode).getValue());
+                List<Node> keyNodes = new ArrayList<>(keyPath);
+                keyNodes.add(keyNode);
+                Node deployValue = deployTuple.getValueNode();
+                NodeTuple versionTuple = findTuple(versionMap, keyNode);
+
+                if (versionTuple == null) {
+                    if (deployValue instanceof ScalarNode && !isScriptScalar(deployValue)) {
+                        continue;
+                    }
+                    addList.add(keys);
+                    putDelta(keyNodes, deployValue);
+                    versionMap.getValue().add(deployTuple);
+                    if (!insideFlow) {
+                        edits.add(new Edit(appendAt, appendAt, LINE_SEPARATOR + spaces(keyColumn) + renderTuple(deployTuple, keyColumn),
+                                PRIORITY_APPEND, depth, edits.size()));
+                    }
+                    continue;
+                }
+
+                Node versionValue = versionTuple.getValueNode();
+                if (deployValue instanceof MappingNode) {
+                    if (versionValue instanceof MappingNode) {
+                        if (((MappingNode) versionValue).getValue().isEmpty() && !((MappingNode) deployValue).getValue().isEmpty()) {
+                            replace(versionMap, versionTuple, deployTuple, keyNodes, addList, keys, depth, insideFlow);
+                        } else {
+                            traverse((MappingNode) versionValue, (MappingNode) deployValue, keys, keyNodes, depth + 1, insideFlow);
+                        }
+                    } else if (isNull(versionValue) || isScriptScalar(versionValue)) {
+                        replace(versionMap, versionTuple, deployTuple, keyNodes, addList, keys, depth, insideFlow);
+                    }
+                } else if (deployValue instanceof ScalarNode) {
+                    if (isScriptScalar(deployValue) && !scriptEquals(versionValue, deployValue)) {
+                        replace(versionMap, versionTuple, deployTuple, keyNodes, updateList, keys, depth, insideFlow);
+                    }
+                } else if (deployValue instanceof SequenceNode && versionValue instanceof SequenceNode) {
+                    List<Node> versionItems = ((SequenceNode) versionValue).getValue();
+                    List<Node> deployItems = ((SequenceNode) deployValue).getValue();
+                    if (versionItems.isEmpty() && !deployItems.isEmpty()) {
+                        replace(versionMap, versionTuple, deployTuple, keyNodes, addList, keys, depth, insideFlow);
+                    } else if (!scriptEquals(versionValue, deployValue)) {
+                        replace(versionMap, versionTuple, deployTuple, keyNodes, updateList, keys, depth, insideFlow);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 用部署values中的值替换chart values中的值
+         */
+        private void replace(MappingNode versionMap, NodeTuple versionTuple, NodeTuple deployTuple, List<Node> keyNodes,
+                             List<List<String>> changeList, List<String> keys, int depth, boolean insideFlow) {
+            changeList.add(keys);
+            putDelta(keyNodes, deployTuple.getValueNode());
+            if (!insideFlow && sourceOf(versionTuple.getKeyNode()) == version) {
+                edits.add(replaceEdit(versionTuple, deployTuple, depth));
+            }
+            List<NodeTuple> tuples = versionMap.getValue();
+            tuples.set(tuples.indexOf(versionTuple), new NodeTuple(versionTuple.getKeyNode(), deployTuple.getValueNode()));
+        }
+
+        private Edit replaceEdit(NodeTuple versionTuple, NodeTuple deployTuple, int depth) {
+            Node keyNode = versionTuple.getKeyNode();
+            Node versionValue = versionTuple.getValueNode();
+            Node deployValue = deployTuple.getValueNode();
+            int keyColumn = keyNode.getStartMark().getColumn();
+            int start = version.afterColon(keyNode);
+            int end = version.contentEnd(keyNode, versionValue);
+            boolean alias = version.isAlias(keyNode, versionValue);
+            int blockColumn = -1;
+            if (!alias && version.isBlockCollection(versionValue)) {
+                // 块之后的注释属于块的最后一个值, 和块一起被替换
+                end = version.afterTrailingComments(end);
+                if (versionValue.getClass() == deployValue.getClass()) {
+                    // 原来是同类型的块时沿用原来的缩进
+                    blockColumn = version.column(version.blockStart(versionValue));
+                }
+            } else if (deploy.isBlockCollection(deployValue)) {
+                end = version.lineEnd(end);
+            }
+            String text = renderValue(deployValue, keyColumn, blockColumn);
+
+            String rest = version.text.substring(end, version.lineEnd(end));
+            if (rest.trim().startsWith("#") && text.indexOf('\n') < 0) {
+                // 行尾的注释保持原来的列, 值变长时和值之间至少保留一个空格
+                int comment = end + rest.indexOf('#');
+                int valueEnd = version.column(start) + text.codePointCount(0, text.length());
+                text = text + spaces(Math.max(1, version.column(comment) - valueEnd));
+                end = comment;
+            }
+            // 同一个值经过别名被多次替换时以最后一次为准
+            edits.removeIf(edit -> edit.start == start && edit.priority == PRIORITY_REPLACE);
+            return new Edit(start, end, text, PRIORITY_REPLACE, depth, edits.size());
+        }
+
+        /**
+         * 输出追加的一项
+         */
+        private String renderTuple(NodeTuple deployTuple, int keyColumn) {
+            ScalarNode key = scriptScalar((ScalarNode) deployTuple.getKeyNode(), null);
+            Node value = deployTuple.getValueNode();
+            if (value instanceof ScalarNode) {
+                return dumpTuple(key, scriptScalar((ScalarNode) value, null));
+            }
+            return dumpTuple(key, new ScalarNode(Tag.NULL, "", null, null, DumperOptions.ScalarStyle.PLAIN))
+                    + renderValue(value, keyColumn, -1);
+        }
+
+        /**
+         * 输出部署values中的值, 放在目标位置的冒号之后
+         *
+         * @param keyColumn   目标位置键的列
+         * @param blockColumn 块的列, 小于0时map比键多缩进两格, 数组的 "-" 和键对齐
+         */
+        private String renderValue(Node value, int keyColumn, int blockColumn) {
+            if (value instanceof ScalarNode) {
+                String text = dumpTuple(new ScalarNode(Tag.STR, PLACEHOLDER_KEY, null, null, DumperOptions.ScalarStyle.PLAIN),
+                        scriptScalar((ScalarNode) value, null));
+                return text.substring(PLACEHOLDER_KEY.length() + 1);
+            }
+            if (deploy.isFlow(value)) {
+                return " " + renderFlow(value);
+            }
+            int start = deploy.index(value.getStartMark());
+            int blockStart = deploy.blockStart(value);
+            String properties = deploy.text.substring(start, Math.max(start, deploy.skipProperties(start))).trim();
+            String block = deploy.text.substring(deploy.lineStart(blockStart), deploy.lineEnd(deploy.contentEnd(null, value)));
+            int target = blockColumn >= 0 ? blockColumn : (value instanceof MappingNode ? keyColumn + INDENT : keyColumn);
+            return (properties.isEmpty() ? "" : " " + properties)
+                    + LINE_SEPARATOR + shift(block, target - deploy.column(blockStart), true);
+        }
+
+        private String applyEdits() {
+            edits.sort(Comparator.<Edit>comparingInt(edit -> edit.start)
+                    .thenComparingInt(edit -> edit.priority)
+                    .thenComparingInt(edit -> -edit.depth)
+                    .thenComparingInt(edit -> edit.sequence));
+            StringBuilder result = new StringBuilder(version.text);
+            // 从后往前修改, 前面的位置不受影响; 同一位置后修改的内容在前
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                Edit edit = edits.get(i);
+                result.replace(edit.start, edit.end, edit.text);
+            }
+            return result.toString();
+        }
+
+        private String renderFlow(Node node) {
+            if (node instanceof MappingNode) {
+                StringJoiner joiner = new StringJoiner(", ", "{", "}");
+                for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+                    joiner.add(renderFlow(tuple.getKeyNode()) + ": " + renderFlow(tuple.getValueNode()));
+                }
+                return joiner.toString();
+            }
+            if (node instanceof SequenceNode) {
+                StringJoiner joiner = new StringJoiner(", ", "[", "]");
+                ((SequenceNode) node).getValue().forEach(item -> joiner.add(renderFlow(item)));
+                return joiner.toString();
+            }
+            ScalarNode scalar = (ScalarNode) node;
+            return dumpFlowScalar(scriptScalar(scalar, null));
+        }
+
+        /**
+         * 按脚本的格式转换部署values中的值, 记录差异时使用
+         *
+         * @param block 是否强制使用block风格, 脚本记录差异时map被转换成了dict
+         */
+        private Node scriptNode(Node node, boolean block) {
+            Source source = sourceOf(node);
+            if (node instanceof ScalarNode) {
+                return scriptScalar((ScalarNode) node, source.blockStyle((ScalarNode) node));
+            }
+            DumperOptions.FlowStyle flowStyle = !block && source.isFlow(node) ? DumperOptions.FlowStyle.FLOW : DumperOptions.FlowStyle.BLOCK;
+            if (node instanceof MappingNode) {
+                List<NodeTuple> tuples = new ArrayList<>();
+                for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+                    tuples.add(new NodeTuple(scriptNode(tuple.getKeyNode(), false), scriptNode(tuple.getValueNode(), false)));
+                }
+                return new MappingNode(Tag.MAP, tuples, flowStyle);
+            }
+            List<Node> items = new ArrayList<>();
+            ((SequenceNode) node).getValue().forEach(item -> items.add(scriptNode(item, false)));
+            return new SequenceNode(Tag.SEQ, items, flowStyle);
+        }
+
+        /**
+         * 记录差异, 中间层级的map按需创建
+         */
+        private void putDelta(List<Node> keyNodes, Node value) {
+            MappingNode current = delta;
+            for (int i = 0; i < keyNodes.size(); i++) {
+                Node keyNode = keyNodes.get(i);
+                boolean last = i == keyNodes.size() - 1;
+                NodeTuple tuple = findTuple(current, keyNode);
+                if (tuple != null && !last) {
+                    current = (MappingNode) tuple.getValueNode();
+                    continue;
+                }
+                Node child = last ? scriptNode(value, value instanceof MappingNode)
+                        : new MappingNode(Tag.MAP, new ArrayList<>(), DumperOptions.FlowStyle.BLOCK);
+                NodeTuple newTuple = new NodeTuple(scriptNode(keyNode, false), child);
+                List<NodeTuple> tuples = current.getValue();
+                if (tuple == null) {
+                    tuples.add(newTuple);
+                } else {
+                    tuples.set(tuples.indexOf(tuple), newTuple);
+                }
+                if (!last) {
+                    current = (MappingNode) child;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按脚本使用的ruamel.yaml的规则(YAML 1.2)识别标量的类型
+     */
+    private static final class ScriptResolver extends Resolver {
+        private static final Pattern BOOL_1_2 = Pattern.compile("^(?:true|True|TRUE|false|False|FALSE)$");
+        private static final Pattern FLOAT_1_2 = Pattern.compile("^(?:[-+]?(?:[0-9][0-9_]*)\\.[0-9_]*(?:[eE][-+]?[0-9]+)?"
+                + "|[-+]?(?:[0-9][0-9_]*)(?:[eE][-+]?[0-9]+)"
+                + "|\\.[0-9_]+(?:[eE][-+][0-9]+)?"
+                + "|[-+]?\\.(?:inf|Inf|INF)"
+                + "|\\.(?:nan|NaN|NAN))$");
+        private static final Pattern INT_1_2 = Pattern.compile("^(?:[-+]?0b[0-1_]+"
+                + "|[-+]?0o?[0-7_]+"
+                + "|[-+]?[0-9_]+"
+                + "|[-+]?0x[0-9a-fA-F_]+)$");
+        private static final Pattern NULL_1_2 = Pattern.compile("^(?:~|null|Null|NULL)$");
+
+        @Override
+        protected void addImplicitResolvers() {
+            addImplicitResolver(Tag.BOOL, BOOL_1_2, "tTfF");
+            addImplicitResolver(Tag.FLOAT, FLOAT_1_2, "-+0123456789.");
+            addImplicitResolver(Tag.INT, INT_1_2, "-+0123456789");
+            addImplicitResolver(Tag.MERGE, MERGE, "<");
+            addImplicitResolver(Tag.NULL, NULL_1_2, "~nN\0");
+            addImplicitResolver(Tag.NULL, EMPTY, null);
+            addImplicitResolver(Tag.TIMESTAMP, TIMESTAMP, "0123456789");
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package io.choerodon.devops.infra.util;
+
+/**
+ * 解析k8s的资源数量(Quantity), 如 "250m", "1.5", "12345n", "512Mi", "1e3"
+ * <p>
+ * agent每隔几秒就会上报所有pod和节点的用量, 这里直接在字符序列上逐字符解析,
+ * 不做substring, 不创建BigDecimal等中间对象, 结果按k8s的规则向上取整
+ * <p>
+ * 支持的格式和k8s一致:
+ * 十进制后缀 n u m k M G T P E, 二进制后缀 Ki Mi Gi Ti Pi Ei, 以及科学计数法 e/E
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public final class K8sQuantityUtil {
+    /**
+     * 毫单位(如毫核)相对于基本单位的十进制指数
+     */
+    public static final int MILLI_SCALE = 3;
+    /**
+     * 纳单位(如纳核)相对于基本单位的十进制指数
+     */
+    public static final int NANO_SCALE = 9;
+
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private K8sQuantityUtil() {
+    }
+
+    /**
+     * 解析为基本单位的值, 如内存的字节数. "1Ki" -> 1024, "1.5" -> 2
+     *
+     * @param quantity 资源数量
+     * @return 基本单位的值, 为空时返回0
+     */
+    public static long parseValue(CharSequence quantity) {
+        return parseScaledValue(quantity, 0);
+    }
+
+    /**
+     * 解析为毫单位的值, 如cpu的毫核数. "0.25" -> 250, "12345n" -> 1
+     *
+     * @param quantity 资源数量
+     * @return 毫单位的值, 为空时返回0
+     */
+    public static long parseMilliValue(CharSequence quantity) {
+        return parseScaledValue(quantity, MILLI_SCALE);
+    }
+
+    /**
+     * 解析为纳单位的值, 如cpu的纳核数. "1m" -> 1000000
+     *
+     * @param quantity 资源数量
+     * @return 纳单位的值, 为空时返回0
+     */
+    public static long parseNanoValue(CharSequence quantity) {
+        return parseScaledValue(quantity, NANO_SCALE);
+    }
+
+    /**
+     * 解析资源数量, 返回 value * 10^scale 向上取整(远离0)的结果, 超出long范围时取long的最大(最小)值
+     *
+     * @param quantity 资源数量
+     * @param scale    结果的十进制指数
+     * @return 解析的结果, 为空时返回0
+     * @throws IllegalArgumentException 格式不合法时
+     */
+    public static long parseScaledValue(CharSequence quantity, int scale) {
+        if (quantity == null) {
+            return 0;
+        }
+        int length = quantity.length();
+        if (length == 0) {
+            return 0;
+        }
+
+        int pos = 0;
+        boolean negative = false;
+        char c = quantity.charAt(0);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            pos++;
+        }
+
+        // 有效数字, 超出long范围的低位数字只记录是否非零, 用于向上取整
+        long mantissa = 0;
+        int decimalExponent = 0;
+        boolean truncated = false;
+        boolean overflow = false;
+        boolean hasDigit = false;
+        boolean inFraction = false;
+        for (; pos < length; pos++) {
+            c = quantity.charAt(pos);
+            if (c == '.' && !inFraction) {
+                inFraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                break;
+            }
+            hasDigit = true;
+            int digit = c - '0';
+            if (!overflow && mantissa <= (Long.MAX_VALUE - digit) / 10) {
+                mantissa = mantissa * 10 + digit;
+                if (inFraction) {
+                    decimalExponent--;
+                }
+            } else {
+                overflow = true;
+                truncated |= digit != 0;
+                if (!inFraction) {
+                    decimalExponent++;
+                }
+            }
+        }
+        if (!hasDigit) {
+            throw invalid(quantity);
+        }
+
+        int binaryExponent = 0;
+        if (pos < length) {
+            c = quantity.charAt(pos);
+            int remaining = length - pos;
+            if (remaining == 2 && quantity.charAt(pos + 1) == 'i') {
+                binaryExponent = binaryExponentOf(c, quantity);
+            } else if ((c == 'e' || c == 'E') && remaining > 1) {
+                decimalExponent += parseExponent(quantity, pos + 1);
+            } else if (remaining == 1) {
+                decimalExponent += decimalExponentOf(c, quantity);
+            } else {
+                throw invalid(quantity);
+            }
+        }
+
+        long magnitude = scale(mantissa, decimalExponent + scale, binaryExponent, truncated);
+        return negative ? -magnitude : magnitude;
+    }
+
+    /**
+     * 计算 ceil(mantissa * 10^exponent * 2^binaryExponent)
+     */
+    private static long scale(long mantissa, int exponent, int binaryExponent, boolean truncated) {
+        if (mantissa == 0) {
+            return truncated ? 1 : 0;
+        }
+        long value = mantissa;
+        // 先乘2的幂, 再处理10的幂, 使得 "1.5Ki" 这类数量能得到精确的结果
+        if (binaryExponent > 0) {
+            if (Long.numberOfLeadingZeros(value) <= binaryExponent) {
+                return Long.MAX_VALUE;
+            }
+            value <<= binaryExponent;
+        }
+        if (exponent >= 0) {
+            for (int remaining = exponent; remaining > 0; ) {
+                int step = Math.min(remaining, POW10.length - 1);
+                if (value > Long.MAX_VALUE / POW10[step]) {
+                    return Long.MAX_VALUE;
+                }
+                value *= POW10[step];
+                remaining -= step;
+            }
+            return truncated ? value + 1 : value;
+        }
+        for (int remaining = -exponent; remaining > 0; ) {
+            int step = Math.min(remaining, POW10.length - 1);
+            long divisor = POW10[step];
+            truncated |= value % divisor != 0;
+            value /= divisor;
+            remaining -= step;
+            if (value == 0) {
+                break;
+            }
+        }
+        return truncated ? value + 1 : value;
+    }
+
+    private static int parseExponent(CharSequence quantity, int start) {
+        int pos = start;
+        boolean negative = false;
+        char c = quantity.charAt(pos);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            pos++;
+        }
+        if (pos == quantity.length()) {
+            throw invalid(quantity);
+        }
+        int exponent = 0;
+        for (; pos < quantity.length(); pos++) {
+            c = quantity.charAt(pos);
+            if (c < '0' || c > '9') {
+                throw invalid(quantity);
+            }
+            // 指数过大时结果必然溢出或为0, 限制大小避免int溢出
+            exponent = Math.min(exponent * 10 + (c - '0'), 1000);
+        }
+        return negative ? -exponent : exponent;
+    }
+
+    private static int decimalExponentOf(char suffix, CharSequence quantity) {
+        switch (suffix) {
+            case 'n':
+                return -9;
+            case 'u':
+                return -6;
+            case 'm':
+                return -3;
+            case 'k':
+                return 3;
+            case 'M':
+                return 6;
+            case 'G':
+                return 9;
+            case 'T':
+                return 12;
+            case 'P':
+                return 15;
+            case 'E':
+                return 18;
+            default:
+                throw invalid(quantity);
+        }
+    }
+
+    private static int binaryExponentOf(char suffix, CharSequence quantity) {
+        switch (suffix) {
+            case 'K':
+                return 10;
+            case 'M':
+                return 20;
+            case 'G':
+                return 30;
+            case 'T':
+                return 40;
+            case 'P':
+                return 50;
+            case 'E':
+                return 60;
+            default:
+                throw invalid(quantity);
+        }
+    }
+
+    private static IllegalArgumentException invalid(CharSequence quantity) {
+        return new IllegalArgumentException("Invalid quantity: " + quantity);
+    }
+}
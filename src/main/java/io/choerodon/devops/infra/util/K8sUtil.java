@@ -27,24 +27,15 @@ public class K8sUtil {
 
     /**
      * get byte value from memory string of other measure format
-     * ex: "1K" -> 1024, "1M" -> 1024 * 1024
+     * ex: "1Ki" -> 1024, "1Mi" -> 1024 * 1024, "1M" -> 1000 * 1000
      *
      * @param memory the memory string
-     * @return byte value
+     * @return byte value, 0 if the string is not a valid quantity
      */
     public static long getByteFromMemoryString(String memory) {
-        int index;
-        if ((index = memory.indexOf('K')) != -1) {
-            return Long.parseLong(memory.substring(0, index)) << 10;
-        } else if ((index = memory.indexOf('M')) != -1) {
-            return Long.parseLong(memory.substring(0, index)) << 20;
-        } else if ((index = memory.indexOf('G')) != -1) {
-            return Long.parseLong(memory.substring(0, index)) << 30;
-        } else if (memory.matches("^\\d+$")) {
-            return Long.parseLong(memory);
-        } else if ((index = memory.indexOf('m')) != -1) {
-            return Long.parseLong(memory.substring(0, index)) / 1000;
-        } else {
+        try {
+            return K8sQuantityUtil.parseValue(memory);
+        } catch (IllegalArgumentException ex) {
             return 0;
         }
     }
@@ -54,16 +45,14 @@ public class K8sUtil {
      * ex: "132m" -> 0.132, "1.3" -> 1.3
      *
      * @param cpuAmount cpu string with measure 'm'
-     * @return the normal value
+     * @return the normal value, 0 if the string is not a valid quantity
      */
     public static double getNormalValueFromCpuString(String cpuAmount) {
-        if (cpuAmount.endsWith("m")) {
-            return Long.parseLong(cpuAmount.substring(0, cpuAmount.length() - 1)) / 1000.0;
-        }
-        if (cpuAmount.matches("^\\d+$")) {
-            return Double.parseDouble(cpuAmount);
+        try {
+            return K8sQuantityUtil.parseMilliValue(cpuAmount) / 1000.0;
+        } catch (IllegalArgumentException ex) {
+            return 0.0;
         }
-        return 0.0;
     }
 
 
@@ -0,0 +1,134 @@
+package io.choerodon.devops.infra.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.choerodon.devops.api.vo.PodMetricsSampleVO;
+
+/**
+ * pod实时数据序列的二进制编码
+ * 格式: [版本号 1字节][样本数 varint][首个时间戳 varint][CPU varint][内存 varint]
+ * 之后每个样本为: [和上一个样本的时间差 zigzag varint][CPU varint][内存 varint]
+ * <p>
+ * 每个样本一般只占7~10个字节, 相比每个样本一个json字符串要小得多, 且解码不需要解析json.
+ * 解码时校验版本号、样本数和数据长度, 不完整的数据按空序列处理, 下次写入时会被覆盖
+ * <p>
+ * 追加样本在redis端由 AgentPodInfoServiceImpl 中的脚本按同样的格式完成, 修改格式时需要同时修改脚本
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class PodMetricsSeriesCodec {
+    private static final byte VERSION = 1;
+    /**
+     * 每个样本至少占用的字节数, 时间、CPU、内存各至少一个字节
+     */
+    private static final int MIN_SAMPLE_BYTES = 3;
+    /**
+     * 一个long的varint编码最多占用的字节数
+     */
+    private static final int MAX_VAR_LONG_BYTES = 10;
+
+    private PodMetricsSeriesCodec() {
+    }
+
+    /**
+     * 编码样本序列
+     *
+     * @param samples 按时间升序排列的样本
+     * @return 编码后的字节
+     */
+    public static byte[] encode(List<PodMetricsSampleVO> samples) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + samples.size() * 10);
+        out.write(VERSION);
+        writeVarLong(out, samples.size());
+        long previousTimestamp = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            PodMetricsSampleVO sample = samples.get(i);
+            if (i == 0) {
+                writeVarLong(out, sample.getTimestamp());
+            } else {
+                writeVarLong(out, zigzag(sample.getTimestamp() - previousTimestamp));
+            }
+            writeVarLong(out, sample.getCpuMilliCores());
+            writeVarLong(out, sample.getMemoryBytes());
+            previousTimestamp = sample.getTimestamp();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码样本序列, 数据为空、版本不匹配或者内容不完整时返回空列表
+     *
+     * @param bytes 编码后的字节
+     * @return 按时间升序排列的样本
+     */
+    public static List<PodMetricsSampleVO> decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || bytes[0] != VERSION) {
+            return Collections.emptyList();
+        }
+        try {
+            return decodeSamples(bytes);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<PodMetricsSampleVO> decodeSamples(byte[] bytes) {
+        int[] position = {1};
+        long size = readVarLong(bytes, position);
+        // 样本数和剩余的字节数对不上时说明数据被截断或者不是这个格式写入的
+        if (size < 0 || size > (bytes.length - position[0]) / MIN_SAMPLE_BYTES) {
+            throw new IllegalArgumentException("Illegal sample count " + size);
+        }
+        List<PodMetricsSampleVO> samples = new ArrayList<>((int) size);
+        long timestamp = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                timestamp = readVarLong(bytes, position);
+            } else {
+                timestamp += unzigzag(readVarLong(bytes, position));
+            }
+            long cpu = readVarLong(bytes, position);
+            long memory = readVarLong(bytes, position);
+            samples.add(new PodMetricsSampleVO(timestamp, cpu, memory));
+        }
+        if (position[0] != bytes.length) {
+            throw new IllegalArgumentException("Unexpected trailing bytes");
+        }
+        return samples;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position[0] >= bytes.length || shift >= MAX_VAR_LONG_BYTES * 7) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            b = bytes[position[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
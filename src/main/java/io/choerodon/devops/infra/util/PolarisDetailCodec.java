@@ -0,0 +1,63 @@
+package io.choerodon.devops.infra.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+import org.apache.commons.compress.utils.IOUtils;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * polaris扫描详情json的压缩存储
+ * <p>
+ * 详情是大量重复的检测项和资源信息, gzip后一般只有原来的十分之一左右.
+ * 之前的纪录只有未压缩的detail字段, 读取时两种都要支持
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public final class PolarisDetailCodec {
+    private static final String EMPTY_ARRAY = "[]";
+
+    private PolarisDetailCodec() {
+    }
+
+    /**
+     * 压缩详情json
+     *
+     * @param json 详情json
+     * @return 压缩后的字节
+     */
+    public static byte[] compress(String json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length() / 8));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new CommonException("error.polaris.detail.compress", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 读取详情json
+     *
+     * @param detail           未压缩的详情, 之前的纪录
+     * @param compressedDetail 压缩的详情, 不为空时优先使用
+     * @return 详情json, 都为空时返回空数组
+     */
+    public static String read(@Nullable String detail, @Nullable byte[] compressedDetail) {
+        if (compressedDetail != null) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressedDetail))) {
+                return new String(IOUtils.toByteArray(gzip), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new CommonException("error.polaris.detail.decompress", e);
+            }
+        }
+        return detail == null ? EMPTY_ARRAY : detail;
+    }
+}
@@ -53,4 +53,10 @@ databaseChangeLog(logicalFilePath: 'dba/devops_cd_job_record.groovy') {
             column(name: 'log', type: 'text', remarks: '日志信息', beforeColumn: "countersigned")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'agent', id: '2026-10-18-add-column-host-deploy-status') {
+        addColumn(tableName: 'devops_cd_job_record') {
+            column(name: 'host_deploy_status', type: 'TEXT', remarks: '主机部署 每个主机的部署结果json', afterColumn: "log")
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package script.db.groovy.devops_service
+
+databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_webhook_event.groovy') {
+    changeSet(author: 'agent', id: '2026-10-18-create-table-devops_gitlab_webhook_event') {
+        createTable(tableName: "devops_gitlab_webhook_event", remarks: 'gitlab webhook事件, 接收后按gitlab项目顺序异步处理') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'event_key', type: 'CHAR(64)', remarks: '去重键, (事件类型, gitlab项目id, 对象id, 状态, 更新时间)的sha256') {
+                constraints(nullable: false, unique: true, uniqueConstraintName: 'uk_event_key')
+            }
+            column(name: 'gitlab_project_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab项目id') {
+                constraints(nullable: false)
+            }
+            column(name: 'object_kind', type: 'VARCHAR(32)', remarks: '事件类型 push/tag_push/merge_request/pipeline/build')
+            column(name: 'object_id', type: 'VARCHAR(255)', remarks: '事件对象的id, push事件为分支')
+            column(name: 'object_status', type: 'VARCHAR(64)', remarks: '事件对象的状态, push事件为推送后的commit')
+            column(name: 'object_updated_at', type: 'VARCHAR(64)', remarks: '事件对象的更新时间, push事件为推送前的commit')
+            column(name: 'token', type: 'VARCHAR(255)', remarks: 'webhook的token')
+            column(name: 'body', type: 'LONGTEXT', remarks: 'webhook的原始内容') {
+                constraints(nullable: false)
+            }
+            column(name: 'status', type: 'VARCHAR(32)', remarks: '处理状态 pending/success/failed') {
+                constraints(nullable: false)
+            }
+            column(name: 'error_message', type: 'TEXT', remarks: '处理失败的原因')
+            column(name: 'attempt_count', type: 'INT UNSIGNED', remarks: '处理失败的次数', defaultValue: "0") {
+                constraints(nullable: false)
+            }
+            column(name: 'next_attempt_time', type: 'DATETIME', remarks: '处理失败后下次重试的时间')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "idx_status_project_id", tableName: "devops_gitlab_webhook_event") {
+            column(name: "status")
+            column(name: "gitlab_project_id")
+        }
+    }
+}
@@ -17,4 +17,28 @@ databaseChangeLog(logicalFilePath: 'dba/devops_polaris_category_detail.groovy')
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'agent', id: '2026-10-18-add-column-record-id-and-category') {
+        addColumn(tableName: 'devops_polaris_category_detail') {
+            column(name: 'record_id', type: 'BIGINT UNSIGNED', remarks: '扫描纪录id', afterColumn: 'id')
+            column(name: 'category', type: 'VARCHAR(45)', remarks: '检测项的类别', afterColumn: 'record_id')
+        }
+        sql("""
+            UPDATE devops_polaris_category_detail dpcd
+            JOIN devops_polaris_category_result dpcr ON dpcr.detail_id = dpcd.id
+            SET dpcd.record_id = dpcr.record_id, dpcd.category = dpcr.category
+            """)
+        createIndex(indexName: "idx_record_id_category", tableName: "devops_polaris_category_detail") {
+            column(name: "record_id")
+            column(name: "category")
+        }
+    }
+
+    changeSet(author: 'agent', id: '2026-10-18-add-column-compressed-detail') {
+        addColumn(tableName: 'devops_polaris_category_detail') {
+            column(name: 'compressed_detail', type: 'MEDIUMBLOB', remarks: 'gzip压缩的扫描数据json, 不为空时代替detail字段', afterColumn: 'detail')
+            column(name: 'item_count', type: 'INT UNSIGNED', remarks: 'json数组的元素数量, 用于分页时跳过不需要解压的纪录', afterColumn: 'compressed_detail')
+        }
+        dropNotNullConstraint(tableName: "devops_polaris_category_detail", columnName: "detail", columnDataType: "MEDIUMTEXT")
+    }
+}
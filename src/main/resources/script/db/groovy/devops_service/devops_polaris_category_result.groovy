@@ -32,4 +32,8 @@ databaseChangeLog(logicalFilePath: 'dba/devops_polaris_category_result.groovy')
             column(name: "record_id")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'agent', id: '2026-10-18-drop-not-null-detail-id') {
+        dropNotNullConstraint(tableName: "devops_polaris_category_result", columnName: "detail_id", columnDataType: "BIGINT UNSIGNED")
+    }
+}
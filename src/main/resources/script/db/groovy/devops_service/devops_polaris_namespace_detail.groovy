@@ -17,4 +17,28 @@ databaseChangeLog(logicalFilePath: 'dba/devops_polaris_namespace_detail.groovy')
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'agent', id: '2026-10-18-add-column-record-id-and-namespace') {
+        addColumn(tableName: 'devops_polaris_namespace_detail') {
+            column(name: 'record_id', type: 'BIGINT UNSIGNED', remarks: '扫描纪录id', afterColumn: 'id')
+            column(name: 'namespace', type: 'VARCHAR(128)', remarks: '集群namespace', afterColumn: 'record_id')
+        }
+        sql("""
+            UPDATE devops_polaris_namespace_detail dpnd
+            JOIN devops_polaris_namespace_result dpnr ON dpnr.detail_id = dpnd.id
+            SET dpnd.record_id = dpnr.record_id, dpnd.namespace = dpnr.namespace
+            """)
+        createIndex(indexName: "idx_record_id_namespace", tableName: "devops_polaris_namespace_detail") {
+            column(name: "record_id")
+            column(name: "namespace")
+        }
+    }
+
+    changeSet(author: 'agent', id: '2026-10-18-add-column-compressed-detail') {
+        addColumn(tableName: 'devops_polaris_namespace_detail') {
+            column(name: 'compressed_detail', type: 'MEDIUMBLOB', remarks: 'gzip压缩的扫描数据json, 不为空时代替detail字段', afterColumn: 'detail')
+            column(name: 'item_count', type: 'INT UNSIGNED', remarks: 'json数组的元素数量, 用于分页时跳过不需要解压的纪录', afterColumn: 'compressed_detail')
+        }
+        dropNotNullConstraint(tableName: "devops_polaris_namespace_detail", columnName: "detail", columnDataType: "MEDIUMTEXT")
+    }
+}
@@ -34,4 +34,8 @@ databaseChangeLog(logicalFilePath: 'dba/devops_polaris_namespace_result.groovy')
             column(name: "env_id")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'agent', id: '2026-10-18-drop-not-null-detail-id') {
+        dropNotNullConstraint(tableName: "devops_polaris_namespace_result", columnName: "detail_id", columnDataType: "BIGINT UNSIGNED")
+    }
+}
@@ -0,0 +1,130 @@
+package io.choerodon.devops.api.ws.gitops
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+
+import com.alibaba.fastjson.JSONObject
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import io.choerodon.devops.api.vo.AgentMsgVO
+import io.choerodon.devops.app.service.AgentMsgHandlerService
+import io.choerodon.devops.infra.enums.HelmType
+
+/**
+ * 验证resource_update消息的合并, 以及合并后的批次和其它消息的处理顺序
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Subject(ResourceUpdateCoalescer)
+class ResourceUpdateCoalescerSpec extends Specification {
+    private static final Long CLUSTER_ID = 1L
+
+    List<String> handled = new CopyOnWriteArrayList<>()
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    AgentMsgDispatcher agentMsgDispatcher = new AgentMsgDispatcher()
+    ResourceUpdateCoalescer resourceUpdateCoalescer = new ResourceUpdateCoalescer()
+
+    def setup() {
+        AgentMsgHandlerService agentMsgHandlerService = Stub() {
+            resourceUpdate(_, _, _) >> { String key, String payload, Long clusterId ->
+                handled << key + ":" + JSONObject.parseObject(payload).getJSONObject("metadata").getString("resourceVersion")
+            }
+        }
+        // 只有一个通道, 便于构造通道已满的情况
+        ReflectionTestUtils.setField(agentMsgDispatcher, "laneCount", 1)
+        ReflectionTestUtils.setField(agentMsgDispatcher, "queueCapacity", 4)
+        ReflectionTestUtils.setField(agentMsgDispatcher, "meterRegistry", new SimpleMeterRegistry())
+        agentMsgDispatcher.init()
+        // 窗口足够长, 由测试主动触发提交
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "windowMillis", 60000L)
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "agentMsgDispatcher", agentMsgDispatcher)
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "agentMsgHandlerService", agentMsgHandlerService)
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "meterRegistry", new SimpleMeterRegistry())
+        resourceUpdateCoalescer.init()
+    }
+
+    def cleanup() {
+        resourceUpdateCoalescer.destroy()
+        agentMsgDispatcher.destroy()
+    }
+
+    def "keep the update with the highest resourceVersion of each key in receive order"() {
+        when:
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 1))
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("b", 1))
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 3))
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 2))
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("c", 1))
+        resourceUpdateCoalescer.flush(CLUSTER_ID)
+
+        then:
+        conditions.eventually {
+            assert handled == ["b:1", "a:3", "c:1"]
+        }
+    }
+
+    def "handle other messages after the buffered updates"() {
+        when:
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 1))
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("b", 1))
+        resourceUpdateCoalescer.dispatchAfterPending(CLUSTER_ID, HelmType.RESOURCE_DELETE, { handled << "delete:a" })
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 2))
+        resourceUpdateCoalescer.flush(CLUSTER_ID)
+
+        then:
+        conditions.eventually {
+            assert handled == ["a:1", "b:1", "delete:a", "a:2"]
+        }
+    }
+
+    @Timeout(10)
+    def "flush keeps the updates buffered instead of blocking on a full lane"() {
+        given: "通道的线程被占用, 队列也已满"
+        CountDownLatch latch = new CountDownLatch(1)
+        agentMsgDispatcher.dispatch(CLUSTER_ID, HelmType.RESOURCE_DELETE, { latch.await() })
+        conditions.eventually {
+            assert agentMsgDispatcher.tryDispatch(CLUSTER_ID, HelmType.RESOURCE_DELETE, { handled << "queued" })
+        }
+        int queuedCount = 1
+        while (agentMsgDispatcher.tryDispatch(CLUSTER_ID, HelmType.RESOURCE_DELETE, { handled << "queued" })) {
+            queuedCount++
+        }
+        List<String> queued = ["queued"] * queuedCount
+
+        when:
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 1))
+        resourceUpdateCoalescer.flush(CLUSTER_ID)
+        resourceUpdateCoalescer.offer(CLUSTER_ID, update("a", 2))
+
+        then: "提交没有阻塞, 更新仍在缓冲区中继续合并"
+        handled.isEmpty()
+
+        when:
+        latch.countDown()
+        conditions.eventually {
+            assert handled == queued
+        }
+        resourceUpdateCoalescer.flush(CLUSTER_ID)
+
+        then:
+        conditions.eventually {
+            assert handled == queued + ["a:2"]
+        }
+    }
+
+    private static AgentMsgVO update(String key, long resourceVersion) {
+        AgentMsgVO msg = new AgentMsgVO()
+        msg.setKey(key)
+        msg.setType(HelmType.RESOURCE_UPDATE.toValue())
+        msg.setClusterId(String.valueOf(CLUSTER_ID))
+        msg.setPayload("{\"metadata\":{\"resourceVersion\":\"" + resourceVersion + "\"}}")
+        return msg
+    }
+}
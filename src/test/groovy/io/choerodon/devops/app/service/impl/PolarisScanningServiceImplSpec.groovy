@@ -0,0 +1,137 @@
+package io.choerodon.devops.app.service.impl
+
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+import spock.lang.Subject
+
+import io.choerodon.devops.api.vo.ClusterSummaryInfoVO
+import io.choerodon.devops.api.vo.polaris.*
+import io.choerodon.devops.app.service.DevopsClusterService
+import io.choerodon.devops.app.service.DevopsEnvResourceService
+import io.choerodon.devops.app.service.DevopsEnvironmentService
+import io.choerodon.devops.infra.dto.DevopsEnvResourceDTO
+import io.choerodon.devops.infra.dto.DevopsEnvironmentDTO
+import io.choerodon.devops.infra.dto.DevopsPolarisRecordDTO
+import io.choerodon.devops.infra.enums.PolarisScopeType
+import io.choerodon.devops.infra.enums.PolarisSeverity
+import io.choerodon.devops.infra.mapper.*
+
+/**
+ * 用合成的大规模扫描结果验证实例和环境是批量查询的, 查询次数和资源数量无关
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Subject(PolarisScanningServiceImpl)
+class PolarisScanningServiceImplSpec extends Specification {
+    private static final Long RECORD_ID = 1L
+    private static final Long CLUSTER_ID = 2L
+    private static final Long ENV_ID = 3L
+    private static final int WORKLOADS = 3000
+    private static final int NAMESPACES = 30
+
+    PolarisScanningServiceImpl polarisScanningService = new PolarisScanningServiceImpl()
+
+    DevopsPolarisRecordMapper devopsPolarisRecordMapper = Mock()
+    DevopsEnvironmentService devopsEnvironmentService = Mock()
+    DevopsClusterService devopsClusterService = Mock()
+    DevopsEnvResourceService devopsEnvResourceService = Mock()
+    AppServiceInstanceMapper appServiceInstanceMapper = Mock()
+    DevopsPolarisNamespaceDetailMapper devopsPolarisNamespaceDetailMapper = Mock()
+    DevopsPolarisNamespaceResultMapper devopsPolarisNamespaceResultMapper = Mock()
+    DevopsPolarisCategoryDetailMapper devopsPolarisCategoryDetailMapper = Mock()
+    DevopsPolarisCategoryResultMapper devopsPolarisCategoryResultMapper = Mock()
+
+    def setup() {
+        ReflectionTestUtils.setField(polarisScanningService, "scanningTimeoutSeconds", 300L)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsPolarisRecordMapper", devopsPolarisRecordMapper)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsEnvironmentService", devopsEnvironmentService)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsClusterService", devopsClusterService)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsEnvResourceService", devopsEnvResourceService)
+        ReflectionTestUtils.setField(polarisScanningService, "appServiceInstanceMapper", appServiceInstanceMapper)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsPolarisNamespaceDetailMapper", devopsPolarisNamespaceDetailMapper)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsPolarisNamespaceResultMapper", devopsPolarisNamespaceResultMapper)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsPolarisCategoryDetailMapper", devopsPolarisCategoryDetailMapper)
+        ReflectionTestUtils.setField(polarisScanningService, "devopsPolarisCategoryResultMapper", devopsPolarisCategoryResultMapper)
+        devopsPolarisRecordMapper.updateByPrimaryKey(_) >> 1
+    }
+
+    def "resolve env ids of a large cluster report with one query"() {
+        given:
+        devopsPolarisRecordMapper.selectByPrimaryKey(RECORD_ID) >> new DevopsPolarisRecordDTO(id: RECORD_ID, scope: PolarisScopeType.CLUSTER.value, scopeId: CLUSTER_ID)
+        List<DevopsEnvironmentDTO> envs = (0..<NAMESPACES).collect { new DevopsEnvironmentDTO(id: 100L + it, code: "ns-" + it) }
+
+        when:
+        polarisScanningService.handleAgentPolarisMessage(message(syntheticReport(), null, null))
+
+        then:
+        1 * devopsEnvironmentService.baseListUserEnvByClusterId(CLUSTER_ID) >> envs
+        0 * devopsEnvironmentService.baseQueryByClusterIdAndCode(_, _)
+        1 * devopsPolarisNamespaceDetailMapper.batchInsert({ it.size() == NAMESPACES })
+        1 * devopsPolarisNamespaceResultMapper.batchInsert({ results ->
+            results.size() == NAMESPACES && results.every { it.envId == 100L + (it.namespace - "ns-").toLong() }
+        })
+        1 * devopsPolarisCategoryResultMapper.batchInsert({ it*.category.toSet() == ["Security", "Images"] as Set })
+    }
+
+    def "resolve instances of a large env report with one query per chunk"() {
+        given:
+        int chunkSize = 500
+        devopsPolarisRecordMapper.selectByPrimaryKey(RECORD_ID) >> new DevopsPolarisRecordDTO(id: RECORD_ID, scope: PolarisScopeType.ENV.value, scopeId: ENV_ID)
+        devopsEnvironmentService.baseQueryById(ENV_ID) >> new DevopsEnvironmentDTO(id: ENV_ID, clusterId: CLUSTER_ID, code: "ns-0")
+        List<PolarisControllerResultVO> results = syntheticReport()
+        List<List<PolarisControllerResultVO>> chunks = results.collate(chunkSize)
+
+        when:
+        chunks.eachWithIndex { chunk, index ->
+            polarisScanningService.handleAgentPolarisMessage(message(chunk, index, index == chunks.size() - 1))
+        }
+
+        then:
+        chunks.size() * devopsEnvResourceService.listByEnvIdAndKindAndNames(ENV_ID, { it.size() == chunkSize }) >> { Long envId, List<DevopsEnvResourceDTO> resources ->
+            // 一半的资源属于实例
+            resources.findAll { workloadIndex(it.name) % 2 == 0 }
+                    .collect { new DevopsEnvResourceDTO(kind: it.kind, name: it.name, instanceId: workloadIndex(it.name) % 10L) }
+        }
+        0 * devopsEnvResourceService.baseQueryOptions(*_)
+        1 * appServiceInstanceMapper.queryInstancesWithAppServiceByIds({ it.toSet() == [0L, 2L, 4L, 6L, 8L] as Set }) >> []
+        1 * devopsPolarisNamespaceDetailMapper.insertSelective(_) >> 1
+        1 * devopsPolarisNamespaceResultMapper.insertSelective(_) >> 1
+    }
+
+    private static PolarisResponsePayloadVO message(List<PolarisControllerResultVO> results, Integer chunkIndex, Boolean last) {
+        PolarisScanAuditDataVO auditData = new PolarisScanAuditDataVO(auditTime: new Date(), results: results,
+                clusterInfo: new ClusterSummaryInfoVO(version: "v1.16.9", pods: WORKLOADS as Long, namespaces: NAMESPACES as Long, nodes: 3L))
+        PolarisScanResultVO result = new PolarisScanResultVO(auditData: auditData,
+                summary: new PolarisScanSummaryVO(successes: WORKLOADS * 2L, warnings: WORKLOADS as Long, errors: WORKLOADS as Long))
+        return new PolarisResponsePayloadVO(recordId: RECORD_ID, polarisResult: result, chunkIndex: chunkIndex, last: last)
+    }
+
+    private static int workloadIndex(String name) {
+        return (name - "workload-").toInteger()
+    }
+
+    /**
+     * 每个资源在每一层都有一个通过的检测项和一个未通过的检测项
+     */
+    private static List<PolarisControllerResultVO> syntheticReport() {
+        (0..<WORKLOADS).collect { i ->
+            new PolarisControllerResultVO(
+                    name: "workload-" + i,
+                    kind: "Deployment",
+                    namespace: "ns-" + (i % NAMESPACES),
+                    results: items("Security", PolarisSeverity.WARNING.value),
+                    podResult: new PolarisPodResultVO(
+                            name: "workload-" + i + "-pod",
+                            results: items("Security", PolarisSeverity.ERROR.value),
+                            containerResults: [new PolarisContainerResultVO(name: "app", results: items("Images", PolarisSeverity.WARNING.value))]))
+        }
+    }
+
+    private static Map<String, Object> items(String category, String failedSeverity) {
+        [
+                passed: [id: "passed", category: category, message: "ok", severity: failedSeverity, success: true],
+                failed: [id: "failed", category: category, message: "not ok", severity: failedSeverity, success: false]
+        ]
+    }
+}
@@ -0,0 +1,131 @@
+package io.choerodon.devops.infra.handler
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+import groovy.json.JsonSlurper
+import org.springframework.core.task.SyncTaskExecutor
+import org.springframework.core.task.support.TaskExecutorAdapter
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+import spock.lang.Subject
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.api.vo.HostConnectionVO
+import io.choerodon.devops.api.vo.HostDeployStatusVO
+import io.choerodon.devops.app.service.DevopsCdJobRecordService
+import io.choerodon.devops.infra.enums.PipelineStatus
+
+/**
+ * 验证主机组部署的分批、失败阈值、跳过剩余主机以及单个主机的处理
+ * <p>
+ * 部署在同步的执行器上执行, 每批主机按顺序部署, 结果是确定的
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Subject(HostGroupDeployHandler)
+class HostGroupDeployHandlerSpec extends Specification {
+    private static final Long JOB_RECORD_ID = 1L
+
+    HostGroupDeployHandler hostGroupDeployHandler = new HostGroupDeployHandler()
+    HostDeployLogHandler hostDeployLogHandler = new HostDeployLogHandler()
+    DevopsCdJobRecordService devopsCdJobRecordService = Mock()
+
+    List<String> deployed = new CopyOnWriteArrayList<>()
+    List<List<String>> savedStatuses = []
+
+    def setup() {
+        ReflectionTestUtils.setField(hostDeployLogHandler, "maxLength", 60000)
+        ReflectionTestUtils.setField(hostDeployLogHandler, "flushIntervalMillis", 3000L)
+        ReflectionTestUtils.setField(hostDeployLogHandler, "pushEnabled", false)
+        ReflectionTestUtils.setField(hostDeployLogHandler, "devopsCdJobRecordService", devopsCdJobRecordService)
+        ReflectionTestUtils.setField(hostGroupDeployHandler, "defaultParallelism", 5)
+        ReflectionTestUtils.setField(hostGroupDeployHandler, "maxParallelism", 20)
+        ReflectionTestUtils.setField(hostGroupDeployHandler, "hostDeployExecutor", new TaskExecutorAdapter(new SyncTaskExecutor()))
+        ReflectionTestUtils.setField(hostGroupDeployHandler, "devopsCdJobRecordService", devopsCdJobRecordService)
+    }
+
+    def "deploy all hosts in batches when failures are within the threshold"() {
+        when:
+        List<HostDeployStatusVO> statuses = deploy(hosts(5), 2, 1, failOn("10.0.0.2"))
+
+        then:
+        deployed == ["10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4", "10.0.0.5"]
+        statuses*.status == [PipelineStatus.SUCCESS, PipelineStatus.FAILED, PipelineStatus.SUCCESS,
+                             PipelineStatus.SUCCESS, PipelineStatus.SUCCESS]*.toValue()
+        statuses[1].error == "connection refused"
+        // 每批开始时写入一次, 全部结束后再写入一次
+        savedStatuses.size() == 4
+        savedStatuses[0] == ["running", "running", "created", "created", "created"]
+        savedStatuses[1] == ["success", "failed", "running", "running", "created"]
+        savedStatuses[3] == ["success", "failed", "success", "success", "success"]
+    }
+
+    def "skip the remaining hosts and fail once failures exceed the threshold"() {
+        when:
+        deploy(hosts(5), 2, 0, failOn("10.0.0.1"))
+
+        then:
+        CommonException e = thrown()
+        e.code == "error.host.group.deploy.failed"
+        deployed == ["10.0.0.1", "10.0.0.2"]
+        savedStatuses.last() == ["failed", "success", "skipped", "skipped", "skipped"]
+    }
+
+    def "fail when failures exceed the threshold in the last batch"() {
+        when:
+        deploy(hosts(3), 3, 1, failOn("10.0.0.2", "10.0.0.3"))
+
+        then:
+        CommonException e = thrown()
+        e.code == "error.host.group.deploy.failed"
+        deployed == ["10.0.0.1", "10.0.0.2", "10.0.0.3"]
+        savedStatuses.last() == ["success", "failed", "failed"]
+    }
+
+    def "deploy a single host without recording the status of each host"() {
+        when:
+        List<HostDeployStatusVO> statuses = deploy(hosts(1), null, null, failOn())
+
+        then:
+        statuses*.status == [PipelineStatus.SUCCESS.toValue()]
+        0 * devopsCdJobRecordService.updateHostDeployStatusById(_, _)
+    }
+
+    def "fail a single host job without recording the status of each host"() {
+        when:
+        deploy(hosts(1), null, null, failOn("10.0.0.1"))
+
+        then:
+        thrown(CommonException)
+        0 * devopsCdJobRecordService.updateHostDeployStatusById(_, _)
+    }
+
+    private List<HostDeployStatusVO> deploy(List<HostConnectionVO> hosts, Integer parallelism, Integer failureThreshold,
+                                            HostGroupDeployHandler.HostDeployer deployer) {
+        devopsCdJobRecordService.updateHostDeployStatusById(JOB_RECORD_ID, _) >> { Long id, String json ->
+            savedStatuses << new JsonSlurper().parseText(json).collect { it.status }
+        }
+        HostDeployLogHandler.HostDeployLog log = hostDeployLogHandler.open(JOB_RECORD_ID)
+        return hostGroupDeployHandler.deploy(JOB_RECORD_ID, log, hosts, parallelism, failureThreshold, deployer)
+    }
+
+    private HostGroupDeployHandler.HostDeployer failOn(String... failedHostIps) {
+        return { HostConnectionVO host, HostDeployLogHandler.HostDeployLog log ->
+            deployed << host.hostIp
+            log.append("deploying\n")
+            if (host.hostIp in failedHostIps) {
+                throw new IOException("connection refused")
+            }
+        } as HostGroupDeployHandler.HostDeployer
+    }
+
+    private static List<HostConnectionVO> hosts(int count) {
+        return (1..count).collect {
+            HostConnectionVO host = new HostConnectionVO()
+            host.setHostIp("10.0.0." + it)
+            host.setHostPort("22")
+            return host
+        }
+    }
+}
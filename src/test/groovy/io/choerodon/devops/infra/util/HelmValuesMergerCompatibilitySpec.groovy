@@ -0,0 +1,59 @@
+package io.choerodon.devops.infra.util
+
+import org.yaml.snakeyaml.Yaml
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO
+
+/**
+ * 和values_yaml脚本(docker/values_yaml.py)的输出逐字节比较
+ * <p>
+ * 每个用例一个目录(src/test/resources/helm-values): version.yaml是chart的values, deploy.yaml是部署的values,
+ * expected.txt是脚本的标准输出. 目前的expected.txt是按脚本(ruamel.yaml 0.16)的规则手工推导的, 还没有用脚本生成,
+ * 在base镜像中重新生成expected.txt并修正差异之前, 这里的一致只说明和推导的结果一致:
+ * <pre>
+ * (cat version.yaml; printf '\n---\n'; cat deploy.yaml) > input.yaml
+ * /usr/lib/yaml/values_yaml input.yaml > expected.txt
+ * </pre>
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Subject(HelmValuesMerger)
+class HelmValuesMergerCompatibilitySpec extends Specification {
+    private static final String SEPARATOR = "------love----you------choerodon----"
+
+    @Unroll
+    def "merge #name the same as the values_yaml script"() {
+        given: "和之前解析脚本输出的方式一致"
+        String[] expected = read(name, "expected.txt").split(SEPARATOR)
+        Map<String, List<List<Object>>> changes = new Yaml().load(expected[2])
+        InstanceValueVO expectedValue = HelmValuesMerger.markChanges(expected[0], keys(changes.add), keys(changes.update))
+
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge(read(name, "version.yaml"), read(name, "deploy.yaml"))
+
+        then:
+        result.yaml == expected[0]
+        result.deltaYaml == expected[1]
+        result.newLines == expectedValue.newLines
+        markers(result) == markers(expectedValue)
+
+        where:
+        name << ["comments", "flow-maps", "lists-of-maps", "anchors", "multi-doc", "scalar-types"]
+    }
+
+    private static String read(String name, String file) {
+        return HelmValuesMergerCompatibilitySpec.getResource("/helm-values/${name}/${file}").getText("UTF-8")
+    }
+
+    private static List<List<String>> keys(List<List<Object>> keysList) {
+        return keysList.collect { keys -> keys.collect { String.valueOf(it) } }
+    }
+
+    private static List<List<Integer>> markers(InstanceValueVO value) {
+        return value.highlightMarkers.collect { [it.line, it.endLine, it.startColumn, it.endColumn] }
+    }
+}
@@ -0,0 +1,156 @@
+package io.choerodon.devops.infra.util
+
+import org.yaml.snakeyaml.Yaml
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO
+
+/**
+ * 合并规则的单元测试, 和脚本输出的逐字节比较见HelmValuesMergerCompatibilitySpec
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Subject(HelmValuesMerger)
+class HelmValuesMergerSpec extends Specification {
+    private static final String VERSION_VALUE = """\
+# Default values
+replicaCount: 1   # replicas
+image:
+  repository: nginx
+  tag: stable
+service:
+  type: ClusterIP
+  port: 80
+env: {}
+ports: []
+annotations: {a: 1, b: x}
+nodeSelector:
+"""
+
+    def "merge keeps comments and untouched lines of the chart values"() {
+        given:
+        String deployValue = """\
+replicaCount: 3
+image:
+  tag: "1.19"
+service:
+  nodePort: 30080
+env:
+  JAVA_OPTS: -Xmx1g
+ports:
+  - 80
+annotations: {b: y}
+nodeSelector:
+  disk: ssd
+"""
+
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge(VERSION_VALUE, deployValue)
+
+        then:
+        result.yaml == """\
+# Default values
+replicaCount: 3   # replicas
+image:
+  repository: nginx
+  tag: '1.19'
+service:
+  type: ClusterIP
+  port: 80
+  nodePort: 30080
+env:
+  JAVA_OPTS: -Xmx1g
+ports:
+- 80
+annotations: {a: 1, b: y}
+nodeSelector:
+  disk: ssd
+"""
+        load(result.deltaYaml) == load(deployValue)
+        result.newLines == [8, 10, 11, 12, 13, 15, 16]
+        result.highlightMarkers*.line == [1, 4, 13]
+    }
+
+    @Unroll
+    def "merge #deployValue records add #add and update #update"() {
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge(VERSION_VALUE, deployValue)
+
+        then:
+        load(result.yaml) == load(VERSION_VALUE) + load(merged)
+        load(result.deltaYaml) == load(delta)
+        result.newLines.size() == add
+        result.highlightMarkers.size() == update
+
+        where:
+        deployValue                   | merged                                                        | delta                         | add | update
+        "replicaCount: 1"             | "{}"                                                          | "{}"                          | 0   | 0
+        "replicaCount: null"          | "{}"                                                          | "{}"                          | 0   | 0
+        "replicaCount: 1.5"           | "{}"                                                          | "{}"                          | 0   | 0
+        "replicaCount: true"          | "{}"                                                          | "{}"                          | 0   | 0
+        "replicaCount: '1'"           | "replicaCount: '1'"                                           | "replicaCount: '1'"           | 0   | 1
+        "ports: {a: 1}"               | "{}"                                                          | "{}"                          | 0   | 0
+        "image: {tag: stable}"        | "{}"                                                          | "{}"                          | 0   | 0
+        "image: {pullPolicy: Always}" | "image: {repository: nginx, tag: stable, pullPolicy: Always}" | "image: {pullPolicy: Always}" | 1   | 0
+        "created: 2020-11-13"         | "{}"                                                          | "{}"                          | 0   | 0
+        "port: 0x1F90"                | "{}"                                                          | "{}"                          | 0   | 0
+        "command: |\n  run"           | "{}"                                                          | "{}"                          | 0   | 0
+        "name: &n demo"               | "{}"                                                          | "{}"                          | 0   | 0
+        "debug: 'true'"               | "debug: 'true'"                                               | "debug: 'true'"               | 1   | 0
+    }
+
+    def "merge keeps a flow style chart values as flow"() {
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge("{a: 1, b: {c: x}}", "b:\n  d: 'y, z'\n")
+
+        then:
+        result.yaml == "{a: 1, b: {c: x, d: 'y, z'}}\n"
+        result.deltaYaml == "\nb:\n  d: y, z\n"
+        result.newLines == [0]
+    }
+
+    def "merge appends new keys after the comments of the last value"() {
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge("a:\n  b: 1  # one\n  # c: 2\n\nd: 3\n", "a:\n  b: 10\n  c: 2\n")
+
+        then:
+        result.yaml == "a:\n  b: 10 # one\n  # c: 2\n\n  c: 2\nd: 3\n"
+        result.newLines == [4]
+        result.highlightMarkers*.line == [1]
+    }
+
+    def "merge outputs only the first document of the chart values"() {
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge("---\na: 1\n---\nb: 2\n", "a: 1\n---\na: 2\n")
+
+        then:
+        result.yaml == "a: 2\n"
+        result.deltaYaml == "\na: 2\n"
+    }
+
+    def "merge takes the deploy values when the chart values are empty"() {
+        when:
+        InstanceValueVO result = HelmValuesMerger.merge("", "a: 1 # comment\n")
+
+        then:
+        result.yaml == "a: 1 # comment\n"
+        result.deltaYaml == "\na: 1\n"
+        result.newLines == [0]
+    }
+
+    def "merge rejects illegal values"() {
+        when:
+        HelmValuesMerger.merge(VERSION_VALUE, "a: [1")
+
+        then:
+        thrown(CommonException)
+    }
+
+    private static Object load(String yaml) {
+        return new Yaml().load(yaml) ?: [:]
+    }
+}
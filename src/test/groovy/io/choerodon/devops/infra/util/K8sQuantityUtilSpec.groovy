@@ -0,0 +1,83 @@
+package io.choerodon.devops.infra.util
+
+import java.math.RoundingMode
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+/**
+ *
+ * @author agent
+ * @since 2026/10/18
+ *
+ */
+@Subject(K8sQuantityUtil)
+class K8sQuantityUtilSpec extends Specification {
+    private static final Map<String, BigDecimal> SUFFIXES = [
+            "n" : new BigDecimal("1e-9"),
+            "u" : new BigDecimal("1e-6"),
+            "m" : new BigDecimal("1e-3"),
+            ""  : BigDecimal.ONE,
+            "k" : new BigDecimal("1e3"),
+            "M" : new BigDecimal("1e6"),
+            "G" : new BigDecimal("1e9"),
+            "Ki": BigDecimal.valueOf(1L << 10),
+            "Mi": BigDecimal.valueOf(1L << 20),
+            "Gi": BigDecimal.valueOf(1L << 30)
+    ]
+
+    @Unroll
+    def "parse #quantity"() {
+        expect:
+        K8sQuantityUtil.parseValue(quantity) == value
+        K8sQuantityUtil.parseMilliValue(quantity) == milliValue
+        K8sQuantityUtil.parseNanoValue(quantity) == nanoValue
+
+        where:
+        quantity     | value        | milliValue      | nanoValue
+        null         | 0            | 0               | 0
+        ""           | 0            | 0               | 0
+        "0"          | 0            | 0               | 0
+        "250m"       | 1            | 250             | 250000000
+        "1.5"        | 2            | 1500            | 1500000000
+        "12345n"     | 1            | 1               | 12345
+        "123456789n" | 1            | 124             | 123456789
+        "1.5Ki"      | 1536         | 1536000         | 1536000000000
+        "512Mi"      | 536870912    | 536870912000    | 536870912000000000
+        "1e3"        | 1000         | 1000000         | 1000000000000
+        "1e-3"       | 1            | 1               | 1000000
+        "-1.5"       | -2           | -1500           | -1500000000
+        "8E"         | 8000000000000000000L | Long.MAX_VALUE  | Long.MAX_VALUE
+    }
+
+    @Unroll
+    def "reject invalid quantity #quantity"() {
+        when:
+        K8sQuantityUtil.parseValue(quantity)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        quantity << ["Ki", "1.5e", "1x", "1Xi", "1KiB", "-", "1e+"]
+    }
+
+    def "parse random quantities the same as BigDecimal"() {
+        given:
+        Random random = new Random(20201105)
+        List<String> suffixes = new ArrayList<>(SUFFIXES.keySet())
+
+        expect:
+        (1..10000).every {
+            String suffix = suffixes[random.nextInt(suffixes.size())]
+            BigDecimal number = BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE), random.nextInt(4))
+            String quantity = number.toPlainString() + suffix
+            [0, 3, 9].every { scale ->
+                BigDecimal expected = (number * SUFFIXES[suffix]).scaleByPowerOfTen(scale).setScale(0, RoundingMode.CEILING)
+                long expectedValue = expected > Long.MAX_VALUE ? Long.MAX_VALUE : expected.longValue()
+                K8sQuantityUtil.parseScaledValue(quantity, scale) == expectedValue
+            }
+        }
+    }
+}